@@ -0,0 +1,190 @@
+package com.nl2sql.spider;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2sql.spider.model.EvaluationStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 多进程分片评估
+ * 协调进程把评估项按序号切分为连续的范围，每个范围启动一个工作进程（SpiderEvaluationCLI加--shard-range和--shard-output），
+ * 工作进程把该范围的部分统计写成JSON文件，协调进程等待全部完成后合并。统计以计数和定点数累加，合并结果与单进程评估相同。
+ * 需要逐项结果时各工作进程写自己的JSONL文件，全部成功后按分片顺序拼接
+ */
+public final class ShardedEvaluation {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedEvaluation.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private ShardedEvaluation() {
+    }
+
+    /**
+     * 启动工作进程评估各分片并合并统计
+     *
+     * @param workerArgs 传给工作进程的命令行参数（不含分片参数）
+     * @param itemCount 评估项总数
+     * @param shards 分片数，超过评估项数时按评估项数
+     * @param resultsFile 逐项结果的JSONL输出文件，为null时不输出
+     * @return 合并后的统计
+     * @throws IOException 工作进程失败或读取结果失败
+     * @throws InterruptedException 等待时被中断，此时结束所有工作进程
+     */
+    public static EvaluationStatistics run(List<String> workerArgs, int itemCount, int shards, Path resultsFile)
+            throws IOException, InterruptedException {
+        int shardCount = Math.max(1, Math.min(shards, itemCount));
+        Path workDir = Files.createTempDirectory("spider-shards-");
+        List<Process> processes = new ArrayList<>();
+        boolean succeeded = false;
+
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                // 前itemCount % shardCount个分片各多一项
+                int from = (int) ((long) itemCount * i / shardCount);
+                int to = (int) ((long) itemCount * (i + 1) / shardCount);
+                processes.add(startWorker(workerArgs, from, to, workDir, i, resultsFile != null));
+            }
+            logger.info("Started {} evaluation workers for {} items, work directory {}", shardCount, itemCount, workDir);
+
+            EvaluationStatistics merged = new EvaluationStatistics();
+            for (int i = 0; i < shardCount; i++) {
+                int exitCode = processes.get(i).waitFor();
+                if (exitCode != 0) {
+                    throw new IOException("Evaluation worker " + i + " exited with code " + exitCode
+                                          + ", see " + logFile(workDir, i));
+                }
+                merged.merge(readStatistics(outputFile(workDir, i)));
+            }
+            merged.calculateFinalScores();
+            if (resultsFile != null) {
+                concatenateResults(workDir, shardCount, resultsFile);
+            }
+            succeeded = true;
+            return merged;
+
+        } finally {
+            for (Process process : processes) {
+                if (process.isAlive()) {
+                    process.destroyForcibly();
+                }
+            }
+            // 失败时保留工作进程的日志
+            if (succeeded) {
+                deleteRecursively(workDir);
+            }
+        }
+    }
+
+    /**
+     * 写出部分统计
+     */
+    public static void writeStatistics(EvaluationStatistics statistics, Path file) throws IOException {
+        MAPPER.writeValue(file.toFile(), statistics);
+    }
+
+    /**
+     * 读取部分统计
+     */
+    public static EvaluationStatistics readStatistics(Path file) throws IOException {
+        return MAPPER.readValue(file.toFile(), EvaluationStatistics.class);
+    }
+
+    private static Process startWorker(List<String> workerArgs, int from, int to, Path workDir, int shard,
+                                       boolean writeResults) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        // 沿用堆大小和系统属性，不带调试代理等选项
+        for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (option.startsWith("-X") || option.startsWith("-D")) {
+                command.add(workerOption(option, shard));
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SpiderEvaluationCLI.class.getName());
+        command.addAll(workerArgs);
+        command.add("--shard-range");
+        command.add(from + ":" + to);
+        command.add("--shard-output");
+        command.add(outputFile(workDir, shard).toString());
+        if (writeResults) {
+            command.add("--output");
+            command.add(resultsFile(workDir, shard).toString());
+        }
+
+        return new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(logFile(workDir, shard).toFile())
+            .start();
+    }
+
+    /**
+     * 工作进程的JVM选项：-XX:StartFlightRecording指定的录制文件加上分片后缀（a.jfr -> a-shard-0.jfr），
+     * 否则各工作进程会写同一个文件。未指定文件、指定目录或文件名带%p时JFR按进程生成文件名，保持不变
+     */
+    static String workerOption(String option, int shard) {
+        String prefix = "-XX:StartFlightRecording";
+        if (!option.startsWith(prefix) || option.length() == prefix.length()) {
+            return option;
+        }
+        String[] settings = option.substring(prefix.length() + 1).split(",", -1);
+        boolean rewritten = false;
+        for (int i = 0; i < settings.length; i++) {
+            if (!settings[i].startsWith("filename=")) {
+                continue;
+            }
+            String filename = settings[i].substring("filename=".length());
+            if (filename.isEmpty() || filename.contains("%p") || filename.endsWith(File.separator)
+                    || Files.isDirectory(Paths.get(filename))) {
+                continue;
+            }
+            int name = filename.lastIndexOf(File.separatorChar) + 1;
+            int dot = filename.lastIndexOf('.');
+            int suffixAt = dot > name ? dot : filename.length();
+            settings[i] = "filename=" + filename.substring(0, suffixAt) + "-shard-" + shard + filename.substring(suffixAt);
+            rewritten = true;
+        }
+        return rewritten ? option.substring(0, prefix.length() + 1) + String.join(",", settings) : option;
+    }
+
+    private static Path outputFile(Path workDir, int shard) {
+        return workDir.resolve("shard-" + shard + ".json");
+    }
+
+    private static Path resultsFile(Path workDir, int shard) {
+        return workDir.resolve("shard-" + shard + ".jsonl");
+    }
+
+    private static void concatenateResults(Path workDir, int shardCount, Path resultsFile) throws IOException {
+        try (OutputStream out = Files.newOutputStream(resultsFile)) {
+            for (int i = 0; i < shardCount; i++) {
+                Files.copy(resultsFile(workDir, i), out);
+            }
+        }
+    }
+
+    private static Path logFile(Path workDir, int shard) {
+        return workDir.resolve("shard-" + shard + ".log");
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            logger.warn("Failed to delete shard work directory {}: {}", dir, e.getMessage());
+        }
+    }
+}
@@ -1,11 +1,23 @@
 package com.nl2sql.spider;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nl2sql.spider.enums.EvaluationType;
 import com.nl2sql.spider.model.EvaluationStatistics;
+import com.nl2sql.spider.service.JsonlResultWriter;
+import com.nl2sql.spider.service.ProgressReporter;
+import com.nl2sql.spider.service.ResultSink;
 import com.nl2sql.spider.service.SpiderEvaluationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Spider评估命令行接口
  * 对应Python版本的evaluation.py主函数
@@ -25,6 +37,20 @@ public class SpiderEvaluationCLI {
         String dbDir = null;
         String tableFile = null;
         String evaluationType = "all";
+        boolean partialScores = true;
+        boolean verifyExec = false;
+        boolean concurrentExec = false;
+        long spillThresholdMb = -1;
+        long maxEstimatedRows = 0;
+        String goldIndexFile = null;
+        List<String> testSuiteDirs = new ArrayList<>();
+        int shards = 1;
+        String shardRange = null;
+        String shardOutput = null;
+        String outputFile = null;
+        int topItems = -1;
+        String topOutputFile = null;
+        long progressIntervalSeconds = 10;
         
         // 解析命令行参数
         for (int i = 0; i < args.length; i++) {
@@ -54,6 +80,70 @@ public class SpiderEvaluationCLI {
                         evaluationType = args[++i];
                     }
                     break;
+                case "--no-partial":
+                    partialScores = false;
+                    break;
+                case "--verify-exec":
+                    verifyExec = true;
+                    break;
+                case "--concurrent-exec":
+                    concurrentExec = true;
+                    break;
+                case "--gold-index":
+                    if (i + 1 < args.length) {
+                        goldIndexFile = args[++i];
+                    }
+                    break;
+                case "--test-suite-db":
+                    if (i + 1 < args.length) {
+                        testSuiteDirs.add(args[++i]);
+                    }
+                    break;
+                case "--spill-threshold-mb":
+                    if (i + 1 < args.length) {
+                        spillThresholdMb = Long.parseLong(args[++i]);
+                    }
+                    break;
+                case "--max-estimated-rows":
+                    if (i + 1 < args.length) {
+                        maxEstimatedRows = Long.parseLong(args[++i]);
+                    }
+                    break;
+                case "--shards":
+                    if (i + 1 < args.length) {
+                        shards = Integer.parseInt(args[++i]);
+                    }
+                    break;
+                case "--shard-range":
+                    if (i + 1 < args.length) {
+                        shardRange = args[++i];
+                    }
+                    break;
+                case "--shard-output":
+                    if (i + 1 < args.length) {
+                        shardOutput = args[++i];
+                    }
+                    break;
+                case "--top":
+                    if (i + 1 < args.length) {
+                        topItems = Integer.parseInt(args[++i]);
+                    }
+                    break;
+                case "--top-output":
+                    if (i + 1 < args.length) {
+                        topOutputFile = args[++i];
+                    }
+                    break;
+                case "--progress-interval":
+                    if (i + 1 < args.length) {
+                        progressIntervalSeconds = Long.parseLong(args[++i]);
+                    }
+                    break;
+                case "--output":
+                    if (i + 1 < args.length) {
+                        outputFile = args[++i];
+                    }
+                    break;
                 default:
                     // 忽略未知参数
                     break;
@@ -73,6 +163,20 @@ public class SpiderEvaluationCLI {
             
             // 创建评估服务
             SpiderEvaluationService service = new SpiderEvaluationService();
+            service.setPartialScoresEnabled(partialScores);
+            service.setVerifyEquivalentExecution(verifyExec);
+            service.setConcurrentExecution(concurrentExec);
+            if (spillThresholdMb >= 0) {
+                service.setSpillThresholdBytes(spillThresholdMb * 1024L * 1024L);
+            }
+            service.setMaxEstimatedRows(maxEstimatedRows);
+            if (topItems >= 0) {
+                service.setTopItemLimit(topItems);
+            }
+            service.setTestSuiteDatabaseDirs(testSuiteDirs);
+            if (goldIndexFile != null) {
+                service.loadGoldFingerprintIndex(goldIndexFile);
+            }
             
             System.out.println("Starting Spider evaluation...");
             System.out.println("Gold file: " + goldFile);
@@ -82,13 +186,53 @@ public class SpiderEvaluationCLI {
             System.out.println("Evaluation type: " + evaluationType);
             System.out.println();
             
+            // 分片评估的工作进程：只评估指定范围并写出部分统计
+            if (shardRange != null) {
+                if (shardOutput == null) {
+                    throw new IllegalArgumentException("--shard-range requires --shard-output");
+                }
+                String[] range = shardRange.split(":");
+                EvaluationStatistics partial;
+                try (ResultSink sink = openResultSink(outputFile)) {
+                    service.setResultSink(sink);
+                    partial = service.evaluate(goldFile, predFile, dbDir, tableFile, evalType,
+                                               Integer.parseInt(range[0]), Integer.parseInt(range[1]));
+                }
+                ShardedEvaluation.writeStatistics(partial, Paths.get(shardOutput));
+                return;
+            }
+            
             // 执行评估
             long startTime = System.currentTimeMillis();
-            EvaluationStatistics statistics = service.evaluate(goldFile, predFile, dbDir, tableFile, evalType);
+            EvaluationStatistics statistics;
+            if (shards > 1) {
+                int itemCount = service.countGoldItems(goldFile);
+                System.out.println("Shards: " + shards);
+                statistics = ShardedEvaluation.run(workerArgs(args), itemCount, shards,
+                                                   outputFile != null ? Paths.get(outputFile) : null);
+            } else {
+                try (ResultSink sink = openResultSink(outputFile);
+                     ProgressReporter progress = openProgressReporter(progressIntervalSeconds)) {
+                    service.setResultSink(sink);
+                    service.setProgressListener(progress);
+                    statistics = service.evaluate(goldFile, predFile, dbDir, tableFile, evalType);
+                }
+            }
             long endTime = System.currentTimeMillis();
+            if (outputFile != null) {
+                System.out.println("Per-item results written to " + outputFile);
+            }
             
             // 打印结果
             statistics.printResults();
+            if (topItems > 0) {
+                System.out.println();
+                statistics.printTopItems();
+            }
+            if (topOutputFile != null) {
+                writeTopItems(statistics, topOutputFile);
+                System.out.println("Slowest and largest items written to " + topOutputFile);
+            }
             
             System.out.println();
             System.out.printf("Evaluation completed in %.2f seconds%n", (endTime - startTime) / 1000.0);
@@ -100,6 +244,46 @@ public class SpiderEvaluationCLI {
         }
     }
     
+    /**
+     * 打开逐项结果的JSONL输出，未指定文件时返回null
+     */
+    private static ResultSink openResultSink(String outputFile) throws IOException {
+        return outputFile != null ? new JsonlResultWriter(Paths.get(outputFile)) : null;
+    }
+    
+    /**
+     * 定期把进度打印到标准错误，间隔不大于0时返回null
+     */
+    private static ProgressReporter openProgressReporter(long intervalSeconds) {
+        return intervalSeconds > 0 ? new ProgressReporter(TimeUnit.SECONDS.toMillis(intervalSeconds)) : null;
+    }
+    
+    /**
+     * 把最慢和返回行数最多的评估项写成JSON
+     */
+    private static void writeTopItems(EvaluationStatistics statistics, String file) throws IOException {
+        Map<String, Object> top = new LinkedHashMap<>();
+        top.put("slowest", statistics.getSlowestItems());
+        top.put("largest", statistics.getLargestItems());
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(Paths.get(file).toFile(), top);
+    }
+    
+    /**
+     * 去掉分片参数和逐项结果输出后的命令行参数，传给工作进程
+     */
+    private static List<String> workerArgs(String[] args) {
+        List<String> workerArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--shards") || args[i].equals("--shard-range") || args[i].equals("--shard-output")
+                || args[i].equals("--output") || args[i].equals("--top-output")) {
+                i++;
+                continue;
+            }
+            workerArgs.add(args[i]);
+        }
+        return workerArgs;
+    }
+    
     private static void printUsage() {
         System.out.println("Usage: java -jar spider-evaluation.jar [OPTIONS]");
         System.out.println();
@@ -109,6 +293,28 @@ public class SpiderEvaluationCLI {
         System.out.println("  --db <dir>        Database directory (required)");
         System.out.println("  --table <file>    Table schema file (required)");
         System.out.println("  --etype <type>    Evaluation type: match, exec, all (default: all)");
+        System.out.println("  --no-partial      Skip per-component scores, report exact match only (Avg F1 shows 0)");
+        System.out.println("  --verify-exec     Execute predictions even when equivalent to gold, log mismatches");
+        System.out.println("  --concurrent-exec Run gold and prediction concurrently, abort early on mismatch");
+        System.out.println("  --gold-index <file>");
+        System.out.println("                    Gold result fingerprint index (see spider-validation build-gold-index);");
+        System.out.println("                    indexed gold queries are not re-executed");
+        System.out.println("  --test-suite-db <dir>");
+        System.out.println("                    Extra database directory (e.g. data/spider/test_database), repeatable;");
+        System.out.println("                    a prediction must match gold on every variant of its database");
+        System.out.println("  --spill-threshold-mb <n>");
+        System.out.println("                    Per-result memory limit in MB before spilling to disk (default: 1/8 of heap, 0 disables)");
+        System.out.println("  --max-estimated-rows <n>");
+        System.out.println("                    Do not execute predictions whose plan is estimated above n rows;");
+        System.out.println("                    they count as execution mismatches (default: 0, disabled)");
+        System.out.println("  --progress-interval <s>");
+        System.out.println("                    Print progress (throughput, accuracy so far, ETA) to stderr every s seconds");
+        System.out.println("                    (default: 10, 0 disables; not reported with --shards)");
+        System.out.println("  --shards <n>      Split the items across n worker JVMs and merge their statistics");
+        System.out.println("  --output <file>   Write per-item results (hardness, matches, component F1, time, metrics, error) as JSONL");
+        System.out.println("  --top <n>         Print the n slowest items and the n items returning the most rows (default kept: 10)");
+        System.out.println("  --top-output <file>");
+        System.out.println("                    Write the slowest and largest items with their parse/execution metrics as JSON");
         System.out.println();
         System.out.println("Example:");
         System.out.println("  java -jar spider-evaluation.jar \\");
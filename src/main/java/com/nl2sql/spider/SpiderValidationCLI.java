@@ -36,6 +36,9 @@ public class SpiderValidationCLI {
             case "validate-all":
                 validateAll(args);
                 break;
+            case "build-gold-index":
+                buildGoldIndex(args);
+                break;
             default:
                 System.err.println("Unknown command: " + command);
                 printUsage();
@@ -228,6 +231,45 @@ public class SpiderValidationCLI {
         }
     }
     
+    /**
+     * 生成标准SQL结果指纹索引
+     */
+    private static void buildGoldIndex(String[] args) {
+        if (args.length < 5) {
+            System.err.println("Usage: java -jar spider-validation.jar build-gold-index <gold-file> <db-dir> <table-file> <index-file>");
+            System.exit(1);
+        }
+        
+        String goldFile = args[1];
+        String dbDir = args[2];
+        String tableFile = args[3];
+        String indexFile = args[4];
+        
+        System.out.println("=".repeat(80));
+        System.out.println("SPIDER GOLD FINGERPRINT INDEX");
+        System.out.println("=".repeat(80));
+        System.out.println("Gold file: " + goldFile);
+        System.out.println("Database directory: " + dbDir);
+        System.out.println("Table file: " + tableFile);
+        System.out.println("Index file: " + indexFile);
+        System.out.println();
+        
+        try {
+            SpiderEvaluationService service = new SpiderEvaluationService();
+            
+            long startTime = System.currentTimeMillis();
+            int entries = service.buildGoldFingerprintIndex(goldFile, dbDir, tableFile, indexFile);
+            long endTime = System.currentTimeMillis();
+            
+            System.out.printf("Indexed %d gold queries in %.2f seconds%n", entries, (endTime - startTime) / 1000.0);
+            
+        } catch (Exception e) {
+            logger.error("Building gold index failed", e);
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+    
     private static void printUsage() {
         System.out.println("Spider Validation Tool");
         System.out.println();
@@ -245,6 +287,10 @@ public class SpiderValidationCLI {
         System.out.println("    Run complete validation (data + logic)");
         System.out.println("    eval-type: match, exec, all (default: all)");
         System.out.println();
+        System.out.println("  build-gold-index <gold-file> <db-dir> <table-file> <index-file>");
+        System.out.println("    Execute all gold queries once and write a result fingerprint index");
+        System.out.println("    (use with spider-evaluation --gold-index <index-file>)");
+        System.out.println();
         System.out.println("Examples:");
         System.out.println("  java -jar spider-validation.jar validate-data data/spider");
         System.out.println("  java -jar spider-validation.jar validate-logic \\");
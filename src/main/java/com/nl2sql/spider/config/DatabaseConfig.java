@@ -1,5 +1,9 @@
 package com.nl2sql.spider.config;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.Properties;
 
 /**
@@ -33,6 +37,45 @@ public class DatabaseConfig {
         }
     }
     
+    /**
+     * 数据库服务端点（主机和端口）
+     */
+    public static class Endpoint {
+        private final String host;
+        private final int port;
+        
+        public Endpoint(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+        
+        public String getHost() {
+            return host;
+        }
+        
+        public int getPort() {
+            return port;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Endpoint that = (Endpoint) o;
+            return port == that.port && Objects.equals(host, that.host);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(host, port);
+        }
+        
+        @Override
+        public String toString() {
+            return host + ":" + port;
+        }
+    }
+    
     private DatabaseType type;
     private String host;
     private int port;
@@ -42,6 +85,24 @@ public class DatabaseConfig {
     private String filePath; // 用于SQLite等基于文件的数据库
     private Properties additionalProperties;
     
+    // 连接池设置，只用于远程数据库（MySQL、PostgreSQL、Oracle、SQL Server）
+    private boolean pooled = true;
+    private int poolMinSize = 0;
+    private int poolMaxSize = 8;
+    private long borrowTimeoutMillis = 30_000;
+    private long maxLifetimeMillis = 30 * 60_000;
+    private long leakDetectionThresholdMillis = 0; // 0表示不检测
+    private int validationTimeoutSeconds = 5;
+    
+    // 多个只读副本，设置后替代host/port
+    private List<Endpoint> endpoints = new ArrayList<>();
+    private int replicaFailureThreshold = 3;
+    private long replicaEjectionMillis = 30_000;
+    
+    // 执行评估的自适应并发上限，只用于远程数据库
+    private boolean adaptiveConcurrency = true;
+    private int maxConcurrency = 0; // 0表示按连接池大小
+    
     // 构造函数
     public DatabaseConfig() {
         this.additionalProperties = new Properties();
@@ -103,6 +164,48 @@ public class DatabaseConfig {
         return type != DatabaseType.SQLITE && type != DatabaseType.H2;
     }
     
+    /**
+     * 是否为远程数据库（需要网络连接）
+     */
+    public boolean isRemote() {
+        return type == DatabaseType.MYSQL || type == DatabaseType.POSTGRESQL
+               || type == DatabaseType.ORACLE || type == DatabaseType.SQLSERVER;
+    }
+    
+    /**
+     * 复制配置并改用指定端点，副本列表不复制
+     * 
+     * @param endpoint 端点
+     * @return 新配置
+     */
+    public DatabaseConfig withEndpoint(Endpoint endpoint) {
+        DatabaseConfig copy = new DatabaseConfig(type, endpoint.getHost(), endpoint.getPort(), database,
+                                                 username, password);
+        copy.filePath = filePath;
+        if (additionalProperties != null) {
+            copy.additionalProperties.putAll(additionalProperties);
+        }
+        copy.pooled = pooled;
+        copy.poolMinSize = poolMinSize;
+        copy.poolMaxSize = poolMaxSize;
+        copy.borrowTimeoutMillis = borrowTimeoutMillis;
+        copy.maxLifetimeMillis = maxLifetimeMillis;
+        copy.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        copy.validationTimeoutSeconds = validationTimeoutSeconds;
+        copy.replicaFailureThreshold = replicaFailureThreshold;
+        copy.replicaEjectionMillis = replicaEjectionMillis;
+        copy.adaptiveConcurrency = adaptiveConcurrency;
+        copy.maxConcurrency = maxConcurrency;
+        return copy;
+    }
+    
+    /**
+     * 是否从连接池获取连接
+     */
+    public boolean usesPool() {
+        return pooled && isRemote();
+    }
+    
     // Getters and Setters
     public DatabaseType getType() {
         return type;
@@ -172,12 +275,150 @@ public class DatabaseConfig {
         this.additionalProperties.setProperty(key, value);
     }
     
+    public boolean isPooled() {
+        return pooled;
+    }
+    
+    /**
+     * 设置远程数据库是否使用连接池（默认使用）
+     */
+    public void setPooled(boolean pooled) {
+        this.pooled = pooled;
+    }
+    
+    public int getPoolMinSize() {
+        return poolMinSize;
+    }
+    
+    /**
+     * 设置连接池保持的最少连接数，由后台线程补足
+     */
+    public void setPoolMinSize(int poolMinSize) {
+        this.poolMinSize = poolMinSize;
+    }
+    
+    public int getPoolMaxSize() {
+        return poolMaxSize;
+    }
+    
+    /**
+     * 设置连接池最多同时借出的连接数
+     */
+    public void setPoolMaxSize(int poolMaxSize) {
+        this.poolMaxSize = poolMaxSize;
+    }
+    
+    public long getBorrowTimeoutMillis() {
+        return borrowTimeoutMillis;
+    }
+    
+    /**
+     * 设置连接全部借出时等待的最长时间，超时抛出SQLException
+     */
+    public void setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+    }
+    
+    public long getMaxLifetimeMillis() {
+        return maxLifetimeMillis;
+    }
+    
+    /**
+     * 设置连接的最长存活时间，超过后归还时关闭，0表示不限
+     */
+    public void setMaxLifetimeMillis(long maxLifetimeMillis) {
+        this.maxLifetimeMillis = maxLifetimeMillis;
+    }
+    
+    public long getLeakDetectionThresholdMillis() {
+        return leakDetectionThresholdMillis;
+    }
+    
+    /**
+     * 设置连接借出多久未归还时记录可能的泄漏（附借出位置），0表示不检测
+     */
+    public void setLeakDetectionThresholdMillis(long leakDetectionThresholdMillis) {
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+    }
+    
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+    
+    /**
+     * 设置借出空闲连接前Connection.isValid检查的超时（秒）
+     */
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+    
+    public List<Endpoint> getEndpoints() {
+        return Collections.unmodifiableList(endpoints);
+    }
+    
+    /**
+     * 设置数据相同的多个副本端点，设置后连接分散到各副本，host/port不再使用
+     */
+    public void setEndpoints(List<Endpoint> endpoints) {
+        this.endpoints = endpoints == null ? new ArrayList<>() : new ArrayList<>(endpoints);
+    }
+    
+    public void addEndpoint(String host, int port) {
+        this.endpoints.add(new Endpoint(host, port));
+    }
+    
+    public int getReplicaFailureThreshold() {
+        return replicaFailureThreshold;
+    }
+    
+    /**
+     * 设置副本连续连接失败多少次后暂时摘除
+     */
+    public void setReplicaFailureThreshold(int replicaFailureThreshold) {
+        this.replicaFailureThreshold = replicaFailureThreshold;
+    }
+    
+    public long getReplicaEjectionMillis() {
+        return replicaEjectionMillis;
+    }
+    
+    /**
+     * 设置副本被摘除的时长，到期后健康检查通过才恢复
+     */
+    public void setReplicaEjectionMillis(long replicaEjectionMillis) {
+        this.replicaEjectionMillis = replicaEjectionMillis;
+    }
+    
+    public boolean isAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+    
+    /**
+     * 设置远程数据库的执行评估是否按延迟自动限制并发（默认开启）
+     */
+    public void setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+        this.adaptiveConcurrency = adaptiveConcurrency;
+    }
+    
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+    
+    /**
+     * 设置并发上限的最大值，0表示使用连接池时为poolMaxSize乘以端点数，否则为64。
+     * 使用连接池时不超过连接池能同时满足的项数（并发执行时每项占用两个连接）
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+    
     @Override
     public String toString() {
         return "DatabaseConfig{" +
                 "type=" + type +
                 ", host='" + host + '\'' +
                 ", port=" + port +
+                (endpoints.isEmpty() ? "" : ", endpoints=" + endpoints) +
                 ", database='" + database + '\'' +
                 ", username='" + username + '\'' +
                 ", filePath='" + filePath + '\'' +
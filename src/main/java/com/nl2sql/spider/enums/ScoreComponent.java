@@ -0,0 +1,36 @@
+package com.nl2sql.spider.enums;
+
+/**
+ * 部分匹配评分的组件枚举
+ */
+public enum ScoreComponent {
+    SELECT("select"),
+    SELECT_NO_AGG("select(no AGG)"),
+    WHERE("where"),
+    WHERE_NO_OP("where(no OP)"),
+    GROUP_NO_HAVING("group(no Having)"),
+    GROUP("group"),
+    ORDER("order"),
+    AND_OR("and/or"),
+    IUEN("IUEN"),
+    KEYWORDS("keywords");
+    
+    private final String value;
+    
+    ScoreComponent(String value) {
+        this.value = value;
+    }
+    
+    public String getValue() {
+        return value;
+    }
+    
+    public static ScoreComponent fromValue(String value) {
+        for (ScoreComponent component : ScoreComponent.values()) {
+            if (component.value.equals(value)) {
+                return component;
+            }
+        }
+        throw new IllegalArgumentException("Unknown score component: " + value);
+    }
+}
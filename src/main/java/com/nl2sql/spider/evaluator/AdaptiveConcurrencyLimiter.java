@@ -0,0 +1,197 @@
+package com.nl2sql.spider.evaluator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按观测延迟自动调整的并发上限（AIMD）
+ * 每个数据库端点一个，执行评估前acquire()，超过上限的请求排队等待。每次完成时用耗时更新短期和长期的指数平均：
+ * 短期平均超过长期平均的TOLERANCE倍（数据库开始排队）或连接失败时上限乘以BACKOFF_RATIO；
+ * 否则在上限被用到一半以上时每次加1/上限，约每轮加1。上限在[1, maxLimit]之间，maxLimit可以在使用中调整
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double TOLERANCE = 2.0;
+    private static final double SHORT_ALPHA = 0.1;
+    private static final double LONG_ALPHA = 0.01;
+
+    private int maxLimit;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition available = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private double shortRttNanos;
+    private double longRttNanos;
+    private long completed;
+    private long dropped;
+    private long ignored;
+
+    /**
+     * @param initialLimit 初始上限
+     * @param maxLimit 上限的最大值
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int maxLimit) {
+        if (maxLimit <= 0) {
+            throw new IllegalArgumentException("Max limit must be positive: " + maxLimit);
+        }
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(1, Math.min(initialLimit, maxLimit));
+    }
+
+    /**
+     * 等待直到执行中的请求数低于上限
+     *
+     * @return 开始执行的System.nanoTime()，传给release
+     * @throws InterruptedException 等待时被中断
+     */
+    public long acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            queued++;
+            try {
+                while (inFlight >= (int) limit) {
+                    available.await();
+                }
+            } finally {
+                queued--;
+            }
+            inFlight++;
+            return System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 请求完成，按耗时调整上限
+     *
+     * @param startNanos acquire()的返回值
+     * @param dropped 是否因连接失败等过载迹象而失败（SQL本身无效不算）
+     */
+    public void release(long startNanos, boolean dropped) {
+        long rtt = System.nanoTime() - startNanos;
+        lock.lock();
+        try {
+            int wasInFlight = inFlight--;
+            if (dropped) {
+                this.dropped++;
+                decrease();
+            } else {
+                completed++;
+                if (completed == 1) {
+                    shortRttNanos = rtt;
+                    longRttNanos = rtt;
+                } else {
+                    shortRttNanos += (rtt - shortRttNanos) * SHORT_ALPHA;
+                    longRttNanos += (rtt - longRttNanos) * LONG_ALPHA;
+                }
+                if (shortRttNanos > TOLERANCE * longRttNanos) {
+                    decrease();
+                } else if (wasInFlight * 2 >= (int) limit) {
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 请求完成但结果不反映数据库负载（例如等待连接池超时），只释放名额，不调整上限
+     */
+    public void ignore() {
+        lock.lock();
+        try {
+            inFlight--;
+            ignored++;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease() {
+        limit = Math.max(1, limit * BACKOFF_RATIO);
+    }
+
+    /**
+     * 上限的最大值
+     */
+    public int getMaxLimit() {
+        lock.lock();
+        try {
+            return maxLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 调整上限的最大值，当前上限随之收紧
+     * 已经执行中的请求不受影响，执行中的请求数降到新上限以下之前不再放行新的请求
+     *
+     * @param maxLimit 新的最大值
+     */
+    public void setMaxLimit(int maxLimit) {
+        if (maxLimit <= 0) {
+            throw new IllegalArgumentException("Max limit must be positive: " + maxLimit);
+        }
+        lock.lock();
+        try {
+            this.maxLimit = maxLimit;
+            limit = Math.min(limit, maxLimit);
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前上限
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 正在等待的请求数
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return String.format("limit=%d/%d, inFlight=%d, queued=%d, completed=%d, dropped=%d, ignored=%d, latency=%.1fms",
+                                 (int) limit, maxLimit, inFlight, queued, completed, dropped, ignored,
+                                 longRttNanos / TimeUnit.MILLISECONDS.toNanos(1));
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.nl2sql.spider.evaluator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 可从其他线程取消的连接包装
+ * 记录通过该连接创建的所有语句，cancel()时取消仍在执行的语句，之后再创建语句会直接失败
+ */
+final class CancellableConnection implements InvocationHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CancellableConnection.class);
+
+    private final Connection delegate;
+    private final Connection proxy;
+    private final List<Statement> statements = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+
+    private CancellableConnection(Connection delegate) {
+        this.delegate = delegate;
+        this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                                                         new Class<?>[] {Connection.class}, this);
+    }
+
+    static CancellableConnection wrap(Connection delegate) {
+        return new CancellableConnection(delegate);
+    }
+
+    /**
+     * 包装后的连接，关闭时关闭原连接
+     */
+    Connection getConnection() {
+        return proxy;
+    }
+
+    /**
+     * 取消通过该连接执行的语句，可在任意线程调用
+     */
+    void cancel() {
+        cancelled = true;
+        for (Statement statement : statements) {
+            cancelQuietly(statement);
+        }
+    }
+
+    @Override
+    public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        boolean createsStatement = name.equals("createStatement") || name.equals("prepareStatement")
+                                   || name.equals("prepareCall");
+        if (cancelled && createsStatement) {
+            throw new SQLException("Execution cancelled");
+        }
+
+        Object result;
+        try {
+            result = method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+
+        if (createsStatement) {
+            Statement statement = (Statement) result;
+            statements.add(statement);
+            // 注册期间可能已被取消
+            if (cancelled) {
+                cancelQuietly(statement);
+            }
+        }
+        return result;
+    }
+
+    private static void cancelQuietly(Statement statement) {
+        try {
+            statement.cancel();
+        } catch (SQLException e) {
+            logger.debug("Failed to cancel statement: {}", e.getMessage());
+        }
+    }
+}
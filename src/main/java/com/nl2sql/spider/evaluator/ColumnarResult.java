@@ -0,0 +1,997 @@
+package com.nl2sql.spider.evaluator;
+
+import com.nl2sql.spider.model.StructuralHash;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntSupplier;
+
+/**
+ * 列式查询结果缓冲
+ * 整数列存为long[]，浮点列存为double[]，字符串列共享一个char数组区，每列带null位图；
+ * 无法归类的列（BigDecimal、二进制等）退化为Object[]。
+ * 行比较、排序和指纹都直接在列向量上进行，语义与逐行List&lt;Object&gt;的比较方式一致
+ */
+public final class ColumnarResult {
+
+    /**
+     * 列存储类型
+     */
+    public enum ColumnType {
+        LONG, DOUBLE, STRING, OBJECT
+    }
+
+    private static final int INITIAL_ROWS = 16;
+    private static final int SIZE_CHECK_INTERVAL = 1024;
+    private static final long NULL_CELL_HASH = 0x5DEECE66DL;
+
+    private final int rowCount;
+    private final Column[] columns;
+    private final char[] arena;
+    private final boolean complete;
+    private final CellOrder[] orders;
+
+    private ColumnarResult(int rowCount, Column[] columns, char[] arena, boolean complete) {
+        this.rowCount = rowCount;
+        this.columns = columns;
+        this.arena = arena;
+        this.complete = complete;
+        this.orders = new CellOrder[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            orders[i] = compileOrder(columns[i]);
+        }
+    }
+
+    /**
+     * 读取结果集
+     *
+     * @param rs 结果集
+     * @param dynamicTyping 数据库是否为动态类型（如SQLite）。动态类型时按值推断列类型，
+     *                      同一列出现不同类型的值时退化为OBJECT；否则按ResultSetMetaData的列类型读取
+     * @return 列式结果
+     * @throws SQLException 读取异常
+     */
+    public static ColumnarResult read(ResultSet rs, boolean dynamicTyping) throws SQLException {
+        return read(rs, dynamicTyping, null);
+    }
+
+    /**
+     * 读取结果集，行数超过上限时停止读取
+     *
+     * @param rs 结果集
+     * @param dynamicTyping 数据库是否为动态类型
+     * @param rowLimit 当前允许的最大行数，每读一行查询一次，可在读取过程中变化；为null表示不限制
+     * @return 列式结果；超过上限时返回null
+     * @throws SQLException 读取异常
+     */
+    public static ColumnarResult read(ResultSet rs, boolean dynamicTyping, IntSupplier rowLimit) throws SQLException {
+        return read(rs, dynamicTyping, rowLimit, Long.MAX_VALUE);
+    }
+
+    /**
+     * 分块读取结果集：占用内存估算超过maxBytes时停止，返回的结果isComplete()为false，
+     * 结果集停在已读取的最后一行之后，可继续读取下一块
+     *
+     * @param rs 结果集
+     * @param dynamicTyping 数据库是否为动态类型
+     * @param rowLimit 当前允许的最大行数，为null表示不限制
+     * @param maxBytes 本块的内存上限（字节）
+     * @return 列式结果；超过行数上限时返回null
+     * @throws SQLException 读取异常
+     */
+    public static ColumnarResult read(ResultSet rs, boolean dynamicTyping, IntSupplier rowLimit,
+                                      long maxBytes) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        Builder builder = new Builder(columnCount);
+
+        ColumnType[] declared = new ColumnType[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            declared[i] = dynamicTyping ? null : typeOf(metaData, i + 1);
+        }
+
+        while (rs.next()) {
+            if (rowLimit != null && builder.rowCount >= rowLimit.getAsInt()) {
+                return null;
+            }
+            int row = builder.addRow();
+            for (int i = 0; i < columnCount; i++) {
+                Column column = builder.columns[i];
+                ColumnType type = declared[i];
+                if (type == null || type == ColumnType.OBJECT) {
+                    builder.appendObject(column, row, rs.getObject(i + 1));
+                } else if (type == ColumnType.LONG) {
+                    long value = rs.getLong(i + 1);
+                    builder.appendLong(column, row, value, rs.wasNull());
+                } else if (type == ColumnType.DOUBLE) {
+                    double value = rs.getDouble(i + 1);
+                    builder.appendDouble(column, row, value, rs.wasNull());
+                } else {
+                    builder.appendString(column, row, rs.getString(i + 1));
+                }
+            }
+            if ((row + 1) % SIZE_CHECK_INTERVAL == 0 && builder.estimatedBytes() >= maxBytes) {
+                return builder.build(false);
+            }
+        }
+
+        return builder.build(true);
+    }
+
+    /**
+     * 由行数据构建（主要用于测试和外部数据）
+     *
+     * @param columnCount 列数
+     * @param rows 每行的值
+     * @return 列式结果
+     */
+    public static ColumnarResult fromRows(int columnCount, Iterable<? extends List<?>> rows) {
+        Builder builder = new Builder(columnCount);
+        for (List<?> values : rows) {
+            if (values.size() != columnCount) {
+                throw new IllegalArgumentException("Row has " + values.size() + " values, expected " + columnCount);
+            }
+            int row = builder.addRow();
+            for (int i = 0; i < columnCount; i++) {
+                builder.appendObject(builder.columns[i], row, values.get(i));
+            }
+        }
+        return builder.build(true);
+    }
+
+    /**
+     * SQLite为动态类型，同一列的值类型可能不同，需要按值推断列类型
+     */
+    static boolean isDynamicallyTyped(Connection conn) throws SQLException {
+        return "SQLite".equalsIgnoreCase(conn.getMetaData().getDatabaseProductName());
+    }
+
+    private static ColumnType typeOf(ResultSetMetaData metaData, int column) throws SQLException {
+        switch (metaData.getColumnType(column)) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return ColumnType.LONG;
+            case Types.BIGINT:
+                // 无符号BIGINT可能超出long范围
+                return metaData.isSigned(column) ? ColumnType.LONG : ColumnType.OBJECT;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return ColumnType.DOUBLE;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return ColumnType.STRING;
+            default:
+                return ColumnType.OBJECT;
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * 是否已读完整个结果集（分块读取时最后一块之前的块为false）
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public ColumnType getColumnType(int column) {
+        return columns[column].type;
+    }
+
+    public boolean isNull(int column, int row) {
+        return columns[column].isNull(row);
+    }
+
+    public long getLong(int column, int row) {
+        return columns[column].longs[row];
+    }
+
+    public double getDouble(int column, int row) {
+        return columns[column].doubles[row];
+    }
+
+    /**
+     * 获取字符串单元格（会分配新字符串，仅用于输出和调试）
+     */
+    public String getString(int column, int row) {
+        Column c = columns[column];
+        if (c.isNull(row)) {
+            return null;
+        }
+        return new String(arena, c.starts[row], c.lengths[row]);
+    }
+
+    /**
+     * 获取单元格的装箱值，类型与JDBC getObject一致
+     */
+    public Object getObject(int column, int row) {
+        Column c = columns[column];
+        if (c.isNull(row)) {
+            return null;
+        }
+        switch (c.type) {
+            case LONG:
+                return boxLong(c.javaClass, c.longs[row]);
+            case DOUBLE:
+                return c.javaClass == Float.class ? (Object) (float) c.doubles[row] : (Object) c.doubles[row];
+            case STRING:
+                return getString(column, row);
+            default:
+                return c.objects[row];
+        }
+    }
+
+    /**
+     * 按行比较规则排序后的行下标（稳定排序）
+     */
+    public int[] sortedOrder() {
+        int[] order = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            order[i] = i;
+        }
+        if (rowCount > 1) {
+            int[] buffer = new int[rowCount];
+            mergeSort(order, buffer, 0, rowCount);
+        }
+        return order;
+    }
+
+    /**
+     * 比较本结果中的两行：null最小，其余与compareObjects的顺序一致
+     */
+    public int compareRows(int rowA, int rowB) {
+        for (int i = 0; i < columns.length; i++) {
+            Column c = columns[i];
+            boolean nullA = c.isNull(rowA);
+            boolean nullB = c.isNull(rowB);
+            if (nullA && nullB) continue;
+            if (nullA) return -1;
+            if (nullB) return 1;
+
+            int cmp = orders[i].compare(rowA, rowB);
+            if (cmp != 0) return cmp;
+        }
+        return 0;
+    }
+
+    /**
+     * 比较本结果的一行与另一结果的一行是否相等
+     * 数值允许1e-9误差，字符串忽略大小写
+     */
+    public boolean rowEquals(int row, ColumnarResult other, int otherRow) {
+        if (columns.length != other.columns.length) {
+            return false;
+        }
+        return rowEquals(compileEquality(other), row, other, otherRow);
+    }
+
+    private boolean rowEquals(CellEquality[] equality, int row, ColumnarResult other, int otherRow) {
+        for (int i = 0; i < columns.length; i++) {
+            boolean nullA = columns[i].isNull(row);
+            boolean nullB = other.columns[i].isNull(otherRow);
+            if (nullA || nullB) {
+                if (nullA && nullB) continue;
+                return false;
+            }
+            if (!equality[i].equal(row, otherRow)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 不考虑行顺序地比较两个结果（多重集合相等）
+     */
+    public boolean matchesUnordered(ColumnarResult other) {
+        if (rowCount != other.rowCount) {
+            return false;
+        }
+        if (rowCount == 0) {
+            return true;
+        }
+        if (columns.length != other.columns.length) {
+            return false;
+        }
+
+        CellEquality[] equality = compileEquality(other);
+        int[] order = sortedOrder();
+        int[] otherOrder = other.sortedOrder();
+        for (int i = 0; i < rowCount; i++) {
+            if (!rowEquals(equality, order[i], other, otherOrder[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 与行顺序无关的结果指纹
+     * 字符串忽略大小写、数值按double取值计算，与精确相等一致；
+     * 仅在误差范围内相等的数值可能得到不同指纹，因此指纹不同不能作为不匹配的依据
+     */
+    public long fingerprint() {
+        long sum = 0;
+        long xor = 0;
+        for (int row = 0; row < rowCount; row++) {
+            long h = rowHash(row);
+            sum += h;
+            xor ^= h;
+        }
+        return StructuralHash.combine(StructuralHash.combine(columns.length, rowCount),
+                                      StructuralHash.combine(sum, xor));
+    }
+
+    /**
+     * 指纹不同是否足以判定结果不同
+     * 含非整数浮点值（比较时允许误差）或二进制值（按引用比较）时返回false
+     */
+    public boolean isFingerprintExact() {
+        for (Column c : columns) {
+            for (int row = 0; row < rowCount; row++) {
+                if (c.isNull(row)) {
+                    continue;
+                }
+                if (c.type == ColumnType.DOUBLE && !isIntegral(c.doubles[row])) {
+                    return false;
+                }
+                if (c.type == ColumnType.OBJECT && !isFingerprintExact(c.objects[row])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isFingerprintExact(Object value) {
+        if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            return isIntegral(((Number) value).doubleValue());
+        }
+        return !(value instanceof byte[]);
+    }
+
+    private static boolean isIntegral(double value) {
+        return value == Math.rint(value);
+    }
+
+    /**
+     * 单行哈希，与fingerprint使用相同的单元格哈希规则
+     */
+    public long rowHash(int row) {
+        long h = columns.length;
+        for (int i = 0; i < columns.length; i++) {
+            h = StructuralHash.combine(h, cellHash(i, row));
+        }
+        return StructuralHash.mix(h);
+    }
+
+    /**
+     * 占用的堆内存估算（字节），不含OBJECT列中对象本身
+     */
+    public long estimatedBytes() {
+        long bytes = (long) arena.length * Character.BYTES;
+        for (Column c : columns) {
+            bytes += (long) c.nulls.length * Long.BYTES;
+            if (c.longs != null) bytes += (long) c.longs.length * Long.BYTES;
+            if (c.doubles != null) bytes += (long) c.doubles.length * Double.BYTES;
+            if (c.starts != null) bytes += (long) c.starts.length * Integer.BYTES * 2;
+            if (c.objects != null) bytes += (long) c.objects.length * 8;
+        }
+        return bytes;
+    }
+
+    // 单元格比较
+
+    /**
+     * 列内两行的比较，调用方已处理null
+     */
+    private interface CellOrder {
+        int compare(int rowA, int rowB);
+    }
+
+    /**
+     * 两个结果同一列单元格的相等判断，调用方已处理null
+     */
+    private interface CellEquality {
+        boolean equal(int row, int otherRow);
+    }
+
+    /**
+     * 按列存储类型生成比较器，比较时不再逐个单元格判断类型
+     */
+    private CellOrder compileOrder(Column c) {
+        switch (c.type) {
+            case LONG: {
+                long[] values = c.longs;
+                return (a, b) -> Long.compare(values[a], values[b]);
+            }
+            case DOUBLE: {
+                double[] values = c.doubles;
+                return (a, b) -> Double.compare(values[a], values[b]);
+            }
+            case STRING: {
+                char[] chars = arena;
+                int[] starts = c.starts;
+                int[] lengths = c.lengths;
+                return (a, b) -> compareChars(chars, starts[a], lengths[a], starts[b], lengths[b]);
+            }
+            default: {
+                Object[] values = c.objects;
+                if (isUniformlyComparable(c)) {
+                    // 同一Comparable类型，直接调用compareTo
+                    return (a, b) -> {
+                        @SuppressWarnings("unchecked")
+                        Comparable<Object> value = (Comparable<Object>) values[a];
+                        return value.compareTo(values[b]);
+                    };
+                }
+                return (a, b) -> compareObjects(values[a], values[b]);
+            }
+        }
+    }
+
+    private boolean isUniformlyComparable(Column c) {
+        Class<?> common = null;
+        for (int row = 0; row < rowCount; row++) {
+            if (c.isNull(row)) continue;
+            Class<?> type = c.objects[row].getClass();
+            if (common == null) {
+                if (!Comparable.class.isAssignableFrom(type)) {
+                    return false;
+                }
+                common = type;
+            } else if (common != type) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按两个结果各列的存储类型生成相等判断，每次比较结果前生成一次
+     */
+    private CellEquality[] compileEquality(ColumnarResult other) {
+        CellEquality[] equality = new CellEquality[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            equality[i] = compileEquality(i, other);
+        }
+        return equality;
+    }
+
+    private CellEquality compileEquality(int column, ColumnarResult other) {
+        Column a = columns[column];
+        Column b = other.columns[column];
+
+        if (a.type == ColumnType.STRING && b.type == ColumnType.STRING) {
+            char[] charsA = arena;
+            char[] charsB = other.arena;
+            return (row, otherRow) -> equalsIgnoreCase(charsA, a.starts[row], a.lengths[row],
+                                                       charsB, b.starts[otherRow], b.lengths[otherRow]);
+        }
+        if (a.type == ColumnType.LONG && b.type == ColumnType.LONG) {
+            long[] x = a.longs;
+            long[] y = b.longs;
+            return (row, otherRow) -> x[row] == y[otherRow]
+                                      || Math.abs((double) x[row] - (double) y[otherRow]) < 1e-9;
+        }
+        if (a.type == ColumnType.DOUBLE && b.type == ColumnType.DOUBLE) {
+            double[] x = a.doubles;
+            double[] y = b.doubles;
+            return (row, otherRow) -> Double.doubleToLongBits(x[row]) == Double.doubleToLongBits(y[otherRow])
+                                      || Math.abs(x[row] - y[otherRow]) < 1e-9;
+        }
+        if (a.type == ColumnType.LONG && b.type == ColumnType.DOUBLE) {
+            long[] x = a.longs;
+            double[] y = b.doubles;
+            return (row, otherRow) -> Math.abs(x[row] - y[otherRow]) < 1e-9;
+        }
+        if (a.type == ColumnType.DOUBLE && b.type == ColumnType.LONG) {
+            double[] x = a.doubles;
+            long[] y = b.longs;
+            return (row, otherRow) -> Math.abs(x[row] - y[otherRow]) < 1e-9;
+        }
+        if ((isNumeric(a.type) && b.type == ColumnType.STRING)
+            || (a.type == ColumnType.STRING && isNumeric(b.type))) {
+            // 数值与字符串永不相等
+            return (row, otherRow) -> false;
+        }
+        return (row, otherRow) -> valuesEqual(getObject(column, row), other.getObject(column, otherRow));
+    }
+
+    private long cellHash(int column, int row) {
+        Column c = columns[column];
+        if (c.isNull(row)) {
+            return NULL_CELL_HASH;
+        }
+        switch (c.type) {
+            case LONG:
+                return numberHash(c.longs[row]);
+            case DOUBLE:
+                return numberHash(c.doubles[row]);
+            case STRING:
+                return foldedHash(arena, c.starts[row], c.lengths[row]);
+            default:
+                return objectHash(c.objects[row]);
+        }
+    }
+
+    private static boolean isNumeric(ColumnType type) {
+        return type == ColumnType.LONG || type == ColumnType.DOUBLE;
+    }
+
+    private static int compareChars(char[] chars, int startA, int lengthA, int startB, int lengthB) {
+        int limit = Math.min(lengthA, lengthB);
+        for (int i = 0; i < limit; i++) {
+            char x = chars[startA + i];
+            char y = chars[startB + i];
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return lengthA - lengthB;
+    }
+
+    private static boolean equalsIgnoreCase(char[] arenaA, int startA, int lengthA,
+                                            char[] arenaB, int startB, int lengthB) {
+        if (lengthA != lengthB) {
+            return false;
+        }
+        for (int i = 0; i < lengthA; i++) {
+            char x = arenaA[startA + i];
+            char y = arenaB[startB + i];
+            if (x == y) continue;
+            char upperX = Character.toUpperCase(x);
+            char upperY = Character.toUpperCase(y);
+            if (upperX == upperY) continue;
+            if (Character.toLowerCase(upperX) == Character.toLowerCase(upperY)) continue;
+            return false;
+        }
+        return true;
+    }
+
+    private static long foldedHash(char[] chars, int start, int length) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < length; i++) {
+            h ^= Character.toLowerCase(Character.toUpperCase(chars[start + i]));
+            h *= 0x100000001B3L;
+        }
+        return StructuralHash.mix(h);
+    }
+
+    private static long numberHash(double value) {
+        if (value == 0.0) {
+            value = 0.0;
+        }
+        return StructuralHash.mix(Double.doubleToLongBits(value));
+    }
+
+    private static long objectHash(Object value) {
+        if (value instanceof Number) {
+            return numberHash(((Number) value).doubleValue());
+        }
+        if (value instanceof String) {
+            char[] chars = ((String) value).toCharArray();
+            return foldedHash(chars, 0, chars.length);
+        }
+        if (value instanceof byte[]) {
+            return StructuralHash.mix(Arrays.hashCode((byte[]) value));
+        }
+        return StructuralHash.mix(value.hashCode());
+    }
+
+    /**
+     * 两个非null装箱值的比较，与列向量上的排序一致，是装箱值上的全序：
+     * 数值之间按大小（不论装箱类型），数值小于字符串，字符串小于其他类型；
+     * 其他类型同类按Comparable（二进制按字节），否则按类名和字符串形式。
+     * 溢写结果的各段分块排序后按此归并，块之间装箱类型不同（例如Integer和Long）时顺序仍然一致
+     */
+    static int compareObjects(Object val1, Object val2) {
+        int rank1 = orderRank(val1);
+        int rank2 = orderRank(val2);
+        if (rank1 != rank2) {
+            return Integer.compare(rank1, rank2);
+        }
+        if (rank1 == 0) {
+            return compareNumbers((Number) val1, (Number) val2);
+        }
+        if (val1.getClass() == val2.getClass() && val1 instanceof Comparable) {
+            @SuppressWarnings("unchecked")
+            int cmp = ((Comparable<Object>) val1).compareTo(val2);
+            return cmp;
+        }
+        if (val1 instanceof byte[] && val2 instanceof byte[]) {
+            return Arrays.compare((byte[]) val1, (byte[]) val2);
+        }
+        // 类型不同时compareTo会抛出ClassCastException
+        int cmp = val1.getClass().getName().compareTo(val2.getClass().getName());
+        return cmp != 0 ? cmp : val1.toString().compareTo(val2.toString());
+    }
+
+    private static int orderRank(Object value) {
+        if (value instanceof Number) return 0;
+        if (value instanceof String) return 1;
+        return 2;
+    }
+
+    /**
+     * 按数值比较：整数之间与LONG列一致，浮点之间与DOUBLE列一致，BigDecimal/BigInteger按精确值
+     */
+    private static int compareNumbers(Number n1, Number n2) {
+        boolean integral1 = isIntegerType(n1);
+        boolean integral2 = isIntegerType(n2);
+        if (integral1 && integral2) {
+            return Long.compare(n1.longValue(), n2.longValue());
+        }
+        if (n1.getClass() == n2.getClass() && n1 instanceof Comparable) {
+            @SuppressWarnings("unchecked")
+            int cmp = ((Comparable<Object>) n1).compareTo(n2);
+            return cmp;
+        }
+        BigDecimal d1 = toBigDecimal(n1);
+        BigDecimal d2 = toBigDecimal(n2);
+        if (d1 != null && d2 != null) {
+            return d1.compareTo(d2);
+        }
+        // NaN、无穷大
+        return Double.compare(n1.doubleValue(), n2.doubleValue());
+    }
+
+    private static boolean isIntegerType(Number value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    private static BigDecimal toBigDecimal(Number value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        }
+        if (isIntegerType(value)) {
+            return BigDecimal.valueOf(value.longValue());
+        }
+        double d = value.doubleValue();
+        return Double.isFinite(d) ? new BigDecimal(d) : null;
+    }
+
+    /**
+     * 两个装箱值是否相等：数值允许1e-9误差，字符串忽略大小写
+     */
+    static boolean valuesEqual(Object val1, Object val2) {
+        if (Objects.equals(val1, val2)) return true;
+        if (val1 == null || val2 == null) return false;
+
+        // 数字类型的特殊处理
+        if (val1 instanceof Number && val2 instanceof Number) {
+            double d1 = ((Number) val1).doubleValue();
+            double d2 = ((Number) val2).doubleValue();
+            return Math.abs(d1 - d2) < 1e-9; // 浮点数比较
+        }
+
+        // 字符串比较（忽略大小写）
+        if (val1 instanceof String && val2 instanceof String) {
+            return ((String) val1).equalsIgnoreCase((String) val2);
+        }
+
+        return false;
+    }
+
+    /**
+     * 两个装箱行的比较，与compareRows的顺序一致
+     */
+    static int compareBoxedRows(Object[] row1, Object[] row2) {
+        for (int i = 0; i < Math.min(row1.length, row2.length); i++) {
+            Object val1 = row1[i];
+            Object val2 = row2[i];
+
+            if (val1 == null && val2 == null) continue;
+            if (val1 == null) return -1;
+            if (val2 == null) return 1;
+
+            int cmp = compareObjects(val1, val2);
+            if (cmp != 0) return cmp;
+        }
+        return Integer.compare(row1.length, row2.length);
+    }
+
+    /**
+     * 两个装箱行是否相等
+     */
+    static boolean boxedRowsEqual(Object[] row1, Object[] row2) {
+        if (row1.length != row2.length) {
+            return false;
+        }
+        for (int i = 0; i < row1.length; i++) {
+            if (!valuesEqual(row1[i], row2[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 装箱后的一行
+     */
+    Object[] boxedRow(int row) {
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            values[i] = getObject(i, row);
+        }
+        return values;
+    }
+
+    private static Object boxLong(Class<?> javaClass, long value) {
+        if (javaClass == Integer.class) return (int) value;
+        if (javaClass == Short.class) return (short) value;
+        if (javaClass == Byte.class) return (byte) value;
+        return value;
+    }
+
+    private void mergeSort(int[] order, int[] buffer, int from, int to) {
+        if (to - from <= 16) {
+            // 小区间插入排序
+            for (int i = from + 1; i < to; i++) {
+                int value = order[i];
+                int j = i - 1;
+                while (j >= from && compareRows(order[j], value) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = value;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(order, buffer, from, mid);
+        mergeSort(order, buffer, mid, to);
+        if (compareRows(order[mid - 1], order[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int i = from;
+        int j = mid;
+        int k = from;
+        while (i < mid && j < to) {
+            order[k++] = compareRows(buffer[j], buffer[i]) < 0 ? buffer[j++] : buffer[i++];
+        }
+        while (i < mid) order[k++] = buffer[i++];
+        while (j < to) order[k++] = buffer[j++];
+    }
+
+    /**
+     * 单列存储
+     */
+    private static final class Column {
+        ColumnType type;
+        Class<?> javaClass;
+        long[] nulls;
+        long[] longs;
+        double[] doubles;
+        int[] starts;
+        int[] lengths;
+        Object[] objects;
+
+        boolean isNull(int row) {
+            return (nulls[row >>> 6] & (1L << row)) != 0;
+        }
+    }
+
+    /**
+     * 逐行追加的构建器
+     * 动态类型的列在遇到第一个非null值时确定类型，之后出现不同Java类型的值时退化为OBJECT
+     */
+    private static final class Builder {
+        private final Column[] columns;
+        private char[] arena = new char[256];
+        private int arenaSize;
+        private int capacity = INITIAL_ROWS;
+        private int rowCount;
+
+        Builder(int columnCount) {
+            columns = new Column[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                Column column = new Column();
+                column.nulls = new long[(capacity + 63) >>> 6];
+                columns[i] = column;
+            }
+        }
+
+        int addRow() {
+            if (rowCount == capacity) {
+                capacity *= 2;
+                for (Column column : columns) {
+                    column.nulls = Arrays.copyOf(column.nulls, (capacity + 63) >>> 6);
+                    if (column.longs != null) column.longs = Arrays.copyOf(column.longs, capacity);
+                    if (column.doubles != null) column.doubles = Arrays.copyOf(column.doubles, capacity);
+                    if (column.starts != null) column.starts = Arrays.copyOf(column.starts, capacity);
+                    if (column.lengths != null) column.lengths = Arrays.copyOf(column.lengths, capacity);
+                    if (column.objects != null) column.objects = Arrays.copyOf(column.objects, capacity);
+                }
+            }
+            return rowCount++;
+        }
+
+        void appendLong(Column column, int row, long value, boolean isNull) {
+            if (column.type == null) {
+                initColumn(column, ColumnType.LONG, Long.class);
+            }
+            if (isNull) {
+                setNull(column, row);
+            } else {
+                column.longs[row] = value;
+            }
+        }
+
+        void appendDouble(Column column, int row, double value, boolean isNull) {
+            if (column.type == null) {
+                initColumn(column, ColumnType.DOUBLE, Double.class);
+            }
+            if (isNull) {
+                setNull(column, row);
+            } else {
+                column.doubles[row] = value;
+            }
+        }
+
+        void appendString(Column column, int row, String value) {
+            if (column.type == null) {
+                initColumn(column, ColumnType.STRING, String.class);
+            }
+            if (value == null) {
+                setNull(column, row);
+            } else {
+                storeString(column, row, value);
+            }
+        }
+
+        void appendObject(Column column, int row, Object value) {
+            if (value == null) {
+                setNull(column, row);
+                return;
+            }
+            if (column.type == null) {
+                initColumn(column, inferType(value), value.getClass());
+            } else if (column.type != ColumnType.OBJECT && column.javaClass != value.getClass()) {
+                demote(column, row);
+            }
+
+            switch (column.type) {
+                case LONG:
+                    column.longs[row] = ((Number) value).longValue();
+                    break;
+                case DOUBLE:
+                    column.doubles[row] = ((Number) value).doubleValue();
+                    break;
+                case STRING:
+                    storeString(column, row, (String) value);
+                    break;
+                default:
+                    column.objects[row] = value;
+                    break;
+            }
+        }
+
+        private static ColumnType inferType(Object value) {
+            if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+                return ColumnType.LONG;
+            }
+            if (value instanceof Double || value instanceof Float) {
+                return ColumnType.DOUBLE;
+            }
+            if (value instanceof String) {
+                return ColumnType.STRING;
+            }
+            return ColumnType.OBJECT;
+        }
+
+        private void initColumn(Column column, ColumnType type, Class<?> javaClass) {
+            column.type = type;
+            column.javaClass = javaClass;
+            switch (type) {
+                case LONG:
+                    column.longs = new long[capacity];
+                    break;
+                case DOUBLE:
+                    column.doubles = new double[capacity];
+                    break;
+                case STRING:
+                    column.starts = new int[capacity];
+                    column.lengths = new int[capacity];
+                    break;
+                default:
+                    column.objects = new Object[capacity];
+                    break;
+            }
+        }
+
+        /**
+         * 将已写入的值装箱后改为OBJECT列
+         */
+        private void demote(Column column, int rows) {
+            Object[] objects = new Object[capacity];
+            for (int row = 0; row < rows; row++) {
+                if (column.isNull(row)) continue;
+                switch (column.type) {
+                    case LONG:
+                        objects[row] = boxLong(column.javaClass, column.longs[row]);
+                        break;
+                    case DOUBLE:
+                        objects[row] = column.javaClass == Float.class
+                            ? (Object) (float) column.doubles[row] : (Object) column.doubles[row];
+                        break;
+                    default:
+                        objects[row] = new String(arena, column.starts[row], column.lengths[row]);
+                        break;
+                }
+            }
+            column.type = ColumnType.OBJECT;
+            column.javaClass = null;
+            column.longs = null;
+            column.doubles = null;
+            column.starts = null;
+            column.lengths = null;
+            column.objects = objects;
+        }
+
+        private void setNull(Column column, int row) {
+            column.nulls[row >>> 6] |= 1L << row;
+        }
+
+        private void storeString(Column column, int row, String value) {
+            int length = value.length();
+            if (arenaSize + length > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+            }
+            value.getChars(0, length, arena, arenaSize);
+            column.starts[row] = arenaSize;
+            column.lengths[row] = length;
+            arenaSize += length;
+        }
+
+        /**
+         * 已分配数组的内存估算，OBJECT列按每个对象48字节粗略计算
+         */
+        long estimatedBytes() {
+            long bytes = (long) arena.length * Character.BYTES;
+            for (Column column : columns) {
+                bytes += (long) column.nulls.length * Long.BYTES;
+                if (column.longs != null) bytes += (long) capacity * Long.BYTES;
+                if (column.doubles != null) bytes += (long) capacity * Double.BYTES;
+                if (column.starts != null) bytes += (long) capacity * Integer.BYTES * 2;
+                if (column.objects != null) bytes += (long) capacity * 56;
+            }
+            return bytes;
+        }
+
+        ColumnarResult build(boolean complete) {
+            for (Column column : columns) {
+                if (column.type == null) {
+                    // 全部为null的列
+                    initColumn(column, ColumnType.LONG, Long.class);
+                }
+            }
+            return new ColumnarResult(rowCount, columns, Arrays.copyOf(arena, arenaSize), complete);
+        }
+    }
+}
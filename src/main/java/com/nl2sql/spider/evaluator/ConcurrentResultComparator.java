@@ -0,0 +1,368 @@
+package com.nl2sql.spider.evaluator;
+
+import com.nl2sql.spider.jfr.ItemContext;
+import com.nl2sql.spider.jfr.QueryExecutionEvent;
+import com.nl2sql.spider.model.ExecutionMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 并发执行比较器
+ * 标准SQL在后台线程的独立连接上执行，预测SQL在调用线程上执行，边读边比较：
+ * 有序比较时两个游标通过有界队列逐行对齐，第一行不同即结束；
+ * 无序比较时标准SQL读完后得到行数，预测SQL超过该行数立即停止。
+ * 已知结果不同或标准SQL执行失败时取消另一条语句。
+ * 两条SQL各记录一个QueryExecutionEvent，后台线程上沿用调用线程的评估项
+ */
+final class ConcurrentResultComparator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrentResultComparator.class);
+
+    private static final int QUEUE_CAPACITY = 256;
+    private static final long OFFER_TIMEOUT_MS = 50;
+    private static final Object[] END = new Object[0];
+    private static final Object[] FAILED = new Object[0];
+
+    private final ExecutorService executor;
+
+    ConcurrentResultComparator(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 并发执行并比较
+     *
+     * @param predConn 预测SQL使用的连接
+     * @param goldConn 标准SQL使用的连接
+     * @param predictedSql 预测的SQL
+     * @param goldSql 标准SQL
+     * @param ordered 是否按行顺序比较
+     * @param spillThresholdBytes 无序比较时单个结果的内存上限，超过后溢写到磁盘
+     * @param metrics 记录两条SQL的耗时、行数和物化字节数，为null时不记录
+     * @return 是否执行结果相同
+     */
+    boolean compare(Connection predConn, Connection goldConn, String predictedSql, String goldSql,
+                    boolean ordered, long spillThresholdBytes, ExecutionMetrics metrics) {
+        try (Statement predStmt = StreamingFetch.createStatement(predConn);
+             Statement goldStmt = StreamingFetch.createStatement(goldConn)) {
+            return ordered
+                ? compareOrdered(predConn, predStmt, goldStmt, predictedSql, goldSql, metrics)
+                : compareUnordered(predConn, goldConn, predStmt, goldStmt, predictedSql, goldSql,
+                                   spillThresholdBytes, metrics);
+        } catch (SQLException e) {
+            logger.error("Failed to execute and compare queries: {} vs {}", predictedSql, goldSql, e);
+            return false;
+        }
+    }
+
+    private boolean compareUnordered(Connection predConn, Connection goldConn, Statement predStmt,
+                                     Statement goldStmt, String predictedSql, String goldSql,
+                                     long spillThresholdBytes, ExecutionMetrics metrics) throws SQLException {
+        UnorderedGoldTask goldTask = new UnorderedGoldTask(goldConn, goldStmt, predStmt, goldSql, spillThresholdBytes,
+                                                           metrics, ItemContext.current());
+        Future<SpillableResult> future = executor.submit(goldTask::run);
+        SpillableResult goldResult = null;
+
+        try {
+            SpillableResult predResult;
+            QueryExecutionEvent event = new QueryExecutionEvent();
+            event.begin();
+            long start = System.nanoTime();
+            try (ResultSet rs = predStmt.executeQuery(predictedSql)) {
+                predResult = SpillableResult.read(rs, ColumnarResult.isDynamicallyTyped(predConn),
+                                                  () -> goldTask.rowCount, spillThresholdBytes);
+                if (predResult != null) {
+                    if (metrics != null) {
+                        metrics.recordPred(System.nanoTime() - start, predResult.getRowCount(),
+                                           predResult.getMaterializedBytes());
+                    }
+                    event.finish(predictedSql, false, predResult.getRowCount(), predResult.getMaterializedBytes(),
+                                 true);
+                } else {
+                    // 超过标准结果的行数后停止读取，未保存结果
+                    event.finish(predictedSql, false, 0, 0, true);
+                }
+            } catch (SQLException e) {
+                event.finish(predictedSql, false, 0, 0, false);
+                if (!goldTask.failed) {
+                    logger.error("Failed to execute query: {}", predictedSql, e);
+                }
+                return false;
+            }
+
+            try (SpillableResult pred = predResult) {
+                if (pred == null) {
+                    // 预测结果行数已超过标准结果
+                    return false;
+                }
+
+                goldResult = await(future);
+                return goldResult != null && pred.matchesUnordered(goldResult);
+            }
+
+        } catch (IOException e) {
+            logger.error("Failed to compare spilled results: {} vs {}", predictedSql, goldSql, e);
+            return false;
+        } finally {
+            if (goldResult == null) {
+                // 提前结束时标准SQL可能已完成，需要取回结果以清理溢写文件
+                cancel(goldStmt, future);
+                goldResult = await(future);
+            }
+            if (goldResult != null) {
+                goldResult.close();
+            }
+        }
+    }
+
+    private boolean compareOrdered(Connection predConn, Statement predStmt, Statement goldStmt, String predictedSql,
+                                   String goldSql, ExecutionMetrics metrics) throws SQLException {
+        boolean dynamicTyping = ColumnarResult.isDynamicallyTyped(predConn);
+        OrderedGoldTask goldTask = new OrderedGoldTask(goldStmt, predStmt, goldSql, metrics, ItemContext.current());
+        Future<?> future = executor.submit(goldTask::run);
+
+        // 预测SQL的执行和读取耗时，不含等待标准SQL的行
+        long predNanos = 0;
+        long predRows = 0;
+        boolean predFailed = false;
+        QueryExecutionEvent event = new QueryExecutionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try (ResultSet rs = predStmt.executeQuery(predictedSql)) {
+            int[] predTypes = ResultSetRowMatcher.columnTypes(rs.getMetaData());
+            predNanos += System.nanoTime() - start;
+            // 按两边的列类型为每列选定比较方式，在收到标准SQL的第一行后生成
+            ResultSetRowMatcher matcher = null;
+
+            while (true) {
+                start = System.nanoTime();
+                boolean hasPred = rs.next();
+                predNanos += System.nanoTime() - start;
+                if (hasPred) predRows++;
+                Object[] goldRow = goldTask.queue.take();
+
+                if (goldRow == FAILED) {
+                    return false;
+                }
+                if (goldRow == END) {
+                    return !hasPred;
+                }
+                if (!hasPred) {
+                    return false;
+                }
+                if (matcher == null) {
+                    // 列类型在第一行之前公布，经队列可见；列数不同时为null
+                    matcher = ResultSetRowMatcher.compile(predTypes, goldTask.columnTypes, dynamicTyping);
+                    if (matcher == null) {
+                        return false;
+                    }
+                }
+                if (!matcher.currentRowEquals(rs, goldRow)) {
+                    return false;
+                }
+            }
+
+        } catch (SQLException e) {
+            predFailed = true;
+            if (!goldTask.failed) {
+                logger.error("Failed to execute query: {}", predictedSql, e);
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            goldTask.aborted = true;
+            cancel(goldStmt, future);
+            if (metrics != null) {
+                metrics.recordPred(predNanos, predRows, 0);
+            }
+            event.finish(predictedSql, false, predRows, 0, !predFailed);
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 取消仍在执行的标准SQL并等待后台任务结束，之后才能安全关闭连接
+     */
+    private static void cancel(Statement goldStmt, Future<?> future) {
+        if (!future.isDone()) {
+            cancelQuietly(goldStmt);
+        }
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // 任务内已处理
+        }
+    }
+
+    private static void cancelQuietly(Statement stmt) {
+        try {
+            stmt.cancel();
+        } catch (SQLException e) {
+            logger.debug("Failed to cancel statement: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 无序模式的标准SQL任务：读入全部结果，完成后公布行数
+     */
+    private static final class UnorderedGoldTask {
+        private final Connection conn;
+        private final Statement stmt;
+        private final Statement predStmt;
+        private final String sql;
+        private final long spillThresholdBytes;
+        private final ExecutionMetrics metrics;
+        private final ItemContext context;
+        volatile int rowCount = Integer.MAX_VALUE;
+        volatile boolean failed;
+
+        UnorderedGoldTask(Connection conn, Statement stmt, Statement predStmt, String sql,
+                          long spillThresholdBytes, ExecutionMetrics metrics, ItemContext context) {
+            this.conn = conn;
+            this.stmt = stmt;
+            this.predStmt = predStmt;
+            this.sql = sql;
+            this.spillThresholdBytes = spillThresholdBytes;
+            this.metrics = metrics;
+            this.context = context;
+        }
+
+        SpillableResult run() {
+            ItemContext.set(context);
+            QueryExecutionEvent event = new QueryExecutionEvent();
+            event.begin();
+            long start = System.nanoTime();
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                SpillableResult result = SpillableResult.read(rs, ColumnarResult.isDynamicallyTyped(conn),
+                                                              null, spillThresholdBytes);
+                if (metrics != null) {
+                    metrics.recordGold(System.nanoTime() - start, result.getRowCount(), result.getMaterializedBytes());
+                }
+                event.finish(sql, true, result.getRowCount(), result.getMaterializedBytes(), true);
+                rowCount = result.getRowCount();
+                return result;
+            } catch (SQLException e) {
+                event.finish(sql, true, 0, 0, false);
+                logger.error("Failed to execute query: {}", sql, e);
+                failed = true;
+                rowCount = -1;
+                // 标准SQL失败时结果必然不匹配
+                cancelQuietly(predStmt);
+                return null;
+            } finally {
+                ItemContext.exit();
+            }
+        }
+    }
+
+    /**
+     * 有序模式的标准SQL任务：逐行放入有界队列，以END或FAILED结束
+     */
+    private static final class OrderedGoldTask {
+        private final Statement stmt;
+        private final Statement predStmt;
+        private final String sql;
+        private final ExecutionMetrics metrics;
+        private final ItemContext context;
+        final BlockingQueue<Object[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        /** 标准SQL各列的java.sql.Types，放入第一行之前设置 */
+        volatile int[] columnTypes;
+        volatile boolean aborted;
+        volatile boolean failed;
+
+        OrderedGoldTask(Statement stmt, Statement predStmt, String sql, ExecutionMetrics metrics,
+                        ItemContext context) {
+            this.stmt = stmt;
+            this.predStmt = predStmt;
+            this.sql = sql;
+            this.metrics = metrics;
+            this.context = context;
+        }
+
+        void run() {
+            ItemContext.set(context);
+            QueryExecutionEvent event = new QueryExecutionEvent();
+            event.begin();
+            // 执行和读取耗时，不含队列满时的等待
+            long nanos = 0;
+            long rows = 0;
+            long start = System.nanoTime();
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                columnTypes = ResultSetRowMatcher.columnTypes(rs.getMetaData());
+                int columnCount = columnTypes.length;
+                while (true) {
+                    if (!rs.next()) {
+                        nanos += System.nanoTime() - start;
+                        break;
+                    }
+                    Object[] row = new Object[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    nanos += System.nanoTime() - start;
+                    rows++;
+                    if (!put(row)) {
+                        return;
+                    }
+                    start = System.nanoTime();
+                }
+                put(END);
+            } catch (SQLException e) {
+                if (aborted) {
+                    return;
+                }
+                logger.error("Failed to execute query: {}", sql, e);
+                failed = true;
+                cancelQuietly(predStmt);
+                put(FAILED);
+            } finally {
+                if (metrics != null) {
+                    metrics.recordGold(nanos, rows, 0);
+                }
+                // 比较已有结论后被取消不算失败
+                event.finish(sql, true, rows, 0, !failed);
+                ItemContext.exit();
+            }
+        }
+
+        private boolean put(Object[] row) {
+            try {
+                while (!queue.offer(row, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    if (aborted) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.nl2sql.spider.evaluator;
+
+import com.nl2sql.spider.model.StructuralHash;
+import com.nl2sql.spider.utils.SqlTokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntSupplier;
+
+/**
+ * 标准SQL执行结果的指纹索引
+ * 每个(dbId, 标准SQL)保存行数、列数、是否按顺序比较以及结果指纹，离线构建后写入文件，运行时内存映射读取。
+ * 执行评估命中索引时只需执行预测SQL，将其结果指纹与索引比较即可
+ *
+ * <p>文件格式：魔数、版本、条目数，之后为按键排序的定长条目，查找时二分搜索</p>
+ */
+public final class GoldFingerprintIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(GoldFingerprintIndex.class);
+
+    private static final int MAGIC = 0x53504649; // "SPFI"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int ENTRY_BYTES = 36;
+
+    private static final int FLAG_ORDER_SENSITIVE = 1;
+    private static final int FLAG_EXACT = 2;
+    private static final int FLAG_FAILED = 4;
+
+    private final ByteBuffer buffer;
+    private final int size;
+
+    private GoldFingerprintIndex(ByteBuffer buffer, int size) {
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+    /**
+     * 内存映射打开索引文件
+     *
+     * @param file 索引文件
+     * @return 指纹索引
+     * @throws IOException 读取异常或格式不正确
+     */
+    public static GoldFingerprintIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+                throw new IOException("Invalid gold fingerprint index size: " + file);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a gold fingerprint index (or unsupported version): " + file);
+            }
+            int size = buffer.getInt(8);
+            if ((long) HEADER_BYTES + (long) size * ENTRY_BYTES != length) {
+                throw new IOException("Truncated gold fingerprint index: " + file);
+            }
+            logger.info("Loaded gold fingerprint index {} with {} entries", file, size);
+            return new GoldFingerprintIndex(buffer, size);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 查找标准SQL的指纹
+     *
+     * @param dbId 数据库ID
+     * @param goldSql 标准SQL
+     * @return 指纹；索引中不存在时返回null
+     */
+    public Fingerprint lookup(String dbId, String goldSql) {
+        long key = key(dbId, goldSql);
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int offset = HEADER_BYTES + mid * ENTRY_BYTES;
+            long midKey = buffer.getLong(offset);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return new Fingerprint(buffer.getInt(offset + 8), buffer.getInt(offset + 12),
+                                       buffer.getInt(offset + 16), buffer.getLong(offset + 20),
+                                       buffer.getLong(offset + 28));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 索引键：数据库ID与规范化后标准SQL的64位哈希
+     */
+    static long key(String dbId, String goldSql) {
+        return StructuralHash.combine(StructuralHash.hashString(dbId),
+                                      StructuralHash.hashString(SqlTokenizer.canonicalize(goldSql)));
+    }
+
+    /**
+     * 执行查询并计算结果指纹，结果分块读取，不整体保存在内存中
+     *
+     * @param conn 数据库连接
+     * @param sql 查询SQL
+     * @param orderSensitive 是否按顺序比较
+     * @param rowLimit 最大行数，超过时停止读取；小于0表示不限制
+     * @param chunkBytes 每块的内存上限（字节）
+     * @return 指纹；超过最大行数时返回null
+     * @throws SQLException 执行异常
+     */
+    static Fingerprint compute(Connection conn, String sql, boolean orderSensitive,
+                               int rowLimit, long chunkBytes) throws SQLException {
+        boolean dynamicTyping = ColumnarResult.isDynamicallyTyped(conn);
+        long maxBytes = chunkBytes > 0 ? chunkBytes : Long.MAX_VALUE;
+
+        try (Statement stmt = StreamingFetch.createStatement(conn);
+             ResultSet rs = stmt.executeQuery(sql)) {
+            int columnCount = rs.getMetaData().getColumnCount();
+            int rows = 0;
+            long sum = 0;
+            long xor = 0;
+            long ordered = columnCount;
+            boolean exact = true;
+
+            while (true) {
+                int readSoFar = rows;
+                IntSupplier remaining = rowLimit >= 0 ? () -> rowLimit - readSoFar : null;
+                ColumnarResult chunk = ColumnarResult.read(rs, dynamicTyping, remaining, maxBytes);
+                if (chunk == null) {
+                    return null;
+                }
+                for (int row = 0; row < chunk.getRowCount(); row++) {
+                    long h = chunk.rowHash(row);
+                    sum += h;
+                    xor ^= h;
+                    ordered = StructuralHash.combine(ordered, h);
+                }
+                rows += chunk.getRowCount();
+                exact &= chunk.isFingerprintExact();
+                if (chunk.isComplete()) {
+                    break;
+                }
+            }
+
+            // 与ColumnarResult.fingerprint()的组合方式一致
+            long multiset = StructuralHash.combine(StructuralHash.combine(columnCount, rows),
+                                                   StructuralHash.combine(sum, xor));
+            int flags = (orderSensitive ? FLAG_ORDER_SENSITIVE : 0) | (exact ? FLAG_EXACT : 0);
+            return new Fingerprint(rows, columnCount, flags, multiset, StructuralHash.combine(ordered, rows));
+        }
+    }
+
+    /**
+     * 单条标准SQL结果的指纹
+     */
+    public static final class Fingerprint {
+        private final int rowCount;
+        private final int columnCount;
+        private final int flags;
+        private final long multisetHash;
+        private final long orderedHash;
+
+        private Fingerprint(int rowCount, int columnCount, int flags, long multisetHash, long orderedHash) {
+            this.rowCount = rowCount;
+            this.columnCount = columnCount;
+            this.flags = flags;
+            this.multisetHash = multisetHash;
+            this.orderedHash = orderedHash;
+        }
+
+        static Fingerprint failed(boolean orderSensitive) {
+            return new Fingerprint(0, 0, FLAG_FAILED | (orderSensitive ? FLAG_ORDER_SENSITIVE : 0), 0, 0);
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public int getColumnCount() {
+            return columnCount;
+        }
+
+        public boolean isOrderSensitive() {
+            return (flags & FLAG_ORDER_SENSITIVE) != 0;
+        }
+
+        /**
+         * 指纹不同是否足以判定结果不同（不含允许误差的浮点值）
+         */
+        public boolean isExact() {
+            return (flags & FLAG_EXACT) != 0;
+        }
+
+        /**
+         * 构建索引时标准SQL执行失败
+         */
+        public boolean isFailed() {
+            return (flags & FLAG_FAILED) != 0;
+        }
+
+        /**
+         * 与行顺序无关的多重集合哈希
+         */
+        public long getMultisetHash() {
+            return multisetHash;
+        }
+
+        /**
+         * 按行顺序的哈希
+         */
+        public long getOrderedHash() {
+            return orderedHash;
+        }
+
+        /**
+         * 与另一结果的指纹比较
+         *
+         * @param other 另一结果的指纹
+         * @param ordered 是否按行顺序比较
+         * @return 是否匹配；指纹不同但含允许误差的浮点值、无法判定时返回null
+         */
+        public Boolean matches(Fingerprint other, boolean ordered) {
+            if (isFailed() || other.isFailed() || rowCount != other.rowCount) {
+                return false;
+            }
+            if (rowCount == 0) {
+                return true;
+            }
+            if (columnCount != other.columnCount) {
+                return false;
+            }
+            boolean same = ordered ? orderedHash == other.orderedHash : multisetHash == other.multisetHash;
+            if (same) {
+                return true;
+            }
+            return isExact() && other.isExact() ? Boolean.FALSE : null;
+        }
+
+        @Override
+        public String toString() {
+            return "Fingerprint{" +
+                    "rowCount=" + rowCount +
+                    ", columnCount=" + columnCount +
+                    ", orderSensitive=" + isOrderSensitive() +
+                    ", exact=" + isExact() +
+                    ", failed=" + isFailed() +
+                    '}';
+        }
+    }
+
+    /**
+     * 索引构建器：依次执行标准SQL并记录指纹，最后按键排序写入文件
+     */
+    public static final class Builder {
+        private final Map<Long, Fingerprint> entries = new TreeMap<>();
+        private final long chunkBytes;
+        private int failedCount;
+
+        /**
+         * @param chunkBytes 读取结果时每块的内存上限（字节）
+         */
+        public Builder(long chunkBytes) {
+            this.chunkBytes = chunkBytes;
+        }
+
+        /**
+         * 执行标准SQL并加入索引，执行失败时记为失败条目
+         *
+         * @param conn 数据库连接
+         * @param dbId 数据库ID
+         * @param goldSql 标准SQL
+         * @param orderSensitive 是否按顺序比较
+         */
+        public void add(Connection conn, String dbId, String goldSql, boolean orderSensitive) {
+            long key = key(dbId, goldSql);
+            if (entries.containsKey(key)) {
+                return;
+            }
+            Fingerprint fingerprint;
+            try {
+                fingerprint = compute(conn, goldSql, orderSensitive, -1, chunkBytes);
+            } catch (SQLException e) {
+                logger.warn("Gold SQL failed while building index [{}]: {} ({})", dbId, goldSql, e.getMessage());
+                fingerprint = Fingerprint.failed(orderSensitive);
+                failedCount++;
+            }
+            entries.put(key, fingerprint);
+        }
+
+        public int size() {
+            return entries.size();
+        }
+
+        public int getFailedCount() {
+            return failedCount;
+        }
+
+        /**
+         * 写入索引文件
+         *
+         * @param file 索引文件
+         * @throws IOException 写入异常
+         */
+        public void write(Path file) throws IOException {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                // TreeMap按有符号long排序，与lookup的比较方式一致
+                for (Map.Entry<Long, Fingerprint> entry : entries.entrySet()) {
+                    Fingerprint fingerprint = entry.getValue();
+                    out.writeLong(entry.getKey());
+                    out.writeInt(fingerprint.rowCount);
+                    out.writeInt(fingerprint.columnCount);
+                    out.writeInt(fingerprint.flags);
+                    out.writeLong(fingerprint.multisetHash);
+                    out.writeLong(fingerprint.orderedHash);
+                }
+            }
+            logger.info("Wrote gold fingerprint index {} with {} entries ({} failed)", file, entries.size(), failedCount);
+        }
+    }
+}
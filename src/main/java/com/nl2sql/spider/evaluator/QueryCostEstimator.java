@@ -0,0 +1,215 @@
+package com.nl2sql.spider.evaluator;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 不执行查询，按查询计划估计结果规模
+ * <ul>
+ *   <li>SQLite：EXPLAIN QUERY PLAN只给出访问方式，按各表行数估计：SCAN为全表行数，按整数主键SEARCH为1行，
+ *       其他等值SEARCH最多10行、范围SEARCH为1/4（与SQLite没有统计信息时的默认假设一致）。
+ *       同一父节点下的各表是嵌套循环，行数相乘；不同父节点（子查询、集合运算的各部分）相加。
+ *       计划中带别名的表只显示别名，按FROM子句中的“表 AS 别名”还原为表；同一别名对应多个表时取行数最多的。
+ *       表行数按缓存键（dbId）只统计一次</li>
+ *   <li>MySQL/MariaDB：EXPLAIN的rows列，同一id的各表相乘，不同id相加</li>
+ *   <li>PostgreSQL：EXPLAIN各节点rows=的最大值</li>
+ * </ul>
+ * 其他数据库、计划无法解析或计划中的表无法对应到数据库中的表时返回-1
+ */
+final class QueryCostEstimator {
+
+    private static final Pattern SQLITE_ACCESS = Pattern.compile("^(SCAN|SEARCH) (?:TABLE )?(\\S+)(.*)$");
+    /** 计划中的中间结果：子查询、物化的CTE */
+    private static final Pattern SQLITE_INTERMEDIATE = Pattern.compile("^(?:CO-ROUTINE|MATERIALIZE) (\\S+)");
+    /** FROM子句中的“表 [AS] 别名”，表和别名可以带引号 */
+    private static final Pattern TABLE_ALIAS = Pattern.compile(
+            "(?i)(?:\\bFROM|\\bJOIN|,)\\s*([\"`\\[]?\\w+[\"`\\]]?)\\s+(?:AS\\s+)?([\"`\\[]?\\w+[\"`\\]]?)");
+    private static final Pattern QUOTES = Pattern.compile("^[\"`\\[]|[\"`\\]]$");
+    private static final Pattern PLAN_ROWS = Pattern.compile("rows=(\\d+)");
+
+    /** SQLite没有统计信息时假设等值条件匹配的行数 */
+    private static final long EQUALITY_ROWS = 10;
+
+    private final Map<String, Map<String, Long>> rowCounts = new ConcurrentHashMap<>();
+
+    /**
+     * 估计查询的结果规模（行数）
+     *
+     * @param conn 数据库连接
+     * @param cacheKey 表行数的缓存键
+     * @param sql 查询
+     * @return 估计行数，无法估计时为-1
+     * @throws SQLException 查询计划失败（例如SQL无效）
+     */
+    long estimate(Connection conn, String cacheKey, String sql) throws SQLException {
+        String product = conn.getMetaData().getDatabaseProductName();
+        String name = product == null ? "" : product.toLowerCase();
+        if (name.contains("sqlite")) {
+            return estimateSqlite(conn, cacheKey, sql);
+        } else if (name.contains("mysql") || name.contains("mariadb") || name.contains("postgresql")) {
+            return estimateFromExplain(conn, sql);
+        }
+        return -1;
+    }
+
+    private long estimateSqlite(Connection conn, String cacheKey, String sql) throws SQLException {
+        Map<String, Long> tables = tableRowCounts(conn, cacheKey);
+        Map<String, Long> aliases = aliasRowCounts(sql, tables);
+        Set<String> intermediates = new HashSet<>();
+        // 父节点 -> 该层嵌套循环的行数乘积
+        Map<Integer, Double> loops = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (rs.next()) {
+                String detail = rs.getString(4);
+                Matcher intermediate = SQLITE_INTERMEDIATE.matcher(detail);
+                if (intermediate.find()) {
+                    intermediates.add(intermediate.group(1).toLowerCase());
+                    continue;
+                }
+                Matcher matcher = SQLITE_ACCESS.matcher(detail);
+                if (!matcher.matches()) {
+                    continue;
+                }
+                String name = matcher.group(2).toLowerCase();
+                if (name.startsWith("(") || name.equals("constant") || intermediates.contains(name)) {
+                    // 子查询、CTE等中间结果由其自身的节点计入
+                    continue;
+                }
+                Long rows = aliases.containsKey(name) ? aliases.get(name) : tables.get(name);
+                if (rows == null) {
+                    return -1;
+                }
+                loops.merge(rs.getInt(2), (double) accessRows(matcher.group(1), matcher.group(3), rows),
+                            (a, b) -> a * b);
+            }
+        }
+        double total = 0;
+        for (double rows : loops.values()) {
+            total += rows;
+        }
+        return saturate(total);
+    }
+
+    /**
+     * 从SQL的FROM子句中找出表的别名
+     *
+     * @return 别名（小写） -> 表行数；同一别名对应多个表时取最大的行数
+     */
+    private static Map<String, Long> aliasRowCounts(String sql, Map<String, Long> tables) {
+        Map<String, Long> aliases = new HashMap<>();
+        Matcher matcher = TABLE_ALIAS.matcher(sql);
+        int from = 0;
+        // 从表名之后继续查找，没有别名时匹配到的下一个关键字（例如JOIN）不会被跳过
+        while (matcher.find(from)) {
+            Long rows = tables.get(unquote(matcher.group(1)).toLowerCase());
+            if (rows != null) {
+                aliases.merge(unquote(matcher.group(2)).toLowerCase(), rows, Math::max);
+            }
+            from = matcher.end(1);
+        }
+        return aliases;
+    }
+
+    private static String unquote(String identifier) {
+        return QUOTES.matcher(identifier).replaceAll("");
+    }
+
+    private static long accessRows(String access, String detail, long tableRows) {
+        if (access.equals("SCAN")) {
+            return tableRows;
+        }
+        if (detail.contains("(rowid=?)")) {
+            return Math.min(tableRows, 1);
+        }
+        if (detail.contains("=") && !detail.contains(">") && !detail.contains("<")) {
+            return Math.min(tableRows, EQUALITY_ROWS);
+        }
+        return Math.max(1, tableRows / 4);
+    }
+
+    private Map<String, Long> tableRowCounts(Connection conn, String cacheKey) throws SQLException {
+        Map<String, Long> counts = rowCounts.get(cacheKey);
+        if (counts != null) {
+            return counts;
+        }
+        List<String> names = new ArrayList<>();
+        DatabaseMetaData metaData = conn.getMetaData();
+        try (ResultSet rs = metaData.getTables(null, null, "%", new String[] {"TABLE"})) {
+            while (rs.next()) {
+                names.add(rs.getString("TABLE_NAME"));
+            }
+        }
+        counts = new HashMap<>();
+        try (Statement stmt = conn.createStatement()) {
+            for (String table : names) {
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM \"" + table.replace("\"", "\"\"") + "\"")) {
+                    counts.put(table.toLowerCase(), rs.next() ? rs.getLong(1) : 0L);
+                }
+            }
+        }
+        Map<String, Long> existing = rowCounts.putIfAbsent(cacheKey, counts);
+        return existing != null ? existing : counts;
+    }
+
+    private static long estimateFromExplain(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN " + sql)) {
+            int rowsColumn = columnIndex(rs, "rows");
+            int idColumn = columnIndex(rs, "id");
+            if (rowsColumn > 0) {
+                // MySQL：同一id的各表是嵌套循环
+                Map<Long, Double> loops = new HashMap<>();
+                while (rs.next()) {
+                    long rows = rs.getLong(rowsColumn);
+                    if (rs.wasNull()) {
+                        continue;
+                    }
+                    long id = idColumn > 0 ? rs.getLong(idColumn) : 0;
+                    loops.merge(id, (double) Math.max(rows, 1), (a, b) -> a * b);
+                }
+                double total = 0;
+                for (double rows : loops.values()) {
+                    total += rows;
+                }
+                return loops.isEmpty() ? -1 : saturate(total);
+            }
+
+            // PostgreSQL：每行一个计划节点的文本
+            long max = -1;
+            while (rs.next()) {
+                Matcher matcher = PLAN_ROWS.matcher(rs.getString(1));
+                if (matcher.find()) {
+                    max = Math.max(max, Long.parseLong(matcher.group(1)));
+                }
+            }
+            return max;
+        }
+    }
+
+    private static int columnIndex(ResultSet rs, String label) throws SQLException {
+        int count = rs.getMetaData().getColumnCount();
+        for (int i = 1; i <= count; i++) {
+            if (label.equalsIgnoreCase(rs.getMetaData().getColumnLabel(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long saturate(double rows) {
+        return rows >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) rows;
+    }
+}
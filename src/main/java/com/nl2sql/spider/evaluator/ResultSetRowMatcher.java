@@ -0,0 +1,213 @@
+package com.nl2sql.spider.evaluator;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * 两个结果集当前行的逐列比较器
+ * 按两边ResultSetMetaData的列类型为每列选定比较方式：数值列按double读取并允许误差，字符串列忽略大小写，
+ * 数值与字符串列只在都为null时相等，其余按装箱值比较。比较时不再逐个单元格判断类型。
+ * SQLite的声明类型只是类型亲和性，同一列可能存放不同类型的值，因此动态类型的数据库全部按装箱值比较。
+ * 第二个结果集在其他线程读取时，也可以与其用getObject读出的行比较
+ */
+final class ResultSetRowMatcher {
+
+    private enum Category {
+        NUMERIC, STRING, OTHER
+    }
+
+    /**
+     * 单列比较，列号从1开始
+     * 与另一个结果集的当前行比较，或与另一个结果集用getObject读出的值比较（值在其他线程读取时）
+     */
+    private enum CellMatcher {
+        NUMERIC {
+            @Override
+            boolean matches(ResultSet a, ResultSet b, int column) throws SQLException {
+                double x = a.getDouble(column);
+                boolean nullX = a.wasNull();
+                double y = b.getDouble(column);
+                boolean nullY = b.wasNull();
+                if (nullX || nullY) {
+                    return nullX && nullY;
+                }
+                return numbersEqual(x, y);
+            }
+
+            @Override
+            boolean matches(ResultSet a, Object b, int column) throws SQLException {
+                double x = a.getDouble(column);
+                boolean nullX = a.wasNull();
+                if (nullX || b == null) {
+                    return nullX && b == null;
+                }
+                if (!(b instanceof Number)) {
+                    return ColumnarResult.valuesEqual(a.getObject(column), b);
+                }
+                return numbersEqual(x, ((Number) b).doubleValue());
+            }
+        },
+        STRING {
+            @Override
+            boolean matches(ResultSet a, ResultSet b, int column) throws SQLException {
+                return stringsEqual(a.getString(column), b.getString(column));
+            }
+
+            @Override
+            boolean matches(ResultSet a, Object b, int column) throws SQLException {
+                return stringsEqual(a.getString(column), b != null ? b.toString() : null);
+            }
+        },
+        BOTH_NULL {
+            @Override
+            boolean matches(ResultSet a, ResultSet b, int column) throws SQLException {
+                return a.getObject(column) == null && b.getObject(column) == null;
+            }
+
+            @Override
+            boolean matches(ResultSet a, Object b, int column) throws SQLException {
+                return a.getObject(column) == null && b == null;
+            }
+        },
+        BOXED {
+            @Override
+            boolean matches(ResultSet a, ResultSet b, int column) throws SQLException {
+                return ColumnarResult.valuesEqual(a.getObject(column), b.getObject(column));
+            }
+
+            @Override
+            boolean matches(ResultSet a, Object b, int column) throws SQLException {
+                return ColumnarResult.valuesEqual(a.getObject(column), b);
+            }
+        };
+
+        abstract boolean matches(ResultSet a, ResultSet b, int column) throws SQLException;
+
+        abstract boolean matches(ResultSet a, Object b, int column) throws SQLException;
+
+        private static boolean numbersEqual(double x, double y) {
+            // NaN与装箱比较时的Double.equals一致
+            return x == y || Math.abs(x - y) < 1e-9 || (Double.isNaN(x) && Double.isNaN(y));
+        }
+
+        private static boolean stringsEqual(String x, String y) {
+            if (x == null || y == null) {
+                return x == null && y == null;
+            }
+            return x.equalsIgnoreCase(y);
+        }
+    }
+
+    private final CellMatcher[] matchers;
+
+    private ResultSetRowMatcher(CellMatcher[] matchers) {
+        this.matchers = matchers;
+    }
+
+    /**
+     * 按两个结果集的元数据生成比较器
+     *
+     * @param a 第一个结果集的元数据
+     * @param b 第二个结果集的元数据
+     * @param dynamicTyping 数据库是否为动态类型
+     * @return 比较器；列数不同时返回null
+     * @throws SQLException 读取元数据异常
+     */
+    static ResultSetRowMatcher compile(ResultSetMetaData a, ResultSetMetaData b,
+                                       boolean dynamicTyping) throws SQLException {
+        return compile(columnTypes(a), columnTypes(b), dynamicTyping);
+    }
+
+    /**
+     * 按两个结果集各列的java.sql.Types生成比较器
+     *
+     * @return 比较器；列数不同时返回null
+     */
+    static ResultSetRowMatcher compile(int[] a, int[] b, boolean dynamicTyping) {
+        int columnCount = a.length;
+        if (columnCount != b.length) {
+            return null;
+        }
+        CellMatcher[] matchers = new CellMatcher[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            if (dynamicTyping) {
+                matchers[i] = CellMatcher.BOXED;
+                continue;
+            }
+            Category x = categoryOf(a[i]);
+            Category y = categoryOf(b[i]);
+            if (x == Category.NUMERIC && y == Category.NUMERIC) {
+                matchers[i] = CellMatcher.NUMERIC;
+            } else if (x == Category.STRING && y == Category.STRING) {
+                matchers[i] = CellMatcher.STRING;
+            } else if (x != Category.OTHER && y != Category.OTHER) {
+                // 数值与字符串
+                matchers[i] = CellMatcher.BOTH_NULL;
+            } else {
+                matchers[i] = CellMatcher.BOXED;
+            }
+        }
+        return new ResultSetRowMatcher(matchers);
+    }
+
+    /**
+     * 各列的java.sql.Types
+     */
+    static int[] columnTypes(ResultSetMetaData metaData) throws SQLException {
+        int[] types = new int[metaData.getColumnCount()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = metaData.getColumnType(i + 1);
+        }
+        return types;
+    }
+
+    /**
+     * 两个结果集的当前行是否相等
+     */
+    boolean currentRowsEqual(ResultSet a, ResultSet b) throws SQLException {
+        for (int i = 0; i < matchers.length; i++) {
+            if (!matchers[i].matches(a, b, i + 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 结果集a的当前行是否与第二个结果集用getObject读出的一行相等
+     */
+    boolean currentRowEquals(ResultSet a, Object[] b) throws SQLException {
+        for (int i = 0; i < matchers.length; i++) {
+            if (!matchers[i].matches(a, b[i], i + 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Category categoryOf(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return Category.NUMERIC;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return Category.STRING;
+            default:
+                return Category.OTHER;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.nl2sql.spider.evaluator;
+
+import com.nl2sql.spider.constants.SqlConstants;
+import com.nl2sql.spider.model.CompactSqlStructure;
+import com.nl2sql.spider.model.ConditionUnit;
+import com.nl2sql.spider.model.SqlStructure;
+import com.nl2sql.spider.model.TableUnit;
+
+import java.util.List;
+
+/**
+ * 打分函数读取的查询块属性
+ * SqlStructure对象图和CompactSqlStructure节点表都通过此接口打分，评估器只保留一份打分实现。
+ * 列表长度为-1表示原字段为null
+ */
+interface ScoringView {
+
+    boolean hasSelect();
+
+    int selectCount();
+
+    int selectAggId(int index);
+
+    boolean hasFrom();
+
+    int tableCount();
+
+    /** 第index个表单元是否为子查询 */
+    boolean isSubqueryTable(int index);
+
+    int whereCount();
+
+    int whereOpId(int index);
+
+    /** 第index个WHERE条件中作为子查询的操作数个数 */
+    int whereNestedOperands(int index);
+
+    int groupByCount();
+
+    int havingCount();
+
+    int havingOpId(int index);
+
+    int havingNestedOperands(int index);
+
+    boolean hasOrderBy();
+
+    String orderType();
+
+    int orderByCount();
+
+    boolean hasLimit();
+
+    boolean hasIntersect();
+
+    boolean hasUnion();
+
+    boolean hasExcept();
+
+    static ScoringView of(SqlStructure sql) {
+        return new StructureView(sql);
+    }
+
+    static ScoringView of(CompactSqlStructure sql) {
+        return new CompactView(sql, sql.root());
+    }
+
+    /**
+     * SqlStructure对象图
+     */
+    final class StructureView implements ScoringView {
+        private final SqlStructure sql;
+
+        StructureView(SqlStructure sql) {
+            this.sql = sql;
+        }
+
+        @Override
+        public boolean hasSelect() {
+            return sql.getSelect() != null;
+        }
+
+        @Override
+        public int selectCount() {
+            return size(sql.getSelect() != null ? sql.getSelect().getSelectItems() : null);
+        }
+
+        @Override
+        public int selectAggId(int index) {
+            return sql.getSelect().getSelectItems().get(index).getAggId();
+        }
+
+        @Override
+        public boolean hasFrom() {
+            return sql.getFrom() != null;
+        }
+
+        @Override
+        public int tableCount() {
+            return size(sql.getFrom() != null ? sql.getFrom().getTableUnits() : null);
+        }
+
+        @Override
+        public boolean isSubqueryTable(int index) {
+            TableUnit unit = sql.getFrom().getTableUnits().get(index);
+            return SqlConstants.TABLE_TYPE_SQL.equals(unit.getTableType());
+        }
+
+        @Override
+        public int whereCount() {
+            return size(sql.getWhere());
+        }
+
+        @Override
+        public int whereOpId(int index) {
+            return sql.getWhere().get(index).getOpId();
+        }
+
+        @Override
+        public int whereNestedOperands(int index) {
+            return nestedOperands(sql.getWhere().get(index));
+        }
+
+        @Override
+        public int groupByCount() {
+            return size(sql.getGroupBy());
+        }
+
+        @Override
+        public int havingCount() {
+            return size(sql.getHaving());
+        }
+
+        @Override
+        public int havingOpId(int index) {
+            return sql.getHaving().get(index).getOpId();
+        }
+
+        @Override
+        public int havingNestedOperands(int index) {
+            return nestedOperands(sql.getHaving().get(index));
+        }
+
+        @Override
+        public boolean hasOrderBy() {
+            return sql.getOrderBy() != null;
+        }
+
+        @Override
+        public String orderType() {
+            return sql.getOrderBy().getOrderType();
+        }
+
+        @Override
+        public int orderByCount() {
+            return size(sql.getOrderBy().getValUnits());
+        }
+
+        @Override
+        public boolean hasLimit() {
+            return sql.getLimit() != null;
+        }
+
+        @Override
+        public boolean hasIntersect() {
+            return sql.getIntersect() != null;
+        }
+
+        @Override
+        public boolean hasUnion() {
+            return sql.getUnion() != null;
+        }
+
+        @Override
+        public boolean hasExcept() {
+            return sql.getExcept() != null;
+        }
+
+        private static int size(List<?> list) {
+            return list != null ? list.size() : -1;
+        }
+
+        private static int nestedOperands(ConditionUnit cond) {
+            int count = 0;
+            if (cond.getVal1() instanceof SqlStructure) count++;
+            if (cond.getVal2() instanceof SqlStructure) count++;
+            return count;
+        }
+    }
+
+    /**
+     * CompactSqlStructure节点表中的一个查询块
+     */
+    final class CompactView implements ScoringView {
+        private final CompactSqlStructure sql;
+        private final int query;
+
+        CompactView(CompactSqlStructure sql, int query) {
+            this.sql = sql;
+            this.query = query;
+        }
+
+        @Override
+        public boolean hasSelect() {
+            return sql.hasSelect(query);
+        }
+
+        @Override
+        public int selectCount() {
+            return sql.hasSelect(query) ? sql.selectCount(query) : -1;
+        }
+
+        @Override
+        public int selectAggId(int index) {
+            return sql.itemAggId(sql.selectItem(query, index));
+        }
+
+        @Override
+        public boolean hasFrom() {
+            return sql.hasFrom(query);
+        }
+
+        @Override
+        public int tableCount() {
+            return sql.hasFrom(query) ? sql.tableCount(query) : -1;
+        }
+
+        @Override
+        public boolean isSubqueryTable(int index) {
+            int sqlType = sql.getSymbolTable().lookup(SqlConstants.TABLE_TYPE_SQL);
+            return sqlType >= 0 && sql.tableTypeSymbol(sql.table(query, index)) == sqlType;
+        }
+
+        @Override
+        public int whereCount() {
+            return sql.whereCount(query);
+        }
+
+        @Override
+        public int whereOpId(int index) {
+            return sql.condOpId(sql.whereCondition(query, index));
+        }
+
+        @Override
+        public int whereNestedOperands(int index) {
+            return nestedOperands(sql.whereCondition(query, index));
+        }
+
+        @Override
+        public int groupByCount() {
+            return sql.groupByCount(query);
+        }
+
+        @Override
+        public int havingCount() {
+            return sql.havingCount(query);
+        }
+
+        @Override
+        public int havingOpId(int index) {
+            return sql.condOpId(sql.havingCondition(query, index));
+        }
+
+        @Override
+        public int havingNestedOperands(int index) {
+            return nestedOperands(sql.havingCondition(query, index));
+        }
+
+        @Override
+        public boolean hasOrderBy() {
+            return sql.hasOrderBy(query);
+        }
+
+        @Override
+        public String orderType() {
+            return sql.getSymbolTable().name(sql.orderTypeSymbol(query));
+        }
+
+        @Override
+        public int orderByCount() {
+            return sql.orderByCount(query);
+        }
+
+        @Override
+        public boolean hasLimit() {
+            return sql.hasLimit(query);
+        }
+
+        @Override
+        public boolean hasIntersect() {
+            return sql.intersect(query) >= 0;
+        }
+
+        @Override
+        public boolean hasUnion() {
+            return sql.union(query) >= 0;
+        }
+
+        @Override
+        public boolean hasExcept() {
+            return sql.except(query) >= 0;
+        }
+
+        private int nestedOperands(int cond) {
+            int count = 0;
+            if (sql.condVal1Kind(cond) == CompactSqlStructure.OPERAND_SQL) count++;
+            if (sql.condVal2Kind(cond) == CompactSqlStructure.OPERAND_SQL) count++;
+            return count;
+        }
+    }
+}
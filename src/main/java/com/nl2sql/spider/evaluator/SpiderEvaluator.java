@@ -3,18 +3,34 @@ package com.nl2sql.spider.evaluator;
 import com.nl2sql.spider.config.DatabaseConfig;
 import com.nl2sql.spider.constants.SqlConstants;
 import com.nl2sql.spider.enums.HardnessLevel;
+import com.nl2sql.spider.enums.ScoreComponent;
+import com.nl2sql.spider.jfr.ItemContext;
+import com.nl2sql.spider.jfr.QueryExecutionEvent;
+import com.nl2sql.spider.jfr.ResultComparisonEvent;
 import com.nl2sql.spider.model.*;
 import com.nl2sql.spider.parser.SqlParser;
+import com.nl2sql.spider.utils.ConnectionPool;
 import com.nl2sql.spider.utils.DatabaseConnectionManager;
+import com.nl2sql.spider.utils.SqlTokenizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Spider评估器
@@ -24,12 +40,136 @@ public class SpiderEvaluator {
     
     private static final Logger logger = LoggerFactory.getLogger(SpiderEvaluator.class);
     
+    /** 远程端点并发上限的初始值 */
+    private static final int INITIAL_CONCURRENCY_LIMIT = 4;
+    
     private final SqlParser sqlParser;
+    private volatile boolean verifyEquivalentExecution;
+    private volatile boolean concurrentExecution;
+    private volatile ConcurrentResultComparator concurrentComparator;
+    private volatile long spillThresholdBytes = Runtime.getRuntime().maxMemory() / 8;
+    private volatile GoldFingerprintIndex goldFingerprintIndex;
+    private volatile ExecutorService variantExecutor;
+    private volatile boolean prepareOnlyValidation;
+    private final Map<String, AdaptiveConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<>();
+    private final QueryCostEstimator costEstimator = new QueryCostEstimator();
+    private volatile long maxEstimatedRows;
+    /** 当前线程正在评估的项的资源消耗 */
+    private final ThreadLocal<ExecutionMetrics> itemMetrics = new ThreadLocal<>();
     
     public SpiderEvaluator() {
         this.sqlParser = new SqlParser();
     }
     
+    /**
+     * 单个查询结果在内存中保存的上限（字节）
+     */
+    public long getSpillThresholdBytes() {
+        return spillThresholdBytes;
+    }
+    
+    /**
+     * 设置单个查询结果在内存中保存的上限（字节），默认为最大堆的1/8
+     * 超过上限的结果分块排序后写入临时文件，比较时归并读取；不大于0表示不溢写
+     */
+    public void setSpillThresholdBytes(long spillThresholdBytes) {
+        this.spillThresholdBytes = spillThresholdBytes;
+    }
+    
+    /**
+     * 标准SQL结果的指纹索引
+     */
+    public GoldFingerprintIndex getGoldFingerprintIndex() {
+        return goldFingerprintIndex;
+    }
+    
+    /**
+     * 设置标准SQL结果的指纹索引，为null表示不使用
+     * 传入dbId的执行评估命中索引时只执行预测SQL并与指纹比较；
+     * 指纹不同但结果含允许误差的浮点值时无法判定，仍执行标准SQL完整比较
+     */
+    public void setGoldFingerprintIndex(GoldFingerprintIndex goldFingerprintIndex) {
+        this.goldFingerprintIndex = goldFingerprintIndex;
+    }
+    
+    /**
+     * 是否并发执行标准SQL与预测SQL
+     */
+    public boolean isConcurrentExecution() {
+        return concurrentExecution;
+    }
+    
+    /**
+     * 设置是否并发执行标准SQL与预测SQL
+     * 开启后两条SQL在各自的连接上同时执行并边读边比较，已知结果不同时取消仍在执行的语句；
+     * 仅对按数据库路径或数据库配置的执行评估生效，传入单个现有连接时仍顺序执行。
+     * 每项占用的连接数随之改变，已有的远程端点并发上限在下次使用时按新的连接数调整最大值；
+     * 执行中的请求仍占用原来的名额，调整期间并发数不会超过新旧上限中较大的一个
+     */
+    public void setConcurrentExecution(boolean concurrentExecution) {
+        this.concurrentExecution = concurrentExecution;
+    }
+    
+    /**
+     * SQL验证是否只预编译、不执行查询
+     */
+    public boolean isPrepareOnlyValidation() {
+        return prepareOnlyValidation;
+    }
+    
+    /**
+     * 设置SQL验证是否只预编译、不执行查询
+     * 开启后isValidSql只检查语法和表、列是否存在，不再执行查询；执行时才会出现的错误不会被发现。
+     * 仅对SQLite、H2、MySQL/MariaDB、PostgreSQL、Oracle和SQL Server生效，其他数据库仍执行查询
+     */
+    public void setPrepareOnlyValidation(boolean prepareOnlyValidation) {
+        this.prepareOnlyValidation = prepareOnlyValidation;
+    }
+    
+    /**
+     * 预测SQL估计结果规模的上限（行），0表示不预先检查
+     */
+    public long getMaxEstimatedRows() {
+        return maxEstimatedRows;
+    }
+    
+    /**
+     * 设置预测SQL估计结果规模的上限（行）
+     * 大于0时执行评估前先按查询计划和表行数估计预测SQL的规模，超过上限的不执行，判为执行不匹配
+     */
+    public void setMaxEstimatedRows(long maxEstimatedRows) {
+        this.maxEstimatedRows = maxEstimatedRows;
+    }
+    
+    /**
+     * 在当前线程开始记录执行评估的耗时、行数和物化字节数，直到调用endMetrics
+     */
+    public void beginMetrics(ExecutionMetrics metrics) {
+        itemMetrics.set(metrics);
+    }
+    
+    /**
+     * 结束当前线程的资源消耗记录
+     */
+    public void endMetrics() {
+        itemMetrics.remove();
+    }
+    
+    /**
+     * 是否对等价SQL仍执行预测SQL进行核对
+     */
+    public boolean isVerifyEquivalentExecution() {
+        return verifyEquivalentExecution;
+    }
+    
+    /**
+     * 设置是否对等价SQL仍执行预测SQL进行核对
+     * 开启后等价的预测SQL也会执行并比较，结果不一致时记录警告日志，用于审计等价判断
+     */
+    public void setVerifyEquivalentExecution(boolean verifyEquivalentExecution) {
+        this.verifyEquivalentExecution = verifyEquivalentExecution;
+    }
+    
     /**
      * 评估SQL难度
      * 
@@ -37,22 +177,7 @@ public class SpiderEvaluator {
      * @return 难度级别
      */
     public HardnessLevel evaluateHardness(SqlStructure sql) {
-        int component1Count = countComponent1(sql);
-        int component2Count = countComponent2(sql);
-        int othersCount = countOthers(sql);
-        
-        if (component1Count <= 1 && othersCount == 0 && component2Count == 0) {
-            return HardnessLevel.EASY;
-        } else if ((othersCount <= 2 && component1Count <= 1 && component2Count == 0) ||
-                   (component1Count <= 2 && othersCount < 2 && component2Count == 0)) {
-            return HardnessLevel.MEDIUM;
-        } else if ((othersCount > 2 && component1Count <= 2 && component2Count == 0) ||
-                   (2 < component1Count && component1Count <= 3 && othersCount <= 2 && component2Count == 0) ||
-                   (component1Count <= 1 && othersCount == 0 && component2Count <= 1)) {
-            return HardnessLevel.HARD;
-        } else {
-            return HardnessLevel.EXTRA;
-        }
+        return evaluateHardness(ScoringView.of(sql));
     }
     
     /**
@@ -63,32 +188,100 @@ public class SpiderEvaluator {
      * @return 是否精确匹配
      */
     public boolean evaluateExactMatch(SqlStructure predicted, SqlStructure gold) {
-        EvaluationResult partialResult = evaluatePartialMatch(predicted, gold);
+        // 结构相同时必然完全匹配
+        if (predicted.equals(gold)) {
+            return true;
+        }
         
         // 检查所有部分是否都完全匹配
-        for (PartialScore score : partialResult.getPartialScores().values()) {
-            if (score.getF1() != 1.0) {
-                return false;
-            }
+        if (!allComponentsMatch(predicted, gold)) {
+            return false;
         }
         
         // 检查FROM子句中的表单元
         if (gold.getFrom() != null && gold.getFrom().getTableUnits() != null && 
             !gold.getFrom().getTableUnits().isEmpty()) {
             
-            List<TableUnit> goldTables = new ArrayList<>(gold.getFrom().getTableUnits());
+            // 表单元按结构比较，不区分顺序
             List<TableUnit> predTables = predicted.getFrom() != null ? 
-                new ArrayList<>(predicted.getFrom().getTableUnits()) : new ArrayList<>();
-            
-            goldTables.sort(Comparator.comparing(TableUnit::getTableId));
-            predTables.sort(Comparator.comparing(TableUnit::getTableId));
+                predicted.getFrom().getTableUnits() : null;
             
-            return goldTables.equals(predTables);
+            return StructuralHash.unorderedEquals(gold.getFrom().getTableUnits(),
+                predTables != null ? predTables : Collections.<TableUnit>emptyList());
         }
         
         return true;
     }
     
+    /**
+     * 评估精确匹配（带SQL原文）
+     * 依次检查：规范化文本相同、结构相同、各部分逐一比较（遇到第一个不匹配即返回）
+     * 
+     * @param predictedSql 预测的SQL
+     * @param goldSql 标准SQL
+     * @param predicted 预测的SQL结构
+     * @param gold 标准SQL结构
+     * @return 是否精确匹配
+     */
+    public boolean evaluateExactMatch(String predictedSql, String goldSql, 
+                                      SqlStructure predicted, SqlStructure gold) {
+        if (isSameNormalizedSql(predictedSql, goldSql)) {
+            return true;
+        }
+        return evaluateExactMatch(predicted, gold);
+    }
+    
+    /**
+     * 判断各部分是否全部完全匹配（不检查FROM表单元）
+     * 与evaluatePartialMatch结果中所有F1均为1.0等价，但遇到第一个不匹配的部分即返回
+     * 
+     * @param predicted 预测的SQL结构
+     * @param gold 标准SQL结构
+     * @return 是否全部匹配
+     */
+    public boolean allComponentsMatch(SqlStructure predicted, SqlStructure gold) {
+        return allComponentsMatch(ScoringView.of(predicted), ScoringView.of(gold));
+    }
+    
+    private boolean allComponentsMatch(ScoringView predicted, ScoringView gold) {
+        return evaluateSelect(predicted, gold).getF1() == 1.0 &&
+               evaluateSelectNoAgg(predicted, gold).getF1() == 1.0 &&
+               evaluateWhere(predicted, gold).getF1() == 1.0 &&
+               evaluateWhereNoOp(predicted, gold).getF1() == 1.0 &&
+               evaluateGroup(predicted, gold).getF1() == 1.0 &&
+               evaluateGroupHaving(predicted, gold).getF1() == 1.0 &&
+               evaluateOrder(predicted, gold).getF1() == 1.0 &&
+               evaluateAndOr(predicted, gold).getF1() == 1.0 &&
+               evaluateIUEN(predicted, gold).getF1() == 1.0 &&
+               evaluateKeywords(predicted, gold).getF1() == 1.0;
+    }
+    
+    /**
+     * 各部分是否全部完全匹配的快速判断，语义与evaluatePartialMatch(...).isExactMatch()一致
+     * 
+     * @param predictedSql 预测的SQL
+     * @param goldSql 标准SQL
+     * @param predicted 预测的SQL结构
+     * @param gold 标准SQL结构
+     * @return 是否全部匹配
+     */
+    public boolean allComponentsMatch(String predictedSql, String goldSql, 
+                                      SqlStructure predicted, SqlStructure gold) {
+        return isSameNormalizedSql(predictedSql, goldSql) ||
+               predicted.equals(gold) ||
+               allComponentsMatch(predicted, gold);
+    }
+    
+    /**
+     * 规范化后文本是否相同（解析器不区分大小写，因此忽略大小写）
+     */
+    private boolean isSameNormalizedSql(String predictedSql, String goldSql) {
+        if (predictedSql == null || goldSql == null) {
+            return false;
+        }
+        return SqlTokenizer.normalize(predictedSql).equalsIgnoreCase(SqlTokenizer.normalize(goldSql));
+    }
+    
     /**
      * 评估部分匹配
      * 
@@ -97,65 +290,177 @@ public class SpiderEvaluator {
      * @return 评估结果
      */
     public EvaluationResult evaluatePartialMatch(SqlStructure predicted, SqlStructure gold) {
-        Map<String, PartialScore> partialScores = new HashMap<>();
-        
-        // 评估SELECT子句
-        PartialScore selectScore = evaluateSelect(predicted, gold);
-        partialScores.put("select", selectScore);
-        
-        PartialScore selectNoAggScore = evaluateSelectNoAgg(predicted, gold);
-        partialScores.put("select(no AGG)", selectNoAggScore);
-        
-        // 评估WHERE子句
-        PartialScore whereScore = evaluateWhere(predicted, gold);
-        partialScores.put("where", whereScore);
-        
-        PartialScore whereNoOpScore = evaluateWhereNoOp(predicted, gold);
-        partialScores.put("where(no OP)", whereNoOpScore);
-        
-        // 评估GROUP BY子句
-        PartialScore groupScore = evaluateGroup(predicted, gold);
-        partialScores.put("group(no Having)", groupScore);
-        
-        PartialScore groupHavingScore = evaluateGroupHaving(predicted, gold);
-        partialScores.put("group", groupHavingScore);
-        
-        // 评估ORDER BY子句
-        PartialScore orderScore = evaluateOrder(predicted, gold);
-        partialScores.put("order", orderScore);
-        
-        // 评估AND/OR
-        PartialScore andOrScore = evaluateAndOr(predicted, gold);
-        partialScores.put("and/or", andOrScore);
-        
-        // 评估IUEN (INTERSECT/UNION/EXCEPT/NESTED)
-        PartialScore iuenScore = evaluateIUEN(predicted, gold);
-        partialScores.put("IUEN", iuenScore);
-        
-        // 评估关键字
-        PartialScore keywordsScore = evaluateKeywords(predicted, gold);
-        partialScores.put("keywords", keywordsScore);
-        
-        return new EvaluationResult(partialScores);
+        return evaluatePartialMatch(ScoringView.of(predicted), ScoringView.of(gold));
     }
-    
+
+    /**
+     * 评估SQL难度（紧凑表示）
+     *
+     * @param sql 紧凑SQL结构
+     * @return 难度级别
+     */
+    public HardnessLevel evaluateHardness(CompactSqlStructure sql) {
+        return evaluateHardness(ScoringView.of(sql));
+    }
+
+    /**
+     * 评估部分匹配（紧凑表示）
+     * 直接在节点表上计算各部分分数，与对象图使用同一份打分实现
+     *
+     * @param predicted 预测的紧凑SQL结构
+     * @param gold 标准紧凑SQL结构
+     * @return 评估结果
+     */
+    public EvaluationResult evaluatePartialMatch(CompactSqlStructure predicted, CompactSqlStructure gold) {
+        return evaluatePartialMatch(ScoringView.of(predicted), ScoringView.of(gold));
+    }
+
     /**
      * 评估执行准确性
-     * 
+     *
      * @param dbPath 数据库路径
      * @param predictedSql 预测的SQL
      * @param goldSql 标准SQL
      * @return 是否执行结果相同
      */
     public boolean evaluateExecution(String dbPath, String predictedSql, String goldSql) {
+        return evaluateExecution(dbPath, predictedSql, goldSql, null);
+    }
+    
+    /**
+     * 评估执行准确性（按标准SQL结构选择比较方式）
+     * 标准SQL含ORDER BY时逐行按顺序比较，否则不考虑行顺序
+     *
+     * @param dbPath 数据库路径
+     * @param predictedSql 预测的SQL
+     * @param goldSql 标准SQL
+     * @param gold 标准SQL结构，为null时不考虑行顺序
+     * @return 是否执行结果相同
+     */
+    public boolean evaluateExecution(String dbPath, String predictedSql, String goldSql, SqlStructure gold) {
+        return evaluateExecution(null, dbPath, predictedSql, goldSql, gold);
+    }
+    
+    /**
+     * 评估执行准确性（按dbId查找标准SQL结果指纹）
+     *
+     * @param dbId 数据库ID，为null时不查找指纹索引
+     * @param dbPath 数据库路径
+     * @param predictedSql 预测的SQL
+     * @param goldSql 标准SQL
+     * @param gold 标准SQL结构，为null时不考虑行顺序
+     * @return 是否执行结果相同
+     */
+    public boolean evaluateExecution(String dbId, String dbPath, String predictedSql, String goldSql, 
+                                     SqlStructure gold) {
+        GoldFingerprintIndex.Fingerprint fingerprint = lookupGoldFingerprint(dbId, goldSql);
+        if (fingerprint == null && useConcurrentExecution(predictedSql, goldSql)) {
+            try (Connection predConn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+                 Connection goldConn = DriverManager.getConnection("jdbc:sqlite:" + dbPath)) {
+                return compareConcurrently(predConn, goldConn, predictedSql, goldSql, isOrderSensitive(gold));
+            } catch (SQLException e) {
+                logger.error("Failed to evaluate execution for SQL: {} vs {}", predictedSql, goldSql, e);
+                return false;
+            }
+        }
+        
         try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath)) {
-            return executeAndCompare(conn, predictedSql, goldSql);
+            return executeAndCompare(conn, predictedSql, goldSql, isOrderSensitive(gold), fingerprint);
         } catch (SQLException e) {
             logger.error("Failed to evaluate execution for SQL: {} vs {}", predictedSql, goldSql, e);
             return false;
         }
     }
     
+    /**
+     * 测试套件执行准确性：在同一数据库的多个变体上分别比较，全部一致才算匹配
+     * 各变体并行执行，任一变体不一致时取消其余变体并立即返回
+     *
+     * @param dbId 数据库ID，仅第一个变体查找指纹索引，为null时不查找
+     * @param dbPaths 数据库变体路径，第一个为主数据库
+     * @param predictedSql 预测的SQL
+     * @param goldSql 标准SQL
+     * @param gold 标准SQL结构，为null时不考虑行顺序
+     * @return 是否在所有变体上执行结果相同
+     */
+    public boolean evaluateTestSuiteExecution(String dbId, List<String> dbPaths, String predictedSql, 
+                                              String goldSql, SqlStructure gold) {
+        if (dbPaths == null || dbPaths.isEmpty()) {
+            throw new IllegalArgumentException("At least one database path is required");
+        }
+        if (dbPaths.size() == 1) {
+            return evaluateExecution(dbId, dbPaths.get(0), predictedSql, goldSql, gold);
+        }
+        
+        boolean ordered = isOrderSensitive(gold);
+        List<CancellableConnection> connections = new CopyOnWriteArrayList<>();
+        AtomicBoolean decided = new AtomicBoolean();
+        CompletionService<Boolean> completion = new ExecutorCompletionService<>(getVariantExecutor());
+        ExecutionMetrics metrics = itemMetrics.get();
+        ItemContext context = ItemContext.current();
+        
+        for (int i = 0; i < dbPaths.size(); i++) {
+            String dbPath = dbPaths.get(i);
+            GoldFingerprintIndex.Fingerprint fingerprint = i == 0 ? lookupGoldFingerprint(dbId, goldSql) : null;
+            completion.submit(() -> {
+                itemMetrics.set(metrics);
+                ItemContext.set(context);
+                try (Connection raw = DriverManager.getConnection("jdbc:sqlite:" + dbPath)) {
+                    CancellableConnection conn = CancellableConnection.wrap(raw);
+                    connections.add(conn);
+                    if (decided.get()) {
+                        return false;
+                    }
+                    return executeAndCompare(conn.getConnection(), predictedSql, goldSql, ordered, fingerprint);
+                } finally {
+                    itemMetrics.remove();
+                    ItemContext.exit();
+                }
+            });
+        }
+        
+        try {
+            for (int i = 0; i < dbPaths.size(); i++) {
+                boolean match;
+                try {
+                    match = completion.take().get();
+                } catch (ExecutionException e) {
+                    logger.error("Failed to evaluate execution for SQL: {} vs {}", predictedSql, goldSql, e.getCause());
+                    match = false;
+                }
+                if (!match) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            // 已得出结论，取消仍在执行的变体；之后注册的连接会看到decided标记
+            decided.set(true);
+            connections.forEach(CancellableConnection::cancel);
+        }
+    }
+    
+    private ExecutorService getVariantExecutor() {
+        ExecutorService executor = variantExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = variantExecutor;
+                if (executor == null) {
+                    executor = Executors.newCachedThreadPool(runnable -> {
+                        Thread thread = new Thread(runnable, "db-variant-executor");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    variantExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+    
     /**
      * 评估执行准确性（使用数据库配置）
      * 
@@ -165,15 +470,136 @@ public class SpiderEvaluator {
      * @return 是否执行结果相同
      */
     public boolean evaluateExecution(DatabaseConfig config, String predictedSql, String goldSql) {
-        try (Connection conn = DatabaseConnectionManager.createConnection(config)) {
-            return executeAndCompare(conn, predictedSql, goldSql);
+        return evaluateExecution(config, predictedSql, goldSql, null);
+    }
+    
+    /**
+     * 评估执行准确性（使用数据库配置，按标准SQL结构选择比较方式）
+     * 
+     * @param config 数据库配置
+     * @param predictedSql 预测的SQL
+     * @param goldSql 标准SQL
+     * @param gold 标准SQL结构，为null时不考虑行顺序
+     * @return 是否执行结果相同
+     */
+    public boolean evaluateExecution(DatabaseConfig config, String predictedSql, String goldSql, SqlStructure gold) {
+        return evaluateExecution(null, config, predictedSql, goldSql, gold);
+    }
+    
+    /**
+     * 评估执行准确性（使用数据库配置，按dbId查找标准SQL结果指纹）
+     * 
+     * @param dbId 数据库ID，为null时不查找指纹索引
+     * @param config 数据库配置
+     * @param predictedSql 预测的SQL
+     * @param goldSql 标准SQL
+     * @param gold 标准SQL结构，为null时不考虑行顺序
+     * @return 是否执行结果相同
+     */
+    public boolean evaluateExecution(String dbId, DatabaseConfig config, String predictedSql, String goldSql, 
+                                     SqlStructure gold) {
+        AdaptiveConcurrencyLimiter limiter = limiterFor(config);
+        long startNanos = 0;
+        if (limiter != null) {
+            try {
+                startNanos = limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        
+        boolean dropped = false;
+        boolean ignored = false;
+        try {
+            return executeWithConfig(dbId, config, predictedSql, goldSql, gold);
+        } catch (ConnectionPool.BorrowTimeoutException e) {
+            // 连接池用尽是本地资源不足，不是数据库过载的信号
+            ignored = true;
+            logger.error("Timed out waiting for a pooled connection for SQL: {} vs {} using config: {}", 
+                        predictedSql, goldSql, config, e);
+            return false;
         } catch (SQLException e) {
+            // 执行比较中的SQL错误已在内部处理，这里只有获取、设置连接失败
+            dropped = true;
             logger.error("Failed to evaluate execution for SQL: {} vs {} using config: {}", 
                         predictedSql, goldSql, config, e);
             return false;
+        } finally {
+            if (limiter != null) {
+                if (ignored) {
+                    limiter.ignore();
+                } else {
+                    limiter.release(startNanos, dropped);
+                }
+            }
+        }
+    }
+    
+    private boolean executeWithConfig(String dbId, DatabaseConfig config, String predictedSql, String goldSql, 
+                                      SqlStructure gold) throws SQLException {
+        GoldFingerprintIndex.Fingerprint fingerprint = lookupGoldFingerprint(dbId, goldSql);
+        if (fingerprint == null && useConcurrentExecution(predictedSql, goldSql)) {
+            try (Connection predConn = DatabaseConnectionManager.createConnection(config);
+                 Connection goldConn = DatabaseConnectionManager.createConnection(config)) {
+                StreamingFetch.prepare(predConn);
+                StreamingFetch.prepare(goldConn);
+                return compareConcurrently(predConn, goldConn, predictedSql, goldSql, isOrderSensitive(gold));
+            }
+        }
+        
+        try (Connection conn = DatabaseConnectionManager.createConnection(config)) {
+            StreamingFetch.prepare(conn);
+            return executeAndCompare(conn, predictedSql, goldSql, isOrderSensitive(gold), fingerprint);
         }
     }
     
+    /**
+     * 远程数据库端点的自适应并发上限，其他数据库或关闭时返回null
+     * 使用连接池时上限不超过连接池能同时满足的项数：并发执行时每项先后借出两个连接，
+     * 上限达到连接数时所有项可能各持一个连接等待第二个，直到借出超时
+     */
+    private AdaptiveConcurrencyLimiter limiterFor(DatabaseConfig config) {
+        if (!config.isRemote() || !config.isAdaptiveConcurrency()) {
+            return null;
+        }
+        int maxLimit = maxConcurrencyFor(config);
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiters.computeIfAbsent(
+            endpointKey(config), key -> new AdaptiveConcurrencyLimiter(INITIAL_CONCURRENCY_LIMIT, maxLimit));
+        if (limiter.getMaxLimit() != maxLimit) {
+            // 并发执行开关改变了每项的连接数：就地调整，执行中的请求仍在同一个限流器上计数
+            limiter.setMaxLimit(maxLimit);
+        }
+        return limiter;
+    }
+    
+    private int maxConcurrencyFor(DatabaseConfig config) {
+        int maxLimit = config.getMaxConcurrency();
+        if (config.usesPool()) {
+            int connectionsPerItem = concurrentExecution ? 2 : 1;
+            int poolLimit = Math.max(1, config.getPoolMaxSize() * Math.max(1, config.getEndpoints().size())
+                                        / connectionsPerItem);
+            return maxLimit > 0 ? Math.min(maxLimit, poolLimit) : poolLimit;
+        }
+        return maxLimit > 0 ? maxLimit : 64;
+    }
+    
+    /**
+     * 端点标识：配置了副本时为整组副本（由连接管理器在组内分配）
+     */
+    private static String endpointKey(DatabaseConfig config) {
+        String address = config.getEndpoints().isEmpty()
+            ? config.getHost() + ":" + config.getPort() : config.getEndpoints().toString();
+        return config.getType() + "://" + address;
+    }
+    
+    /**
+     * 各远程端点的并发上限状态
+     */
+    public Map<String, AdaptiveConcurrencyLimiter> getConcurrencyLimiters() {
+        return Collections.unmodifiableMap(concurrencyLimiters);
+    }
+    
     /**
      * 评估执行准确性（使用现有连接）
      * 
@@ -182,8 +608,93 @@ public class SpiderEvaluator {
      * @param goldSql 标准SQL
      * @return 是否执行结果相同
      */
-    public boolean evaluateExecution(Connection conn, String predictedSql, String goldSql) {
-        return executeAndCompare(conn, predictedSql, goldSql);
+    public boolean evaluateExecution(Connection conn, String predictedSql, String goldSql) {
+        return evaluateExecution(conn, predictedSql, goldSql, null);
+    }
+    
+    /**
+     * 评估执行准确性（使用现有连接，按标准SQL结构选择比较方式）
+     * 
+     * @param conn 数据库连接
+     * @param predictedSql 预测的SQL
+     * @param goldSql 标准SQL
+     * @param gold 标准SQL结构，为null时不考虑行顺序
+     * @return 是否执行结果相同
+     */
+    public boolean evaluateExecution(Connection conn, String predictedSql, String goldSql, SqlStructure gold) {
+        return evaluateExecution(null, conn, predictedSql, goldSql, gold);
+    }
+    
+    /**
+     * 评估执行准确性（使用现有连接，按dbId查找标准SQL结果指纹）
+     * 
+     * @param dbId 数据库ID，为null时不查找指纹索引
+     * @param conn 数据库连接
+     * @param predictedSql 预测的SQL
+     * @param goldSql 标准SQL
+     * @param gold 标准SQL结构，为null时不考虑行顺序
+     * @return 是否执行结果相同
+     */
+    public boolean evaluateExecution(String dbId, Connection conn, String predictedSql, String goldSql, 
+                                     SqlStructure gold) {
+        return executeAndCompare(conn, predictedSql, goldSql, isOrderSensitive(gold), 
+                                 lookupGoldFingerprint(dbId, goldSql));
+    }
+    
+    private GoldFingerprintIndex.Fingerprint lookupGoldFingerprint(String dbId, String goldSql) {
+        GoldFingerprintIndex index = goldFingerprintIndex;
+        if (index == null || dbId == null || goldSql == null) {
+            return null;
+        }
+        return index.lookup(dbId, goldSql);
+    }
+    
+    /**
+     * 等价SQL只执行标准SQL，无需并发
+     */
+    private boolean useConcurrentExecution(String predictedSql, String goldSql) {
+        return concurrentExecution && !isEquivalentSql(predictedSql, goldSql);
+    }
+    
+    private boolean compareConcurrently(Connection predConn, Connection goldConn, String predictedSql, 
+                                        String goldSql, boolean ordered) {
+        ResultComparisonEvent event = new ResultComparisonEvent();
+        event.begin();
+        boolean match = false;
+        try {
+            match = getConcurrentComparator().compare(predConn, goldConn, predictedSql, goldSql, ordered, 
+                                                      spillThresholdBytes, itemMetrics.get());
+            return match;
+        } finally {
+            event.finish(predictedSql, goldSql, "concurrent", ordered, match);
+        }
+    }
+    
+    private ConcurrentResultComparator getConcurrentComparator() {
+        ConcurrentResultComparator comparator = concurrentComparator;
+        if (comparator == null) {
+            synchronized (this) {
+                comparator = concurrentComparator;
+                if (comparator == null) {
+                    ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+                        Thread thread = new Thread(runnable, "gold-sql-executor");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    comparator = new ConcurrentResultComparator(executor);
+                    concurrentComparator = comparator;
+                }
+            }
+        }
+        return comparator;
+    }
+    
+    /**
+     * 标准SQL的最外层是否有ORDER BY（有则结果的行顺序是答案的一部分）
+     */
+    public boolean isOrderSensitive(SqlStructure gold) {
+        return gold != null && gold.getOrderBy() != null && 
+               gold.getOrderBy().getValUnits() != null && !gold.getOrderBy().getValUnits().isEmpty();
     }
     
     /**
@@ -194,10 +705,8 @@ public class SpiderEvaluator {
      * @return 是否有效
      */
     public boolean isValidSql(String dbPath, String sql) {
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
-             Statement stmt = conn.createStatement()) {
-            
-            stmt.executeQuery(sql);
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath)) {
+            checkSql(conn, sql);
             return true;
         } catch (SQLException e) {
             return false;
@@ -212,10 +721,8 @@ public class SpiderEvaluator {
      * @return 是否有效
      */
     public boolean isValidSql(DatabaseConfig config, String sql) {
-        try (Connection conn = DatabaseConnectionManager.createConnection(config);
-             Statement stmt = conn.createStatement()) {
-            
-            stmt.executeQuery(sql);
+        try (Connection conn = DatabaseConnectionManager.createConnection(config)) {
+            checkSql(conn, sql);
             return true;
         } catch (SQLException e) {
             logger.debug("SQL validation failed for: {} using config: {}", sql, config);
@@ -231,8 +738,8 @@ public class SpiderEvaluator {
      * @return 是否有效
      */
     public boolean isValidSql(Connection conn, String sql) {
-        try (Statement stmt = conn.createStatement()) {
-            stmt.executeQuery(sql);
+        try {
+            checkSql(conn, sql);
             return true;
         } catch (SQLException e) {
             logger.debug("SQL validation failed for: {}", sql);
@@ -240,27 +747,82 @@ public class SpiderEvaluator {
         }
     }
     
+    /**
+     * 按验证模式执行或预编译SQL，无效时抛出异常
+     * 只预编译时按数据库选择不执行查询的检查方式；不确定驱动是否在预编译时解析语句的数据库仍执行查询
+     */
+    private void checkSql(Connection conn, String sql) throws SQLException {
+        String product = prepareOnlyValidation ? conn.getMetaData().getDatabaseProductName() : null;
+        String name = product == null ? "" : product.toLowerCase();
+        if (name.equals("sqlite") || name.equals("h2")) {
+            // 预编译时即解析语句并检查表和列
+            conn.prepareStatement(sql).close();
+        } else if (name.equals("mysql") || name.equals("mariadb") || name.equals("postgresql")) {
+            // Connector/J默认在客户端模拟预编译，PostgreSQL驱动在首次执行时才发送语句，
+            // 改用EXPLAIN让数据库解析语句
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("EXPLAIN " + sql);
+            }
+        } else if (name.equals("oracle")) {
+            // Oracle驱动推迟到执行时解析，EXPLAIN PLAN只生成计划
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("EXPLAIN PLAN FOR " + sql);
+            }
+        } else if (name.contains("sql server")) {
+            // SQL Server驱动推迟到执行时解析，sp_describe_first_result_set编译语句并检查对象，不执行
+            try (PreparedStatement stmt = conn.prepareStatement("EXEC sp_describe_first_result_set @tsql = ?")) {
+                stmt.setString(1, sql);
+                stmt.execute();
+            }
+        } else {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeQuery(sql);
+            }
+        }
+    }
+    
     // 私有辅助方法
     
-    private int countComponent1(SqlStructure sql) {
+    private static final int LIKE_OP_ID = SqlConstants.COND_OPS.indexOf("like");
+    
+    private HardnessLevel evaluateHardness(ScoringView sql) {
+        int component1Count = countComponent1(sql);
+        int component2Count = countComponent2(sql);
+        int othersCount = countOthers(sql);
+        
+        if (component1Count <= 1 && othersCount == 0 && component2Count == 0) {
+            return HardnessLevel.EASY;
+        } else if ((othersCount <= 2 && component1Count <= 1 && component2Count == 0) ||
+                   (component1Count <= 2 && othersCount < 2 && component2Count == 0)) {
+            return HardnessLevel.MEDIUM;
+        } else if ((othersCount > 2 && component1Count <= 2 && component2Count == 0) ||
+                   (2 < component1Count && component1Count <= 3 && othersCount <= 2 && component2Count == 0) ||
+                   (component1Count <= 1 && othersCount == 0 && component2Count <= 1)) {
+            return HardnessLevel.HARD;
+        } else {
+            return HardnessLevel.EXTRA;
+        }
+    }
+    
+    private int countComponent1(ScoringView sql) {
         int count = 0;
         
-        if (sql.getWhere() != null && !sql.getWhere().isEmpty()) {
+        if (sql.whereCount() > 0) {
             count++;
         }
-        if (sql.getGroupBy() != null && !sql.getGroupBy().isEmpty()) {
+        if (sql.groupByCount() > 0) {
             count++;
         }
-        if (sql.getOrderBy() != null) {
+        if (sql.hasOrderBy()) {
             count++;
         }
-        if (sql.getLimit() != null) {
+        if (sql.hasLimit()) {
             count++;
         }
         
         // JOIN计数
-        if (sql.getFrom() != null && sql.getFrom().getTableUnits() != null) {
-            count += Math.max(0, sql.getFrom().getTableUnits().size() - 1);
+        if (sql.tableCount() >= 0) {
+            count += Math.max(0, sql.tableCount() - 1);
         }
         
         // OR和LIKE计数
@@ -269,12 +831,8 @@ public class SpiderEvaluator {
         return count;
     }
     
-    private int countComponent2(SqlStructure sql) {
-        int count = 0;
-        
-        if (sql.getIntersect() != null) count++;
-        if (sql.getUnion() != null) count++;
-        if (sql.getExcept() != null) count++;
+    private int countComponent2(ScoringView sql) {
+        int count = countIuenOperators(sql);
         
         // 嵌套SQL计数
         count += countNestedSql(sql);
@@ -282,7 +840,7 @@ public class SpiderEvaluator {
         return count;
     }
     
-    private int countOthers(SqlStructure sql) {
+    private int countOthers(ScoringView sql) {
         int count = 0;
         
         // 聚合函数数量
@@ -290,108 +848,233 @@ public class SpiderEvaluator {
         if (aggCount > 1) count++;
         
         // SELECT列数量
-        if (sql.getSelect() != null && sql.getSelect().getSelectItems() != null &&
-            sql.getSelect().getSelectItems().size() > 1) {
+        if (sql.selectCount() > 1) {
             count++;
         }
         
         // WHERE条件数量
-        if (sql.getWhere() != null && sql.getWhere().size() > 1) {
+        if (sql.whereCount() > 1) {
             count++;
         }
         
         // GROUP BY子句数量
-        if (sql.getGroupBy() != null && sql.getGroupBy().size() > 1) {
+        if (sql.groupByCount() > 1) {
             count++;
         }
         
         return count;
     }
     
-    private int countOrAndLike(SqlStructure sql) {
+    private int countOrAndLike(ScoringView sql) {
         int count = 0;
         
         // 检查WHERE条件中的LIKE
-        if (sql.getWhere() != null) {
-            for (ConditionUnit cond : sql.getWhere()) {
-                if (cond.getOpId() >= 0 && cond.getOpId() < SqlConstants.COND_OPS.size() && 
-                    SqlConstants.COND_OPS.get(cond.getOpId()).equals("like")) {
-                    count++;
-                }
+        for (int i = 0; i < sql.whereCount(); i++) {
+            if (sql.whereOpId(i) == LIKE_OP_ID) {
+                count++;
             }
         }
         
         // 检查HAVING条件中的LIKE
-        if (sql.getHaving() != null) {
-            for (ConditionUnit cond : sql.getHaving()) {
-                if (cond.getOpId() >= 0 && cond.getOpId() < SqlConstants.COND_OPS.size() && 
-                    SqlConstants.COND_OPS.get(cond.getOpId()).equals("like")) {
-                    count++;
-                }
+        for (int i = 0; i < sql.havingCount(); i++) {
+            if (sql.havingOpId(i) == LIKE_OP_ID) {
+                count++;
             }
         }
         
         return count;
     }
     
-    private int countNestedSql(SqlStructure sql) {
+    private int countNestedSql(ScoringView sql) {
         int count = 0;
         
-        // 检查WHERE条件中的嵌套SQL
-        if (sql.getWhere() != null) {
-            for (ConditionUnit cond : sql.getWhere()) {
-                if (cond.getVal1() != null && cond.getVal1() instanceof SqlStructure) {
-                    count++;
-                }
-                if (cond.getVal2() != null && cond.getVal2() instanceof SqlStructure) {
-                    count++;
-                }
-            }
+        // 检查WHERE和HAVING条件中的嵌套SQL
+        for (int i = 0; i < sql.whereCount(); i++) {
+            count += sql.whereNestedOperands(i);
         }
-        
-        // 检查HAVING条件中的嵌套SQL
-        if (sql.getHaving() != null) {
-            for (ConditionUnit cond : sql.getHaving()) {
-                if (cond.getVal1() != null && cond.getVal1() instanceof SqlStructure) {
-                    count++;
-                }
-                if (cond.getVal2() != null && cond.getVal2() instanceof SqlStructure) {
-                    count++;
-                }
-            }
+        for (int i = 0; i < sql.havingCount(); i++) {
+            count += sql.havingNestedOperands(i);
         }
         
         // 检查FROM子句中的嵌套SQL
-        if (sql.getFrom() != null && sql.getFrom().getTableUnits() != null) {
-            for (TableUnit unit : sql.getFrom().getTableUnits()) {
-                if (SqlConstants.TABLE_TYPE_SQL.equals(unit.getTableType())) {
-                    count++;
-                }
+        for (int i = 0; i < sql.tableCount(); i++) {
+            if (sql.isSubqueryTable(i)) {
+                count++;
             }
         }
         
         return count;
     }
     
-    private int countAggregations(SqlStructure sql) {
+    private int countAggregations(ScoringView sql) {
         int count = 0;
         
-        if (sql.getSelect() != null && sql.getSelect().getSelectItems() != null) {
-            for (SelectClause.SelectItem item : sql.getSelect().getSelectItems()) {
-                if (item.getAggId() > 0) { // 0表示"none"
-                    count++;
-                }
+        for (int i = 0; i < sql.selectCount(); i++) {
+            if (sql.selectAggId(i) > 0) { // 0表示"none"
+                count++;
             }
         }
         
         return count;
     }
+        /**
+     * 判断预测SQL与标准SQL是否可证明等价（规范化文本相同）
+     * 等价时执行评估只执行标准SQL，预测SQL不再执行
+     * 
+     * @param predictedSql 预测的SQL
+     * @param goldSql 标准SQL
+     * @return 是否等价
+     */
+    public boolean isEquivalentSql(String predictedSql, String goldSql) {
+        if (predictedSql == null || goldSql == null) {
+            return false;
+        }
+        return SqlTokenizer.canonicalize(predictedSql).equals(SqlTokenizer.canonicalize(goldSql));
+    }
+    
+    /**
+     * 按查询计划判断预测SQL是否代价过高（使用SQLite数据库路径）
+     * 
+     * @param dbId 数据库ID，用作表行数的缓存键
+     * @param dbPath 数据库文件路径
+     * @param predictedSql 预测的SQL
+     * @param goldSql 标准SQL
+     * @return 估计规模超过上限；未开启、与标准SQL等价或无法估计时为false
+     */
+    public boolean isTooExpensive(String dbId, String dbPath, String predictedSql, String goldSql) {
+        if (!shouldScreen(predictedSql, goldSql)) {
+            return false;
+        }
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath)) {
+            return isTooExpensive(dbId != null ? dbId : dbPath, conn, predictedSql, goldSql);
+        } catch (SQLException e) {
+            logger.debug("Failed to open database for cost estimation: {}", dbPath, e);
+            return false;
+        }
+    }
+    
+    /**
+     * 按查询计划判断预测SQL是否代价过高（使用数据库配置）
+     */
+    public boolean isTooExpensive(String dbId, DatabaseConfig config, String predictedSql, String goldSql) {
+        if (!shouldScreen(predictedSql, goldSql)) {
+            return false;
+        }
+        try (Connection conn = DatabaseConnectionManager.createConnection(config)) {
+            return isTooExpensive(dbId != null ? dbId : config.buildJdbcUrl(), conn, predictedSql, goldSql);
+        } catch (SQLException e) {
+            logger.debug("Failed to connect for cost estimation using config: {}", config, e);
+            return false;
+        }
+    }
+    
+    /**
+     * 按查询计划判断预测SQL是否代价过高（使用现有连接）
+     * 
+     * @param dbId 数据库ID，用作表行数的缓存键
+     * @param conn 数据库连接
+     * @param predictedSql 预测的SQL
+     * @param goldSql 标准SQL
+     * @return 估计规模超过上限；未开启、与标准SQL等价或无法估计时为false
+     */
+    public boolean isTooExpensive(String dbId, Connection conn, String predictedSql, String goldSql) {
+        long limit = maxEstimatedRows;
+        if (!shouldScreen(predictedSql, goldSql)) {
+            return false;
+        }
+        try {
+            String cacheKey = dbId != null ? dbId : conn.getMetaData().getURL();
+            long estimate = costEstimator.estimate(conn, cacheKey, predictedSql);
+            if (estimate > limit) {
+                logger.debug("Prediction estimated at {} rows exceeds {}, not executed: {}", 
+                            estimate, limit, predictedSql);
+                return true;
+            }
+        } catch (SQLException e) {
+            // 无法生成计划（例如SQL无效）时交给执行评估
+            logger.debug("Failed to estimate cost of: {}", predictedSql, e);
+        }
+        return false;
+    }
+    
+    private boolean shouldScreen(String predictedSql, String goldSql) {
+        return maxEstimatedRows > 0 && !isExecutionSkipped(predictedSql, goldSql);
+    }
     
-    private boolean executeAndCompare(Connection conn, String sql1, String sql2) {
+    /**
+     * 判断执行评估时是否会跳过预测SQL的执行
+     */
+    public boolean isExecutionSkipped(String predictedSql, String goldSql) {
+        return !verifyEquivalentExecution && isEquivalentSql(predictedSql, goldSql);
+    }
+    
+    private boolean executeAndCompare(Connection conn, String predictedSql, String goldSql, boolean ordered,
+                                      GoldFingerprintIndex.Fingerprint goldFingerprint) {
+        ResultComparisonEvent event = new ResultComparisonEvent();
+        event.begin();
+        boolean match = false;
+        try {
+            match = compareExecution(conn, predictedSql, goldSql, ordered, goldFingerprint);
+            return match;
+        } finally {
+            event.finish(predictedSql, goldSql, goldFingerprint != null ? "fingerprint" : "sequential", 
+                         ordered, match);
+        }
+    }
+    
+    /**
+     * 命中指纹索引时只执行预测SQL，指纹无法判定时退回完整比较
+     */
+    private boolean compareExecution(Connection conn, String predictedSql, String goldSql, boolean ordered,
+                                     GoldFingerprintIndex.Fingerprint goldFingerprint) {
+        if (goldFingerprint == null) {
+            return executeAndCompare(conn, predictedSql, goldSql, ordered);
+        }
+        if (goldFingerprint.isFailed()) {
+            return false;
+        }
+        if (isExecutionSkipped(predictedSql, goldSql)) {
+            // 标准SQL在构建索引时已成功执行
+            return true;
+        }
+        
+        GoldFingerprintIndex.Fingerprint predFingerprint;
+        long start = System.nanoTime();
         try {
-            // 执行两个SQL查询并比较结果
-            List<List<Object>> result1 = executeQuery(conn, sql1);
-            List<List<Object>> result2 = executeQuery(conn, sql2);
+            predFingerprint = GoldFingerprintIndex.compute(conn, predictedSql, ordered, 
+                                                           goldFingerprint.getRowCount(), spillThresholdBytes);
+            recordExecution(false, System.nanoTime() - start, 
+                            predFingerprint != null ? predFingerprint.getRowCount() : 0, 0);
+        } catch (SQLException e) {
+            logger.error("Failed to execute query: {}", predictedSql, e);
+            return false;
+        }
+        if (predFingerprint == null) {
+            // 预测结果行数已超过标准结果
+            return false;
+        }
+        
+        Boolean match = goldFingerprint.matches(predFingerprint, ordered);
+        if (match != null) {
+            return match;
+        }
+        return executeAndCompare(conn, predictedSql, goldSql, ordered);
+    }
+    
+    private boolean executeAndCompare(Connection conn, String sql1, String sql2, boolean ordered) {
+        if (isEquivalentSql(sql1, sql2)) {
+            return executeEquivalent(conn, sql1, sql2, ordered);
+        }
+        return ordered ? compareOrdered(conn, sql1, sql2) : compareUnordered(conn, sql1, sql2);
+    }
+    
+    /**
+     * 不考虑行顺序的比较：两个结果全部读入后排序比较
+     */
+    private boolean compareUnordered(Connection conn, String sql1, String sql2) {
+        // 执行两个SQL查询并比较结果
+        try (SpillableResult result1 = executeQuery(conn, sql1, false);
+             SpillableResult result2 = result1 == null ? null : executeQuery(conn, sql2, true)) {
             
             if (result1 == null || result2 == null) {
                 return false;
@@ -406,144 +1089,234 @@ public class SpiderEvaluator {
         }
     }
     
-    private List<List<Object>> executeQuery(Connection conn, String sql) {
-        try (Statement stmt = conn.createStatement()) {
-            var rs = stmt.executeQuery(sql);
-            List<List<Object>> results = new ArrayList<>();
+    /**
+     * 按顺序的比较：两个游标同步逐行读取，遇到第一行不同即返回，不缓存结果
+     */
+    private boolean compareOrdered(Connection conn, String sql1, String sql2) {
+        // 两个游标交替读取，分别累计各自的执行和读取耗时
+        long nanos1 = 0;
+        long nanos2 = 0;
+        long rows1 = 0;
+        long rows2 = 0;
+        // 出错时正在执行或读取的一侧：1、2，0表示比较两边的单元格时出错
+        int side = 1;
+        boolean failed = false;
+        QueryExecutionEvent event1 = new QueryExecutionEvent();
+        QueryExecutionEvent event2 = null;
+        event1.begin();
+        try (Statement stmt1 = StreamingFetch.createStatement(conn);
+             Statement stmt2 = StreamingFetch.createStatement(conn)) {
             
-            int columnCount = rs.getMetaData().getColumnCount();
+            ResultSet rs1;
+            ResultSet rs2;
+            try {
+                long start = System.nanoTime();
+                rs1 = stmt1.executeQuery(sql1);
+                long split = System.nanoTime();
+                nanos1 += split - start;
+                side = 2;
+                event2 = new QueryExecutionEvent();
+                event2.begin();
+                rs2 = stmt2.executeQuery(sql2);
+                nanos2 += System.nanoTime() - split;
+            } catch (SQLException e) {
+                failed = true;
+                logger.error("Failed to execute query: {} vs {}", sql1, sql2, e);
+                return false;
+            }
             
-            while (rs.next()) {
-                List<Object> row = new ArrayList<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    row.add(rs.getObject(i));
+            // 按两边的列类型为每列选定比较方式，列数不同时为null
+            side = 0;
+            ResultSetRowMatcher matcher = ResultSetRowMatcher.compile(rs1.getMetaData(), rs2.getMetaData(), 
+                                                                      ColumnarResult.isDynamicallyTyped(conn));
+            
+            while (true) {
+                long start = System.nanoTime();
+                side = 1;
+                boolean has1 = rs1.next();
+                long split = System.nanoTime();
+                side = 2;
+                boolean has2 = rs2.next();
+                side = 0;
+                nanos1 += split - start;
+                nanos2 += System.nanoTime() - split;
+                if (has1) rows1++;
+                if (has2) rows2++;
+                if (has1 != has2) {
+                    return false;
+                }
+                if (!has1) {
+                    return true;
+                }
+                if (matcher == null || !matcher.currentRowsEqual(rs1, rs2)) {
+                    return false;
                 }
-                results.add(row);
             }
             
-            return results;
-            
         } catch (SQLException e) {
-            logger.error("Failed to execute query: {}", sql, e);
-            return null;
+            failed = true;
+            logger.error("Failed to execute and compare queries: {} vs {}", sql1, sql2, e);
+            return false;
+        } finally {
+            recordExecution(false, nanos1, rows1, 0);
+            recordExecution(true, nanos2, rows2, 0);
+            event1.finish(sql1, false, rows1, 0, !(failed && side != 2));
+            if (event2 != null) {
+                event2.finish(sql2, true, rows2, 0, !(failed && side != 1));
+            }
         }
     }
     
-    private boolean compareResultSets(List<List<Object>> result1, List<List<Object>> result2) {
-        if (result1.size() != result2.size()) {
-            return false;
+    /**
+     * 等价SQL的执行评估：只执行标准SQL，标准SQL能执行即视为匹配
+     */
+    private boolean executeEquivalent(Connection conn, String predictedSql, String goldSql, boolean ordered) {
+        if (verifyEquivalentExecution) {
+            boolean match = ordered ? compareOrdered(conn, predictedSql, goldSql) 
+                                    : compareUnordered(conn, predictedSql, goldSql);
+            if (!match) {
+                logger.warn("Equivalent SQL produced different results: {} vs {}", predictedSql, goldSql);
+            }
+            return match;
         }
         
-        // 对结果进行排序以便比较
-        List<List<Object>> sorted1 = result1.stream()
-            .map(row -> new ArrayList<>(row))
-            .sorted(this::compareRows)
-            .collect(Collectors.toList());
-            
-        List<List<Object>> sorted2 = result2.stream()
-            .map(row -> new ArrayList<>(row))
-            .sorted(this::compareRows)
-            .collect(Collectors.toList());
-        
-        // 逐行比较
-        for (int i = 0; i < sorted1.size(); i++) {
-            List<Object> row1 = sorted1.get(i);
-            List<Object> row2 = sorted2.get(i);
-            
-            if (row1.size() != row2.size()) {
-                return false;
-            }
-            
-            for (int j = 0; j < row1.size(); j++) {
-                if (!Objects.equals(row1.get(j), row2.get(j))) {
-                    // 特殊处理数字类型的比较
-                    if (!compareValues(row1.get(j), row2.get(j))) {
-                        return false;
-                    }
-                }
+        // 完整读取标准SQL的结果，确认其可以执行
+        QueryExecutionEvent event = new QueryExecutionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long rows = 0;
+        boolean success = false;
+        try (Statement stmt = StreamingFetch.createStatement(conn);
+             ResultSet rs = stmt.executeQuery(goldSql)) {
+            while (rs.next()) {
+                // 不保存结果
+                rows++;
             }
+            recordExecution(true, System.nanoTime() - start, rows, 0);
+            success = true;
+            return true;
+        } catch (SQLException e) {
+            logger.error("Failed to execute query: {}", goldSql, e);
+            return false;
+        } finally {
+            event.finish(goldSql, true, rows, 0, success);
         }
-        
-        return true;
     }
     
-    private int compareRows(List<Object> row1, List<Object> row2) {
-        for (int i = 0; i < Math.min(row1.size(), row2.size()); i++) {
-            Object val1 = row1.get(i);
-            Object val2 = row2.get(i);
-            
-            if (val1 == null && val2 == null) continue;
-            if (val1 == null) return -1;
-            if (val2 == null) return 1;
+    private SpillableResult executeQuery(Connection conn, String sql, boolean gold) {
+        QueryExecutionEvent event = new QueryExecutionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        SpillableResult result = null;
+        try (Statement stmt = StreamingFetch.createStatement(conn)) {
+            var rs = stmt.executeQuery(sql);
+            result = SpillableResult.read(rs, ColumnarResult.isDynamicallyTyped(conn), null, spillThresholdBytes);
+            recordExecution(gold, System.nanoTime() - start, result.getRowCount(), result.getMaterializedBytes());
+            return result;
             
-            if (val1 instanceof Comparable && val2 instanceof Comparable) {
-                try {
-                    @SuppressWarnings("unchecked")
-                    int cmp = ((Comparable<Object>) val1).compareTo(val2);
-                    if (cmp != 0) return cmp;
-                } catch (ClassCastException e) {
-                    // 如果类型不兼容，转换为字符串比较
-                    int cmp = val1.toString().compareTo(val2.toString());
-                    if (cmp != 0) return cmp;
-                }
+        } catch (SQLException e) {
+            logger.error("Failed to execute query: {}", sql, e);
+            return null;
+        } finally {
+            if (result != null) {
+                event.finish(sql, gold, result.getRowCount(), result.getMaterializedBytes(), true);
             } else {
-                int cmp = val1.toString().compareTo(val2.toString());
-                if (cmp != 0) return cmp;
+                event.finish(sql, gold, 0, 0, false);
             }
         }
-        
-        return Integer.compare(row1.size(), row2.size());
     }
     
-    private boolean compareValues(Object val1, Object val2) {
-        if (val1 == null && val2 == null) return true;
-        if (val1 == null || val2 == null) return false;
-        
-        // 数字类型的特殊处理
-        if (val1 instanceof Number && val2 instanceof Number) {
-            double d1 = ((Number) val1).doubleValue();
-            double d2 = ((Number) val2).doubleValue();
-            return Math.abs(d1 - d2) < 1e-9; // 浮点数比较
+    /**
+     * 记录到当前线程正在评估的项，未开始记录时不做任何事
+     */
+    private void recordExecution(boolean gold, long nanos, long rows, long bytes) {
+        ExecutionMetrics metrics = itemMetrics.get();
+        if (metrics == null) {
+            return;
         }
-        
-        // 字符串比较（忽略大小写）
-        if (val1 instanceof String && val2 instanceof String) {
-            return ((String) val1).equalsIgnoreCase((String) val2);
+        if (gold) {
+            metrics.recordGold(nanos, rows, bytes);
+        } else {
+            metrics.recordPred(nanos, rows, bytes);
         }
-        
-        return Objects.equals(val1, val2);
+    }
+    
+    private boolean compareResultSets(SpillableResult result1, SpillableResult result2) throws IOException {
+        // 排序后逐行比较，数值允许误差，字符串忽略大小写
+        return result1.matchesUnordered(result2);
     }
     
     // 评估方法的完整实现
     
-    private PartialScore evaluateSelect(SqlStructure predicted, SqlStructure gold) {
-        if (gold.getSelect() == null && predicted.getSelect() == null) {
+    private EvaluationResult evaluatePartialMatch(ScoringView predicted, ScoringView gold) {
+        Map<String, PartialScore> partialScores = new HashMap<>();
+        
+        // 评估SELECT子句
+        PartialScore selectScore = evaluateSelect(predicted, gold);
+        partialScores.put(ScoreComponent.SELECT.getValue(), selectScore);
+        
+        PartialScore selectNoAggScore = evaluateSelectNoAgg(predicted, gold);
+        partialScores.put(ScoreComponent.SELECT_NO_AGG.getValue(), selectNoAggScore);
+        
+        // 评估WHERE子句
+        PartialScore whereScore = evaluateWhere(predicted, gold);
+        partialScores.put(ScoreComponent.WHERE.getValue(), whereScore);
+        
+        PartialScore whereNoOpScore = evaluateWhereNoOp(predicted, gold);
+        partialScores.put(ScoreComponent.WHERE_NO_OP.getValue(), whereNoOpScore);
+        
+        // 评估GROUP BY子句
+        PartialScore groupScore = evaluateGroup(predicted, gold);
+        partialScores.put(ScoreComponent.GROUP_NO_HAVING.getValue(), groupScore);
+        
+        PartialScore groupHavingScore = evaluateGroupHaving(predicted, gold);
+        partialScores.put(ScoreComponent.GROUP.getValue(), groupHavingScore);
+        
+        // 评估ORDER BY子句
+        PartialScore orderScore = evaluateOrder(predicted, gold);
+        partialScores.put(ScoreComponent.ORDER.getValue(), orderScore);
+        
+        // 评估AND/OR
+        PartialScore andOrScore = evaluateAndOr(predicted, gold);
+        partialScores.put(ScoreComponent.AND_OR.getValue(), andOrScore);
+        
+        // 评估IUEN (INTERSECT/UNION/EXCEPT/NESTED)
+        PartialScore iuenScore = evaluateIUEN(predicted, gold);
+        partialScores.put(ScoreComponent.IUEN.getValue(), iuenScore);
+        
+        // 评估关键字
+        PartialScore keywordsScore = evaluateKeywords(predicted, gold);
+        partialScores.put(ScoreComponent.KEYWORDS.getValue(), keywordsScore);
+        
+        return new EvaluationResult(partialScores);
+    }
+    
+    private PartialScore evaluateSelect(ScoringView predicted, ScoringView gold) {
+        if (!gold.hasSelect() && !predicted.hasSelect()) {
             return new PartialScore(0, 0, 1.0, 1.0, 1.0);
         }
         
-        if (gold.getSelect() == null || predicted.getSelect() == null) {
+        if (!gold.hasSelect() || !predicted.hasSelect()) {
             return new PartialScore(0, 0, 0.0, 0.0, 0.0);
         }
         
-        List<SelectClause.SelectItem> goldItems = gold.getSelect().getSelectItems();
-        List<SelectClause.SelectItem> predItems = predicted.getSelect().getSelectItems();
+        int goldCount = gold.selectCount();
+        int predCount = predicted.selectCount();
         
-        if (goldItems == null && predItems == null) {
+        if (goldCount < 0 && predCount < 0) {
             return new PartialScore(0, 0, 1.0, 1.0, 1.0);
         }
         
-        if (goldItems == null || predItems == null) {
+        if (goldCount < 0 || predCount < 0) {
             return new PartialScore(0, 0, 0.0, 0.0, 0.0);
         }
         
-        int goldCount = goldItems.size();
-        int predCount = predItems.size();
         int matchCount = 0;
         
         // 简单的匹配逻辑：比较聚合函数ID
-        for (SelectClause.SelectItem goldItem : goldItems) {
-            for (SelectClause.SelectItem predItem : predItems) {
-                if (goldItem.getAggId() == predItem.getAggId()) {
+        for (int i = 0; i < goldCount; i++) {
+            for (int j = 0; j < predCount; j++) {
+                if (gold.selectAggId(i) == predicted.selectAggId(j)) {
                     matchCount++;
                     break;
                 }
@@ -553,61 +1326,59 @@ public class SpiderEvaluator {
         return calculatePartialScore(matchCount, predCount, goldCount);
     }
     
-    private PartialScore evaluateSelectNoAgg(SqlStructure predicted, SqlStructure gold) {
-        if (gold.getSelect() == null && predicted.getSelect() == null) {
+    private PartialScore evaluateSelectNoAgg(ScoringView predicted, ScoringView gold) {
+        if (!gold.hasSelect() && !predicted.hasSelect()) {
             return new PartialScore(0, 0, 1.0, 1.0, 1.0);
         }
         
-        if (gold.getSelect() == null || predicted.getSelect() == null) {
+        if (!gold.hasSelect() || !predicted.hasSelect()) {
             return new PartialScore(0, 0, 0.0, 0.0, 0.0);
         }
         
-        List<SelectClause.SelectItem> goldItems = gold.getSelect().getSelectItems();
-        List<SelectClause.SelectItem> predItems = predicted.getSelect().getSelectItems();
-        
-        if (goldItems == null && predItems == null) {
+        if (gold.selectCount() < 0 && predicted.selectCount() < 0) {
             return new PartialScore(0, 0, 1.0, 1.0, 1.0);
         }
         
-        if (goldItems == null || predItems == null) {
+        if (gold.selectCount() < 0 || predicted.selectCount() < 0) {
             return new PartialScore(0, 0, 0.0, 0.0, 0.0);
         }
         
         // 过滤掉聚合函数，只比较列
-        List<SelectClause.SelectItem> goldNoAgg = goldItems.stream()
-            .filter(item -> item.getAggId() == 0) // 0 表示 "none"
-            .toList();
-        List<SelectClause.SelectItem> predNoAgg = predItems.stream()
-            .filter(item -> item.getAggId() == 0)
-            .toList();
-        
-        int goldCount = goldNoAgg.size();
-        int predCount = predNoAgg.size();
+        int goldCount = countNoAggItems(gold);
+        int predCount = countNoAggItems(predicted);
         int matchCount = Math.min(goldCount, predCount); // 简化匹配逻辑
         
         return calculatePartialScore(matchCount, predCount, goldCount);
     }
     
-    private PartialScore evaluateWhere(SqlStructure predicted, SqlStructure gold) {
-        List<ConditionUnit> goldWhere = gold.getWhere();
-        List<ConditionUnit> predWhere = predicted.getWhere();
+    private int countNoAggItems(ScoringView sql) {
+        int count = 0;
+        for (int i = 0; i < sql.selectCount(); i++) {
+            if (sql.selectAggId(i) == 0) { // 0 表示 "none"
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    private PartialScore evaluateWhere(ScoringView predicted, ScoringView gold) {
+        int goldCount = gold.whereCount();
+        int predCount = predicted.whereCount();
         
-        if ((goldWhere == null || goldWhere.isEmpty()) && (predWhere == null || predWhere.isEmpty())) {
+        if (goldCount <= 0 && predCount <= 0) {
             return new PartialScore(0, 0, 1.0, 1.0, 1.0);
         }
         
-        if (goldWhere == null || predWhere == null) {
+        if (goldCount < 0 || predCount < 0) {
             return new PartialScore(0, 0, 0.0, 0.0, 0.0);
         }
         
-        int goldCount = goldWhere.size();
-        int predCount = predWhere.size();
         int matchCount = 0;
         
         // 简单匹配：比较操作符ID
-        for (ConditionUnit goldCond : goldWhere) {
-            for (ConditionUnit predCond : predWhere) {
-                if (goldCond.getOpId() == predCond.getOpId()) {
+        for (int i = 0; i < goldCount; i++) {
+            for (int j = 0; j < predCount; j++) {
+                if (gold.whereOpId(i) == predicted.whereOpId(j)) {
                     matchCount++;
                     break;
                 }
@@ -617,64 +1388,31 @@ public class SpiderEvaluator {
         return calculatePartialScore(matchCount, predCount, goldCount);
     }
     
-    private PartialScore evaluateWhereNoOp(SqlStructure predicted, SqlStructure gold) {
+    private PartialScore evaluateWhereNoOp(ScoringView predicted, ScoringView gold) {
         // WHERE子句评估但不考虑操作符
-        List<ConditionUnit> goldWhere = gold.getWhere();
-        List<ConditionUnit> predWhere = predicted.getWhere();
-        
-        if ((goldWhere == null || goldWhere.isEmpty()) && (predWhere == null || predWhere.isEmpty())) {
-            return new PartialScore(0, 0, 1.0, 1.0, 1.0);
-        }
-        
-        if (goldWhere == null || predWhere == null) {
-            return new PartialScore(0, 0, 0.0, 0.0, 0.0);
-        }
-        
-        int goldCount = goldWhere.size();
-        int predCount = predWhere.size();
-        int matchCount = Math.min(goldCount, predCount); // 简化匹配
-        
-        return calculatePartialScore(matchCount, predCount, goldCount);
+        return evaluateCountOnly(predicted.whereCount(), gold.whereCount());
     }
     
-    private PartialScore evaluateGroup(SqlStructure predicted, SqlStructure gold) {
-        List<ColUnit> goldGroup = gold.getGroupBy();
-        List<ColUnit> predGroup = predicted.getGroupBy();
-        
-        if ((goldGroup == null || goldGroup.isEmpty()) && (predGroup == null || predGroup.isEmpty())) {
-            return new PartialScore(0, 0, 1.0, 1.0, 1.0);
-        }
-        
-        if (goldGroup == null || predGroup == null) {
-            return new PartialScore(0, 0, 0.0, 0.0, 0.0);
-        }
-        
-        int goldCount = goldGroup.size();
-        int predCount = predGroup.size();
-        int matchCount = Math.min(goldCount, predCount); // 简化匹配
-        
-        return calculatePartialScore(matchCount, predCount, goldCount);
+    private PartialScore evaluateGroup(ScoringView predicted, ScoringView gold) {
+        return evaluateCountOnly(predicted.groupByCount(), gold.groupByCount());
     }
     
-    private PartialScore evaluateGroupHaving(SqlStructure predicted, SqlStructure gold) {
+    private PartialScore evaluateGroupHaving(ScoringView predicted, ScoringView gold) {
         // GROUP BY + HAVING 组合评估
         PartialScore groupScore = evaluateGroup(predicted, gold);
         
-        List<ConditionUnit> goldHaving = gold.getHaving();
-        List<ConditionUnit> predHaving = predicted.getHaving();
+        int goldCount = gold.havingCount();
+        int predCount = predicted.havingCount();
         
-        if ((goldHaving == null || goldHaving.isEmpty()) && (predHaving == null || predHaving.isEmpty())) {
+        if (goldCount <= 0 && predCount <= 0) {
             return groupScore; // 只有GROUP BY分数
         }
         
-        if (goldHaving == null || predHaving == null) {
+        if (goldCount < 0 || predCount < 0) {
             return new PartialScore(0, 0, 0.0, 0.0, 0.0);
         }
         
-        int goldCount = goldHaving.size();
-        int predCount = predHaving.size();
         int matchCount = Math.min(goldCount, predCount);
-        
         PartialScore havingScore = calculatePartialScore(matchCount, predCount, goldCount);
         
         // 组合GROUP BY和HAVING分数
@@ -682,32 +1420,42 @@ public class SpiderEvaluator {
         return new PartialScore(goldCount, predCount, combinedF1, combinedF1, combinedF1);
     }
     
-    private PartialScore evaluateOrder(SqlStructure predicted, SqlStructure gold) {
-        OrderByClause goldOrder = gold.getOrderBy();
-        OrderByClause predOrder = predicted.getOrderBy();
+    /**
+     * 仅比较数量的子句评估，count为-1表示null
+     */
+    private PartialScore evaluateCountOnly(int predCount, int goldCount) {
+        if (goldCount <= 0 && predCount <= 0) {
+            return new PartialScore(0, 0, 1.0, 1.0, 1.0);
+        }
+        
+        if (goldCount < 0 || predCount < 0) {
+            return new PartialScore(0, 0, 0.0, 0.0, 0.0);
+        }
         
-        if (goldOrder == null && predOrder == null) {
+        int matchCount = Math.min(goldCount, predCount); // 简化匹配
+        return calculatePartialScore(matchCount, predCount, goldCount);
+    }
+    
+    private PartialScore evaluateOrder(ScoringView predicted, ScoringView gold) {
+        if (!gold.hasOrderBy() && !predicted.hasOrderBy()) {
             return new PartialScore(0, 0, 1.0, 1.0, 1.0);
         }
         
-        if (goldOrder == null || predOrder == null) {
+        if (!gold.hasOrderBy() || !predicted.hasOrderBy()) {
             return new PartialScore(0, 0, 0.0, 0.0, 0.0);
         }
         
         // 简单比较：排序类型是否一致
-        boolean typeMatch = Objects.equals(goldOrder.getOrderType(), predOrder.getOrderType());
+        boolean typeMatch = Objects.equals(gold.orderType(), predicted.orderType());
         
-        List<ValUnit> goldVals = goldOrder.getValUnits();
-        List<ValUnit> predVals = predOrder.getValUnits();
-        
-        int goldCount = goldVals != null ? goldVals.size() : 0;
-        int predCount = predVals != null ? predVals.size() : 0;
+        int goldCount = Math.max(0, gold.orderByCount());
+        int predCount = Math.max(0, predicted.orderByCount());
         int matchCount = typeMatch ? Math.min(goldCount, predCount) : 0;
         
         return calculatePartialScore(matchCount, predCount, goldCount);
     }
     
-    private PartialScore evaluateAndOr(SqlStructure predicted, SqlStructure gold) {
+    private PartialScore evaluateAndOr(ScoringView predicted, ScoringView gold) {
         // 评估AND/OR逻辑操作符
         int goldAndOr = countAndOrOperators(gold);
         int predAndOr = countAndOrOperators(predicted);
@@ -720,7 +1468,7 @@ public class SpiderEvaluator {
         return calculatePartialScore(matchCount, predAndOr, goldAndOr);
     }
     
-    private PartialScore evaluateIUEN(SqlStructure predicted, SqlStructure gold) {
+    private PartialScore evaluateIUEN(ScoringView predicted, ScoringView gold) {
         // 评估INTERSECT/UNION/EXCEPT/NESTED
         int goldIuen = countIuenOperators(gold);
         int predIuen = countIuenOperators(predicted);
@@ -733,21 +1481,18 @@ public class SpiderEvaluator {
         return calculatePartialScore(matchCount, predIuen, goldIuen);
     }
     
-    private PartialScore evaluateKeywords(SqlStructure predicted, SqlStructure gold) {
+    private PartialScore evaluateKeywords(ScoringView predicted, ScoringView gold) {
         // 评估SQL关键字使用
-        Set<String> goldKeywords = extractKeywords(gold);
-        Set<String> predKeywords = extractKeywords(predicted);
+        int goldKeywords = keywordMask(gold);
+        int predKeywords = keywordMask(predicted);
         
-        if (goldKeywords.isEmpty() && predKeywords.isEmpty()) {
+        if (goldKeywords == 0 && predKeywords == 0) {
             return new PartialScore(0, 0, 1.0, 1.0, 1.0);
         }
         
-        Set<String> intersection = new HashSet<>(goldKeywords);
-        intersection.retainAll(predKeywords);
-        
-        int matchCount = intersection.size();
-        int goldCount = goldKeywords.size();
-        int predCount = predKeywords.size();
+        int matchCount = Integer.bitCount(goldKeywords & predKeywords);
+        int goldCount = Integer.bitCount(goldKeywords);
+        int predCount = Integer.bitCount(predKeywords);
         
         return calculatePartialScore(matchCount, predCount, goldCount);
     }
@@ -770,40 +1515,34 @@ public class SpiderEvaluator {
         return new PartialScore(goldCount, predCount, precision, recall, f1);
     }
     
-    private int countAndOrOperators(SqlStructure sql) {
-        int count = 0;
+    private int countAndOrOperators(ScoringView sql) {
         // 简化实现：统计WHERE和HAVING中的条件数量作为AND/OR的近似
-        if (sql.getWhere() != null) {
-            count += Math.max(0, sql.getWhere().size() - 1);
-        }
-        if (sql.getHaving() != null) {
-            count += Math.max(0, sql.getHaving().size() - 1);
-        }
-        return count;
+        return Math.max(0, sql.whereCount() - 1) + Math.max(0, sql.havingCount() - 1);
     }
     
-    private int countIuenOperators(SqlStructure sql) {
+    private int countIuenOperators(ScoringView sql) {
         int count = 0;
-        if (sql.getIntersect() != null) count++;
-        if (sql.getUnion() != null) count++;
-        if (sql.getExcept() != null) count++;
+        if (sql.hasIntersect()) count++;
+        if (sql.hasUnion()) count++;
+        if (sql.hasExcept()) count++;
         return count;
     }
     
-    private Set<String> extractKeywords(SqlStructure sql) {
-        Set<String> keywords = new HashSet<>();
-        
-        if (sql.getSelect() != null) keywords.add("select");
-        if (sql.getFrom() != null) keywords.add("from");
-        if (sql.getWhere() != null && !sql.getWhere().isEmpty()) keywords.add("where");
-        if (sql.getGroupBy() != null && !sql.getGroupBy().isEmpty()) keywords.add("group");
-        if (sql.getHaving() != null && !sql.getHaving().isEmpty()) keywords.add("having");
-        if (sql.getOrderBy() != null) keywords.add("order");
-        if (sql.getLimit() != null) keywords.add("limit");
-        if (sql.getIntersect() != null) keywords.add("intersect");
-        if (sql.getUnion() != null) keywords.add("union");
-        if (sql.getExcept() != null) keywords.add("except");
-        
-        return keywords;
+    /**
+     * 使用的关键字集合（select、from、where、group、having、order、limit、intersect、union、except）的位掩码
+     */
+    private int keywordMask(ScoringView sql) {
+        int mask = 0;
+        if (sql.hasSelect()) mask |= 1;
+        if (sql.hasFrom()) mask |= 1 << 1;
+        if (sql.whereCount() > 0) mask |= 1 << 2;
+        if (sql.groupByCount() > 0) mask |= 1 << 3;
+        if (sql.havingCount() > 0) mask |= 1 << 4;
+        if (sql.hasOrderBy()) mask |= 1 << 5;
+        if (sql.hasLimit()) mask |= 1 << 6;
+        if (sql.hasIntersect()) mask |= 1 << 7;
+        if (sql.hasUnion()) mask |= 1 << 8;
+        if (sql.hasExcept()) mask |= 1 << 9;
+        return mask;
     }
-} 
\ No newline at end of file
+} 
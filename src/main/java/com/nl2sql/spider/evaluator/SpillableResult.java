@@ -0,0 +1,561 @@
+package com.nl2sql.spider.evaluator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntSupplier;
+
+/**
+ * 可溢写到磁盘的查询结果
+ * 结果在内存上限内时直接保存为ColumnarResult；超过上限时按块读取，每块排序后写入临时文件作为一个有序段，
+ * 比较时通过内存映射读取各段并多路归并，逐行与另一结果比较，堆内存占用与结果大小无关
+ */
+final class SpillableResult implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpillableResult.class);
+
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_INTEGER = 1;
+    private static final byte TAG_LONG = 2;
+    private static final byte TAG_SHORT = 3;
+    private static final byte TAG_BYTE = 4;
+    private static final byte TAG_DOUBLE = 5;
+    private static final byte TAG_FLOAT = 6;
+    private static final byte TAG_STRING = 7;
+    private static final byte TAG_DECIMAL = 8;
+    private static final byte TAG_BYTES = 9;
+    private static final byte TAG_BOOLEAN = 10;
+    private static final byte TAG_OTHER = 11;
+    private static final byte TAG_BIG_INTEGER = 12;
+    private static final byte TAG_DATE = 13;
+    private static final byte TAG_TIME = 14;
+    private static final byte TAG_TIMESTAMP = 15;
+    private static final byte TAG_LOCAL_DATE = 16;
+    private static final byte TAG_LOCAL_TIME = 17;
+    private static final byte TAG_LOCAL_DATE_TIME = 18;
+    private static final byte TAG_OFFSET_DATE_TIME = 19;
+    private static final byte TAG_SERIALIZED = 20;
+
+    private final ColumnarResult memory;
+    private final Path file;
+    private final List<long[]> runs;
+    private final int rowCount;
+    private final int columnCount;
+    private final long materializedBytes;
+
+    private SpillableResult(ColumnarResult memory, Path file, List<long[]> runs, int rowCount, int columnCount,
+                            long materializedBytes) {
+        this.memory = memory;
+        this.file = file;
+        this.runs = runs;
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.materializedBytes = materializedBytes;
+    }
+
+    /**
+     * 读取结果集，超过内存上限时溢写到临时文件
+     *
+     * @param rs 结果集
+     * @param dynamicTyping 数据库是否为动态类型
+     * @param rowLimit 当前允许的最大行数，为null表示不限制
+     * @param maxBytes 内存上限（字节），不大于0表示不溢写
+     * @return 查询结果；超过行数上限时返回null
+     * @throws SQLException 读取异常
+     */
+    static SpillableResult read(ResultSet rs, boolean dynamicTyping, IntSupplier rowLimit,
+                                long maxBytes) throws SQLException {
+        long chunkBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        ColumnarResult first = ColumnarResult.read(rs, dynamicTyping, rowLimit, chunkBytes);
+        if (first == null) {
+            return null;
+        }
+        if (first.isComplete()) {
+            return new SpillableResult(first, null, null, first.getRowCount(), first.getColumnCount(),
+                                       first.estimatedBytes());
+        }
+
+        Path file = null;
+        try {
+            file = Files.createTempFile("spider-result-", ".spill");
+            List<long[]> runs = new ArrayList<>();
+            int total = 0;
+            int columnCount = first.getColumnCount();
+
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+                RunWriter writer = new RunWriter(out);
+                ColumnarResult chunk = first;
+                while (true) {
+                    runs.add(writer.writeSorted(chunk));
+                    total += chunk.getRowCount();
+                    if (chunk.isComplete()) {
+                        break;
+                    }
+                    int readSoFar = total;
+                    IntSupplier remaining = rowLimit == null ? null : () -> rowLimit.getAsInt() - readSoFar;
+                    chunk = ColumnarResult.read(rs, dynamicTyping, remaining, chunkBytes);
+                    if (chunk == null) {
+                        Files.deleteIfExists(file);
+                        return null;
+                    }
+                }
+            }
+
+            long spilledBytes = Files.size(file);
+            logger.info("Spilled {} rows in {} sorted runs to {} ({} bytes)",
+                       total, runs.size(), file, spilledBytes);
+            return new SpillableResult(null, file, runs, total, columnCount, spilledBytes);
+
+        } catch (IOException e) {
+            deleteQuietly(file);
+            throw new SQLException("Failed to spill result set to disk", e);
+        } catch (SQLException | RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * 结果占用的字节数：内存中为估算值，溢写时为文件大小
+     */
+    long getMaterializedBytes() {
+        return materializedBytes;
+    }
+
+    boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * 不考虑行顺序地比较两个结果
+     */
+    boolean matchesUnordered(SpillableResult other) throws IOException {
+        if (rowCount != other.rowCount) {
+            return false;
+        }
+        if (rowCount == 0) {
+            return true;
+        }
+        if (columnCount != other.columnCount) {
+            return false;
+        }
+        if (memory != null && other.memory != null) {
+            return memory.matchesUnordered(other.memory);
+        }
+
+        try (RowCursor left = openSorted(); RowCursor right = other.openSorted()) {
+            while (left.next()) {
+                if (!right.next() || !ColumnarResult.boxedRowsEqual(left.row(), right.row())) {
+                    return false;
+                }
+            }
+            return !right.next();
+        }
+    }
+
+    private RowCursor openSorted() throws IOException {
+        if (memory != null) {
+            return new MemoryCursor(memory);
+        }
+        return new MergeCursor(file, runs);
+    }
+
+    @Override
+    public void close() {
+        deleteQuietly(file);
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete spill file {}: {}", file, e.getMessage());
+        }
+    }
+
+    // 写入
+
+    /**
+     * 有序段写入器，每行格式为：int字节数 + 各单元格（类型标记 + 值）
+     * 值按类型保存，读回后与内存中的值类型相同，排序和相等判断与内存结果一致
+     */
+    private static final class RunWriter {
+        private final OutputStream out;
+        private final ByteArrayOutputStream rowBytes = new ByteArrayOutputStream(256);
+        private final DataOutputStream rowData = new DataOutputStream(rowBytes);
+        private final DataOutputStream header;
+        private long position;
+
+        RunWriter(OutputStream out) {
+            this.out = out;
+            this.header = new DataOutputStream(out);
+        }
+
+        /**
+         * 排序后写入一块，返回{起始偏移, 行数}
+         */
+        long[] writeSorted(ColumnarResult chunk) throws IOException {
+            long start = position;
+            int[] order = chunk.sortedOrder();
+            for (int row : order) {
+                rowBytes.reset();
+                for (int column = 0; column < chunk.getColumnCount(); column++) {
+                    writeValue(rowData, chunk.getObject(column, row));
+                }
+                rowData.flush();
+                header.writeInt(rowBytes.size());
+                rowBytes.writeTo(out);
+                position += Integer.BYTES + rowBytes.size();
+            }
+            return new long[] {start, order.length};
+        }
+
+        private static void writeValue(DataOutputStream data, Object value) throws IOException {
+            if (value == null) {
+                data.writeByte(TAG_NULL);
+            } else if (value instanceof Integer) {
+                data.writeByte(TAG_INTEGER);
+                data.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                data.writeByte(TAG_LONG);
+                data.writeLong((Long) value);
+            } else if (value instanceof Short) {
+                data.writeByte(TAG_SHORT);
+                data.writeShort((Short) value);
+            } else if (value instanceof Byte) {
+                data.writeByte(TAG_BYTE);
+                data.writeByte((Byte) value);
+            } else if (value instanceof Double) {
+                data.writeByte(TAG_DOUBLE);
+                data.writeDouble((Double) value);
+            } else if (value instanceof Float) {
+                data.writeByte(TAG_FLOAT);
+                data.writeFloat((Float) value);
+            } else if (value instanceof String) {
+                data.writeByte(TAG_STRING);
+                writeChars(data, (String) value);
+            } else if (value instanceof BigDecimal) {
+                BigDecimal decimal = (BigDecimal) value;
+                data.writeByte(TAG_DECIMAL);
+                data.writeInt(decimal.scale());
+                writeBytes(data, decimal.unscaledValue().toByteArray());
+            } else if (value instanceof BigInteger) {
+                data.writeByte(TAG_BIG_INTEGER);
+                writeBytes(data, ((BigInteger) value).toByteArray());
+            } else if (value instanceof Timestamp) {
+                Timestamp timestamp = (Timestamp) value;
+                data.writeByte(TAG_TIMESTAMP);
+                data.writeLong(timestamp.getTime());
+                data.writeInt(timestamp.getNanos());
+            } else if (value instanceof Date) {
+                data.writeByte(TAG_DATE);
+                data.writeLong(((Date) value).getTime());
+            } else if (value instanceof Time) {
+                data.writeByte(TAG_TIME);
+                data.writeLong(((Time) value).getTime());
+            } else if (value instanceof LocalDate) {
+                data.writeByte(TAG_LOCAL_DATE);
+                data.writeLong(((LocalDate) value).toEpochDay());
+            } else if (value instanceof LocalTime) {
+                data.writeByte(TAG_LOCAL_TIME);
+                data.writeLong(((LocalTime) value).toNanoOfDay());
+            } else if (value instanceof LocalDateTime) {
+                LocalDateTime dateTime = (LocalDateTime) value;
+                data.writeByte(TAG_LOCAL_DATE_TIME);
+                data.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+                data.writeInt(dateTime.getNano());
+            } else if (value instanceof OffsetDateTime) {
+                OffsetDateTime dateTime = (OffsetDateTime) value;
+                data.writeByte(TAG_OFFSET_DATE_TIME);
+                data.writeLong(dateTime.toEpochSecond());
+                data.writeInt(dateTime.getNano());
+                data.writeInt(dateTime.getOffset().getTotalSeconds());
+            } else if (value instanceof byte[]) {
+                byte[] bytes = (byte[]) value;
+                data.writeByte(TAG_BYTES);
+                data.writeInt(bytes.length);
+                data.write(bytes);
+            } else if (value instanceof Boolean) {
+                data.writeByte(TAG_BOOLEAN);
+                data.writeBoolean((Boolean) value);
+            } else if (value instanceof Serializable) {
+                // 其余类型按Java序列化保存，读回后与内存中的值类型相同
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(value);
+                }
+                data.writeByte(TAG_SERIALIZED);
+                writeBytes(data, bytes.toByteArray());
+            } else {
+                // 无法序列化的类型只能按字符串形式保存
+                data.writeByte(TAG_OTHER);
+                writeChars(data, value.toString());
+            }
+        }
+
+        private static void writeBytes(DataOutputStream data, byte[] bytes) throws IOException {
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+
+        private static void writeChars(DataOutputStream data, String value) throws IOException {
+            data.writeInt(value.length());
+            data.writeChars(value);
+        }
+    }
+
+    // 读取
+
+    private interface RowCursor extends Closeable {
+        boolean next() throws IOException;
+
+        Object[] row();
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * 内存结果按排序顺序逐行装箱
+     */
+    private static final class MemoryCursor implements RowCursor {
+        private final ColumnarResult result;
+        private final int[] order;
+        private int index = -1;
+
+        MemoryCursor(ColumnarResult result) {
+            this.result = result;
+            this.order = result.sortedOrder();
+        }
+
+        @Override
+        public boolean next() {
+            return ++index < order.length;
+        }
+
+        @Override
+        public Object[] row() {
+            return result.boxedRow(order[index]);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * 多个有序段的归并游标，键相同时按段顺序输出以保持稳定
+     */
+    private static final class MergeCursor implements RowCursor {
+        private final FileChannel channel;
+        private final PriorityQueue<RunReader> heap;
+        private Object[] current;
+
+        MergeCursor(Path file, List<long[]> runs) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.heap = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+                int cmp = ColumnarResult.compareBoxedRows(a.head, b.head);
+                return cmp != 0 ? cmp : Integer.compare(a.index, b.index);
+            });
+            for (int i = 0; i < runs.size(); i++) {
+                RunReader reader = new RunReader(channel, i, runs.get(i)[0], runs.get(i)[1]);
+                if (reader.advance()) {
+                    heap.add(reader);
+                }
+            }
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            RunReader reader = heap.poll();
+            if (reader == null) {
+                return false;
+            }
+            current = reader.head;
+            if (reader.advance()) {
+                heap.add(reader);
+            }
+            return true;
+        }
+
+        @Override
+        public Object[] row() {
+            return current;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * 单个有序段的读取器，按窗口内存映射文件
+     */
+    private static final class RunReader {
+        private final FileChannel channel;
+        private final int index;
+        private long remainingRows;
+        private long windowStart;
+        private MappedByteBuffer window;
+        Object[] head;
+
+        RunReader(FileChannel channel, int index, long offset, long rows) {
+            this.channel = channel;
+            this.index = index;
+            this.windowStart = offset;
+            this.remainingRows = rows;
+        }
+
+        boolean advance() throws IOException {
+            if (remainingRows == 0) {
+                head = null;
+                return false;
+            }
+            remainingRows--;
+            ensure(Integer.BYTES);
+            int length = window.getInt();
+            ensure(length);
+            head = readRow(length);
+            return true;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (window != null && window.remaining() >= bytes) {
+                return;
+            }
+            long position = window == null ? windowStart : windowStart + window.position();
+            long size = Math.min(Math.max(MAP_WINDOW, bytes), channel.size() - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            windowStart = position;
+        }
+
+        private Object[] readRow(int length) {
+            int end = window.position() + length;
+            List<Object> values = new ArrayList<>();
+            while (window.position() < end) {
+                values.add(readValue());
+            }
+            return values.toArray();
+        }
+
+        private Object readValue() {
+            byte tag = window.get();
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_INTEGER:
+                    return window.getInt();
+                case TAG_LONG:
+                    return window.getLong();
+                case TAG_SHORT:
+                    return window.getShort();
+                case TAG_BYTE:
+                    return window.get();
+                case TAG_DOUBLE:
+                    return window.getDouble();
+                case TAG_FLOAT:
+                    return window.getFloat();
+                case TAG_STRING:
+                case TAG_OTHER:
+                    return readChars();
+                case TAG_DECIMAL:
+                    int scale = window.getInt();
+                    return new BigDecimal(new BigInteger(readBytes()), scale);
+                case TAG_BIG_INTEGER:
+                    return new BigInteger(readBytes());
+                case TAG_TIMESTAMP:
+                    Timestamp timestamp = new Timestamp(window.getLong());
+                    timestamp.setNanos(window.getInt());
+                    return timestamp;
+                case TAG_DATE:
+                    return new Date(window.getLong());
+                case TAG_TIME:
+                    return new Time(window.getLong());
+                case TAG_LOCAL_DATE:
+                    return LocalDate.ofEpochDay(window.getLong());
+                case TAG_LOCAL_TIME:
+                    return LocalTime.ofNanoOfDay(window.getLong());
+                case TAG_LOCAL_DATE_TIME:
+                    long seconds = window.getLong();
+                    return LocalDateTime.ofEpochSecond(seconds, window.getInt(), ZoneOffset.UTC);
+                case TAG_OFFSET_DATE_TIME:
+                    Instant instant = Instant.ofEpochSecond(window.getLong(), window.getInt());
+                    return OffsetDateTime.ofInstant(instant, ZoneOffset.ofTotalSeconds(window.getInt()));
+                case TAG_SERIALIZED:
+                    return deserialize(readBytes());
+                case TAG_BYTES:
+                    return readBytes();
+                case TAG_BOOLEAN:
+                    return window.get() != 0;
+                default:
+                    throw new UncheckedIOException(new IOException("Corrupted spill file, unknown tag: " + tag));
+            }
+        }
+
+        private byte[] readBytes() {
+            byte[] bytes = new byte[window.getInt()];
+            window.get(bytes);
+            return bytes;
+        }
+
+        private static Object deserialize(byte[] bytes) {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return in.readObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (ClassNotFoundException e) {
+                throw new UncheckedIOException(new IOException("Corrupted spill file", e));
+            }
+        }
+
+        private String readChars() {
+            char[] chars = new char[window.getInt()];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = window.getChar();
+            }
+            return new String(chars);
+        }
+    }
+}
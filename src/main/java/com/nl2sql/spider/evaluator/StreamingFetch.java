@@ -0,0 +1,94 @@
+package com.nl2sql.spider.evaluator;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 按数据库类型设置执行评估的结果读取方式
+ * 远程数据库的驱动默认在第一次next()之前把整个结果读到客户端，这里改为每次从服务端游标取一块，
+ * 配合逐行或分块溢写的比较，客户端内存与结果大小无关
+ *
+ * <ul>
+ *   <li>PostgreSQL：只有关闭自动提交时fetchSize才生效，评估自己创建的连接在prepare()中关闭自动提交</li>
+ *   <li>MySQL：需要连接属性useCursorFetch=true（DatabaseConnectionManager默认设置），fetchSize大于0时使用服务端游标</li>
+ *   <li>Oracle默认每次只取10行，SQL Server按fetchSize使用服务端游标，均调大到FETCH_SIZE</li>
+ *   <li>SQLite、H2等嵌入式数据库本身逐行读取，不做设置</li>
+ * </ul>
+ */
+final class StreamingFetch {
+
+    /**
+     * 每次从服务端读取的行数
+     */
+    static final int FETCH_SIZE = 1000;
+
+    private enum Dialect {
+        POSTGRESQL, MYSQL, ORACLE, SQLSERVER, EMBEDDED
+    }
+
+    private StreamingFetch() {
+    }
+
+    /**
+     * 设置评估自己创建的连接，使之后创建的语句可以按块读取
+     * 只在自己创建的连接上调用：关闭自动提交后，PostgreSQL中某条语句失败会使同一事务中之后的语句也失败
+     *
+     * @param conn 数据库连接
+     * @throws SQLException 设置失败
+     */
+    static void prepare(Connection conn) throws SQLException {
+        if (dialectOf(conn) == Dialect.POSTGRESQL && conn.getAutoCommit()) {
+            conn.setAutoCommit(false);
+        }
+    }
+
+    /**
+     * 创建只读、只向前的语句并按数据库类型设置fetchSize
+     *
+     * @param conn 数据库连接
+     * @return 语句
+     * @throws SQLException 创建失败
+     */
+    static Statement createStatement(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        int fetchSize = fetchSize(conn);
+        if (fetchSize > 0) {
+            stmt.setFetchSize(fetchSize);
+        }
+        return stmt;
+    }
+
+    private static int fetchSize(Connection conn) throws SQLException {
+        switch (dialectOf(conn)) {
+            case POSTGRESQL:
+                // 自动提交时驱动忽略fetchSize，仍读取全部结果
+                return conn.getAutoCommit() ? 0 : FETCH_SIZE;
+            case MYSQL:
+            case ORACLE:
+            case SQLSERVER:
+                return FETCH_SIZE;
+            default:
+                return 0;
+        }
+    }
+
+    private static Dialect dialectOf(Connection conn) throws SQLException {
+        String product = conn.getMetaData().getDatabaseProductName();
+        if (product == null) {
+            return Dialect.EMBEDDED;
+        }
+        String name = product.toLowerCase();
+        if (name.contains("postgresql")) {
+            return Dialect.POSTGRESQL;
+        } else if (name.contains("mysql") || name.contains("mariadb")) {
+            return Dialect.MYSQL;
+        } else if (name.contains("oracle")) {
+            return Dialect.ORACLE;
+        } else if (name.contains("sql server")) {
+            return Dialect.SQLSERVER;
+        }
+        return Dialect.EMBEDDED;
+    }
+}
@@ -0,0 +1,78 @@
+package com.nl2sql.spider.jfr;
+
+/**
+ * 当前线程正在评估的项（序号和数据库ID）
+ * 评估服务在每项开始时设置、结束时清除，JFR事件据此标明所属的评估项；
+ * 把工作交给其他线程时需用current()取出并在该线程上set
+ */
+public final class ItemContext {
+
+    private static final ThreadLocal<ItemContext> CURRENT = new ThreadLocal<>();
+
+    private final int index;
+    private final String dbId;
+
+    private ItemContext(int index, String dbId) {
+        this.index = index;
+        this.dbId = dbId;
+    }
+
+    /**
+     * 开始评估一项
+     */
+    public static void enter(int index, String dbId) {
+        CURRENT.set(new ItemContext(index, dbId));
+    }
+
+    /**
+     * 结束当前项
+     */
+    public static void exit() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 当前线程的评估项，未设置时为null
+     */
+    public static ItemContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 在当前线程上设置评估项，为null时清除
+     */
+    public static void set(ItemContext context) {
+        if (context == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(context);
+        }
+    }
+
+    /**
+     * 当前评估项的序号，未设置时为-1
+     */
+    static int currentIndex() {
+        ItemContext context = CURRENT.get();
+        return context != null ? context.index : -1;
+    }
+
+    /**
+     * 未指定数据库ID时取当前评估项的
+     */
+    static String currentDbId(String dbId) {
+        if (dbId != null) {
+            return dbId;
+        }
+        ItemContext context = CURRENT.get();
+        return context != null ? context.dbId : null;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getDbId() {
+        return dbId;
+    }
+}
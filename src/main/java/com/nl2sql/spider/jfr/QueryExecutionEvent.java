@@ -0,0 +1,65 @@
+package com.nl2sql.spider.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 执行一条标准SQL或预测SQL并读取结果
+ */
+@Name("com.nl2sql.spider.QueryExecution")
+@Label("Query Execution")
+@Category({"Spider", "Evaluation"})
+@Description("Execution of a gold or predicted query, including reading its result")
+@StackTrace(false)
+public final class QueryExecutionEvent extends Event {
+
+    @Label("Database")
+    String dbId;
+
+    @Label("Item Index")
+    int itemIndex;
+
+    @Label("SQL Hash")
+    @Description("String.hashCode() of the SQL text")
+    int sqlHash;
+
+    @Label("Gold")
+    @Description("Whether this is the gold query rather than the prediction")
+    boolean gold;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Bytes Materialized")
+    @DataAmount
+    long bytes;
+
+    @Label("Success")
+    boolean success;
+
+    /**
+     * 录制开启时填写字段并提交，否则不做任何事
+     *
+     * @param rows 读取的行数，失败时为0
+     * @param bytes 物化的结果字节数，未保存结果时为0
+     */
+    public void finish(String sql, boolean gold, long rows, long bytes, boolean success) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.dbId = ItemContext.currentDbId(null);
+        this.itemIndex = ItemContext.currentIndex();
+        this.sqlHash = sql != null ? sql.hashCode() : 0;
+        this.gold = gold;
+        this.rows = rows;
+        this.bytes = bytes;
+        this.success = success;
+        commit();
+    }
+}
@@ -0,0 +1,59 @@
+package com.nl2sql.spider.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 一次执行比较：执行标准SQL和预测SQL（或查找标准结果指纹）并比较结果
+ */
+@Name("com.nl2sql.spider.ResultComparison")
+@Label("Result Comparison")
+@Category({"Spider", "Evaluation"})
+@Description("Execution comparison of a predicted query against the gold query on one database")
+@StackTrace(false)
+public final class ResultComparisonEvent extends Event {
+
+    @Label("Database")
+    String dbId;
+
+    @Label("Item Index")
+    int itemIndex;
+
+    @Label("Predicted SQL Hash")
+    int predSqlHash;
+
+    @Label("Gold SQL Hash")
+    int goldSqlHash;
+
+    @Label("Mode")
+    @Description("sequential, concurrent or fingerprint")
+    String mode;
+
+    @Label("Ordered")
+    boolean ordered;
+
+    @Label("Match")
+    boolean match;
+
+    /**
+     * 录制开启时填写字段并提交，否则不做任何事
+     */
+    public void finish(String predictedSql, String goldSql, String mode, boolean ordered, boolean match) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.dbId = ItemContext.currentDbId(null);
+        this.itemIndex = ItemContext.currentIndex();
+        this.predSqlHash = predictedSql != null ? predictedSql.hashCode() : 0;
+        this.goldSqlHash = goldSql != null ? goldSql.hashCode() : 0;
+        this.mode = mode;
+        this.ordered = ordered;
+        this.match = match;
+        commit();
+    }
+}
@@ -0,0 +1,48 @@
+package com.nl2sql.spider.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 从数据库元数据提取schema
+ */
+@Name("com.nl2sql.spider.SchemaExtraction")
+@Label("Schema Extraction")
+@Category({"Spider", "Evaluation"})
+@Description("Extraction of a database schema from JDBC metadata")
+@StackTrace(false)
+public final class SchemaExtractionEvent extends Event {
+
+    @Label("Database")
+    String dbId;
+
+    @Label("Item Index")
+    int itemIndex;
+
+    @Label("Tables")
+    int tables;
+
+    @Label("Success")
+    boolean success;
+
+    /**
+     * 录制开启时填写字段并提交，否则不做任何事
+     *
+     * @param tables 提取的表数，失败时为0
+     */
+    public void finish(String dbId, int tables, boolean success) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.dbId = ItemContext.currentDbId(dbId);
+        this.itemIndex = ItemContext.currentIndex();
+        this.tables = tables;
+        this.success = success;
+        commit();
+    }
+}
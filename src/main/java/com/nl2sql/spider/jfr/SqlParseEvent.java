@@ -0,0 +1,49 @@
+package com.nl2sql.spider.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 解析一条SQL
+ */
+@Name("com.nl2sql.spider.SqlParse")
+@Label("SQL Parse")
+@Category({"Spider", "Evaluation"})
+@Description("Parsing of one SQL query against a database schema")
+@StackTrace(false)
+public final class SqlParseEvent extends Event {
+
+    @Label("Database")
+    String dbId;
+
+    @Label("Item Index")
+    int itemIndex;
+
+    @Label("SQL Hash")
+    @Description("String.hashCode() of the SQL text")
+    int sqlHash;
+
+    @Label("Success")
+    boolean success;
+
+    /**
+     * 录制开启时填写字段并提交，否则不做任何事
+     *
+     * @param success 是否解析成功
+     */
+    public void finish(String dbId, String sql, boolean success) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.dbId = ItemContext.currentDbId(dbId);
+        this.itemIndex = ItemContext.currentIndex();
+        this.sqlHash = sql != null ? sql.hashCode() : 0;
+        this.success = success;
+        commit();
+    }
+}
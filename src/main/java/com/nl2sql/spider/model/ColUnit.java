@@ -1,6 +1,7 @@
 package com.nl2sql.spider.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Objects;
 
 /**
  * 列单元的数据模型
@@ -49,6 +50,30 @@ public class ColUnit {
         isDistinct = distinct;
     }
     
+    /**
+     * 64位结构哈希
+     */
+    public long structuralHash() {
+        long h = StructuralHash.combine(aggId, StructuralHash.hashString(colId));
+        return StructuralHash.combine(h, isDistinct ? 1 : 0);
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        
+        ColUnit that = (ColUnit) o;
+        return aggId == that.aggId &&
+               isDistinct == that.isDistinct &&
+               Objects.equals(colId, that.colId);
+    }
+    
+    @Override
+    public int hashCode() {
+        return StructuralHash.fold(structuralHash());
+    }
+    
     @Override
     public String toString() {
         return "ColUnit{" +
@@ -0,0 +1,688 @@
+package com.nl2sql.spider.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SQL结构的紧凑表示
+ * 将SqlStructure对象图展平为单个int数组（节点表），列名、表名等标识符通过SymbolTable驻留为int编号。
+ * 所有节点以int句柄（数组偏移）引用，列表字段保存为连续的句柄序列，长度为-1表示原字段为null。
+ * 实例不可变，可与SqlStructure互相转换，评估器的打分函数可直接在此表示上运行。
+ */
+public final class CompactSqlStructure {
+
+    // 查询块布局
+    private static final int Q_FLAGS = 0;
+    private static final int Q_LIMIT = 1;
+    private static final int Q_SELECT = 2;
+    private static final int Q_SELECT_COUNT = 3;
+    private static final int Q_TABLES = 4;
+    private static final int Q_TABLE_COUNT = 5;
+    private static final int Q_FROM_CONDS = 6;
+    private static final int Q_FROM_COND_COUNT = 7;
+    private static final int Q_WHERE = 8;
+    private static final int Q_WHERE_COUNT = 9;
+    private static final int Q_GROUP = 10;
+    private static final int Q_GROUP_COUNT = 11;
+    private static final int Q_HAVING = 12;
+    private static final int Q_HAVING_COUNT = 13;
+    private static final int Q_ORDER_TYPE = 14;
+    private static final int Q_ORDER = 15;
+    private static final int Q_ORDER_COUNT = 16;
+    private static final int Q_INTERSECT = 17;
+    private static final int Q_UNION = 18;
+    private static final int Q_EXCEPT = 19;
+    private static final int QUERY_SIZE = 20;
+
+    // 查询块标志位
+    private static final int F_HAS_SELECT = 1;
+    private static final int F_DISTINCT = 1 << 1;
+    private static final int F_HAS_FROM = 1 << 2;
+    private static final int F_HAS_ORDER = 1 << 3;
+    private static final int F_HAS_LIMIT = 1 << 4;
+
+    // 列单元布局: aggId, colId符号, isDistinct
+    private static final int COL_SIZE = 3;
+    // 值单元布局: unitOp, colUnit1, colUnit2, valueType符号, 值类别, 值引用
+    private static final int VAL_SIZE = 6;
+    // SELECT项布局: aggId, valUnit
+    private static final int ITEM_SIZE = 2;
+    // 表单元布局: tableType符号, tableId符号, 子查询
+    private static final int TABLE_SIZE = 3;
+    // 条件单元布局: notOp, opId, valUnit, val1类别, val1引用, val2类别, val2引用
+    private static final int COND_SIZE = 7;
+
+    /** 值类别：null */
+    public static final int OPERAND_NONE = 0;
+    /** 值类别：字符串（引用为符号编号） */
+    public static final int OPERAND_SYMBOL = 1;
+    /** 值类别：子查询（引用为查询块句柄） */
+    public static final int OPERAND_SQL = 2;
+    /** 值类别：列单元（引用为列单元句柄） */
+    public static final int OPERAND_COLUMN = 3;
+    /** 值类别：值单元（引用为值单元句柄） */
+    public static final int OPERAND_VALUE = 4;
+    /** 值类别：整数（引用即为值本身） */
+    public static final int OPERAND_INTEGER = 5;
+
+    private final int[] data;
+    private final int root;
+    private final SymbolTable symbols;
+    private final long structuralHash;
+
+    private CompactSqlStructure(int[] data, int root, SymbolTable symbols, long structuralHash) {
+        this.data = data;
+        this.root = root;
+        this.symbols = symbols;
+        this.structuralHash = structuralHash;
+    }
+
+    /**
+     * 从SqlStructure构建紧凑表示
+     *
+     * @param sql SQL结构
+     * @param symbols 共享的标识符驻留表
+     * @return 紧凑表示
+     */
+    public static CompactSqlStructure from(SqlStructure sql, SymbolTable symbols) {
+        if (sql == null) {
+            throw new IllegalArgumentException("SQL structure cannot be null");
+        }
+        Encoder encoder = new Encoder(symbols);
+        int root = encoder.writeQuery(sql);
+        return new CompactSqlStructure(encoder.toArray(), root, symbols, sql.structuralHash());
+    }
+
+    /**
+     * 还原为SqlStructure对象图
+     */
+    public SqlStructure toSqlStructure() {
+        return readQuery(root);
+    }
+
+    /**
+     * 根查询块句柄
+     */
+    public int root() {
+        return root;
+    }
+
+    public SymbolTable getSymbolTable() {
+        return symbols;
+    }
+
+    /**
+     * 源SqlStructure的结构哈希，构建时计算
+     */
+    public long structuralHash() {
+        return structuralHash;
+    }
+
+    /**
+     * 占用的int数量
+     */
+    public int size() {
+        return data.length;
+    }
+
+    // 查询块访问
+
+    public boolean hasSelect(int query) {
+        return (data[query + Q_FLAGS] & F_HAS_SELECT) != 0;
+    }
+
+    public boolean isDistinct(int query) {
+        return (data[query + Q_FLAGS] & F_DISTINCT) != 0;
+    }
+
+    public int selectCount(int query) {
+        return data[query + Q_SELECT_COUNT];
+    }
+
+    public int selectItem(int query, int index) {
+        return data[data[query + Q_SELECT] + index];
+    }
+
+    public boolean hasFrom(int query) {
+        return (data[query + Q_FLAGS] & F_HAS_FROM) != 0;
+    }
+
+    public int tableCount(int query) {
+        return data[query + Q_TABLE_COUNT];
+    }
+
+    public int table(int query, int index) {
+        return data[data[query + Q_TABLES] + index];
+    }
+
+    public int fromConditionCount(int query) {
+        return data[query + Q_FROM_COND_COUNT];
+    }
+
+    public int fromCondition(int query, int index) {
+        return data[data[query + Q_FROM_CONDS] + index];
+    }
+
+    public int whereCount(int query) {
+        return data[query + Q_WHERE_COUNT];
+    }
+
+    public int whereCondition(int query, int index) {
+        return data[data[query + Q_WHERE] + index];
+    }
+
+    public int groupByCount(int query) {
+        return data[query + Q_GROUP_COUNT];
+    }
+
+    public int groupByColumn(int query, int index) {
+        return data[data[query + Q_GROUP] + index];
+    }
+
+    public int havingCount(int query) {
+        return data[query + Q_HAVING_COUNT];
+    }
+
+    public int havingCondition(int query, int index) {
+        return data[data[query + Q_HAVING] + index];
+    }
+
+    public boolean hasOrderBy(int query) {
+        return (data[query + Q_FLAGS] & F_HAS_ORDER) != 0;
+    }
+
+    public int orderTypeSymbol(int query) {
+        return data[query + Q_ORDER_TYPE];
+    }
+
+    public int orderByCount(int query) {
+        return data[query + Q_ORDER_COUNT];
+    }
+
+    public int orderByValue(int query, int index) {
+        return data[data[query + Q_ORDER] + index];
+    }
+
+    public boolean hasLimit(int query) {
+        return (data[query + Q_FLAGS] & F_HAS_LIMIT) != 0;
+    }
+
+    public int limit(int query) {
+        return data[query + Q_LIMIT];
+    }
+
+    /** INTERSECT子查询句柄，不存在返回-1 */
+    public int intersect(int query) {
+        return data[query + Q_INTERSECT];
+    }
+
+    /** UNION子查询句柄，不存在返回-1 */
+    public int union(int query) {
+        return data[query + Q_UNION];
+    }
+
+    /** EXCEPT子查询句柄，不存在返回-1 */
+    public int except(int query) {
+        return data[query + Q_EXCEPT];
+    }
+
+    // 子节点访问
+
+    public int itemAggId(int item) {
+        return data[item];
+    }
+
+    public int itemValUnit(int item) {
+        return data[item + 1];
+    }
+
+    public int tableTypeSymbol(int table) {
+        return data[table];
+    }
+
+    public int tableIdSymbol(int table) {
+        return data[table + 1];
+    }
+
+    public int tableSql(int table) {
+        return data[table + 2];
+    }
+
+    public boolean condNotOp(int cond) {
+        return data[cond] != 0;
+    }
+
+    public int condOpId(int cond) {
+        return data[cond + 1];
+    }
+
+    public int condValUnit(int cond) {
+        return data[cond + 2];
+    }
+
+    public int condVal1Kind(int cond) {
+        return data[cond + 3];
+    }
+
+    public int condVal1(int cond) {
+        return data[cond + 4];
+    }
+
+    public int condVal2Kind(int cond) {
+        return data[cond + 5];
+    }
+
+    public int condVal2(int cond) {
+        return data[cond + 6];
+    }
+
+    public int valUnitOp(int val) {
+        return data[val];
+    }
+
+    public int valColUnit1(int val) {
+        return data[val + 1];
+    }
+
+    public int valColUnit2(int val) {
+        return data[val + 2];
+    }
+
+    public int valTypeSymbol(int val) {
+        return data[val + 3];
+    }
+
+    public int valOperandKind(int val) {
+        return data[val + 4];
+    }
+
+    public int valOperand(int val) {
+        return data[val + 5];
+    }
+
+    public int colAggId(int col) {
+        return data[col];
+    }
+
+    public int colIdSymbol(int col) {
+        return data[col + 1];
+    }
+
+    public boolean colDistinct(int col) {
+        return data[col + 2] != 0;
+    }
+
+    // 解码
+
+    private SqlStructure readQuery(int q) {
+        SqlStructure sql = new SqlStructure();
+        int flags = data[q + Q_FLAGS];
+
+        if ((flags & F_HAS_SELECT) != 0) {
+            List<SelectClause.SelectItem> items = null;
+            int count = data[q + Q_SELECT_COUNT];
+            if (count >= 0) {
+                items = new ArrayList<>(count);
+                int base = data[q + Q_SELECT];
+                for (int i = 0; i < count; i++) {
+                    int item = data[base + i];
+                    items.add(new SelectClause.SelectItem(data[item], readValUnit(data[item + 1])));
+                }
+            }
+            sql.setSelect(new SelectClause((flags & F_DISTINCT) != 0, items));
+        }
+
+        if ((flags & F_HAS_FROM) != 0) {
+            List<TableUnit> tables = null;
+            int count = data[q + Q_TABLE_COUNT];
+            if (count >= 0) {
+                tables = new ArrayList<>(count);
+                int base = data[q + Q_TABLES];
+                for (int i = 0; i < count; i++) {
+                    tables.add(readTableUnit(data[base + i]));
+                }
+            }
+            sql.setFrom(new FromClause(tables, readConditions(q + Q_FROM_CONDS)));
+        }
+
+        sql.setWhere(readConditions(q + Q_WHERE));
+
+        int groupCount = data[q + Q_GROUP_COUNT];
+        if (groupCount >= 0) {
+            List<ColUnit> group = new ArrayList<>(groupCount);
+            int base = data[q + Q_GROUP];
+            for (int i = 0; i < groupCount; i++) {
+                group.add(readColUnit(data[base + i]));
+            }
+            sql.setGroupBy(group);
+        }
+
+        sql.setHaving(readConditions(q + Q_HAVING));
+
+        if ((flags & F_HAS_ORDER) != 0) {
+            List<ValUnit> vals = null;
+            int count = data[q + Q_ORDER_COUNT];
+            if (count >= 0) {
+                vals = new ArrayList<>(count);
+                int base = data[q + Q_ORDER];
+                for (int i = 0; i < count; i++) {
+                    vals.add(readValUnit(data[base + i]));
+                }
+            }
+            sql.setOrderBy(new OrderByClause(symbols.name(data[q + Q_ORDER_TYPE]), vals));
+        }
+
+        if ((flags & F_HAS_LIMIT) != 0) {
+            sql.setLimit(data[q + Q_LIMIT]);
+        }
+
+        if (data[q + Q_INTERSECT] >= 0) {
+            sql.setIntersect(readQuery(data[q + Q_INTERSECT]));
+        }
+        if (data[q + Q_UNION] >= 0) {
+            sql.setUnion(readQuery(data[q + Q_UNION]));
+        }
+        if (data[q + Q_EXCEPT] >= 0) {
+            sql.setExcept(readQuery(data[q + Q_EXCEPT]));
+        }
+
+        return sql;
+    }
+
+    private List<ConditionUnit> readConditions(int slot) {
+        int count = data[slot + 1];
+        if (count < 0) {
+            return null;
+        }
+        List<ConditionUnit> conds = new ArrayList<>(count);
+        int base = data[slot];
+        for (int i = 0; i < count; i++) {
+            int c = data[base + i];
+            conds.add(new ConditionUnit(data[c] != 0, data[c + 1], readValUnit(data[c + 2]),
+                                        readOperand(data[c + 3], data[c + 4]),
+                                        readOperand(data[c + 5], data[c + 6])));
+        }
+        return conds;
+    }
+
+    private TableUnit readTableUnit(int t) {
+        TableUnit unit = new TableUnit();
+        unit.setTableType(symbols.name(data[t]));
+        unit.setTableId(symbols.name(data[t + 1]));
+        if (data[t + 2] >= 0) {
+            unit.setSql(readQuery(data[t + 2]));
+        }
+        return unit;
+    }
+
+    private ValUnit readValUnit(int v) {
+        if (v < 0) {
+            return null;
+        }
+        ValUnit val = new ValUnit(data[v], readColUnit(data[v + 1]), readColUnit(data[v + 2]));
+        val.setValueType(symbols.name(data[v + 3]));
+        val.setValue(readOperand(data[v + 4], data[v + 5]));
+        return val;
+    }
+
+    private ColUnit readColUnit(int c) {
+        if (c < 0) {
+            return null;
+        }
+        return new ColUnit(data[c], symbols.name(data[c + 1]), data[c + 2] != 0);
+    }
+
+    private Object readOperand(int kind, int ref) {
+        switch (kind) {
+            case OPERAND_SYMBOL:
+                return symbols.name(ref);
+            case OPERAND_SQL:
+                return readQuery(ref);
+            case OPERAND_COLUMN:
+                return readColUnit(ref);
+            case OPERAND_VALUE:
+                return readValUnit(ref);
+            case OPERAND_INTEGER:
+                return ref;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CompactSqlStructure{" +
+                "size=" + data.length +
+                ", root=" + root +
+                '}';
+    }
+
+    /**
+     * 编码器：子节点先于引用它的列表写入，查询块头部预留后回填
+     */
+    private static final class Encoder {
+
+        private final SymbolTable symbols;
+        private int[] buf;
+        private int size;
+
+        Encoder(SymbolTable symbols) {
+            this.symbols = symbols;
+            this.buf = new int[128];
+            this.size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(buf, size);
+        }
+
+        private int reserve(int n) {
+            if (size + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + n));
+            }
+            int at = size;
+            size += n;
+            return at;
+        }
+
+        private int writeRefs(int[] refs, int count) {
+            int at = reserve(count);
+            System.arraycopy(refs, 0, buf, at, count);
+            return at;
+        }
+
+        int writeQuery(SqlStructure sql) {
+            int q = reserve(QUERY_SIZE);
+            int flags = 0;
+
+            buf[q + Q_SELECT_COUNT] = -1;
+            if (sql.getSelect() != null) {
+                flags |= F_HAS_SELECT;
+                if (sql.getSelect().isDistinct()) {
+                    flags |= F_DISTINCT;
+                }
+                List<SelectClause.SelectItem> items = sql.getSelect().getSelectItems();
+                if (items != null) {
+                    int[] refs = new int[items.size()];
+                    for (int i = 0; i < refs.length; i++) {
+                        SelectClause.SelectItem item = requireElement(items.get(i));
+                        int val = writeValUnit(item.getValUnit());
+                        int at = reserve(ITEM_SIZE);
+                        buf[at] = item.getAggId();
+                        buf[at + 1] = val;
+                        refs[i] = at;
+                    }
+                    int base = writeRefs(refs, refs.length);
+                    buf[q + Q_SELECT] = base;
+                    buf[q + Q_SELECT_COUNT] = refs.length;
+                }
+            }
+
+            buf[q + Q_TABLE_COUNT] = -1;
+            buf[q + Q_FROM_COND_COUNT] = -1;
+            if (sql.getFrom() != null) {
+                flags |= F_HAS_FROM;
+                List<TableUnit> tables = sql.getFrom().getTableUnits();
+                if (tables != null) {
+                    int[] refs = new int[tables.size()];
+                    for (int i = 0; i < refs.length; i++) {
+                        refs[i] = writeTableUnit(requireElement(tables.get(i)));
+                    }
+                    int base = writeRefs(refs, refs.length);
+                    buf[q + Q_TABLES] = base;
+                    buf[q + Q_TABLE_COUNT] = refs.length;
+                }
+                writeConditions(q + Q_FROM_CONDS, sql.getFrom().getConds());
+            }
+
+            writeConditions(q + Q_WHERE, sql.getWhere());
+
+            buf[q + Q_GROUP_COUNT] = -1;
+            if (sql.getGroupBy() != null) {
+                int[] refs = new int[sql.getGroupBy().size()];
+                for (int i = 0; i < refs.length; i++) {
+                    refs[i] = writeColUnit(requireElement(sql.getGroupBy().get(i)));
+                }
+                int base = writeRefs(refs, refs.length);
+                buf[q + Q_GROUP] = base;
+                buf[q + Q_GROUP_COUNT] = refs.length;
+            }
+
+            writeConditions(q + Q_HAVING, sql.getHaving());
+
+            buf[q + Q_ORDER_TYPE] = -1;
+            buf[q + Q_ORDER_COUNT] = -1;
+            if (sql.getOrderBy() != null) {
+                flags |= F_HAS_ORDER;
+                buf[q + Q_ORDER_TYPE] = symbols.intern(sql.getOrderBy().getOrderType());
+                List<ValUnit> vals = sql.getOrderBy().getValUnits();
+                if (vals != null) {
+                    int[] refs = new int[vals.size()];
+                    for (int i = 0; i < refs.length; i++) {
+                        refs[i] = writeValUnit(requireElement(vals.get(i)));
+                    }
+                    int base = writeRefs(refs, refs.length);
+                    buf[q + Q_ORDER] = base;
+                    buf[q + Q_ORDER_COUNT] = refs.length;
+                }
+            }
+
+            if (sql.getLimit() != null) {
+                flags |= F_HAS_LIMIT;
+                buf[q + Q_LIMIT] = sql.getLimit();
+            }
+
+            int intersect = sql.getIntersect() != null ? writeQuery(sql.getIntersect()) : -1;
+            int union = sql.getUnion() != null ? writeQuery(sql.getUnion()) : -1;
+            int except = sql.getExcept() != null ? writeQuery(sql.getExcept()) : -1;
+            buf[q + Q_INTERSECT] = intersect;
+            buf[q + Q_UNION] = union;
+            buf[q + Q_EXCEPT] = except;
+            buf[q + Q_FLAGS] = flags;
+
+            return q;
+        }
+
+        private void writeConditions(int slot, List<ConditionUnit> conds) {
+            if (conds == null) {
+                buf[slot] = 0;
+                buf[slot + 1] = -1;
+                return;
+            }
+            int[] refs = new int[conds.size()];
+            for (int i = 0; i < refs.length; i++) {
+                ConditionUnit cond = requireElement(conds.get(i));
+                int val = writeValUnit(cond.getValUnit());
+                long val1 = writeOperand(cond.getVal1());
+                long val2 = writeOperand(cond.getVal2());
+                int at = reserve(COND_SIZE);
+                buf[at] = cond.isNotOp() ? 1 : 0;
+                buf[at + 1] = cond.getOpId();
+                buf[at + 2] = val;
+                buf[at + 3] = (int) (val1 >>> 32);
+                buf[at + 4] = (int) val1;
+                buf[at + 5] = (int) (val2 >>> 32);
+                buf[at + 6] = (int) val2;
+                refs[i] = at;
+            }
+            int base = writeRefs(refs, refs.length);
+            buf[slot] = base;
+            buf[slot + 1] = refs.length;
+        }
+
+        private int writeTableUnit(TableUnit unit) {
+            int sub = unit.getSql() != null ? writeQuery(unit.getSql()) : -1;
+            int at = reserve(TABLE_SIZE);
+            buf[at] = symbols.intern(unit.getTableType());
+            buf[at + 1] = symbols.intern(unit.getTableId());
+            buf[at + 2] = sub;
+            return at;
+        }
+
+        private int writeValUnit(ValUnit val) {
+            if (val == null) {
+                return -1;
+            }
+            int col1 = writeColUnit(val.getColUnit1());
+            int col2 = writeColUnit(val.getColUnit2());
+            long operand = writeOperand(val.getValue());
+            int at = reserve(VAL_SIZE);
+            buf[at] = val.getUnitOp();
+            buf[at + 1] = col1;
+            buf[at + 2] = col2;
+            buf[at + 3] = symbols.intern(val.getValueType());
+            buf[at + 4] = (int) (operand >>> 32);
+            buf[at + 5] = (int) operand;
+            return at;
+        }
+
+        private int writeColUnit(ColUnit col) {
+            if (col == null) {
+                return -1;
+            }
+            int at = reserve(COL_SIZE);
+            buf[at] = col.getAggId();
+            buf[at + 1] = symbols.intern(col.getColId());
+            buf[at + 2] = col.isDistinct() ? 1 : 0;
+            return at;
+        }
+
+        /**
+         * 写入任意值，返回 (类别 << 32) | 引用
+         */
+        private long writeOperand(Object value) {
+            int kind;
+            int ref;
+            if (value == null) {
+                kind = OPERAND_NONE;
+                ref = -1;
+            } else if (value instanceof String) {
+                kind = OPERAND_SYMBOL;
+                ref = symbols.intern((String) value);
+            } else if (value instanceof SqlStructure) {
+                kind = OPERAND_SQL;
+                ref = writeQuery((SqlStructure) value);
+            } else if (value instanceof ColUnit) {
+                kind = OPERAND_COLUMN;
+                ref = writeColUnit((ColUnit) value);
+            } else if (value instanceof ValUnit) {
+                kind = OPERAND_VALUE;
+                ref = writeValUnit((ValUnit) value);
+            } else if (value instanceof Integer) {
+                kind = OPERAND_INTEGER;
+                ref = (Integer) value;
+            } else {
+                throw new IllegalArgumentException("Unsupported value type: " + value.getClass().getName());
+            }
+            return ((long) kind << 32) | (ref & 0xFFFFFFFFL);
+        }
+
+        private static <T> T requireElement(T element) {
+            if (element == null) {
+                throw new IllegalArgumentException("Null list elements are not supported");
+            }
+            return element;
+        }
+    }
+}
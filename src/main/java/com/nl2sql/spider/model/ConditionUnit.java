@@ -1,6 +1,7 @@
 package com.nl2sql.spider.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Objects;
 
 /**
  * 条件单元的数据模型
@@ -73,6 +74,34 @@ public class ConditionUnit {
         this.val2 = val2;
     }
     
+    /**
+     * 64位结构哈希
+     */
+    public long structuralHash() {
+        long h = StructuralHash.combine(notOp ? 1 : 0, opId);
+        h = StructuralHash.combine(h, StructuralHash.hashValue(valUnit));
+        h = StructuralHash.combine(h, StructuralHash.hashValue(val1));
+        return StructuralHash.combine(h, StructuralHash.hashValue(val2));
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        
+        ConditionUnit that = (ConditionUnit) o;
+        return notOp == that.notOp &&
+               opId == that.opId &&
+               Objects.equals(valUnit, that.valUnit) &&
+               Objects.equals(val1, that.val1) &&
+               Objects.equals(val2, that.val2);
+    }
+    
+    @Override
+    public int hashCode() {
+        return StructuralHash.fold(structuralHash());
+    }
+    
     @Override
     public String toString() {
         return "ConditionUnit{" +
@@ -10,17 +10,55 @@ public class EvaluationResult {
     private final Map<String, PartialScore> partialScores;
     private final boolean exactMatch;
     private final boolean executionMatch;
+    private final boolean executionSkipped;
+    private final boolean tooExpensive;
+    private final ExecutionMetrics metrics;
     
     public EvaluationResult(Map<String, PartialScore> partialScores) {
         this.partialScores = partialScores;
         this.exactMatch = calculateExactMatch();
         this.executionMatch = false; // 默认值
+        this.executionSkipped = false;
+        this.tooExpensive = false;
+        this.metrics = null;
     }
     
     public EvaluationResult(Map<String, PartialScore> partialScores, boolean exactMatch, boolean executionMatch) {
+        this(partialScores, exactMatch, executionMatch, false);
+    }
+    
+    /**
+     * @param executionSkipped 预测SQL与标准SQL等价，未执行预测SQL
+     */
+    public EvaluationResult(Map<String, PartialScore> partialScores, boolean exactMatch, 
+                            boolean executionMatch, boolean executionSkipped) {
+        this(partialScores, exactMatch, executionMatch, executionSkipped, false);
+    }
+    
+    /**
+     * @param executionSkipped 预测SQL与标准SQL等价，未执行预测SQL
+     * @param tooExpensive 预测SQL的估计规模超过上限，未执行
+     */
+    public EvaluationResult(Map<String, PartialScore> partialScores, boolean exactMatch, 
+                            boolean executionMatch, boolean executionSkipped, boolean tooExpensive) {
+        this(partialScores, exactMatch, executionMatch, executionSkipped, tooExpensive, null);
+    }
+    
+    private EvaluationResult(Map<String, PartialScore> partialScores, boolean exactMatch, boolean executionMatch,
+                             boolean executionSkipped, boolean tooExpensive, ExecutionMetrics metrics) {
         this.partialScores = partialScores;
         this.exactMatch = exactMatch;
         this.executionMatch = executionMatch;
+        this.executionSkipped = executionSkipped;
+        this.tooExpensive = tooExpensive;
+        this.metrics = metrics;
+    }
+    
+    /**
+     * 附加资源消耗后的评估结果
+     */
+    public EvaluationResult withMetrics(ExecutionMetrics metrics) {
+        return new EvaluationResult(partialScores, exactMatch, executionMatch, executionSkipped, tooExpensive, metrics);
     }
     
     public Map<String, PartialScore> getPartialScores() {
@@ -35,6 +73,21 @@ public class EvaluationResult {
         return executionMatch;
     }
     
+    public boolean isExecutionSkipped() {
+        return executionSkipped;
+    }
+    
+    public boolean isTooExpensive() {
+        return tooExpensive;
+    }
+    
+    /**
+     * 解析、执行耗时和结果规模，未记录时为null
+     */
+    public ExecutionMetrics getMetrics() {
+        return metrics;
+    }
+    
     private boolean calculateExactMatch() {
         if (partialScores == null || partialScores.isEmpty()) {
             return false;
@@ -55,6 +108,9 @@ public class EvaluationResult {
                 "partialScores=" + partialScores +
                 ", exactMatch=" + exactMatch +
                 ", executionMatch=" + executionMatch +
+                ", executionSkipped=" + executionSkipped +
+                ", tooExpensive=" + tooExpensive +
+                ", metrics=" + metrics +
                 '}';
     }
 } 
\ No newline at end of file
@@ -1,15 +1,32 @@
 package com.nl2sql.spider.model;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.nl2sql.spider.enums.HardnessLevel;
 import java.util.*;
+import java.util.function.ToLongFunction;
 
 /**
  * 评估统计类
+ * 只保存计数和定点数表示的分数和，可以按任意分组和顺序合并（merge），合并结果与一次性统计完全相同；
+ * 字段可由Jackson序列化，用于分片评估时在进程间传递部分统计
  */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY,
+                getterVisibility = JsonAutoDetect.Visibility.NONE,
+                isGetterVisibility = JsonAutoDetect.Visibility.NONE)
 public class EvaluationStatistics {
     
+    static final ToLongFunction<ItemCost> SLOWEST_KEY = item -> item.getMetrics().getTotalNanos();
+    static final ToLongFunction<ItemCost> LARGEST_KEY = item -> item.getMetrics().getTotalRows();
+    
     private final Map<HardnessLevel, LevelStatistics> levelStats;
     private int errorCount;
+    private int executionSkippedCount;
+    private int tooExpensiveCount;
+    /** 排行保留的评估项数，0表示不保留 */
+    private int topItemLimit;
+    private List<ItemCost> slowestItems = new ArrayList<>();
+    private List<ItemCost> largestItems = new ArrayList<>();
     
     public EvaluationStatistics() {
         this.levelStats = new HashMap<>();
@@ -28,6 +45,13 @@ public class EvaluationStatistics {
         
         stats.addResult(result);
         allStats.addResult(result);
+        
+        if (result.isExecutionSkipped()) {
+            executionSkippedCount++;
+        }
+        if (result.isTooExpensive()) {
+            tooExpensiveCount++;
+        }
     }
     
     /**
@@ -38,7 +62,51 @@ public class EvaluationStatistics {
     }
     
     /**
-     * 计算最终分数
+     * 累加错误数、跳过执行数和代价过高数，供StatisticsAccumulator生成快照
+     */
+    void accumulateCounts(int errors, int executionSkipped, int tooExpensive) {
+        errorCount += errors;
+        executionSkippedCount += executionSkipped;
+        tooExpensiveCount += tooExpensive;
+    }
+    
+    /**
+     * 设置最慢、返回行数最多的评估项排行，供StatisticsAccumulator生成快照
+     */
+    void setTopItems(int limit, List<ItemCost> slowest, List<ItemCost> largest) {
+        topItemLimit = limit;
+        slowestItems = new ArrayList<>(slowest);
+        largestItems = new ArrayList<>(largest);
+    }
+    
+    /**
+     * 合并另一部分的统计，合并后需重新调用calculateFinalScores
+     * 
+     * @param other 另一部分评估项的统计
+     */
+    public void merge(EvaluationStatistics other) {
+        for (HardnessLevel level : HardnessLevel.values()) {
+            levelStats.get(level).merge(other.levelStats.get(level));
+        }
+        errorCount += other.errorCount;
+        executionSkippedCount += other.executionSkippedCount;
+        tooExpensiveCount += other.tooExpensiveCount;
+        
+        topItemLimit = Math.max(topItemLimit, other.topItemLimit);
+        slowestItems = mergeTop(slowestItems, other.slowestItems, SLOWEST_KEY);
+        largestItems = mergeTop(largestItems, other.largestItems, LARGEST_KEY);
+    }
+    
+    private List<ItemCost> mergeTop(List<ItemCost> items, List<ItemCost> otherItems,
+                                    ToLongFunction<ItemCost> key) {
+        TopN<ItemCost> top = new TopN<>(topItemLimit, key);
+        items.forEach(top::offer);
+        otherItems.forEach(top::offer);
+        return top.toList();
+    }
+    
+    /**
+     * 计算最终分数（可重复调用）
      */
     public void calculateFinalScores() {
         for (LevelStatistics stats : levelStats.values()) {
@@ -67,6 +135,42 @@ public class EvaluationStatistics {
         return errorCount;
     }
     
+    /**
+     * 获取因与标准SQL等价而跳过执行的预测数
+     */
+    public int getExecutionSkippedCount() {
+        return executionSkippedCount;
+    }
+    
+    /**
+     * 获取因估计规模超过上限而未执行的预测数
+     */
+    public int getTooExpensiveCount() {
+        return tooExpensiveCount;
+    }
+    
+    /**
+     * 获取解析和执行总耗时最长的评估项，按耗时从大到小
+     */
+    public List<ItemCost> getSlowestItems() {
+        return Collections.unmodifiableList(slowestItems);
+    }
+    
+    /**
+     * 获取标准SQL和预测SQL返回总行数最多的评估项，按行数从大到小
+     */
+    public List<ItemCost> getLargestItems() {
+        return Collections.unmodifiableList(largestItems);
+    }
+    
+    /**
+     * 获取跳过执行的比例（相对于全部评估项）
+     */
+    public double getExecutionSkipRate() {
+        int total = levelStats.get(HardnessLevel.ALL).getCount();
+        return total > 0 ? (double) executionSkippedCount / total : 0.0;
+    }
+    
     /**
      * 打印统计结果
      */
@@ -94,17 +198,55 @@ public class EvaluationStatistics {
         
         System.out.println("-".repeat(80));
         System.out.printf("Errors: %d%n", errorCount);
+        if (executionSkippedCount > 0) {
+            System.out.printf("Execution skipped (equivalent to gold): %d (%.1f%%)%n", 
+                             executionSkippedCount, getExecutionSkipRate() * 100);
+        }
+        if (tooExpensiveCount > 0) {
+            System.out.printf("Not executed (estimated too expensive): %d%n", tooExpensiveCount);
+        }
+    }
+    
+    /**
+     * 打印最慢和返回行数最多的评估项
+     */
+    public void printTopItems() {
+        printTopItems("SLOWEST ITEMS", slowestItems);
+        printTopItems("LARGEST ITEMS (rows returned)", largestItems);
+    }
+    
+    private static void printTopItems(String title, List<ItemCost> items) {
+        System.out.println("=".repeat(80));
+        System.out.println(title);
+        System.out.println("-".repeat(80));
+        System.out.printf("%-8s %-24s %10s %10s %10s %10s %10s %12s%n",
+                         "Index", "Database", "Parse ms", "Gold ms", "Pred ms", "Gold rows", "Pred rows", "Bytes");
+        for (ItemCost item : items) {
+            ExecutionMetrics m = item.getMetrics();
+            System.out.printf("%-8d %-24s %10.1f %10.1f %10.1f %10d %10d %12d%n",
+                             item.getIndex(), item.getDbId(), m.getParseNanos() / 1e6, m.getGoldExecNanos() / 1e6,
+                             m.getPredExecNanos() / 1e6, m.getGoldRows(), m.getPredRows(), m.getBytesMaterialized());
+        }
     }
     
     /**
      * 级别统计类
+     * F1之和以定点整数累加，整数加法满足结合律，分片合并后的结果与顺序累加完全一致
      */
+    @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY,
+                    getterVisibility = JsonAutoDetect.Visibility.NONE,
+                    isGetterVisibility = JsonAutoDetect.Visibility.NONE)
     public static class LevelStatistics {
+        /** F1定点表示的比例，精度1e-9 */
+        static final long F1_SCALE = 1_000_000_000L;
+        
         private int count;
         private int exactMatches;
         private int executionMatches;
-        private final Map<String, Double> partialScoreSum;
+        private final Map<String, Long> partialScoreSum;
         private final Map<String, Integer> partialScoreCount;
+        @JsonIgnore
+        private final Map<String, Double> partialScores;
         
         public LevelStatistics() {
             this.count = 0;
@@ -112,6 +254,7 @@ public class EvaluationStatistics {
             this.executionMatches = 0;
             this.partialScoreSum = new HashMap<>();
             this.partialScoreCount = new HashMap<>();
+            this.partialScores = new HashMap<>();
         }
         
         public void addResult(EvaluationResult result) {
@@ -130,18 +273,46 @@ public class EvaluationStatistics {
                 String component = entry.getKey();
                 PartialScore score = entry.getValue();
                 
-                partialScoreSum.merge(component, score.getF1(), Double::sum);
+                partialScoreSum.merge(component, Math.round(score.getF1() * F1_SCALE), Long::sum);
                 partialScoreCount.merge(component, 1, Integer::sum);
             }
         }
         
+        /**
+         * 累加计数，供StatisticsAccumulator生成快照
+         */
+        void accumulate(int count, int exactMatches, int executionMatches) {
+            this.count += count;
+            this.exactMatches += exactMatches;
+            this.executionMatches += executionMatches;
+        }
+        
+        /**
+         * 累加某个组件的定点F1之和及次数
+         */
+        void accumulatePartial(String component, long fixedSum, int n) {
+            partialScoreSum.merge(component, fixedSum, Long::sum);
+            partialScoreCount.merge(component, n, Integer::sum);
+        }
+        
+        /**
+         * 合并另一部分的级别统计
+         */
+        public void merge(LevelStatistics other) {
+            count += other.count;
+            exactMatches += other.exactMatches;
+            executionMatches += other.executionMatches;
+            other.partialScoreSum.forEach((component, sum) -> partialScoreSum.merge(component, sum, Long::sum));
+            other.partialScoreCount.forEach((component, n) -> partialScoreCount.merge(component, n, Integer::sum));
+        }
+        
         public void calculateFinalScores() {
             // 计算平均分数
-            for (String component : partialScoreSum.keySet()) {
-                double sum = partialScoreSum.get(component);
-                int count = partialScoreCount.get(component);
+            partialScores.clear();
+            for (Map.Entry<String, Long> entry : partialScoreSum.entrySet()) {
+                int count = partialScoreCount.getOrDefault(entry.getKey(), 0);
                 if (count > 0) {
-                    partialScoreSum.put(component, sum / count);
+                    partialScores.put(entry.getKey(), (double) entry.getValue() / F1_SCALE / count);
                 }
             }
         }
@@ -157,14 +328,15 @@ public class EvaluationStatistics {
         }
         
         public double getAverageF1() {
-            if (partialScoreSum.isEmpty()) return 0.0;
+            if (partialScores.isEmpty()) return 0.0;
             
-            double sum = partialScoreSum.values().stream().mapToDouble(Double::doubleValue).sum();
-            return sum / partialScoreSum.size();
+            // 按组件名顺序累加，结果与组件的插入顺序无关
+            double sum = new TreeMap<>(partialScores).values().stream().mapToDouble(Double::doubleValue).sum();
+            return sum / partialScores.size();
         }
         
         public Map<String, Double> getPartialScores() {
-            return Collections.unmodifiableMap(partialScoreSum);
+            return Collections.unmodifiableMap(partialScores);
         }
     }
 } 
\ No newline at end of file
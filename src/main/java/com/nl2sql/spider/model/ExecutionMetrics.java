@@ -0,0 +1,113 @@
+package com.nl2sql.spider.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * 单个评估项的资源消耗
+ * 解析耗时由评估服务记录，执行耗时、返回行数和物化字节数由执行评估记录；
+ * 测试套件的多个数据库变体并行执行时累加到同一个对象，因此记录方法是线程安全的
+ */
+public class ExecutionMetrics {
+
+    private long parseNanos;        // 解析标准SQL和预测SQL的耗时
+    private long goldExecNanos;     // 执行并读取标准SQL结果的耗时
+    private long predExecNanos;     // 执行并读取预测SQL结果的耗时
+    private long goldRows;          // 标准SQL返回的行数
+    private long predRows;          // 预测SQL返回的行数
+    private long bytesMaterialized; // 读入内存或溢写到磁盘的结果字节数（估算）
+
+    public ExecutionMetrics() {}
+
+    /**
+     * 记录一次标准SQL的执行
+     *
+     * @param nanos 执行并读取结果的耗时
+     * @param rows 读取的行数
+     * @param bytes 物化的结果字节数，逐行比较未保存结果时为0
+     */
+    public synchronized void recordGold(long nanos, long rows, long bytes) {
+        goldExecNanos += nanos;
+        goldRows += rows;
+        bytesMaterialized += bytes;
+    }
+
+    /**
+     * 记录一次预测SQL的执行
+     */
+    public synchronized void recordPred(long nanos, long rows, long bytes) {
+        predExecNanos += nanos;
+        predRows += rows;
+        bytesMaterialized += bytes;
+    }
+
+    public synchronized long getParseNanos() {
+        return parseNanos;
+    }
+
+    public synchronized void setParseNanos(long parseNanos) {
+        this.parseNanos = parseNanos;
+    }
+
+    public synchronized long getGoldExecNanos() {
+        return goldExecNanos;
+    }
+
+    public synchronized void setGoldExecNanos(long goldExecNanos) {
+        this.goldExecNanos = goldExecNanos;
+    }
+
+    public synchronized long getPredExecNanos() {
+        return predExecNanos;
+    }
+
+    public synchronized void setPredExecNanos(long predExecNanos) {
+        this.predExecNanos = predExecNanos;
+    }
+
+    public synchronized long getGoldRows() {
+        return goldRows;
+    }
+
+    public synchronized void setGoldRows(long goldRows) {
+        this.goldRows = goldRows;
+    }
+
+    public synchronized long getPredRows() {
+        return predRows;
+    }
+
+    public synchronized void setPredRows(long predRows) {
+        this.predRows = predRows;
+    }
+
+    public synchronized long getBytesMaterialized() {
+        return bytesMaterialized;
+    }
+
+    public synchronized void setBytesMaterialized(long bytesMaterialized) {
+        this.bytesMaterialized = bytesMaterialized;
+    }
+
+    /**
+     * 解析和执行的总耗时
+     */
+    @JsonIgnore
+    public synchronized long getTotalNanos() {
+        return parseNanos + goldExecNanos + predExecNanos;
+    }
+
+    /**
+     * 标准SQL和预测SQL返回的总行数
+     */
+    @JsonIgnore
+    public synchronized long getTotalRows() {
+        return goldRows + predRows;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("parse=%.1fms, gold=%.1fms/%d rows, pred=%.1fms/%d rows, materialized=%d bytes",
+                             parseNanos / 1e6, goldExecNanos / 1e6, goldRows, predExecNanos / 1e6, predRows,
+                             bytesMaterialized);
+    }
+}
@@ -38,6 +38,29 @@ public class FromClause {
         this.conds = conds;
     }
     
+    /**
+     * 64位结构哈希，表单元与连接条件均不区分顺序
+     */
+    public long structuralHash() {
+        return StructuralHash.combine(StructuralHash.unorderedHash(tableUnits, TableUnit::structuralHash),
+                                      StructuralHash.unorderedHash(conds, ConditionUnit::structuralHash));
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        
+        FromClause that = (FromClause) o;
+        return StructuralHash.unorderedEquals(tableUnits, that.tableUnits) &&
+               StructuralHash.unorderedEquals(conds, that.conds);
+    }
+    
+    @Override
+    public int hashCode() {
+        return StructuralHash.fold(structuralHash());
+    }
+    
     @Override
     public String toString() {
         return "FromClause{" +
@@ -0,0 +1,48 @@
+package com.nl2sql.spider.model;
+
+/**
+ * 评估项及其资源消耗，用于最慢、最大评估项的排行
+ */
+public class ItemCost {
+    
+    private int index;              // 评估项序号，从0开始
+    private String dbId;            // 数据库ID
+    private ExecutionMetrics metrics;
+    
+    public ItemCost() {}
+    
+    public ItemCost(int index, String dbId, ExecutionMetrics metrics) {
+        this.index = index;
+        this.dbId = dbId;
+        this.metrics = metrics;
+    }
+    
+    public int getIndex() {
+        return index;
+    }
+    
+    public void setIndex(int index) {
+        this.index = index;
+    }
+    
+    public String getDbId() {
+        return dbId;
+    }
+    
+    public void setDbId(String dbId) {
+        this.dbId = dbId;
+    }
+    
+    public ExecutionMetrics getMetrics() {
+        return metrics;
+    }
+    
+    public void setMetrics(ExecutionMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    @Override
+    public String toString() {
+        return "#" + index + " " + dbId + ": " + metrics;
+    }
+}
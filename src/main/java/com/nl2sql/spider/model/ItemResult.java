@@ -0,0 +1,126 @@
+package com.nl2sql.spider.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.Map;
+
+/**
+ * 单个评估项的结果记录
+ * 评估过程中逐项交给ResultSink，例如写成JSONL的一行
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ItemResult {
+    
+    private int index;              // 评估项序号，从0开始
+    private String dbId;            // 数据库ID
+    private String hardness;        // 难度级别，无法计算时为空
+    private boolean exactMatch;     // 精确匹配
+    private boolean executionMatch; // 执行结果匹配
+    private boolean executionSkipped; // 与标准SQL等价，未执行预测SQL
+    private boolean tooExpensive; // 估计规模超过上限，未执行预测SQL
+    private Map<String, Double> partialF1; // 各组件的F1
+    private double elapsedMillis;   // 评估耗时（毫秒）
+    private ExecutionMetrics metrics; // 解析、执行耗时和结果规模
+    private String error;           // 评估失败时的错误信息
+    
+    public ItemResult() {}
+    
+    public int getIndex() {
+        return index;
+    }
+    
+    public void setIndex(int index) {
+        this.index = index;
+    }
+    
+    public String getDbId() {
+        return dbId;
+    }
+    
+    public void setDbId(String dbId) {
+        this.dbId = dbId;
+    }
+    
+    public String getHardness() {
+        return hardness;
+    }
+    
+    public void setHardness(String hardness) {
+        this.hardness = hardness;
+    }
+    
+    public boolean isExactMatch() {
+        return exactMatch;
+    }
+    
+    public void setExactMatch(boolean exactMatch) {
+        this.exactMatch = exactMatch;
+    }
+    
+    public boolean isExecutionMatch() {
+        return executionMatch;
+    }
+    
+    public void setExecutionMatch(boolean executionMatch) {
+        this.executionMatch = executionMatch;
+    }
+    
+    public boolean isExecutionSkipped() {
+        return executionSkipped;
+    }
+    
+    public void setExecutionSkipped(boolean executionSkipped) {
+        this.executionSkipped = executionSkipped;
+    }
+    
+    public boolean isTooExpensive() {
+        return tooExpensive;
+    }
+    
+    public void setTooExpensive(boolean tooExpensive) {
+        this.tooExpensive = tooExpensive;
+    }
+    
+    public Map<String, Double> getPartialF1() {
+        return partialF1;
+    }
+    
+    public void setPartialF1(Map<String, Double> partialF1) {
+        this.partialF1 = partialF1;
+    }
+    
+    public double getElapsedMillis() {
+        return elapsedMillis;
+    }
+    
+    public void setElapsedMillis(double elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+    
+    public ExecutionMetrics getMetrics() {
+        return metrics;
+    }
+    
+    public void setMetrics(ExecutionMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+    
+    @Override
+    public String toString() {
+        return "ItemResult{" +
+                "index=" + index +
+                ", dbId='" + dbId + '\'' +
+                ", hardness='" + hardness + '\'' +
+                ", exactMatch=" + exactMatch +
+                ", executionMatch=" + executionMatch +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
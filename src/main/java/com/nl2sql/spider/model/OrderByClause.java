@@ -2,6 +2,7 @@ package com.nl2sql.spider.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * ORDER BY子句的数据模型
@@ -38,6 +39,29 @@ public class OrderByClause {
         this.valUnits = valUnits;
     }
     
+    /**
+     * 64位结构哈希，排序列区分顺序
+     */
+    public long structuralHash() {
+        return StructuralHash.combine(StructuralHash.hashString(orderType),
+                                      StructuralHash.orderedHash(valUnits, ValUnit::structuralHash));
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        
+        OrderByClause that = (OrderByClause) o;
+        return Objects.equals(orderType, that.orderType) &&
+               Objects.equals(valUnits, that.valUnits);
+    }
+    
+    @Override
+    public int hashCode() {
+        return StructuralHash.fold(structuralHash());
+    }
+    
     @Override
     public String toString() {
         return "OrderByClause{" +
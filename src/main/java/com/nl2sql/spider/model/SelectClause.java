@@ -2,6 +2,7 @@ package com.nl2sql.spider.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * SELECT子句的数据模型
@@ -38,6 +39,29 @@ public class SelectClause {
         this.selectItems = selectItems;
     }
     
+    /**
+     * 64位结构哈希，SELECT项不区分顺序
+     */
+    public long structuralHash() {
+        return StructuralHash.combine(isDistinct ? 1 : 0,
+                                      StructuralHash.unorderedHash(selectItems, SelectItem::structuralHash));
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        
+        SelectClause that = (SelectClause) o;
+        return isDistinct == that.isDistinct &&
+               StructuralHash.unorderedEquals(selectItems, that.selectItems);
+    }
+    
+    @Override
+    public int hashCode() {
+        return StructuralHash.fold(structuralHash());
+    }
+    
     @Override
     public String toString() {
         return "SelectClause{" +
@@ -79,6 +103,27 @@ public class SelectClause {
             this.valUnit = valUnit;
         }
         
+        /**
+         * 64位结构哈希
+         */
+        public long structuralHash() {
+            return StructuralHash.combine(aggId, StructuralHash.hashValue(valUnit));
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            
+            SelectItem that = (SelectItem) o;
+            return aggId == that.aggId && Objects.equals(valUnit, that.valUnit);
+        }
+        
+        @Override
+        public int hashCode() {
+            return StructuralHash.fold(structuralHash());
+        }
+        
         @Override
         public String toString() {
             return "SelectItem{" +
@@ -1,10 +1,17 @@
 package com.nl2sql.spider.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
 
 /**
  * SQL结构的数据模型，对应Python版本的SQL解析结果
+ * 结构相等按Spider语义比较：SELECT项、WHERE/HAVING条件、FROM表和GROUP BY列不区分顺序。
+ * 结构哈希在解析完成时计算并缓存，本类的setter会使缓存失效；通过getter修改嵌套节点不会使缓存失效，
+ * 因此解析完成后的结构应视为不可变。equals总是逐项比较，不依赖缓存的哈希。
  * 
  * @author NL2SQL Team
  */
@@ -40,6 +47,12 @@ public class SqlStructure {
     @JsonProperty("union")
     private SqlStructure union;
     
+    /** 尚未计算结构哈希 */
+    private static final long HASH_UNCOMPUTED = 0L;
+    
+    // 结构哈希缓存，单个volatile字段，其他线程要么看到完整的哈希，要么重新计算
+    private volatile long cachedHash = HASH_UNCOMPUTED;
+    
     // 构造函数
     public SqlStructure() {}
     
@@ -50,6 +63,7 @@ public class SqlStructure {
     
     public void setSelect(SelectClause select) {
         this.select = select;
+        this.cachedHash = HASH_UNCOMPUTED;
     }
     
     public FromClause getFrom() {
@@ -58,6 +72,7 @@ public class SqlStructure {
     
     public void setFrom(FromClause from) {
         this.from = from;
+        this.cachedHash = HASH_UNCOMPUTED;
     }
     
     public List<ConditionUnit> getWhere() {
@@ -66,6 +81,7 @@ public class SqlStructure {
     
     public void setWhere(List<ConditionUnit> where) {
         this.where = where;
+        this.cachedHash = HASH_UNCOMPUTED;
     }
     
     public List<ColUnit> getGroupBy() {
@@ -74,6 +90,7 @@ public class SqlStructure {
     
     public void setGroupBy(List<ColUnit> groupBy) {
         this.groupBy = groupBy;
+        this.cachedHash = HASH_UNCOMPUTED;
     }
     
     public List<ConditionUnit> getHaving() {
@@ -82,6 +99,7 @@ public class SqlStructure {
     
     public void setHaving(List<ConditionUnit> having) {
         this.having = having;
+        this.cachedHash = HASH_UNCOMPUTED;
     }
     
     public OrderByClause getOrderBy() {
@@ -90,6 +108,7 @@ public class SqlStructure {
     
     public void setOrderBy(OrderByClause orderBy) {
         this.orderBy = orderBy;
+        this.cachedHash = HASH_UNCOMPUTED;
     }
     
     public Integer getLimit() {
@@ -98,6 +117,7 @@ public class SqlStructure {
     
     public void setLimit(Integer limit) {
         this.limit = limit;
+        this.cachedHash = HASH_UNCOMPUTED;
     }
     
     public SqlStructure getIntersect() {
@@ -106,6 +126,7 @@ public class SqlStructure {
     
     public void setIntersect(SqlStructure intersect) {
         this.intersect = intersect;
+        this.cachedHash = HASH_UNCOMPUTED;
     }
     
     public SqlStructure getExcept() {
@@ -114,6 +135,7 @@ public class SqlStructure {
     
     public void setExcept(SqlStructure except) {
         this.except = except;
+        this.cachedHash = HASH_UNCOMPUTED;
     }
     
     public SqlStructure getUnion() {
@@ -122,6 +144,128 @@ public class SqlStructure {
     
     public void setUnion(SqlStructure union) {
         this.union = union;
+        this.cachedHash = HASH_UNCOMPUTED;
+    }
+    
+    /**
+     * 64位结构哈希，首次调用后缓存
+     */
+    public long structuralHash() {
+        long h = cachedHash;
+        if (h == HASH_UNCOMPUTED) {
+            h = computeStructuralHash();
+            if (h == HASH_UNCOMPUTED) {
+                // 避开表示未计算的值
+                h = 1L;
+            }
+            cachedHash = h;
+        }
+        return h;
+    }
+    
+    private long computeStructuralHash() {
+        long h = StructuralHash.hashValue(select);
+        h = StructuralHash.combine(h, StructuralHash.hashValue(from));
+        h = StructuralHash.combine(h, StructuralHash.unorderedHash(where, ConditionUnit::structuralHash));
+        h = StructuralHash.combine(h, StructuralHash.unorderedHash(groupBy, ColUnit::structuralHash));
+        h = StructuralHash.combine(h, StructuralHash.unorderedHash(having, ConditionUnit::structuralHash));
+        h = StructuralHash.combine(h, StructuralHash.hashValue(orderBy));
+        h = StructuralHash.combine(h, StructuralHash.hashValue(limit));
+        h = StructuralHash.combine(h, StructuralHash.hashValue(intersect));
+        h = StructuralHash.combine(h, StructuralHash.hashValue(except));
+        return StructuralHash.combine(h, StructuralHash.hashValue(union));
+    }
+    
+    /**
+     * 规范化：将不区分顺序的列表按结构哈希排序（递归处理子查询），便于稳定输出与比较
+     * 
+     * @return 当前对象
+     */
+    public SqlStructure canonicalize() {
+        if (select != null && select.getSelectItems() != null) {
+            for (SelectClause.SelectItem item : select.getSelectItems()) {
+                if (item != null) {
+                    canonicalizeNested(item.getValUnit());
+                }
+            }
+            select.setSelectItems(sortedByHash(select.getSelectItems(), SelectClause.SelectItem::structuralHash));
+        }
+        if (from != null) {
+            if (from.getTableUnits() != null) {
+                for (TableUnit unit : from.getTableUnits()) {
+                    if (unit != null && unit.getSql() != null) {
+                        unit.getSql().canonicalize();
+                    }
+                }
+                from.setTableUnits(sortedByHash(from.getTableUnits(), TableUnit::structuralHash));
+            }
+            from.setConds(canonicalConditions(from.getConds()));
+        }
+        setWhere(canonicalConditions(where));
+        if (groupBy != null) {
+            setGroupBy(sortedByHash(groupBy, ColUnit::structuralHash));
+        }
+        setHaving(canonicalConditions(having));
+        if (orderBy != null && orderBy.getValUnits() != null) {
+            for (ValUnit val : orderBy.getValUnits()) {
+                canonicalizeNested(val);
+            }
+        }
+        canonicalizeNested(intersect);
+        canonicalizeNested(except);
+        canonicalizeNested(union);
+        return this;
+    }
+    
+    private static List<ConditionUnit> canonicalConditions(List<ConditionUnit> conds) {
+        if (conds == null) {
+            return null;
+        }
+        for (ConditionUnit cond : conds) {
+            if (cond != null) {
+                canonicalizeNested(cond.getValUnit());
+                canonicalizeNested(cond.getVal1());
+                canonicalizeNested(cond.getVal2());
+            }
+        }
+        return sortedByHash(conds, ConditionUnit::structuralHash);
+    }
+    
+    private static void canonicalizeNested(Object value) {
+        if (value instanceof SqlStructure) {
+            ((SqlStructure) value).canonicalize();
+        } else if (value instanceof ValUnit) {
+            canonicalizeNested(((ValUnit) value).getValue());
+        }
+    }
+    
+    private static <T> List<T> sortedByHash(List<T> list, ToLongFunction<T> hasher) {
+        List<T> sorted = new ArrayList<>(list);
+        sorted.sort(Comparator.comparingLong(e -> e == null ? 0L : hasher.applyAsLong(e)));
+        return sorted;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        
+        SqlStructure that = (SqlStructure) o;
+        return Objects.equals(select, that.select) &&
+               Objects.equals(from, that.from) &&
+               StructuralHash.unorderedEquals(where, that.where) &&
+               StructuralHash.unorderedEquals(groupBy, that.groupBy) &&
+               StructuralHash.unorderedEquals(having, that.having) &&
+               Objects.equals(orderBy, that.orderBy) &&
+               Objects.equals(limit, that.limit) &&
+               Objects.equals(intersect, that.intersect) &&
+               Objects.equals(except, that.except) &&
+               Objects.equals(union, that.union);
+    }
+    
+    @Override
+    public int hashCode() {
+        return StructuralHash.fold(structuralHash());
     }
     
     @Override
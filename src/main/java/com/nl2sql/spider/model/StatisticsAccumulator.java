@@ -0,0 +1,135 @@
+package com.nl2sql.spider.model;
+
+import com.nl2sql.spider.enums.HardnessLevel;
+import com.nl2sql.spider.enums.ScoreComponent;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程安全的评估统计累加器
+ * 计数器按难度级别和评分组件的序号放在数组中，每个都是LongAdder，多个线程同时记录结果时不加锁、不分配对象；
+ * F1按与EvaluationStatistics相同的定点表示累加，snapshot()生成的统计与顺序调用EvaluationStatistics.addResult完全一致。
+ * 最慢、返回行数最多的评估项各保留在一个有界堆中
+ */
+public class StatisticsAccumulator {
+    
+    private static final HardnessLevel[] LEVELS = HardnessLevel.values();
+    private static final ScoreComponent[] COMPONENTS = ScoreComponent.values();
+    
+    private final LongAdder[] counts = newAdders(LEVELS.length);
+    private final LongAdder[] exactMatches = newAdders(LEVELS.length);
+    private final LongAdder[] executionMatches = newAdders(LEVELS.length);
+    /** 下标为 级别序号 * 组件数 + 组件序号 */
+    private final LongAdder[] f1Sums = newAdders(LEVELS.length * COMPONENTS.length);
+    private final LongAdder[] f1Counts = newAdders(LEVELS.length * COMPONENTS.length);
+    private final LongAdder errorCount = new LongAdder();
+    private final LongAdder executionSkippedCount = new LongAdder();
+    private final LongAdder tooExpensiveCount = new LongAdder();
+    private final int topItemLimit;
+    private final TopN<ItemCost> slowestItems;
+    private final TopN<ItemCost> largestItems;
+    
+    public StatisticsAccumulator() {
+        this(0);
+    }
+    
+    /**
+     * @param topItemLimit 最慢、返回行数最多的评估项各保留的数目，0表示不保留
+     */
+    public StatisticsAccumulator(int topItemLimit) {
+        this.topItemLimit = Math.max(0, topItemLimit);
+        this.slowestItems = new TopN<>(this.topItemLimit, EvaluationStatistics.SLOWEST_KEY);
+        this.largestItems = new TopN<>(this.topItemLimit, EvaluationStatistics.LARGEST_KEY);
+    }
+    
+    /**
+     * 添加评估结果，同时计入ALL级别
+     */
+    public void addResult(HardnessLevel level, EvaluationResult result) {
+        record(level.ordinal(), result);
+        record(HardnessLevel.ALL.ordinal(), result);
+        
+        if (result.isExecutionSkipped()) {
+            executionSkippedCount.increment();
+        }
+        if (result.isTooExpensive()) {
+            tooExpensiveCount.increment();
+        }
+    }
+    
+    /**
+     * 记录评估项的资源消耗，参与最慢、返回行数最多的排行
+     */
+    public void addItemCost(int index, String dbId, ExecutionMetrics metrics) {
+        if (topItemLimit == 0 || metrics == null) {
+            return;
+        }
+        ItemCost item = new ItemCost(index, dbId, metrics);
+        slowestItems.offer(item);
+        largestItems.offer(item);
+    }
+    
+    /**
+     * 增加错误计数
+     */
+    public void incrementErrorCount() {
+        errorCount.increment();
+    }
+    
+    /**
+     * 生成当前统计的快照并计算最终分数
+     * 与addResult并发调用时，快照可能只包含正在记录的结果的一部分计数
+     */
+    public EvaluationStatistics snapshot() {
+        EvaluationStatistics statistics = new EvaluationStatistics();
+        for (HardnessLevel level : LEVELS) {
+            int l = level.ordinal();
+            EvaluationStatistics.LevelStatistics stats = statistics.getLevelStatistics(level);
+            stats.accumulate(counts[l].intValue(), exactMatches[l].intValue(), executionMatches[l].intValue());
+            for (ScoreComponent component : COMPONENTS) {
+                int slot = l * COMPONENTS.length + component.ordinal();
+                int n = f1Counts[slot].intValue();
+                if (n > 0) {
+                    stats.accumulatePartial(component.getValue(), f1Sums[slot].sum(), n);
+                }
+            }
+        }
+        statistics.accumulateCounts(errorCount.intValue(), executionSkippedCount.intValue(),
+                                    tooExpensiveCount.intValue());
+        statistics.setTopItems(topItemLimit, slowestItems.toList(), largestItems.toList());
+        statistics.calculateFinalScores();
+        return statistics;
+    }
+    
+    private void record(int level, EvaluationResult result) {
+        counts[level].increment();
+        if (result.isExactMatch()) {
+            exactMatches[level].increment();
+        }
+        if (result.isExecutionMatch()) {
+            executionMatches[level].increment();
+        }
+        
+        Map<String, PartialScore> scores = result.getPartialScores();
+        if (scores == null || scores.isEmpty()) {
+            return;
+        }
+        int base = level * COMPONENTS.length;
+        for (ScoreComponent component : COMPONENTS) {
+            PartialScore score = scores.get(component.getValue());
+            if (score != null) {
+                f1Sums[base + component.ordinal()].add(
+                    Math.round(score.getF1() * EvaluationStatistics.LevelStatistics.F1_SCALE));
+                f1Counts[base + component.ordinal()].increment();
+            }
+        }
+    }
+    
+    private static LongAdder[] newAdders(int size) {
+        LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,171 @@
+package com.nl2sql.spider.model;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+/**
+ * SQL模型类共用的结构哈希与比较工具
+ * 哈希为64位；按Spider语义不区分顺序的列表（SELECT项、条件、FROM表、GROUP BY列）使用可交换的组合方式
+ */
+public final class StructuralHash {
+
+    private static final long NULL_HASH = 0x9E3779B97F4A7C15L;
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private StructuralHash() {
+        // 工具类，防止实例化
+    }
+
+    /**
+     * 64位混合函数（MurmurHash3 finalizer）
+     */
+    public static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 有序组合
+     */
+    public static long combine(long h, long value) {
+        return mix(h * 31 + value);
+    }
+
+    /**
+     * 字符串的64位哈希（FNV-1a）
+     */
+    public static long hashString(String s) {
+        if (s == null) {
+            return NULL_HASH;
+        }
+        long h = FNV_OFFSET;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    /**
+     * 任意值的哈希，模型类使用结构哈希，其余使用hashCode
+     */
+    public static long hashValue(Object value) {
+        if (value == null) {
+            return NULL_HASH;
+        }
+        if (value instanceof SqlStructure) {
+            return ((SqlStructure) value).structuralHash();
+        }
+        if (value instanceof ValUnit) {
+            return ((ValUnit) value).structuralHash();
+        }
+        if (value instanceof ColUnit) {
+            return ((ColUnit) value).structuralHash();
+        }
+        if (value instanceof ConditionUnit) {
+            return ((ConditionUnit) value).structuralHash();
+        }
+        if (value instanceof TableUnit) {
+            return ((TableUnit) value).structuralHash();
+        }
+        if (value instanceof SelectClause) {
+            return ((SelectClause) value).structuralHash();
+        }
+        if (value instanceof SelectClause.SelectItem) {
+            return ((SelectClause.SelectItem) value).structuralHash();
+        }
+        if (value instanceof FromClause) {
+            return ((FromClause) value).structuralHash();
+        }
+        if (value instanceof OrderByClause) {
+            return ((OrderByClause) value).structuralHash();
+        }
+        if (value instanceof String) {
+            return hashString((String) value);
+        }
+        return mix(value.hashCode());
+    }
+
+    /**
+     * 有序列表的哈希
+     */
+    public static <T> long orderedHash(List<T> list, ToLongFunction<T> hasher) {
+        if (list == null) {
+            return NULL_HASH;
+        }
+        long h = list.size();
+        for (T element : list) {
+            h = combine(h, element == null ? NULL_HASH : hasher.applyAsLong(element));
+        }
+        return h;
+    }
+
+    /**
+     * 无序列表（多重集合）的哈希，与元素顺序无关
+     */
+    public static <T> long unorderedHash(List<T> list, ToLongFunction<T> hasher) {
+        if (list == null) {
+            return NULL_HASH;
+        }
+        long sum = 0;
+        long xor = 0;
+        for (T element : list) {
+            long e = mix(element == null ? NULL_HASH : hasher.applyAsLong(element));
+            sum += e;
+            xor ^= e;
+        }
+        return combine(combine(list.size(), sum), xor);
+    }
+
+    /**
+     * 无序列表（多重集合）相等比较
+     */
+    public static <T> boolean unorderedEquals(List<T> a, List<T> b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a.size() != b.size()) {
+            return false;
+        }
+
+        // 顺序一致是最常见的情况
+        int n = a.size();
+        int prefix = 0;
+        while (prefix < n && Objects.equals(a.get(prefix), b.get(prefix))) {
+            prefix++;
+        }
+        if (prefix == n) {
+            return true;
+        }
+
+        boolean[] used = new boolean[n];
+        for (int i = prefix; i < n; i++) {
+            T element = a.get(i);
+            boolean found = false;
+            for (int j = prefix; j < n; j++) {
+                if (!used[j] && Objects.equals(element, b.get(j))) {
+                    used[j] = true;
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 将64位哈希折叠为hashCode
+     */
+    public static int fold(long h) {
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,83 @@
+package com.nl2sql.spider.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 标识符驻留表
+ * 将列名、表名等字符串映射为连续的int编号，供CompactSqlStructure共享使用
+ * 写入加锁，读取无锁，可在多个线程间共享
+ */
+public final class SymbolTable {
+
+    private final ConcurrentHashMap<String, Integer> ids;
+    private volatile String[] names;
+    private volatile int size;
+
+    public SymbolTable() {
+        this(64);
+    }
+
+    public SymbolTable(int initialCapacity) {
+        this.ids = new ConcurrentHashMap<>(initialCapacity);
+        this.names = new String[Math.max(initialCapacity, 16)];
+        this.size = 0;
+    }
+
+    /**
+     * 驻留字符串，返回其编号；null返回-1
+     */
+    public int intern(String name) {
+        if (name == null) {
+            return -1;
+        }
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            int next = size;
+            String[] current = names;
+            if (next == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[next] = name;
+            names = current;
+            size = next + 1;
+            ids.put(name, next);
+            return next;
+        }
+    }
+
+    /**
+     * 查找已驻留字符串的编号，不存在返回-1
+     */
+    public int lookup(String name) {
+        if (name == null) {
+            return -1;
+        }
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * 根据编号获取字符串；-1返回null
+     */
+    public String name(int id) {
+        if (id < 0) {
+            return null;
+        }
+        if (id >= size) {
+            throw new IndexOutOfBoundsException("Unknown symbol id: " + id);
+        }
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+}
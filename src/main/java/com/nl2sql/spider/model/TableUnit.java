@@ -1,6 +1,7 @@
 package com.nl2sql.spider.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Objects;
 
 /**
  * 表单元的数据模型
@@ -53,6 +54,30 @@ public class TableUnit {
         this.sql = sql;
     }
     
+    /**
+     * 64位结构哈希
+     */
+    public long structuralHash() {
+        long h = StructuralHash.combine(StructuralHash.hashString(tableType), StructuralHash.hashString(tableId));
+        return StructuralHash.combine(h, StructuralHash.hashValue(sql));
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        
+        TableUnit that = (TableUnit) o;
+        return Objects.equals(tableType, that.tableType) &&
+               Objects.equals(tableId, that.tableId) &&
+               Objects.equals(sql, that.sql);
+    }
+    
+    @Override
+    public int hashCode() {
+        return StructuralHash.fold(structuralHash());
+    }
+    
     @Override
     public String toString() {
         return "TableUnit{" +
@@ -0,0 +1,54 @@
+package com.nl2sql.spider.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ToLongFunction;
+
+/**
+ * 按数值键保留最大的N个元素的有界最小堆
+ * 堆满后键不超过堆顶的元素不加锁直接丢弃，多数评估项只需读一次volatile字段
+ */
+final class TopN<T> {
+
+    private final int capacity;
+    private final ToLongFunction<T> key;
+    private final PriorityQueue<T> heap;
+    /** 堆满后堆顶的键，未满时为Long.MIN_VALUE */
+    private volatile long threshold = Long.MIN_VALUE;
+
+    TopN(int capacity, ToLongFunction<T> key) {
+        this.capacity = capacity;
+        this.key = key;
+        this.heap = new PriorityQueue<>(Math.max(1, capacity + 1), Comparator.comparingLong(key));
+    }
+
+    void offer(T item) {
+        if (capacity <= 0) {
+            return;
+        }
+        long k = key.applyAsLong(item);
+        if (k <= threshold) {
+            return;
+        }
+        synchronized (this) {
+            heap.add(item);
+            if (heap.size() > capacity) {
+                heap.poll();
+            }
+            if (heap.size() == capacity) {
+                threshold = key.applyAsLong(heap.peek());
+            }
+        }
+    }
+
+    /**
+     * 按键从大到小排列的元素
+     */
+    synchronized List<T> toList() {
+        List<T> items = new ArrayList<>(heap);
+        items.sort(Comparator.comparingLong(key).reversed());
+        return items;
+    }
+}
@@ -1,6 +1,7 @@
 package com.nl2sql.spider.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Objects;
 
 /**
  * 值单元的数据模型
@@ -80,6 +81,34 @@ public class ValUnit {
         this.value = value;
     }
     
+    /**
+     * 64位结构哈希
+     */
+    public long structuralHash() {
+        long h = StructuralHash.combine(unitOp, StructuralHash.hashValue(colUnit1));
+        h = StructuralHash.combine(h, StructuralHash.hashValue(colUnit2));
+        h = StructuralHash.combine(h, StructuralHash.hashString(valueType));
+        return StructuralHash.combine(h, StructuralHash.hashValue(value));
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        
+        ValUnit that = (ValUnit) o;
+        return unitOp == that.unitOp &&
+               Objects.equals(colUnit1, that.colUnit1) &&
+               Objects.equals(colUnit2, that.colUnit2) &&
+               Objects.equals(valueType, that.valueType) &&
+               Objects.equals(value, that.value);
+    }
+    
+    @Override
+    public int hashCode() {
+        return StructuralHash.fold(structuralHash());
+    }
+    
     @Override
     public String toString() {
         return "ValUnit{" +
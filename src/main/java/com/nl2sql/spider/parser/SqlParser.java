@@ -1,6 +1,7 @@
 package com.nl2sql.spider.parser;
 
 import com.nl2sql.spider.constants.SqlConstants;
+import com.nl2sql.spider.jfr.SqlParseEvent;
 import com.nl2sql.spider.model.*;
 import com.nl2sql.spider.utils.SqlTokenizer;
 import org.slf4j.Logger;
@@ -16,6 +17,13 @@ public class SqlParser {
     
     private static final Logger logger = LoggerFactory.getLogger(SqlParser.class);
     
+    private static final int AGG_NONE = SqlConstants.AGG_OPS.indexOf("none");
+    
+    /**
+     * 每个线程复用的解析上下文
+     */
+    private static final ThreadLocal<ParseContext> CONTEXT = ThreadLocal.withInitial(ParseContext::new);
+    
     /**
      * 解析SQL字符串为结构化对象
      * 
@@ -24,314 +32,240 @@ public class SqlParser {
      * @return 解析后的SQL结构
      */
     public SqlStructure parseSql(DatabaseSchema schema, String query) {
+        SqlParseEvent event = new SqlParseEvent();
+        event.begin();
+        boolean success = false;
+        ParseContext ctx = CONTEXT.get();
         try {
-            List<String> tokens = SqlTokenizer.tokenize(query);
-            Map<String, String> tablesWithAlias = getTablesWithAlias(schema, tokens);
-            
-            return parseSql(tokens, 0, tablesWithAlias, schema).getRight();
+            ctx.reset(query, schema);
+            SqlStructure sql = parseSql(ctx);
+            // 解析完成后结构不再修改，此时计算并缓存结构哈希
+            sql.structuralHash();
+            success = true;
+            return sql;
         } catch (Exception e) {
             logger.error("Failed to parse SQL: {}", query, e);
             throw new RuntimeException("SQL parsing failed", e);
+        } finally {
+            ctx.release();
+            event.finish(schema != null ? schema.getDbId() : null, query, success);
         }
     }
     
     /**
-     * 获取表名和别名的映射
+     * 解析SQL结构，从游标位置开始，结束时游标停在该查询之后
      */
-    private Map<String, String> getTablesWithAlias(DatabaseSchema schema, List<String> tokens) {
-        Map<String, String> tables = scanAlias(tokens);
-        
-        // 添加所有表名，检查空指针
-        List<String> tableNames = schema.getTableNames();
-        if (tableNames != null) {
-            for (String tableName : tableNames) {
-                if (!tables.containsKey(tableName)) {
-                    tables.put(tableName, tableName);
-                }
-            }
-        }
-        
-        return tables;
-    }
-    
-    /**
-     * 扫描别名
-     */
-    private Map<String, String> scanAlias(List<String> tokens) {
-        Map<String, String> alias = new HashMap<>();
-        
-        for (int i = 0; i < tokens.size(); i++) {
-            if ("as".equals(tokens.get(i)) && i > 0 && i < tokens.size() - 1) {
-                alias.put(tokens.get(i + 1), tokens.get(i - 1));
-            }
-        }
-        
-        return alias;
-    }
-    
-    /**
-     * 解析SQL结构
-     */
-    private Pair<Integer, SqlStructure> parseSql(List<String> tokens, int startIdx, 
-                                                 Map<String, String> tablesWithAlias, 
-                                                 DatabaseSchema schema) {
+    private SqlStructure parseSql(ParseContext ctx) {
+        int startIdx = ctx.idx;
         boolean isBlock = false;
-        int idx = startIdx;
         
         SqlStructure sql = new SqlStructure();
         
-        if (idx < tokens.size() && "(".equals(tokens.get(idx))) {
+        if (ctx.at("(")) {
             isBlock = true;
-            idx++;
+            ctx.idx++;
         }
+        int selectIdx = ctx.idx;
+        // 子句关键字只在本查询块内查找
+        int block = ctx.blockAt(selectIdx);
         
         // 解析FROM子句以获取默认表
-        Triple<Integer, List<TableUnit>, List<ConditionUnit>> fromResult = 
-            parseFrom(tokens, startIdx, tablesWithAlias, schema);
-        int fromEndIdx = fromResult.getLeft();
-        List<TableUnit> tableUnits = fromResult.getMiddle();
-        List<ConditionUnit> conds = fromResult.getRight();
-        
-        sql.setFrom(new FromClause(tableUnits, conds));
-        
-        // 获取默认表名列表
-        List<String> defaultTables = getDefaultTableNames(tableUnits);
+        ctx.idx = startIdx;
+        sql.setFrom(parseFrom(ctx, block));
+        int fromEndIdx = ctx.idx;
         
         // 解析SELECT子句
-        Pair<Integer, SelectClause> selectResult = parseSelect(tokens, idx, tablesWithAlias, schema, defaultTables);
-        sql.setSelect(selectResult.getRight());
+        ctx.idx = selectIdx;
+        sql.setSelect(parseSelect(ctx));
         
-        idx = fromEndIdx;
+        ctx.idx = fromEndIdx;
         
         // 解析WHERE子句
-        Pair<Integer, List<ConditionUnit>> whereResult = parseWhere(tokens, idx, tablesWithAlias, schema, defaultTables);
-        idx = whereResult.getLeft();
-        sql.setWhere(whereResult.getRight());
+        sql.setWhere(parseWhere(ctx, block));
         
         // 解析GROUP BY子句
-        Pair<Integer, List<ColUnit>> groupByResult = parseGroupBy(tokens, idx, tablesWithAlias, schema, defaultTables);
-        idx = groupByResult.getLeft();
-        sql.setGroupBy(groupByResult.getRight());
+        sql.setGroupBy(parseGroupBy(ctx, block));
         
         // 解析HAVING子句
-        Pair<Integer, List<ConditionUnit>> havingResult = parseHaving(tokens, idx, tablesWithAlias, schema, defaultTables);
-        idx = havingResult.getLeft();
-        sql.setHaving(havingResult.getRight());
+        sql.setHaving(parseHaving(ctx, block));
         
         // 解析ORDER BY子句
-        Pair<Integer, OrderByClause> orderByResult = parseOrderBy(tokens, idx, tablesWithAlias, schema, defaultTables);
-        idx = orderByResult.getLeft();
-        sql.setOrderBy(orderByResult.getRight());
+        sql.setOrderBy(parseOrderBy(ctx, block));
         
         // 解析LIMIT子句
-        Pair<Integer, Integer> limitResult = parseLimit(tokens, idx);
-        idx = limitResult.getLeft();
-        sql.setLimit(limitResult.getRight());
+        sql.setLimit(parseLimit(ctx));
         
-        idx = skipSemicolon(tokens, idx);
+        skipSemicolon(ctx);
         
-        if (isBlock && idx < tokens.size() && ")".equals(tokens.get(idx))) {
-            idx++;
+        if (isBlock && ctx.at(")")) {
+            ctx.idx++;
         }
         
-        idx = skipSemicolon(tokens, idx);
+        skipSemicolon(ctx);
         
         // 解析INTERSECT/UNION/EXCEPT子句
-        if (idx < tokens.size() && SqlConstants.SQL_OPS.contains(tokens.get(idx))) {
-            String sqlOp = tokens.get(idx);
-            idx++;
-            Pair<Integer, SqlStructure> iueResult = parseSql(tokens, idx, tablesWithAlias, schema);
-            idx = iueResult.getLeft();
+        if (ctx.hasNext() && SqlConstants.SQL_OPS.contains(ctx.current())) {
+            String sqlOp = ctx.current();
+            ctx.idx++;
+            SqlStructure iue = parseSql(ctx);
             
             switch (sqlOp) {
                 case "intersect":
-                    sql.setIntersect(iueResult.getRight());
+                    sql.setIntersect(iue);
                     break;
                 case "union":
-                    sql.setUnion(iueResult.getRight());
+                    sql.setUnion(iue);
                     break;
                 case "except":
-                    sql.setExcept(iueResult.getRight());
+                    sql.setExcept(iue);
                     break;
             }
         }
         
-        return new Pair<>(idx, sql);
+        return sql;
     }
     
     /**
      * 解析SELECT子句
      */
-    private Pair<Integer, SelectClause> parseSelect(List<String> tokens, int startIdx, 
-                                                   Map<String, String> tablesWithAlias, 
-                                                   DatabaseSchema schema, 
-                                                   List<String> defaultTables) {
-        int idx = startIdx;
-        
-        if (idx >= tokens.size() || !"select".equals(tokens.get(idx))) {
+    private SelectClause parseSelect(ParseContext ctx) {
+        if (!ctx.at("select")) {
             throw new RuntimeException("'select' not found");
         }
         
-        idx++;
+        ctx.idx++;
         boolean isDistinct = false;
         
-        if (idx < tokens.size() && "distinct".equals(tokens.get(idx))) {
-            idx++;
+        if (ctx.at("distinct")) {
+            ctx.idx++;
             isDistinct = true;
         }
         
         List<SelectClause.SelectItem> selectItems = new ArrayList<>();
         
-        while (idx < tokens.size() && !SqlConstants.CLAUSE_KEYWORDS.contains(tokens.get(idx))) {
-            int aggId = SqlConstants.AGG_OPS.indexOf("none");
+        while (ctx.hasNext() && !SqlConstants.CLAUSE_KEYWORDS.contains(ctx.current())) {
+            int aggId = AGG_NONE;
             
-            if (idx < tokens.size() && SqlConstants.AGG_OPS.contains(tokens.get(idx))) {
-                aggId = SqlConstants.AGG_OPS.indexOf(tokens.get(idx));
-                idx++;
+            if (SqlConstants.AGG_OPS.contains(ctx.current())) {
+                aggId = SqlConstants.AGG_OPS.indexOf(ctx.current());
+                ctx.idx++;
             }
             
-            Pair<Integer, ValUnit> valUnitResult = parseValUnit(tokens, idx, tablesWithAlias, schema, defaultTables);
-            idx = valUnitResult.getLeft();
+            ValUnit valUnit = parseValUnit(ctx);
+            selectItems.add(new SelectClause.SelectItem(aggId, valUnit));
             
-            selectItems.add(new SelectClause.SelectItem(aggId, valUnitResult.getRight()));
-            
-            if (idx < tokens.size() && ",".equals(tokens.get(idx))) {
-                idx++;
+            if (ctx.at(",")) {
+                ctx.idx++;
             }
         }
         
-        return new Pair<>(idx, new SelectClause(isDistinct, selectItems));
+        return new SelectClause(isDistinct, selectItems);
     }
     
     /**
      * 解析FROM子句
      */
-    private Triple<Integer, List<TableUnit>, List<ConditionUnit>> parseFrom(List<String> tokens, int startIdx, 
-                                                                           Map<String, String> tablesWithAlias, 
-                                                                           DatabaseSchema schema) {
-        int fromIdx = -1;
-        for (int i = startIdx; i < tokens.size(); i++) {
-            if ("from".equals(tokens.get(i))) {
-                fromIdx = i;
-                break;
-            }
-        }
-        
+    private FromClause parseFrom(ParseContext ctx, int block) {
+        int fromIdx = ctx.clauseIndex(block, ParseContext.FROM);
         if (fromIdx == -1) {
             throw new RuntimeException("'from' not found");
         }
         
-        int idx = fromIdx + 1;
+        ctx.idx = fromIdx + 1;
         List<TableUnit> tableUnits = new ArrayList<>();
         List<ConditionUnit> conds = new ArrayList<>();
         
-        while (idx < tokens.size()) {
+        while (ctx.hasNext()) {
             boolean isBlock = false;
             
-            if (idx < tokens.size() && "(".equals(tokens.get(idx))) {
+            if (ctx.at("(")) {
                 isBlock = true;
-                idx++;
+                ctx.idx++;
             }
             
-            if (idx < tokens.size() && "select".equals(tokens.get(idx))) {
-                Pair<Integer, SqlStructure> sqlResult = parseSql(tokens, idx, tablesWithAlias, schema);
-                idx = sqlResult.getLeft();
-                tableUnits.add(new TableUnit(SqlConstants.TABLE_TYPE_SQL, sqlResult.getRight()));
+            if (ctx.at("select")) {
+                SqlStructure subQuery = parseSql(ctx);
+                tableUnits.add(new TableUnit(SqlConstants.TABLE_TYPE_SQL, subQuery));
             } else {
-                if (idx < tokens.size() && "join".equals(tokens.get(idx))) {
-                    idx++;
+                if (ctx.at("join")) {
+                    ctx.idx++;
                 }
                 
-                Triple<Integer, String, String> tableResult = parseTableUnit(tokens, idx, tablesWithAlias, schema);
-                idx = tableResult.getLeft();
-                tableUnits.add(new TableUnit(SqlConstants.TABLE_TYPE_TABLE_UNIT, tableResult.getMiddle()));
+                tableUnits.add(new TableUnit(SqlConstants.TABLE_TYPE_TABLE_UNIT, parseTableUnit(ctx)));
             }
             
-            if (idx < tokens.size() && "on".equals(tokens.get(idx))) {
-                idx++;
+            if (ctx.at("on")) {
+                ctx.idx++;
                 // 解析JOIN条件
                 // TODO: 实现条件解析
             }
             
-            if (isBlock && idx < tokens.size() && ")".equals(tokens.get(idx))) {
-                idx++;
+            if (isBlock && ctx.at(")")) {
+                ctx.idx++;
             }
             
-            if (idx < tokens.size() && (SqlConstants.CLAUSE_KEYWORDS.contains(tokens.get(idx)) || 
-                                      ")".equals(tokens.get(idx)) || ";".equals(tokens.get(idx)))) {
+            if (ctx.hasNext() && (SqlConstants.CLAUSE_KEYWORDS.contains(ctx.current()) || 
+                                  ctx.at(")") || ctx.at(";"))) {
                 break;
             }
         }
         
-        return new Triple<>(idx, tableUnits, conds);
+        return new FromClause(tableUnits, conds);
     }
     
     // 其他解析方法的完整实现
     
-    private Pair<Integer, List<ConditionUnit>> parseWhere(List<String> tokens, int startIdx, 
-                                                         Map<String, String> tablesWithAlias, 
-                                                         DatabaseSchema schema, 
-                                                         List<String> defaultTables) {
-        int whereIdx = findKeyword(tokens, startIdx, "where");
+    private List<ConditionUnit> parseWhere(ParseContext ctx, int block) {
+        int whereIdx = ctx.clauseIndex(block, ParseContext.WHERE);
         if (whereIdx == -1) {
-            return new Pair<>(startIdx, new ArrayList<>());
+            return new ArrayList<>();
         }
         
-        return parseConditions(tokens, whereIdx + 1, tablesWithAlias, schema, defaultTables);
+        ctx.idx = whereIdx + 1;
+        return parseConditions(ctx);
     }
     
     /**
      * 解析条件列表
      */
-    private Pair<Integer, List<ConditionUnit>> parseConditions(List<String> tokens, int startIdx,
-                                                              Map<String, String> tablesWithAlias,
-                                                              DatabaseSchema schema,
-                                                              List<String> defaultTables) {
-        int idx = startIdx;
+    private List<ConditionUnit> parseConditions(ParseContext ctx) {
         List<ConditionUnit> conditions = new ArrayList<>();
         
-        while (idx < tokens.size() && !SqlConstants.CLAUSE_KEYWORDS.contains(tokens.get(idx))) {
+        while (ctx.hasNext() && !SqlConstants.CLAUSE_KEYWORDS.contains(ctx.current())) {
             // 解析单个条件
-            Pair<Integer, ConditionUnit> condResult = parseCondition(tokens, idx, tablesWithAlias, schema, defaultTables);
-            idx = condResult.getLeft();
-            conditions.add(condResult.getRight());
+            conditions.add(parseCondition(ctx));
             
             // 跳过AND/OR连接符
-            if (idx < tokens.size() && ("and".equals(tokens.get(idx)) || "or".equals(tokens.get(idx)))) {
-                idx++;
+            if (ctx.at("and") || ctx.at("or")) {
+                ctx.idx++;
             }
         }
         
-        return new Pair<>(idx, conditions);
+        return conditions;
     }
     
     /**
      * 解析单个条件
      */
-    private Pair<Integer, ConditionUnit> parseCondition(List<String> tokens, int startIdx,
-                                                        Map<String, String> tablesWithAlias,
-                                                        DatabaseSchema schema,
-                                                        List<String> defaultTables) {
-        int idx = startIdx;
+    private ConditionUnit parseCondition(ParseContext ctx) {
         boolean notOp = false;
         
         // 检查NOT操作符
-        if (idx < tokens.size() && "not".equals(tokens.get(idx))) {
+        if (ctx.at("not")) {
             notOp = true;
-            idx++;
+            ctx.idx++;
         }
         
         // 解析左值
-        Pair<Integer, ValUnit> leftVal = parseValUnit(tokens, idx, tablesWithAlias, schema, defaultTables);
-        idx = leftVal.getLeft();
+        ValUnit leftVal = parseValUnit(ctx);
         
         // 解析操作符
         int opId = 0; // 默认为"="
-        if (idx < tokens.size()) {
-            String op = tokens.get(idx);
-            if (SqlConstants.COND_OPS.contains(op)) {
-                opId = SqlConstants.COND_OPS.indexOf(op);
-                idx++;
+        if (ctx.hasNext()) {
+            int op = SqlConstants.COND_OPS.indexOf(ctx.current());
+            if (op >= 0) {
+                opId = op;
+                ctx.idx++;
             }
         }
         
@@ -339,158 +273,134 @@ public class SqlParser {
         Object val1 = null;
         Object val2 = null;
         
-        if (idx < tokens.size()) {
-            if ("(".equals(tokens.get(idx))) {
+        if (ctx.hasNext()) {
+            if (ctx.at("(")) {
                 // 子查询
-                idx++; // 跳过'('
-                if (idx < tokens.size() && "select".equals(tokens.get(idx))) {
-                    Pair<Integer, SqlStructure> subQuery = parseSql(tokens, idx, tablesWithAlias, schema);
-                    idx = subQuery.getLeft();
-                    val1 = subQuery.getRight();
+                ctx.idx++; // 跳过'('
+                if (ctx.at("select")) {
+                    val1 = parseSql(ctx);
                 }
-                if (idx < tokens.size() && ")".equals(tokens.get(idx))) {
-                    idx++; // 跳过')'
+                if (ctx.at(")")) {
+                    ctx.idx++; // 跳过')'
                 }
             } else {
                 // 简单值
-                val1 = tokens.get(idx);
-                idx++;
+                val1 = ctx.current();
+                ctx.idx++;
             }
         }
         
-        ConditionUnit condition = new ConditionUnit(notOp, opId, leftVal.getRight(), val1, val2);
-        return new Pair<>(idx, condition);
+        return new ConditionUnit(notOp, opId, leftVal, val1, val2);
     }
     
-    private Pair<Integer, List<ColUnit>> parseGroupBy(List<String> tokens, int startIdx, 
-                                                     Map<String, String> tablesWithAlias, 
-                                                     DatabaseSchema schema, 
-                                                     List<String> defaultTables) {
-        int groupIdx = findKeyword(tokens, startIdx, "group");
+    private List<ColUnit> parseGroupBy(ParseContext ctx, int block) {
+        int groupIdx = ctx.clauseIndex(block, ParseContext.GROUP);
         if (groupIdx == -1) {
-            return new Pair<>(startIdx, new ArrayList<>());
+            return new ArrayList<>();
         }
         
-        int idx = groupIdx + 1;
-        if (idx < tokens.size() && "by".equals(tokens.get(idx))) {
-            idx++;
+        ctx.idx = groupIdx + 1;
+        if (ctx.at("by")) {
+            ctx.idx++;
         }
         
         List<ColUnit> groupItems = new ArrayList<>();
         
-        while (idx < tokens.size() && !SqlConstants.CLAUSE_KEYWORDS.contains(tokens.get(idx))) {
+        while (ctx.hasNext() && !SqlConstants.CLAUSE_KEYWORDS.contains(ctx.current())) {
             // 简化实现：创建基本的ColUnit
-            ColUnit colUnit = new ColUnit(0, tokens.get(idx), false);
-            groupItems.add(colUnit);
-            idx++;
+            groupItems.add(new ColUnit(0, ctx.current(), false));
+            ctx.idx++;
             
-            if (idx < tokens.size() && ",".equals(tokens.get(idx))) {
-                idx++;
+            if (ctx.at(",")) {
+                ctx.idx++;
             }
         }
         
-        return new Pair<>(idx, groupItems);
+        return groupItems;
     }
     
-    private Pair<Integer, List<ConditionUnit>> parseHaving(List<String> tokens, int startIdx, 
-                                                          Map<String, String> tablesWithAlias, 
-                                                          DatabaseSchema schema, 
-                                                          List<String> defaultTables) {
-        int havingIdx = findKeyword(tokens, startIdx, "having");
+    private List<ConditionUnit> parseHaving(ParseContext ctx, int block) {
+        int havingIdx = ctx.clauseIndex(block, ParseContext.HAVING);
         if (havingIdx == -1) {
-            return new Pair<>(startIdx, new ArrayList<>());
+            return new ArrayList<>();
         }
         
-        return parseConditions(tokens, havingIdx + 1, tablesWithAlias, schema, defaultTables);
+        ctx.idx = havingIdx + 1;
+        return parseConditions(ctx);
     }
     
-    private Pair<Integer, OrderByClause> parseOrderBy(List<String> tokens, int startIdx, 
-                                                     Map<String, String> tablesWithAlias, 
-                                                     DatabaseSchema schema, 
-                                                     List<String> defaultTables) {
-        int orderIdx = findKeyword(tokens, startIdx, "order");
+    private OrderByClause parseOrderBy(ParseContext ctx, int block) {
+        int orderIdx = ctx.clauseIndex(block, ParseContext.ORDER);
         if (orderIdx == -1) {
-            return new Pair<>(startIdx, null);
+            return null;
         }
         
-        int idx = orderIdx + 1;
-        if (idx < tokens.size() && "by".equals(tokens.get(idx))) {
-            idx++;
+        ctx.idx = orderIdx + 1;
+        if (ctx.at("by")) {
+            ctx.idx++;
         }
         
         List<ValUnit> valUnits = new ArrayList<>();
         String orderType = "asc"; // 默认升序
         
-        while (idx < tokens.size() && !SqlConstants.CLAUSE_KEYWORDS.contains(tokens.get(idx))) {
-            if ("asc".equals(tokens.get(idx)) || "desc".equals(tokens.get(idx))) {
-                orderType = tokens.get(idx);
-                idx++;
+        while (ctx.hasNext() && !SqlConstants.CLAUSE_KEYWORDS.contains(ctx.current())) {
+            if (ctx.at("asc") || ctx.at("desc")) {
+                orderType = ctx.current();
+                ctx.idx++;
             } else {
-                Pair<Integer, ValUnit> valResult = parseValUnit(tokens, idx, tablesWithAlias, schema, defaultTables);
-                idx = valResult.getLeft();
-                valUnits.add(valResult.getRight());
+                valUnits.add(parseValUnit(ctx));
                 
-                if (idx < tokens.size() && ",".equals(tokens.get(idx))) {
-                    idx++;
+                if (ctx.at(",")) {
+                    ctx.idx++;
                 }
             }
         }
         
-        return new Pair<>(idx, new OrderByClause(orderType, valUnits));
+        return new OrderByClause(orderType, valUnits);
     }
     
-    private Pair<Integer, Integer> parseLimit(List<String> tokens, int startIdx) {
-        int idx = startIdx;
-        
-        if (idx < tokens.size() && "limit".equals(tokens.get(idx))) {
-            idx += 2;
-            return new Pair<>(idx, Integer.parseInt(tokens.get(idx - 1)));
+    private Integer parseLimit(ParseContext ctx) {
+        if (ctx.at("limit")) {
+            ctx.idx += 2;
+            return Integer.parseInt(ctx.token(ctx.idx - 1));
         }
         
-        return new Pair<>(idx, null);
+        return null;
     }
     
-    private Pair<Integer, ValUnit> parseValUnit(List<String> tokens, int startIdx, 
-                                               Map<String, String> tablesWithAlias, 
-                                               DatabaseSchema schema, 
-                                               List<String> defaultTables) {
-        int idx = startIdx;
-        
-        if (idx >= tokens.size()) {
-            return new Pair<>(idx, new ValUnit());
+    private ValUnit parseValUnit(ParseContext ctx) {
+        if (!ctx.hasNext()) {
+            return new ValUnit();
         }
         
-        String token = tokens.get(idx);
+        String token = ctx.current();
         
         // 检查是否是子查询
         if ("(".equals(token)) {
-            idx++; // 跳过'('
-            if (idx < tokens.size() && "select".equals(tokens.get(idx))) {
-                Pair<Integer, SqlStructure> subQuery = parseSql(tokens, idx, tablesWithAlias, schema);
-                idx = subQuery.getLeft();
-                if (idx < tokens.size() && ")".equals(tokens.get(idx))) {
-                    idx++; // 跳过')'
+            ctx.idx++; // 跳过'('
+            if (ctx.at("select")) {
+                SqlStructure subQuery = parseSql(ctx);
+                if (ctx.at(")")) {
+                    ctx.idx++; // 跳过')'
                 }
-                return new Pair<Integer, ValUnit>(idx, new ValUnit(SqlConstants.UNIT_TYPE_SQL, subQuery.getRight()));
+                return new ValUnit(SqlConstants.UNIT_TYPE_SQL, subQuery);
             }
         }
         
+        ctx.idx++;
+        
         // 检查是否是数字
         if (isNumeric(token)) {
-            idx++;
-            return new Pair<Integer, ValUnit>(idx, new ValUnit(SqlConstants.UNIT_TYPE_NUMBER, token));
+            return new ValUnit(SqlConstants.UNIT_TYPE_NUMBER, token);
         }
         
         // 检查是否是字符串（引号包围）
         if (token.startsWith("'") && token.endsWith("'")) {
-            idx++;
-            return new Pair<Integer, ValUnit>(idx, new ValUnit(SqlConstants.UNIT_TYPE_STRING, token.substring(1, token.length() - 1)));
+            return new ValUnit(SqlConstants.UNIT_TYPE_STRING, token.substring(1, token.length() - 1));
         }
         
         // 默认作为列名处理
-        ColUnit colUnit = new ColUnit(0, token, false);
-        idx++;
-        return new Pair<Integer, ValUnit>(idx, new ValUnit(SqlConstants.UNIT_TYPE_COLUMN, colUnit));
+        return new ValUnit(SqlConstants.UNIT_TYPE_COLUMN, new ColUnit(0, token, false));
     }
     
     /**
@@ -500,6 +410,10 @@ public class SqlParser {
         if (str == null || str.isEmpty()) {
             return false;
         }
+        // 分词结果中只有以数字开头的token可能是数字，避免列名等逐个抛出异常
+        if (!Character.isDigit(str.charAt(0))) {
+            return false;
+        }
         try {
             Double.parseDouble(str);
             return true;
@@ -508,79 +422,196 @@ public class SqlParser {
         }
     }
     
-    private Triple<Integer, String, String> parseTableUnit(List<String> tokens, int startIdx, 
-                                                          Map<String, String> tablesWithAlias, 
-                                                          DatabaseSchema schema) {
-        int idx = startIdx;
-        String tableId = tablesWithAlias.get(tokens.get(idx));
-        String tableName = tokens.get(idx);
-        
-        if (idx + 1 < tokens.size() && "as".equals(tokens.get(idx + 1))) {
-            idx += 3;
+    /**
+     * 解析表单元，返回表ID
+     */
+    private String parseTableUnit(ParseContext ctx) {
+        String tableId = ctx.tableId(ctx.current());
+        
+        if (ctx.idx + 1 < ctx.size && "as".equals(ctx.token(ctx.idx + 1))) {
+            ctx.idx += 3;
         } else {
-            idx += 1;
+            ctx.idx += 1;
         }
         
-        return new Triple<>(idx, tableId, tableName);
+        return tableId;
     }
     
-    private List<String> getDefaultTableNames(List<TableUnit> tableUnits) {
-        List<String> defaultTables = new ArrayList<>();
-        for (TableUnit unit : tableUnits) {
-            if (SqlConstants.TABLE_TYPE_TABLE_UNIT.equals(unit.getTableType())) {
-                defaultTables.add(unit.getTableId());
-            }
-        }
-        return defaultTables;
-    }
-    
-    private int skipSemicolon(List<String> tokens, int startIdx) {
-        int idx = startIdx;
-        if (idx < tokens.size() && ";".equals(tokens.get(idx))) {
-            idx++;
+    private void skipSemicolon(ParseContext ctx) {
+        if (ctx.at(";")) {
+            ctx.idx++;
         }
-        return idx;
     }
     
     /**
-     * 查找关键字位置
+     * 解析上下文：词法单元、游标位置、别名表和子句关键字索引
+     * 各子句的解析方法从游标处开始并推进游标，不再返回包装对象；每个线程复用一个实例
+     *
+     * <p>查询块：括号内的内容，或被INTERSECT/UNION/EXCEPT分隔的各部分。分词后一次遍历记录每个词法单元
+     * 所属的块，以及每个块中FROM/WHERE/GROUP/HAVING/ORDER首次出现的位置，子句查找因此不会越过块边界</p>
      */
-    private int findKeyword(List<String> tokens, int startIdx, String keyword) {
-        for (int i = startIdx; i < tokens.size(); i++) {
-            if (keyword.equals(tokens.get(i))) {
-                return i;
+    private static final class ParseContext {
+        static final int FROM = 0;
+        static final int WHERE = 1;
+        static final int GROUP = 2;
+        static final int HAVING = 3;
+        static final int ORDER = 4;
+        private static final int CLAUSE_COUNT = 5;
+        
+        private final List<String> tokens = new ArrayList<>();
+        private final Map<String, String> aliases = new HashMap<>();
+        private DatabaseSchema schema;
+        int size;
+        int idx;
+        
+        /** 每个词法单元所属的查询块 */
+        private int[] blockOf = new int[64];
+        /** 按块存放各子句关键字的位置，-1表示不存在 */
+        private int[] clauses = new int[64 * CLAUSE_COUNT];
+        /** 外层查询块栈 */
+        private int[] parents = new int[16];
+        
+        void reset(String query, DatabaseSchema schema) {
+            tokens.clear();
+            SqlTokenizer.tokenize(query, tokens);
+            this.schema = schema;
+            this.size = tokens.size();
+            this.idx = 0;
+            scanAlias();
+            indexClauses();
+        }
+        
+        /**
+         * 解析结束后释放对词法单元和schema的引用
+         */
+        void release() {
+            tokens.clear();
+            schema = null;
+            aliases.clear();
+        }
+        
+        boolean hasNext() {
+            return idx < size;
+        }
+        
+        String current() {
+            return tokens.get(idx);
+        }
+        
+        String token(int i) {
+            return tokens.get(i);
+        }
+        
+        /**
+         * 当前词法单元是否为指定值
+         */
+        boolean at(String token) {
+            return idx < size && token.equals(tokens.get(idx));
+        }
+        
+        /**
+         * 词法单元所属的查询块，越界时为最外层块
+         */
+        int blockAt(int i) {
+            return i < size ? blockOf[i] : 0;
+        }
+        
+        /**
+         * 查询块中子句关键字的位置，不在游标之后时视为不存在
+         */
+        int clauseIndex(int block, int clause) {
+            int pos = clauses[block * CLAUSE_COUNT + clause];
+            return pos >= idx ? pos : -1;
+        }
+        
+        /**
+         * 一次遍历建立子句关键字索引
+         */
+        private void indexClauses() {
+            if (blockOf.length < size) {
+                blockOf = new int[Math.max(size, blockOf.length * 2)];
+            }
+            // 块数不超过词法单元数加一
+            if (clauses.length < (size + 1) * CLAUSE_COUNT) {
+                clauses = new int[Math.max((size + 1) * CLAUSE_COUNT, clauses.length * 2)];
+            }
+            if (parents.length < size + 1) {
+                parents = new int[Math.max(size + 1, parents.length * 2)];
+            }
+            
+            int blocks = 0;
+            int block = newBlock(blocks++);
+            int depth = 0;
+            for (int i = 0; i < size; i++) {
+                String token = tokens.get(i);
+                if ("(".equals(token)) {
+                    parents[depth++] = block;
+                    block = newBlock(blocks++);
+                } else if (")".equals(token)) {
+                    blockOf[i] = block;
+                    // 多余的右括号留在当前块
+                    if (depth > 0) {
+                        block = parents[--depth];
+                    }
+                    continue;
+                } else if (SqlConstants.SQL_OPS.contains(token)) {
+                    blockOf[i] = block;
+                    block = newBlock(blocks++);
+                    continue;
+                }
+                blockOf[i] = block;
+                
+                int clause = clauseOf(token);
+                if (clause >= 0 && clauses[block * CLAUSE_COUNT + clause] < 0) {
+                    clauses[block * CLAUSE_COUNT + clause] = i;
+                }
             }
         }
-        return -1;
-    }
-    
-    // 辅助类
-    public static class Pair<L, R> {
-        private final L left;
-        private final R right;
         
-        public Pair(L left, R right) {
-            this.left = left;
-            this.right = right;
+        private int newBlock(int block) {
+            Arrays.fill(clauses, block * CLAUSE_COUNT, (block + 1) * CLAUSE_COUNT, -1);
+            return block;
+        }
+        
+        private static int clauseOf(String token) {
+            switch (token) {
+                case "from":
+                    return FROM;
+                case "where":
+                    return WHERE;
+                case "group":
+                    return GROUP;
+                case "having":
+                    return HAVING;
+                case "order":
+                    return ORDER;
+                default:
+                    return -1;
+            }
         }
         
-        public L getLeft() { return left; }
-        public R getRight() { return right; }
-    }
-    
-    public static class Triple<L, M, R> {
-        private final L left;
-        private final M middle;
-        private final R right;
-        
-        public Triple(L left, M middle, R right) {
-            this.left = left;
-            this.middle = middle;
-            this.right = right;
+        /**
+         * 表名或别名对应的表，别名优先
+         */
+        String tableId(String name) {
+            String table = aliases.get(name);
+            if (table != null) {
+                return table;
+            }
+            List<String> tableNames = schema.getTableNames();
+            return tableNames != null && tableNames.contains(name) ? name : null;
+        }
+        
+        /**
+         * 扫描别名
+         */
+        private void scanAlias() {
+            aliases.clear();
+            for (int i = 1; i < size - 1; i++) {
+                if ("as".equals(tokens.get(i))) {
+                    aliases.put(tokens.get(i + 1), tokens.get(i - 1));
+                }
+            }
         }
-        
-        public L getLeft() { return left; }
-        public M getMiddle() { return middle; }
-        public R getRight() { return right; }
     }
-} 
\ No newline at end of file
+}
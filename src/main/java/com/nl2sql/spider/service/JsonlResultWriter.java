@@ -0,0 +1,196 @@
+package com.nl2sql.spider.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2sql.spider.model.ItemResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把评估结果写成JSONL（每行一个JSON对象）的ResultSink
+ * 评估线程只把结果放入有界队列，由单独的写线程成批取出、经缓冲写入文件。
+ * 距上次刷新超过刷新间隔或未刷新的字符数达到缓冲区大小时才刷新，关闭时再刷新一次，
+ * 顺序评估时不会每项刷新一次；没有新结果时已写入的结果最迟在一个刷新间隔后可见。
+ * 只有磁盘长时间跟不上使队列写满时，评估线程才会等待。写出失败后丢弃之后的结果，close()时抛出该异常
+ */
+public class JsonlResultWriter implements ResultSink {
+    
+    private static final Logger logger = LoggerFactory.getLogger(JsonlResultWriter.class);
+    
+    /**
+     * 默认队列容量
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    
+    /**
+     * 默认刷新间隔（毫秒）
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+    
+    private static final int BATCH_SIZE = 256;
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    /** 结束标记 */
+    private static final ItemResult END = new ItemResult();
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BlockingQueue<ItemResult> queue;
+    private final Writer writer;
+    private final Thread writerThread;
+    private final long flushIntervalNanos;
+    private volatile IOException failure;
+    private volatile boolean closed;
+    /** 上次刷新后写入的字符数，只由写线程访问 */
+    private long unflushedChars;
+    
+    public JsonlResultWriter(Path file) throws IOException {
+        this(file, DEFAULT_QUEUE_CAPACITY);
+    }
+    
+    public JsonlResultWriter(Path file, int queueCapacity) throws IOException {
+        this(file, queueCapacity, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+    
+    /**
+     * @param file 输出文件，已存在时覆盖
+     * @param queueCapacity 队列容量
+     * @param flushIntervalMillis 刷新间隔（毫秒）
+     * @throws IOException 打开文件失败
+     */
+    public JsonlResultWriter(Path file, int queueCapacity, long flushIntervalMillis) throws IOException {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        if (flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive: " + flushIntervalMillis);
+        }
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.writerThread = new Thread(this::drain, "result-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+    
+    @Override
+    public void accept(ItemResult result) {
+        if (closed) {
+            throw new IllegalStateException("Result writer is closed");
+        }
+        if (failure != null) {
+            return;
+        }
+        try {
+            queue.put(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while queueing result of item {}", result.getIndex());
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writerThread.interrupt();
+            throw new IOException("Interrupted while closing result writer", e);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    private void drain() {
+        List<ItemResult> batch = new ArrayList<>(BATCH_SIZE);
+        long lastFlush = System.nanoTime();
+        try {
+            while (true) {
+                ItemResult first;
+                if (unflushedChars > 0 && failure == null) {
+                    // 有未刷新的结果时最多等到刷新间隔结束
+                    long remaining = lastFlush + flushIntervalNanos - System.nanoTime();
+                    first = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                } else {
+                    first = queue.take();
+                }
+                boolean end = false;
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                    for (ItemResult result : batch) {
+                        if (result == END) {
+                            end = true;
+                        } else if (failure == null) {
+                            write(result);
+                        }
+                    }
+                    batch.clear();
+                }
+                long now = System.nanoTime();
+                if (failure == null && unflushedChars > 0
+                        && (end || unflushedChars >= BUFFER_SIZE || now - lastFlush >= flushIntervalNanos)) {
+                    flush();
+                    lastFlush = now;
+                }
+                if (end) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+    
+    private void write(ItemResult result) {
+        try {
+            String line = objectMapper.writeValueAsString(result);
+            writer.write(line);
+            writer.write('\n');
+            unflushedChars += line.length() + 1;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+    
+    private void flush() {
+        try {
+            writer.flush();
+            unflushedChars = 0;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+    
+    private void fail(IOException e) {
+        logger.error("Failed to write evaluation results, discarding the rest", e);
+        failure = e;
+    }
+}
@@ -0,0 +1,33 @@
+package com.nl2sql.spider.service;
+
+import com.nl2sql.spider.model.EvaluationResult;
+
+/**
+ * 评估进度的监听器
+ * 由评估循环在评估线程上调用，实现应只做计数等轻量操作，需要线程安全
+ */
+public interface ProgressListener {
+    
+    /**
+     * 开始一次评估
+     * 
+     * @param totalItems 本次评估的项数
+     */
+    default void onStart(int totalItems) {
+    }
+    
+    /**
+     * 一项评估完成
+     * 
+     * @param index 评估项序号
+     * @param result 评估结果，评估失败时为null
+     * @param error 评估失败的异常，成功时为null
+     */
+    void onItemCompleted(int index, EvaluationResult result, Exception error);
+    
+    /**
+     * 本次评估的全部评估项已完成
+     */
+    default void onFinish() {
+    }
+}
@@ -0,0 +1,241 @@
+package com.nl2sql.spider.service;
+
+import com.nl2sql.spider.model.EvaluationResult;
+
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 定期输出评估进度的ProgressListener
+ * 评估线程只累加LongAdder计数，不加锁也不输出；后台线程按固定间隔采样计数，
+ * 用最近WINDOW_SAMPLES次采样计算吞吐量和预计剩余时间，并交给输出函数（例如打印到标准错误）。
+ * 评估结束时输出一次全程的汇总。同一个实例用于多次评估时计数累加
+ */
+public final class ProgressReporter implements ProgressListener, AutoCloseable {
+    
+    /** 计算吞吐量的滑动窗口中的采样数 */
+    private static final int WINDOW_SAMPLES = 12;
+    
+    private final long intervalMillis;
+    private final Consumer<Progress> output;
+    private final LongAdder totalItems = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder tooExpensive = new LongAdder();
+    private final LongAdder exactMatches = new LongAdder();
+    private final LongAdder executionMatches = new LongAdder();
+    
+    private ScheduledExecutorService ticker;
+    private volatile long startNanos;
+    
+    // 以下只由采样线程访问
+    private final long[] sampleNanos = new long[WINDOW_SAMPLES];
+    private final long[] sampleCompleted = new long[WINDOW_SAMPLES];
+    private int sampleCount;
+    private int nextSample;
+    
+    /**
+     * 打印到标准错误
+     * 
+     * @param intervalMillis 输出间隔（毫秒）
+     */
+    public ProgressReporter(long intervalMillis) {
+        this(intervalMillis, System.err);
+    }
+    
+    public ProgressReporter(long intervalMillis, PrintStream out) {
+        this(intervalMillis, progress -> out.println("[progress] " + progress));
+    }
+    
+    /**
+     * @param intervalMillis 输出间隔（毫秒）
+     * @param output 接收每次采样的进度，在采样线程上调用
+     */
+    public ProgressReporter(long intervalMillis, Consumer<Progress> output) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + intervalMillis);
+        }
+        this.intervalMillis = intervalMillis;
+        this.output = output;
+    }
+    
+    @Override
+    public synchronized void onStart(int items) {
+        totalItems.add(items);
+        if (ticker != null) {
+            return;
+        }
+        startNanos = System.nanoTime();
+        sampleNanos[0] = startNanos;
+        sampleCompleted[0] = 0;
+        sampleCount = 1;
+        nextSample = 1;
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    @Override
+    public void onItemCompleted(int index, EvaluationResult result, Exception error) {
+        completed.increment();
+        if (result == null) {
+            errors.increment();
+            return;
+        }
+        if (result.isExactMatch()) {
+            exactMatches.increment();
+        }
+        if (result.isExecutionMatch()) {
+            executionMatches.increment();
+        }
+        if (result.isTooExpensive()) {
+            tooExpensive.increment();
+        }
+    }
+    
+    /**
+     * 停止采样并输出全程汇总（吞吐量按全程平均）
+     */
+    @Override
+    public void onFinish() {
+        if (stopTicker()) {
+            long now = System.nanoTime();
+            long done = completed.sum();
+            output.accept(progress(now, rate(done, now - startNanos)));
+        }
+    }
+    
+    /**
+     * 当前进度，吞吐量按全程平均
+     */
+    public Progress getProgress() {
+        long now = System.nanoTime();
+        return progress(now, startNanos == 0 ? 0 : rate(completed.sum(), now - startNanos));
+    }
+    
+    @Override
+    public void close() {
+        stopTicker();
+    }
+    
+    private synchronized boolean stopTicker() {
+        if (ticker == null) {
+            return false;
+        }
+        ticker.shutdownNow();
+        try {
+            // 等待正在进行的采样输出完，之后的汇总总是最后一条
+            ticker.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ticker = null;
+        return true;
+    }
+    
+    private void tick() {
+        long now = System.nanoTime();
+        long done = completed.sum();
+        // 窗口未满时最早的采样是开始时刻
+        int oldest = sampleCount < WINDOW_SAMPLES ? 0 : nextSample;
+        double itemsPerSecond = rate(done - sampleCompleted[oldest], now - sampleNanos[oldest]);
+        sampleNanos[nextSample] = now;
+        sampleCompleted[nextSample] = done;
+        nextSample = (nextSample + 1) % WINDOW_SAMPLES;
+        sampleCount = Math.min(sampleCount + 1, WINDOW_SAMPLES);
+        output.accept(progress(now, itemsPerSecond));
+    }
+    
+    private Progress progress(long now, double itemsPerSecond) {
+        Progress progress = new Progress();
+        progress.totalItems = totalItems.sum();
+        progress.completed = completed.sum();
+        progress.errors = errors.sum();
+        progress.tooExpensive = tooExpensive.sum();
+        progress.exactMatches = exactMatches.sum();
+        progress.executionMatches = executionMatches.sum();
+        progress.elapsedNanos = now - startNanos;
+        progress.itemsPerSecond = itemsPerSecond;
+        return progress;
+    }
+    
+    private static double rate(long items, long nanos) {
+        return nanos > 0 ? items * 1e9 / nanos : 0.0;
+    }
+    
+    /**
+     * 某一时刻的评估进度
+     */
+    public static final class Progress {
+        private long totalItems;
+        private long completed;
+        private long errors;
+        private long tooExpensive;
+        private long exactMatches;
+        private long executionMatches;
+        private long elapsedNanos;
+        private double itemsPerSecond;
+        
+        public long getTotalItems() { return totalItems; }
+        
+        public long getCompleted() { return completed; }
+        
+        /** 评估失败的项数 */
+        public long getErrors() { return errors; }
+        
+        /** 估计规模超过上限、未执行的项数 */
+        public long getTooExpensive() { return tooExpensive; }
+        
+        public long getElapsedMillis() { return TimeUnit.NANOSECONDS.toMillis(elapsedNanos); }
+        
+        /** 滑动窗口内的吞吐量（项/秒） */
+        public double getItemsPerSecond() { return itemsPerSecond; }
+        
+        /** 已完成且未失败的项中精确匹配的比例 */
+        public double getExactMatchAccuracy() {
+            long evaluated = completed - errors;
+            return evaluated > 0 ? (double) exactMatches / evaluated : 0.0;
+        }
+        
+        /** 已完成且未失败的项中执行结果匹配的比例 */
+        public double getExecutionAccuracy() {
+            long evaluated = completed - errors;
+            return evaluated > 0 ? (double) executionMatches / evaluated : 0.0;
+        }
+        
+        /**
+         * 按当前吞吐量预计的剩余时间（秒），无法估计时为-1
+         */
+        public long getEtaSeconds() {
+            long remaining = totalItems - completed;
+            if (remaining <= 0) {
+                return 0;
+            }
+            return itemsPerSecond > 0 ? (long) Math.ceil(remaining / itemsPerSecond) : -1;
+        }
+        
+        @Override
+        public String toString() {
+            long eta = getEtaSeconds();
+            return String.format("%d/%d (%.1f%%) | %.1f items/s | errors %d | too expensive %d"
+                                 + " | exact %.3f | exec %.3f | elapsed %s | ETA %s",
+                                 completed, totalItems, totalItems > 0 ? completed * 100.0 / totalItems : 0.0,
+                                 itemsPerSecond, errors, tooExpensive, getExactMatchAccuracy(),
+                                 getExecutionAccuracy(), formatSeconds(getElapsedMillis() / 1000),
+                                 eta < 0 ? "?" : formatSeconds(eta));
+        }
+        
+        private static String formatSeconds(long seconds) {
+            return seconds >= 3600
+                ? String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60)
+                : String.format("%d:%02d", seconds / 60, seconds % 60);
+        }
+    }
+}
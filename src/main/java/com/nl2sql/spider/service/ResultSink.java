@@ -0,0 +1,27 @@
+package com.nl2sql.spider.service;
+
+import com.nl2sql.spider.model.ItemResult;
+
+import java.io.IOException;
+
+/**
+ * 逐项评估结果的接收端
+ * 评估服务每完成一项就调用accept，结果不在内存中累积；实现需要线程安全
+ */
+public interface ResultSink extends AutoCloseable {
+    
+    /**
+     * 接收一项评估结果
+     * 
+     * @param result 评估项结果
+     */
+    void accept(ItemResult result);
+    
+    /**
+     * 写出全部已接收的结果并释放资源
+     * 
+     * @throws IOException 写出失败
+     */
+    @Override
+    void close() throws IOException;
+}
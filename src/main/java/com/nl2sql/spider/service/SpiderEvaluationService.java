@@ -5,9 +5,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nl2sql.spider.config.DatabaseConfig;
 import com.nl2sql.spider.enums.EvaluationType;
 import com.nl2sql.spider.enums.HardnessLevel;
+import com.nl2sql.spider.enums.ScoreComponent;
+import com.nl2sql.spider.evaluator.GoldFingerprintIndex;
 import com.nl2sql.spider.evaluator.SpiderEvaluator;
+import com.nl2sql.spider.jfr.ItemContext;
 import com.nl2sql.spider.model.*;
 import com.nl2sql.spider.parser.SqlParser;
+import com.nl2sql.spider.utils.DatabaseConnectionManager;
 import com.nl2sql.spider.utils.DatabaseSchemaExtractor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,10 +19,14 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Spider评估服务类
@@ -28,10 +36,18 @@ public class SpiderEvaluationService {
     
     private static final Logger logger = LoggerFactory.getLogger(SpiderEvaluationService.class);
     
+    /** 统计中默认保留的最慢、返回行数最多的评估项数 */
+    public static final int DEFAULT_TOP_ITEM_LIMIT = 10;
+    
     private final ObjectMapper objectMapper;
     private final SqlParser sqlParser;
     private final SpiderEvaluator evaluator;
     private final Map<String, DatabaseSchema> schemaCache;
+    private boolean partialScoresEnabled = true;
+    private List<String> testSuiteDatabaseDirs = Collections.emptyList();
+    private ResultSink resultSink;
+    private int topItemLimit = DEFAULT_TOP_ITEM_LIMIT;
+    private ProgressListener progressListener;
     
     public SpiderEvaluationService() {
         this.objectMapper = new ObjectMapper();
@@ -52,6 +68,24 @@ public class SpiderEvaluationService {
      */
     public EvaluationStatistics evaluate(String goldFile, String predFile, String dbDir, 
                                        String tableFile, EvaluationType evaluationType) {
+        return evaluate(goldFile, predFile, dbDir, tableFile, evaluationType, 0, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * 评估预测结果中的一段（分片评估时各进程评估不同的范围，统计合并后与整体评估相同）
+     * 
+     * @param goldFile 标准答案文件路径
+     * @param predFile 预测结果文件路径
+     * @param dbDir 数据库目录路径
+     * @param tableFile 表结构文件路径
+     * @param evaluationType 评估类型
+     * @param fromIndex 起始评估项序号（含，忽略空行后从0计数）
+     * @param toIndex 结束评估项序号（不含），超过评估项数时到末尾为止
+     * @return 该范围的评估结果统计
+     */
+    public EvaluationStatistics evaluate(String goldFile, String predFile, String dbDir, 
+                                       String tableFile, EvaluationType evaluationType,
+                                       int fromIndex, int toIndex) {
         try {
             // 加载数据
             List<GoldItem> goldItems = loadGoldFile(goldFile);
@@ -63,13 +97,17 @@ public class SpiderEvaluationService {
             }
             
             // 初始化统计
-            EvaluationStatistics statistics = new EvaluationStatistics();
+            StatisticsAccumulator statistics = new StatisticsAccumulator(topItemLimit);
             
             // 逐一评估
-            for (int i = 0; i < goldItems.size(); i++) {
+            int end = Math.min(toIndex, goldItems.size());
+            notifyStart(Math.max(0, end - Math.max(fromIndex, 0)));
+            for (int i = Math.max(fromIndex, 0); i < end; i++) {
                 GoldItem goldItem = goldItems.get(i);
                 String prediction = predictions.get(i);
                 
+                long startNanos = System.nanoTime();
+                ItemContext.enter(i, goldItem.getDbId());
                 try {
                     EvaluationResult result = evaluateSingle(
                         goldItem.getSql(), 
@@ -80,19 +118,23 @@ public class SpiderEvaluationService {
                     );
                     
                     // 更新统计
-                    updateStatistics(statistics, result, goldItem.getDbId(), goldItem.getSql());
+                    HardnessLevel hardness = updateStatistics(statistics, i, result, goldItem.getDbId(), goldItem.getSql());
+                    emitResult(i, goldItem.getDbId(), hardness, result, null, startNanos);
                     
                 } catch (Exception e) {
                     logger.error("Failed to evaluate item {}: gold={}, pred={}", 
                                i, goldItem.getSql(), prediction, e);
                     statistics.incrementErrorCount();
+                    emitResult(i, goldItem.getDbId(), null, null, e, startNanos);
+                } finally {
+                    ItemContext.exit();
                 }
             }
             
-            // 计算最终分数
-            statistics.calculateFinalScores();
+            notifyFinish();
             
-            return statistics;
+            // 生成统计并计算最终分数
+            return statistics.snapshot();
             
         } catch (Exception e) {
             logger.error("Evaluation failed", e);
@@ -123,13 +165,16 @@ public class SpiderEvaluationService {
             }
             
             // 初始化统计
-            EvaluationStatistics statistics = new EvaluationStatistics();
+            StatisticsAccumulator statistics = new StatisticsAccumulator(topItemLimit);
             
             // 逐一评估
+            notifyStart(goldItems.size());
             for (int i = 0; i < goldItems.size(); i++) {
                 GoldItem goldItem = goldItems.get(i);
                 String prediction = predictions.get(i);
                 
+                long startNanos = System.nanoTime();
+                ItemContext.enter(i, goldItem.getDbId());
                 try {
                     EvaluationResult result = evaluateSingle(
                         goldItem.getSql(), 
@@ -140,19 +185,23 @@ public class SpiderEvaluationService {
                     );
                     
                     // 更新统计
-                    updateStatistics(statistics, result, goldItem.getDbId(), goldItem.getSql());
+                    HardnessLevel hardness = updateStatistics(statistics, i, result, goldItem.getDbId(), goldItem.getSql());
+                    emitResult(i, goldItem.getDbId(), hardness, result, null, startNanos);
                     
                 } catch (Exception e) {
                     logger.error("Failed to evaluate item {}: gold={}, pred={}", 
                                i, goldItem.getSql(), prediction, e);
                     statistics.incrementErrorCount();
+                    emitResult(i, goldItem.getDbId(), null, null, e, startNanos);
+                } finally {
+                    ItemContext.exit();
                 }
             }
             
-            // 计算最终分数
-            statistics.calculateFinalScores();
+            notifyFinish();
             
-            return statistics;
+            // 生成统计并计算最终分数
+            return statistics.snapshot();
             
         } catch (Exception e) {
             logger.error("Evaluation failed", e);
@@ -184,13 +233,16 @@ public class SpiderEvaluationService {
             loadSchemasFromDatabase(goldItems, dbConfig);
             
             // 初始化统计
-            EvaluationStatistics statistics = new EvaluationStatistics();
+            StatisticsAccumulator statistics = new StatisticsAccumulator(topItemLimit);
             
             // 逐一评估
+            notifyStart(goldItems.size());
             for (int i = 0; i < goldItems.size(); i++) {
                 GoldItem goldItem = goldItems.get(i);
                 String prediction = predictions.get(i);
                 
+                long startNanos = System.nanoTime();
+                ItemContext.enter(i, goldItem.getDbId());
                 try {
                     EvaluationResult result = evaluateSingle(
                         goldItem.getSql(), 
@@ -201,19 +253,23 @@ public class SpiderEvaluationService {
                     );
                     
                     // 更新统计
-                    updateStatistics(statistics, result, goldItem.getDbId(), goldItem.getSql());
+                    HardnessLevel hardness = updateStatistics(statistics, i, result, goldItem.getDbId(), goldItem.getSql());
+                    emitResult(i, goldItem.getDbId(), hardness, result, null, startNanos);
                     
                 } catch (Exception e) {
                     logger.error("Failed to evaluate item {}: gold={}, pred={}", 
                                i, goldItem.getSql(), prediction, e);
                     statistics.incrementErrorCount();
+                    emitResult(i, goldItem.getDbId(), null, null, e, startNanos);
+                } finally {
+                    ItemContext.exit();
                 }
             }
             
-            // 计算最终分数
-            statistics.calculateFinalScores();
+            notifyFinish();
             
-            return statistics;
+            // 生成统计并计算最终分数
+            return statistics.snapshot();
             
         } catch (Exception e) {
             logger.error("Evaluation failed", e);
@@ -232,6 +288,8 @@ public class SpiderEvaluationService {
         }
         
         // 解析SQL
+        ExecutionMetrics metrics = new ExecutionMetrics();
+        long parseStart = System.nanoTime();
         SqlStructure goldStructure = sqlParser.parseSql(schema, goldSql);
         SqlStructure predStructure;
         
@@ -241,18 +299,28 @@ public class SpiderEvaluationService {
             // 如果解析失败，使用空的SQL结构
             predStructure = createEmptySqlStructure();
         }
+        metrics.setParseNanos(System.nanoTime() - parseStart);
         
         // 评估
-        EvaluationResult result = evaluator.evaluatePartialMatch(predStructure, goldStructure);
+        EvaluationResult result = evaluateMatch(goldSql, predSql, goldStructure, predStructure);
         
         // 根据评估类型添加额外评估
         if (evaluationType == EvaluationType.EXEC || evaluationType == EvaluationType.ALL) {
-            String dbPath = Paths.get(dbDir, dbId, dbId + ".sqlite").toString();
-            boolean execMatch = evaluator.evaluateExecution(dbPath, predSql, goldSql);
-            result = new EvaluationResult(result.getPartialScores(), result.isExactMatch(), execMatch);
+            List<String> variants = databaseVariants(dbDir, dbId);
+            boolean tooExpensive = evaluator.isTooExpensive(dbId, variants.get(0), predSql, goldSql);
+            evaluator.beginMetrics(metrics);
+            boolean execMatch;
+            try {
+                execMatch = !tooExpensive
+                        && evaluator.evaluateTestSuiteExecution(dbId, variants, predSql, goldSql, goldStructure);
+            } finally {
+                evaluator.endMetrics();
+            }
+            result = new EvaluationResult(result.getPartialScores(), result.isExactMatch(), execMatch,
+                                          evaluator.isExecutionSkipped(predSql, goldSql), tooExpensive);
         }
         
-        return result;
+        return result.withMetrics(metrics);
     }
     
     /**
@@ -266,6 +334,8 @@ public class SpiderEvaluationService {
         }
         
         // 解析SQL
+        ExecutionMetrics metrics = new ExecutionMetrics();
+        long parseStart = System.nanoTime();
         SqlStructure goldStructure = sqlParser.parseSql(schema, goldSql);
         SqlStructure predStructure;
         
@@ -275,18 +345,28 @@ public class SpiderEvaluationService {
             // 如果解析失败，使用空的SQL结构
             predStructure = createEmptySqlStructure();
         }
+        metrics.setParseNanos(System.nanoTime() - parseStart);
         
         // 评估
-        EvaluationResult result = evaluator.evaluatePartialMatch(predStructure, goldStructure);
+        EvaluationResult result = evaluateMatch(goldSql, predSql, goldStructure, predStructure);
         
         // 根据评估类型添加额外评估
         if (evaluationType == EvaluationType.EXEC || evaluationType == EvaluationType.ALL) {
             // 使用DatabaseConfig进行执行评估
-            boolean execMatch = evaluator.evaluateExecution(dbConfig, predSql, goldSql);
-            result = new EvaluationResult(result.getPartialScores(), result.isExactMatch(), execMatch);
+            boolean tooExpensive = evaluator.isTooExpensive(dbId, dbConfig, predSql, goldSql);
+            evaluator.beginMetrics(metrics);
+            boolean execMatch;
+            try {
+                execMatch = !tooExpensive
+                        && evaluator.evaluateExecution(dbId, dbConfig, predSql, goldSql, goldStructure);
+            } finally {
+                evaluator.endMetrics();
+            }
+            result = new EvaluationResult(result.getPartialScores(), result.isExactMatch(), execMatch,
+                                          evaluator.isExecutionSkipped(predSql, goldSql), tooExpensive);
         }
         
-        return result;
+        return result.withMetrics(metrics);
     }
     
     /**
@@ -318,6 +398,8 @@ public class SpiderEvaluationService {
         }
         
         // 解析SQL
+        ExecutionMetrics metrics = new ExecutionMetrics();
+        long parseStart = System.nanoTime();
         SqlStructure goldStructure = sqlParser.parseSql(schema, goldSql);
         SqlStructure predStructure;
         
@@ -327,17 +409,269 @@ public class SpiderEvaluationService {
             // 如果解析失败，使用空的SQL结构
             predStructure = createEmptySqlStructure();
         }
+        metrics.setParseNanos(System.nanoTime() - parseStart);
         
         // 评估
-        EvaluationResult result = evaluator.evaluatePartialMatch(predStructure, goldStructure);
+        EvaluationResult result = evaluateMatch(goldSql, predSql, goldStructure, predStructure);
         
         // 根据评估类型添加额外评估
         if (evaluationType == EvaluationType.EXEC || evaluationType == EvaluationType.ALL) {
-            boolean execMatch = evaluator.evaluateExecution(conn, predSql, goldSql);
-            result = new EvaluationResult(result.getPartialScores(), result.isExactMatch(), execMatch);
+            boolean tooExpensive = evaluator.isTooExpensive(dbId, conn, predSql, goldSql);
+            evaluator.beginMetrics(metrics);
+            boolean execMatch;
+            try {
+                execMatch = !tooExpensive
+                        && evaluator.evaluateExecution(dbId, conn, predSql, goldSql, goldStructure);
+            } finally {
+                evaluator.endMetrics();
+            }
+            result = new EvaluationResult(result.getPartialScores(), result.isExactMatch(), execMatch,
+                                          evaluator.isExecutionSkipped(predSql, goldSql), tooExpensive);
         }
         
-        return result;
+        return result.withMetrics(metrics);
+    }
+    
+    /**
+     * 是否计算各部分分数
+     */
+    public boolean isPartialScoresEnabled() {
+        return partialScoresEnabled;
+    }
+    
+    /**
+     * 设置是否计算各部分分数
+     * 关闭后只判断精确匹配（文本相同、结构相同或各部分逐一比较，遇到第一个不匹配即停止），
+     * 结果中的部分分数为空，适用于只需要精确匹配率和执行准确率的场景
+     */
+    public void setPartialScoresEnabled(boolean partialScoresEnabled) {
+        this.partialScoresEnabled = partialScoresEnabled;
+    }
+    
+    /**
+     * 是否对与标准SQL等价的预测SQL仍执行核对
+     */
+    public boolean isVerifyEquivalentExecution() {
+        return evaluator.isVerifyEquivalentExecution();
+    }
+    
+    /**
+     * 设置是否对与标准SQL等价的预测SQL仍执行核对
+     * 默认关闭：规范化文本与标准SQL相同的预测SQL不执行，直接视为执行匹配
+     */
+    public void setVerifyEquivalentExecution(boolean verifyEquivalentExecution) {
+        evaluator.setVerifyEquivalentExecution(verifyEquivalentExecution);
+    }
+    
+    /**
+     * 是否并发执行标准SQL与预测SQL
+     */
+    public boolean isConcurrentExecution() {
+        return evaluator.isConcurrentExecution();
+    }
+    
+    /**
+     * 设置是否并发执行标准SQL与预测SQL（各用一个连接，结果不同时提前取消）
+     */
+    public void setConcurrentExecution(boolean concurrentExecution) {
+        evaluator.setConcurrentExecution(concurrentExecution);
+    }
+    
+    /**
+     * SQL验证是否只预编译、不执行查询
+     */
+    public boolean isPrepareOnlyValidation() {
+        return evaluator.isPrepareOnlyValidation();
+    }
+    
+    /**
+     * 设置SQL验证是否只预编译、不执行查询（MySQL、PostgreSQL使用EXPLAIN）
+     * 只能发现语法错误和不存在的表、列，执行时才出现的错误不会被发现
+     */
+    public void setPrepareOnlyValidation(boolean prepareOnlyValidation) {
+        evaluator.setPrepareOnlyValidation(prepareOnlyValidation);
+    }
+    
+    /**
+     * 预测SQL估计结果规模的上限（行），0表示不预先检查
+     */
+    public long getMaxEstimatedRows() {
+        return evaluator.getMaxEstimatedRows();
+    }
+    
+    /**
+     * 设置预测SQL估计结果规模的上限（行），超过的预测SQL不执行，判为执行不匹配
+     */
+    public void setMaxEstimatedRows(long maxEstimatedRows) {
+        evaluator.setMaxEstimatedRows(maxEstimatedRows);
+    }
+    
+    /**
+     * 单个查询结果在内存中保存的上限（字节）
+     */
+    public long getSpillThresholdBytes() {
+        return evaluator.getSpillThresholdBytes();
+    }
+    
+    /**
+     * 设置单个查询结果在内存中保存的上限（字节），超过后溢写到临时文件
+     */
+    public void setSpillThresholdBytes(long spillThresholdBytes) {
+        evaluator.setSpillThresholdBytes(spillThresholdBytes);
+    }
+    
+    /**
+     * 测试套件的额外数据库目录
+     */
+    public List<String> getTestSuiteDatabaseDirs() {
+        return testSuiteDatabaseDirs;
+    }
+    
+    /**
+     * 设置测试套件的额外数据库目录（目录结构与dbDir相同）
+     * 执行评估时预测SQL还需在这些目录下同一dbId的数据库上与标准SQL结果一致才算匹配，
+     * 目录中缺少该dbId的数据库时跳过
+     */
+    public void setTestSuiteDatabaseDirs(List<String> testSuiteDatabaseDirs) {
+        this.testSuiteDatabaseDirs = testSuiteDatabaseDirs == null 
+            ? Collections.emptyList() : new ArrayList<>(testSuiteDatabaseDirs);
+    }
+    
+    /**
+     * 逐项评估结果的接收端
+     */
+    public ResultSink getResultSink() {
+        return resultSink;
+    }
+    
+    /**
+     * 设置逐项评估结果的接收端，为null时不输出
+     * 之后的evaluate、evaluateWithDynamicSchema和evaluateItems每完成一项就把结果交给它，由调用方负责关闭
+     */
+    public void setResultSink(ResultSink resultSink) {
+        this.resultSink = resultSink;
+    }
+    
+    /**
+     * 评估进度的监听器
+     */
+    public ProgressListener getProgressListener() {
+        return progressListener;
+    }
+    
+    /**
+     * 设置评估进度的监听器，为null时不通知
+     * 之后的evaluate、evaluateWithDynamicSchema和evaluateItems开始时、每完成一项时和结束时通知它
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+    
+    /**
+     * 统计中最慢、返回行数最多的评估项各保留的数目
+     */
+    public int getTopItemLimit() {
+        return topItemLimit;
+    }
+    
+    /**
+     * 设置统计中最慢、返回行数最多的评估项各保留的数目，0表示不保留
+     */
+    public void setTopItemLimit(int topItemLimit) {
+        if (topItemLimit < 0) {
+            throw new IllegalArgumentException("Top item limit must not be negative: " + topItemLimit);
+        }
+        this.topItemLimit = topItemLimit;
+    }
+    
+    /**
+     * dbId对应的数据库变体路径，第一个为dbDir下的主数据库
+     */
+    private List<String> databaseVariants(String dbDir, String dbId) {
+        List<String> paths = new ArrayList<>();
+        paths.add(Paths.get(dbDir, dbId, dbId + ".sqlite").toString());
+        for (String dir : testSuiteDatabaseDirs) {
+            Path path = Paths.get(dir, dbId, dbId + ".sqlite");
+            try {
+                if (Files.isRegularFile(path) && Files.size(path) > 0 && !paths.contains(path.toString())) {
+                    paths.add(path.toString());
+                }
+            } catch (IOException e) {
+                logger.warn("Skipping database variant {}: {}", path, e.getMessage());
+            }
+        }
+        return paths;
+    }
+    
+    /**
+     * 加载标准SQL结果的指纹索引，之后的执行评估命中索引时不再执行标准SQL
+     * 
+     * @param indexFile 由buildGoldFingerprintIndex生成的索引文件
+     */
+    public void loadGoldFingerprintIndex(String indexFile) throws IOException {
+        evaluator.setGoldFingerprintIndex(GoldFingerprintIndex.open(Paths.get(indexFile)));
+    }
+    
+    /**
+     * 执行标准答案文件中的全部标准SQL，生成结果指纹索引文件
+     * 
+     * @param goldFile 标准答案文件路径
+     * @param dbDir 数据库目录路径
+     * @param tableFile 表结构文件路径
+     * @param indexFile 输出的索引文件路径
+     * @return 索引条目数
+     */
+    public int buildGoldFingerprintIndex(String goldFile, String dbDir, String tableFile, 
+                                         String indexFile) throws IOException {
+        List<GoldItem> goldItems = loadGoldFile(goldFile);
+        loadSchemas(tableFile);
+        
+        GoldFingerprintIndex.Builder builder = new GoldFingerprintIndex.Builder(evaluator.getSpillThresholdBytes());
+        Map<String, List<GoldItem>> itemsByDb = new LinkedHashMap<>();
+        for (GoldItem item : goldItems) {
+            itemsByDb.computeIfAbsent(item.getDbId(), k -> new ArrayList<>()).add(item);
+        }
+        
+        for (Map.Entry<String, List<GoldItem>> entry : itemsByDb.entrySet()) {
+            String dbId = entry.getKey();
+            DatabaseSchema schema = schemaCache.get(dbId);
+            String dbPath = Paths.get(dbDir, dbId, dbId + ".sqlite").toString();
+            
+            try (Connection conn = DatabaseConnectionManager.createSqliteConnection(dbPath)) {
+                for (GoldItem item : entry.getValue()) {
+                    builder.add(conn, dbId, item.getSql(), isOrderSensitive(schema, item.getSql()));
+                }
+            } catch (SQLException e) {
+                logger.error("Failed to open database {} for gold index", dbPath, e);
+            }
+        }
+        
+        builder.write(Paths.get(indexFile));
+        return builder.size();
+    }
+    
+    private boolean isOrderSensitive(DatabaseSchema schema, String goldSql) {
+        if (schema == null) {
+            return false;
+        }
+        try {
+            return evaluator.isOrderSensitive(sqlParser.parseSql(schema, goldSql));
+        } catch (Exception e) {
+            logger.warn("Failed to parse gold SQL: {}", goldSql);
+            return false;
+        }
+    }
+    
+    /**
+     * 计算精确匹配结果，按配置决定是否计算各部分分数
+     */
+    private EvaluationResult evaluateMatch(String goldSql, String predSql, 
+                                           SqlStructure goldStructure, SqlStructure predStructure) {
+        if (partialScoresEnabled) {
+            return evaluator.evaluatePartialMatch(predStructure, goldStructure);
+        }
+        boolean exactMatch = evaluator.allComponentsMatch(predSql, goldSql, predStructure, goldStructure);
+        return new EvaluationResult(Collections.emptyMap(), exactMatch, false);
     }
     
     /**
@@ -512,6 +846,16 @@ public class SpiderEvaluationService {
         return goldItems;
     }
     
+    /**
+     * 标准答案文件中的评估项数（忽略空行和格式不正确的行）
+     * 
+     * @param goldFile 标准答案文件路径
+     * @return 评估项数
+     */
+    public int countGoldItems(String goldFile) throws IOException {
+        return loadGoldFile(goldFile).size();
+    }
+    
     /**
      * 加载预测结果文件
      */
@@ -585,14 +929,81 @@ public class SpiderEvaluationService {
     /**
      * 更新统计信息
      */
-    private void updateStatistics(EvaluationStatistics statistics, EvaluationResult result, String dbId, String goldSql) {
+    private HardnessLevel updateStatistics(StatisticsAccumulator statistics, int index, EvaluationResult result,
+                                           String dbId, String goldSql) {
+        statistics.addItemCost(index, dbId, result.getMetrics());
+        
         DatabaseSchema schema = schemaCache.get(dbId);
-        if (schema == null) return;
+        if (schema == null) return null;
         
         // 计算难度级别
         HardnessLevel hardness = calculateHardness(goldSql, schema);
         
         statistics.addResult(hardness, result);
+        return hardness;
+    }
+    
+    private void notifyStart(int totalItems) {
+        ProgressListener listener = progressListener;
+        if (listener != null) {
+            listener.onStart(totalItems);
+        }
+    }
+    
+    private void notifyFinish() {
+        ProgressListener listener = progressListener;
+        if (listener != null) {
+            listener.onFinish();
+        }
+    }
+    
+    /**
+     * 把一项评估结果交给ProgressListener和ResultSink（未设置时不做任何事）
+     * 
+     * @param hardness 难度级别，可为null
+     * @param result 评估结果，评估失败时为null
+     * @param error 评估失败的异常，成功时为null
+     * @param startNanos 开始评估该项的System.nanoTime()
+     */
+    private void emitResult(int index, String dbId, HardnessLevel hardness, EvaluationResult result,
+                            Exception error, long startNanos) {
+        ProgressListener listener = progressListener;
+        if (listener != null) {
+            listener.onItemCompleted(index, result, error);
+        }
+        
+        ResultSink sink = resultSink;
+        if (sink == null) return;
+        
+        ItemResult item = new ItemResult();
+        item.setIndex(index);
+        item.setDbId(dbId);
+        item.setElapsedMillis((System.nanoTime() - startNanos) / 1_000_000.0);
+        if (hardness != null) {
+            item.setHardness(hardness.getValue());
+        }
+        if (result != null) {
+            item.setExactMatch(result.isExactMatch());
+            item.setExecutionMatch(result.isExecutionMatch());
+            item.setExecutionSkipped(result.isExecutionSkipped());
+            item.setTooExpensive(result.isTooExpensive());
+            item.setMetrics(result.getMetrics());
+            Map<String, PartialScore> scores = result.getPartialScores();
+            if (scores != null && !scores.isEmpty()) {
+                Map<String, Double> partialF1 = new LinkedHashMap<>();
+                for (ScoreComponent component : ScoreComponent.values()) {
+                    PartialScore score = scores.get(component.getValue());
+                    if (score != null) {
+                        partialF1.put(component.getValue(), score.getF1());
+                    }
+                }
+                item.setPartialF1(partialF1);
+            }
+        }
+        if (error != null) {
+            item.setError(error.getMessage() != null ? error.getMessage() : error.getClass().getName());
+        }
+        sink.accept(item);
     }
     
     /**
@@ -643,12 +1054,15 @@ public class SpiderEvaluationService {
             loadSchemasFromItems(evaluationItems, dbConfig);
             
             // 初始化统计
-            EvaluationStatistics statistics = new EvaluationStatistics();
+            StatisticsAccumulator statistics = new StatisticsAccumulator(topItemLimit);
             
             // 逐一评估
+            notifyStart(evaluationItems.size());
             for (int i = 0; i < evaluationItems.size(); i++) {
                 SqlEvaluationItem item = evaluationItems.get(i);
                 
+                long startNanos = System.nanoTime();
+                ItemContext.enter(i, item.getDbId());
                 try {
                     EvaluationResult result = evaluateSingle(
                         item.getGoldSql(), 
@@ -659,19 +1073,32 @@ public class SpiderEvaluationService {
                     );
                     
                     // 更新统计
-                    updateStatistics(statistics, result, item.getDbId(), item.getGoldSql());
+                    HardnessLevel hardness = updateStatistics(statistics, i, result, item.getDbId(), item.getGoldSql());
+                    emitResult(i, item.getDbId(), hardness, result, null, startNanos);
                     
                 } catch (Exception e) {
                     logger.error("Failed to evaluate item {}: gold={}, pred={}", 
                                i, item.getGoldSql(), item.getPredictionSql(), e);
                     statistics.incrementErrorCount();
+                    emitResult(i, item.getDbId(), null, null, e, startNanos);
+                } finally {
+                    ItemContext.exit();
                 }
             }
             
-            // 计算最终分数
-            statistics.calculateFinalScores();
+            if (!dbConfig.getEndpoints().isEmpty()) {
+                logger.info("Replicas after evaluation: {}", DatabaseConnectionManager.getReplicaStatus(dbConfig));
+            } else if (dbConfig.usesPool()) {
+                logger.info("Connection pool after evaluation: {}", DatabaseConnectionManager.getPoolStatistics(dbConfig));
+            }
+            if (!evaluator.getConcurrencyLimiters().isEmpty()) {
+                logger.info("Execution concurrency limits: {}", evaluator.getConcurrencyLimiters());
+            }
+            
+            notifyFinish();
             
-            return statistics;
+            // 生成统计并计算最终分数
+            return statistics.snapshot();
             
         } catch (Exception e) {
             logger.error("Evaluation failed", e);
@@ -681,6 +1108,7 @@ public class SpiderEvaluationService {
     
     /**
      * 评估SQL评估项集合（返回详细结果）
+     * 结果全部保存在返回的列表中；评估项很多时可设置ResultSink后调用evaluateItems逐项输出
      * 
      * @param evaluationItems SQL评估项集合
      * @param dbConfig 数据库配置
@@ -732,6 +1160,7 @@ public class SpiderEvaluationService {
     
     /**
      * 验证SQL评估项集合
+     * 按dbId分组，每组复用一个连接，各组并行验证；结果与输入顺序一致
      * 
      * @param evaluationItems SQL评估项集合
      * @param dbConfig 数据库配置
@@ -746,29 +1175,64 @@ public class SpiderEvaluationService {
             // 动态加载schemas
             loadSchemasFromItems(evaluationItems, dbConfig);
             
-            List<Boolean> results = new ArrayList<>();
+            Map<String, List<Integer>> groups = new LinkedHashMap<>();
+            for (int i = 0; i < evaluationItems.size(); i++) {
+                groups.computeIfAbsent(evaluationItems.get(i).getDbId(), k -> new ArrayList<>()).add(i);
+            }
+            
+            Boolean[] results = new Boolean[evaluationItems.size()];
+            int threads = Math.min(groups.size(), Runtime.getRuntime().availableProcessors());
+            ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "sql-validator");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (List<Integer> indexes : groups.values()) {
+                    futures.add(executor.submit(() -> validateGroup(evaluationItems, indexes, dbConfig, results)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
             
-            // 逐一验证
-            for (SqlEvaluationItem item : evaluationItems) {
+            return new ArrayList<>(Arrays.asList(results));
+            
+        } catch (Exception e) {
+            logger.error("Validation failed", e);
+            throw new RuntimeException("Validation failed", e);
+        }
+    }
+    
+    /**
+     * 在同一个连接上验证同一dbId的评估项，结果写入对应位置
+     */
+    private void validateGroup(List<SqlEvaluationItem> evaluationItems, List<Integer> indexes,
+                               DatabaseConfig dbConfig, Boolean[] results) {
+        try (Connection conn = DatabaseConnectionManager.createConnection(dbConfig)) {
+            for (int i : indexes) {
+                SqlEvaluationItem item = evaluationItems.get(i);
                 try {
-                    boolean goldValid = validateSql(item.getGoldSql(), item.getDbId(), dbConfig);
-                    boolean predValid = validateSql(item.getPredictionSql(), item.getDbId(), dbConfig);
+                    boolean goldValid = validateSql(item.getGoldSql(), item.getDbId(), conn);
+                    boolean predValid = validateSql(item.getPredictionSql(), item.getDbId(), conn);
                     
                     // 两个SQL都有效才认为该项有效
-                    results.add(goldValid && predValid);
+                    results[i] = goldValid && predValid;
                     
                 } catch (Exception e) {
                     logger.error("Failed to validate item: gold={}, pred={}", 
                                item.getGoldSql(), item.getPredictionSql(), e);
-                    results.add(false);
+                    results[i] = false;
                 }
             }
-            
-            return results;
-            
-        } catch (Exception e) {
-            logger.error("Validation failed", e);
-            throw new RuntimeException("Validation failed", e);
+        } catch (SQLException e) {
+            logger.error("Failed to connect for validating database {}", evaluationItems.get(indexes.get(0)).getDbId(), e);
+            for (int i : indexes) {
+                results[i] = false;
+            }
         }
     }
     
@@ -0,0 +1,421 @@
+package com.nl2sql.spider.utils;
+
+import com.nl2sql.spider.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 远程数据库的连接池，由DatabaseConnectionManager按连接目标创建
+ * 借出的是连接代理，close()时归还：关闭通过它创建但未关闭的语句，回滚未提交的事务并恢复自动提交。
+ * 最多同时借出poolMaxSize个连接，其余调用方最多等待borrowTimeout；空闲连接借出前用isValid检查，
+ * 超过最长存活时间的连接不再借出。后台定期调用housekeep()：关闭过期的空闲连接、补足最少连接数并报告疑似泄漏
+ */
+public final class ConnectionPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    /**
+     * 创建物理连接
+     */
+    interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final String name;
+    private final ConnectionFactory factory;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutNanos;
+    private final long maxLifetimeNanos;
+    private final long leakThresholdNanos;
+    private final int validationTimeoutSeconds;
+
+    private final Semaphore permits;
+    /** 后进先出，最近归还的连接最可能仍然有效 */
+    private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger openCount = new AtomicInteger();
+    private final AtomicInteger peakActive = new AtomicInteger();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder closedCount = new LongAdder();
+    private final LongAdder leakCount = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private volatile boolean closed;
+
+    ConnectionPool(String name, DatabaseConfig config, ConnectionFactory factory) {
+        if (config.getPoolMaxSize() <= 0) {
+            throw new IllegalArgumentException("Pool max size must be positive: " + config.getPoolMaxSize());
+        }
+        this.name = name;
+        this.factory = factory;
+        this.maxSize = config.getPoolMaxSize();
+        this.minSize = Math.max(0, Math.min(config.getPoolMinSize(), maxSize));
+        this.borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getBorrowTimeoutMillis()));
+        this.maxLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getMaxLifetimeMillis()));
+        this.leakThresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getLeakDetectionThresholdMillis()));
+        this.validationTimeoutSeconds = Math.max(0, config.getValidationTimeoutSeconds());
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * 借出连接，用完后调用close()归还
+     *
+     * @return 连接代理
+     * @throws SQLException 等待超时（BorrowTimeoutException）、连接池已关闭或创建连接失败
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool " + name + " is closed");
+        }
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection from pool " + name, e);
+        }
+        waitNanos.add(System.nanoTime() - start);
+        if (!acquired) {
+            timeoutCount.increment();
+            throw new BorrowTimeoutException("Timed out after " + TimeUnit.NANOSECONDS.toMillis(borrowTimeoutNanos)
+                                          + " ms waiting for a connection from pool " + name
+                                          + " (" + maxSize + " in use)");
+        }
+
+        try {
+            PooledConnection entry = takeIdle();
+            if (entry == null) {
+                entry = open();
+            }
+            Lease lease = new Lease(entry, leakThresholdNanos > 0 ? new Throwable("Connection borrowed here") : null);
+            leases.add(lease);
+            borrowCount.increment();
+            peakActive.accumulateAndGet(leases.size(), Math::max);
+            return lease.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 当前状态
+     */
+    public Statistics getStatistics() {
+        Statistics stats = new Statistics();
+        stats.maxSize = maxSize;
+        stats.active = leases.size();
+        stats.idle = idle.size();
+        stats.open = openCount.get();
+        stats.pending = permits.getQueueLength();
+        stats.peakActive = peakActive.get();
+        stats.borrowCount = borrowCount.sum();
+        stats.timeoutCount = timeoutCount.sum();
+        stats.createdCount = createdCount.sum();
+        stats.closedCount = closedCount.sum();
+        stats.leakCount = leakCount.sum();
+        stats.totalWaitNanos = waitNanos.sum();
+        return stats;
+    }
+
+    /**
+     * 关闭空闲连接，借出的连接在归还时关闭
+     */
+    public void close() {
+        closed = true;
+        drainIdle();
+    }
+
+    /**
+     * 后台维护：报告超过阈值未归还的连接，关闭过期的空闲连接，补足最少连接数
+     */
+    void housekeep() {
+        long now = System.nanoTime();
+        if (leakThresholdNanos > 0) {
+            for (Lease lease : leases) {
+                if (!lease.leakReported && now - lease.borrowedAt > leakThresholdNanos) {
+                    lease.leakReported = true;
+                    leakCount.increment();
+                    logger.warn("Connection from pool {} has been borrowed for {} ms without being returned, possible leak",
+                                name, TimeUnit.NANOSECONDS.toMillis(now - lease.borrowedAt), lease.borrowStack);
+                }
+            }
+        }
+
+        for (PooledConnection entry : idle) {
+            if (isExpired(entry, now) && idle.remove(entry)) {
+                destroy(entry);
+            }
+        }
+
+        while (!closed && openCount.get() < minSize) {
+            try {
+                idle.offerLast(open());
+            } catch (SQLException e) {
+                logger.debug("Failed to fill connection pool {}: {}", name, e.getMessage());
+                break;
+            }
+        }
+        if (closed) {
+            drainIdle();
+        }
+    }
+
+    private PooledConnection takeIdle() {
+        PooledConnection entry;
+        while ((entry = idle.pollFirst()) != null) {
+            if (!isExpired(entry, System.nanoTime()) && isValid(entry)) {
+                return entry;
+            }
+            destroy(entry);
+        }
+        return null;
+    }
+
+    private boolean isValid(PooledConnection entry) {
+        try {
+            return entry.raw.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean isExpired(PooledConnection entry, long now) {
+        return maxLifetimeNanos > 0 && now - entry.createdAt > maxLifetimeNanos;
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection raw = factory.create();
+        openCount.incrementAndGet();
+        createdCount.increment();
+        return new PooledConnection(raw, System.nanoTime());
+    }
+
+    private void destroy(PooledConnection entry) {
+        openCount.decrementAndGet();
+        closedCount.increment();
+        try {
+            entry.raw.close();
+        } catch (SQLException e) {
+            logger.debug("Failed to close pooled connection: {}", e.getMessage());
+        }
+    }
+
+    private void drainIdle() {
+        PooledConnection entry;
+        while ((entry = idle.pollFirst()) != null) {
+            destroy(entry);
+        }
+    }
+
+    private void giveBack(Lease lease) {
+        leases.remove(lease);
+        try {
+            if (!closed && !isExpired(lease.entry, System.nanoTime()) && reset(lease)) {
+                idle.offerFirst(lease.entry);
+                // 与close()并发时不留下空闲连接
+                if (closed) {
+                    drainIdle();
+                }
+            } else {
+                destroy(lease.entry);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 恢复连接的初始状态，连接不可再用时返回false
+     */
+    private boolean reset(Lease lease) {
+        for (Statement statement : lease.statements) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                logger.debug("Failed to close statement: {}", e.getMessage());
+            }
+        }
+        Connection raw = lease.entry.raw;
+        try {
+            if (raw.isClosed()) {
+                return false;
+            }
+            if (!raw.getAutoCommit()) {
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+            raw.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            logger.debug("Discarding pooled connection that failed to reset: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static final class PooledConnection {
+        final Connection raw;
+        final long createdAt;
+
+        PooledConnection(Connection raw, long createdAt) {
+            this.raw = raw;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * 一次借出，代理在close()后不可再用
+     */
+    private final class Lease implements InvocationHandler {
+        final PooledConnection entry;
+        final Connection proxy;
+        final long borrowedAt = System.nanoTime();
+        final Throwable borrowStack;
+        final List<Statement> statements = Collections.synchronizedList(new ArrayList<>());
+        final AtomicBoolean returned = new AtomicBoolean();
+        volatile boolean leakReported;
+
+        Lease(PooledConnection entry, Throwable borrowStack) {
+            this.entry = entry;
+            this.borrowStack = borrowStack;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                                                             new Class<?>[] {Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) {
+                        giveBack(this);
+                    }
+                    return null;
+                case "isClosed":
+                    if (returned.get()) {
+                        return true;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + name + "]";
+                default:
+                    if (returned.get()) {
+                        throw new SQLException("Connection has been returned to pool " + name);
+                    }
+            }
+
+            Object result;
+            try {
+                result = method.invoke(entry.raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement) {
+                statements.add((Statement) result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 等待借出连接超时：池中连接都已借出，不代表数据库本身过载
+     */
+    public static final class BorrowTimeoutException extends SQLTimeoutException {
+        private static final long serialVersionUID = 1L;
+
+        BorrowTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 连接池状态
+     */
+    public static final class Statistics {
+        private int maxSize;
+        private int active;
+        private int idle;
+        private int open;
+        private int pending;
+        private int peakActive;
+        private long borrowCount;
+        private long timeoutCount;
+        private long createdCount;
+        private long closedCount;
+        private long leakCount;
+        private long totalWaitNanos;
+
+        public int getMaxSize() { return maxSize; }
+
+        /** 借出未归还的连接数 */
+        public int getActive() { return active; }
+
+        public int getIdle() { return idle; }
+
+        /** 已打开的物理连接数（借出和空闲） */
+        public int getOpen() { return open; }
+
+        /** 正在等待连接的线程数 */
+        public int getPending() { return pending; }
+
+        public int getPeakActive() { return peakActive; }
+
+        public long getBorrowCount() { return borrowCount; }
+
+        /** 等待超时的次数 */
+        public long getTimeoutCount() { return timeoutCount; }
+
+        public long getCreatedCount() { return createdCount; }
+
+        public long getClosedCount() { return closedCount; }
+
+        /** 报告为疑似泄漏的借出次数 */
+        public long getLeakCount() { return leakCount; }
+
+        /** 借出比例，接近1且有等待线程时连接池已饱和 */
+        public double getUtilization() {
+            return maxSize > 0 ? (double) active / maxSize : 0.0;
+        }
+
+        /** 每次借出的平均等待时间（毫秒） */
+        public double getAverageWaitMillis() {
+            long attempts = borrowCount + timeoutCount;
+            return attempts > 0 ? totalWaitNanos / 1_000_000.0 / attempts : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("active=%d/%d, idle=%d, pending=%d, peak=%d, borrows=%d, timeouts=%d, "
+                                 + "created=%d, closed=%d, leaks=%d, avgWait=%.2fms",
+                                 active, maxSize, idle, pending, peakActive, borrowCount, timeoutCount,
+                                 createdCount, closedCount, leakCount, getAverageWaitMillis());
+        }
+    }
+}
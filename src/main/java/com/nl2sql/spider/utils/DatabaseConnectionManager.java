@@ -7,24 +7,165 @@ import org.slf4j.LoggerFactory;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 数据库连接管理器
- * 负责创建和管理数据库连接
+ * 负责创建和管理数据库连接。远程数据库默认从连接池获取，每个连接目标（URL、用户、密码、额外属性）一个连接池，
+ * 连接池参数取自第一次使用该目标时的DatabaseConfig。配置了多个副本端点时由ReplicaBalancer选择副本，每个副本各有连接池
  */
 public class DatabaseConnectionManager {
     
     private static final Logger logger = LoggerFactory.getLogger(DatabaseConnectionManager.class);
     
+    /** 连接池维护的间隔，也是泄漏检测的精度 */
+    private static final long HOUSEKEEPING_INTERVAL_MILLIS = 1000;
+    
+    private static final Map<List<Object>, ConnectionPool> POOLS = new ConcurrentHashMap<>();
+    
+    private static final Map<List<Object>, ReplicaBalancer> BALANCERS = new ConcurrentHashMap<>();
+    
+    private static volatile ScheduledExecutorService housekeeper;
+    
     /**
      * 创建数据库连接
+     * 使用连接池时返回借出的连接，close()时归还
      * 
      * @param config 数据库配置
      * @return 数据库连接
      * @throws SQLException 连接异常
      */
     public static Connection createConnection(DatabaseConfig config) throws SQLException {
+        if (!config.getEndpoints().isEmpty()) {
+            return balancerFor(config).connect();
+        }
+        if (config.usesPool()) {
+            return poolFor(config).borrow();
+        }
+        return openConnection(config);
+    }
+    
+    /**
+     * 获取连接目标的连接池状态
+     * 
+     * @param config 数据库配置
+     * @return 连接池状态，尚未创建连接池时返回null
+     */
+    public static ConnectionPool.Statistics getPoolStatistics(DatabaseConfig config) {
+        ConnectionPool pool = POOLS.get(poolKey(config));
+        return pool != null ? pool.getStatistics() : null;
+    }
+    
+    /**
+     * 获取多副本配置的各副本状态
+     * 
+     * @param config 配置了副本端点的数据库配置
+     * @return 各副本状态，尚未使用时返回空列表
+     */
+    public static List<ReplicaBalancer.Status> getReplicaStatus(DatabaseConfig config) {
+        ReplicaBalancer balancer = BALANCERS.get(balancerKey(config));
+        return balancer != null ? balancer.getStatus() : Collections.emptyList();
+    }
+    
+    /**
+     * 关闭所有连接池的空闲连接，之后再使用时重新创建连接池
+     */
+    public static void closePools() {
+        BALANCERS.clear();
+        for (List<Object> key : new ArrayList<>(POOLS.keySet())) {
+            ConnectionPool pool = POOLS.remove(key);
+            if (pool != null) {
+                pool.close();
+            }
+        }
+    }
+    
+    private static ConnectionPool poolFor(DatabaseConfig config) {
+        ConnectionPool pool = POOLS.computeIfAbsent(poolKey(config), key -> {
+            String name = config.buildJdbcUrl() + (config.getUsername() != null ? " as " + config.getUsername() : "");
+            logger.debug("Creating connection pool for {} (max {})", name, config.getPoolMaxSize());
+            return new ConnectionPool(name, config, () -> openConnection(config));
+        });
+        startHousekeeper();
+        return pool;
+    }
+    
+    private static ReplicaBalancer balancerFor(DatabaseConfig config) {
+        ReplicaBalancer balancer = BALANCERS.computeIfAbsent(balancerKey(config), key -> {
+            logger.debug("Balancing connections across endpoints {}", config.getEndpoints());
+            return new ReplicaBalancer(config, DatabaseConnectionManager::connectEndpoint);
+        });
+        startHousekeeper();
+        return balancer;
+    }
+    
+    /**
+     * 连接单个副本（已替换为该副本的host/port）
+     */
+    private static Connection connectEndpoint(DatabaseConfig config) throws SQLException {
+        return config.usesPool() ? poolFor(config).borrow() : openConnection(config);
+    }
+    
+    private static List<Object> balancerKey(DatabaseConfig config) {
+        return Arrays.asList(config.getEndpoints(), config.getType(), config.getDatabase(), config.getFilePath(),
+                             config.getUsername(), config.getPassword(), propertiesOf(config));
+    }
+    
+    private static List<Object> poolKey(DatabaseConfig config) {
+        return Arrays.asList(config.buildJdbcUrl(), config.getUsername(), config.getPassword(), propertiesOf(config));
+    }
+    
+    private static Map<Object, Object> propertiesOf(DatabaseConfig config) {
+        return config.getAdditionalProperties() != null
+            ? new HashMap<>(config.getAdditionalProperties()) : Collections.emptyMap();
+    }
+    
+    private static void startHousekeeper() {
+        if (housekeeper != null) {
+            return;
+        }
+        synchronized (DatabaseConnectionManager.class) {
+            if (housekeeper == null) {
+                ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executor.scheduleWithFixedDelay(() -> {
+                    for (ConnectionPool pool : POOLS.values()) {
+                        try {
+                            pool.housekeep();
+                        } catch (RuntimeException e) {
+                            logger.warn("Connection pool housekeeping failed: {}", e.getMessage());
+                        }
+                    }
+                    for (ReplicaBalancer balancer : BALANCERS.values()) {
+                        try {
+                            balancer.healthCheck();
+                        } catch (RuntimeException e) {
+                            logger.warn("Replica health check failed: {}", e.getMessage());
+                        }
+                    }
+                }, HOUSEKEEPING_INTERVAL_MILLIS, HOUSEKEEPING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                housekeeper = executor;
+            }
+        }
+    }
+    
+    /**
+     * 创建物理连接
+     */
+    private static Connection openConnection(DatabaseConfig config) throws SQLException {
         try {
             // 加载数据库驱动
             Class.forName(config.getDriverClass());
@@ -44,6 +185,11 @@ public class DatabaseConnectionManager {
                 }
             }
             
+            // MySQL默认读取全部结果，开启后设置了fetchSize的语句使用服务端游标按块读取
+            if (config.getType() == DatabaseConfig.DatabaseType.MYSQL) {
+                props.setProperty("useCursorFetch", "true");
+            }
+            
             // 添加额外属性
             if (config.getAdditionalProperties() != null) {
                 props.putAll(config.getAdditionalProperties());
@@ -1,6 +1,7 @@
 package com.nl2sql.spider.utils;
 
 import com.nl2sql.spider.config.DatabaseConfig;
+import com.nl2sql.spider.jfr.SchemaExtractionEvent;
 import com.nl2sql.spider.model.DatabaseSchema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +21,18 @@ public class DatabaseSchemaExtractor {
      * 从数据库连接中提取schema信息
      */
     public static DatabaseSchema extractSchema(Connection connection, String dbId) throws SQLException {
+        SchemaExtractionEvent event = new SchemaExtractionEvent();
+        event.begin();
+        DatabaseSchema schema = null;
+        try {
+            schema = readSchema(connection, dbId);
+            return schema;
+        } finally {
+            event.finish(dbId, schema != null ? schema.getTableNames().size() : 0, schema != null);
+        }
+    }
+    
+    private static DatabaseSchema readSchema(Connection connection, String dbId) throws SQLException {
         DatabaseMetaData metaData = connection.getMetaData();
         
         // 获取数据库名称
@@ -0,0 +1,231 @@
+package com.nl2sql.spider.utils;
+
+import com.nl2sql.spider.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多个只读副本之间的连接分配
+ * 每次选择未关闭连接最少的健康副本（相同时轮流），连接关闭时计数减一。
+ * 副本连续连接失败达到阈值后摘除一段时间，到期后由后台健康检查重新连接，成功才恢复；
+ * 连接池已满（SQLTimeoutException）只改选其他副本，不计为失败。所有副本都被摘除时仍尝试最早到期的副本
+ */
+public final class ReplicaBalancer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaBalancer.class);
+
+    /**
+     * 连接单个副本
+     */
+    interface Connector {
+        Connection connect(DatabaseConfig config) throws SQLException;
+    }
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Connector connector;
+    private final int failureThreshold;
+    private final long ejectionNanos;
+    private final int validationTimeoutSeconds;
+    private final AtomicInteger nextStart = new AtomicInteger();
+
+    ReplicaBalancer(DatabaseConfig config, Connector connector) {
+        if (config.getEndpoints().isEmpty()) {
+            throw new IllegalArgumentException("At least one endpoint is required");
+        }
+        for (DatabaseConfig.Endpoint endpoint : config.getEndpoints()) {
+            replicas.add(new Replica(endpoint, config.withEndpoint(endpoint)));
+        }
+        this.connector = connector;
+        this.failureThreshold = Math.max(1, config.getReplicaFailureThreshold());
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getReplicaEjectionMillis()));
+        this.validationTimeoutSeconds = Math.max(0, config.getValidationTimeoutSeconds());
+    }
+
+    /**
+     * 从选中的副本获取连接，失败时依次改选其他副本
+     *
+     * @return 连接，关闭时计入副本的未关闭连接数
+     * @throws SQLException 所有副本都无法连接
+     */
+    public Connection connect() throws SQLException {
+        SQLException last = null;
+        List<Replica> tried = new ArrayList<>(replicas.size());
+        Replica replica;
+        while ((replica = choose(tried)) != null) {
+            tried.add(replica);
+            replica.outstanding.incrementAndGet();
+            try {
+                Connection conn = connector.connect(replica.config);
+                replica.consecutiveFailures.set(0);
+                replica.ejected = false;
+                replica.requests.increment();
+                return track(replica, conn);
+            } catch (SQLException e) {
+                replica.outstanding.decrementAndGet();
+                if (!(e instanceof SQLTimeoutException)) {
+                    recordFailure(replica, e);
+                }
+                last = e;
+            }
+        }
+        throw last != null ? last : new SQLException("No database endpoint available");
+    }
+
+    /**
+     * 各副本的当前状态
+     */
+    public List<Status> getStatus() {
+        List<Status> status = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            Status s = new Status();
+            s.endpoint = replica.endpoint.toString();
+            s.healthy = !replica.ejected;
+            s.outstanding = replica.outstanding.get();
+            s.requests = replica.requests.sum();
+            s.failures = replica.failures.sum();
+            s.ejections = replica.ejections.sum();
+            status.add(s);
+        }
+        return status;
+    }
+
+    /**
+     * 健康检查：摘除到期的副本重新连接，成功则恢复，失败则继续摘除
+     */
+    void healthCheck() {
+        for (Replica replica : replicas) {
+            if (!replica.ejected || System.nanoTime() - replica.retryAt < 0) {
+                continue;
+            }
+            try (Connection conn = connector.connect(replica.config)) {
+                if (conn.isValid(validationTimeoutSeconds)) {
+                    replica.consecutiveFailures.set(0);
+                    replica.ejected = false;
+                    logger.info("Database endpoint {} passed health check, restored", replica.endpoint);
+                    continue;
+                }
+            } catch (SQLException e) {
+                logger.debug("Health check failed for {}: {}", replica.endpoint, e.getMessage());
+            }
+            replica.retryAt = System.nanoTime() + ejectionNanos;
+        }
+    }
+
+    /**
+     * 未尝试过的副本中选择健康且未关闭连接最少的；都被摘除时选最早到期的
+     */
+    private Replica choose(List<Replica> tried) {
+        int size = replicas.size();
+        int start = Math.floorMod(nextStart.getAndIncrement(), size);
+        Replica best = null;
+        Replica soonest = null;
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (tried.contains(replica)) {
+                continue;
+            }
+            if (replica.ejected) {
+                if (soonest == null || replica.retryAt - soonest.retryAt < 0) {
+                    soonest = replica;
+                }
+            } else if (best == null || replica.outstanding.get() < best.outstanding.get()) {
+                best = replica;
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        // 没有健康副本时只尝试一次
+        return tried.isEmpty() ? soonest : null;
+    }
+
+    private void recordFailure(Replica replica, SQLException e) {
+        replica.failures.increment();
+        if (replica.consecutiveFailures.incrementAndGet() >= failureThreshold && !replica.ejected) {
+            replica.retryAt = System.nanoTime() + ejectionNanos;
+            replica.ejected = true;
+            replica.ejections.increment();
+            logger.warn("Database endpoint {} failed {} times in a row, ejected for {} ms: {}", replica.endpoint,
+                        replica.consecutiveFailures.get(), TimeUnit.NANOSECONDS.toMillis(ejectionNanos), e.getMessage());
+        }
+    }
+
+    private static Connection track(Replica replica, Connection conn) {
+        AtomicBoolean closed = new AtomicBoolean();
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getName().equals("close") && closed.compareAndSet(false, true)) {
+                replica.outstanding.decrementAndGet();
+            }
+            try {
+                return method.invoke(conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                                                   new Class<?>[] {Connection.class}, handler);
+    }
+
+    private static final class Replica {
+        final DatabaseConfig.Endpoint endpoint;
+        final DatabaseConfig config;
+        final AtomicInteger outstanding = new AtomicInteger();
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        final LongAdder requests = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder ejections = new LongAdder();
+        volatile boolean ejected;
+        /** 摘除后下次健康检查的System.nanoTime() */
+        volatile long retryAt;
+
+        Replica(DatabaseConfig.Endpoint endpoint, DatabaseConfig config) {
+            this.endpoint = endpoint;
+            this.config = config;
+        }
+    }
+
+    /**
+     * 副本状态
+     */
+    public static final class Status {
+        private String endpoint;
+        private boolean healthy;
+        private int outstanding;
+        private long requests;
+        private long failures;
+        private long ejections;
+
+        public String getEndpoint() { return endpoint; }
+
+        /** 未被摘除 */
+        public boolean isHealthy() { return healthy; }
+
+        /** 未关闭的连接数 */
+        public int getOutstanding() { return outstanding; }
+
+        public long getRequests() { return requests; }
+
+        public long getFailures() { return failures; }
+
+        public long getEjections() { return ejections; }
+
+        @Override
+        public String toString() {
+            return String.format("%s[%s, outstanding=%d, requests=%d, failures=%d, ejections=%d]",
+                                 endpoint, healthy ? "up" : "ejected", outstanding, requests, failures, ejections);
+        }
+    }
+}
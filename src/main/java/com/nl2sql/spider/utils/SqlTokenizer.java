@@ -17,6 +17,11 @@ public class SqlTokenizer {
         Pattern.CASE_INSENSITIVE
     );
     
+    /**
+     * 每个线程复用的匹配器
+     */
+    private static final ThreadLocal<Matcher> MATCHER = ThreadLocal.withInitial(() -> TOKEN_PATTERN.matcher(""));
+    
     /**
      * 将SQL字符串分词
      * 
@@ -24,21 +29,34 @@ public class SqlTokenizer {
      * @return token列表
      */
     public static List<String> tokenize(String sql) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(sql, tokens);
+        return tokens;
+    }
+    
+    /**
+     * 将SQL字符串分词，结果追加到给定列表，便于调用方复用列表
+     * 
+     * @param sql SQL字符串
+     * @param tokens 接收token的列表
+     */
+    public static void tokenize(String sql, List<String> tokens) {
         if (sql == null || sql.trim().isEmpty()) {
-            return new ArrayList<>();
+            return;
         }
         
-        List<String> tokens = new ArrayList<>();
-        Matcher matcher = TOKEN_PATTERN.matcher(sql);
-        
-        while (matcher.find()) {
-            String token = matcher.group(1);
-            if (token != null && !token.trim().isEmpty()) {
-                tokens.add(token.toLowerCase());
+        Matcher matcher = MATCHER.get().reset(sql);
+        try {
+            while (matcher.find()) {
+                String token = matcher.group(1);
+                if (token != null && !token.trim().isEmpty()) {
+                    tokens.add(token.toLowerCase());
+                }
             }
+        } finally {
+            // 不保留对输入的引用
+            matcher.reset("");
         }
-        
-        return tokens;
     }
     
     /**
@@ -66,6 +84,73 @@ public class SqlTokenizer {
         return sql;
     }
     
+    /**
+     * 规范化SQL文本用于等价判断
+     * 只做不改变语义的变换：关键字和聚合函数转小写，合并引号外的空白，去掉括号和逗号两侧的空白及结尾分号；
+     * 引号内的字面量和标识符保持原样
+     * 
+     * @param sql 原始SQL
+     * @return 规范化后的SQL
+     */
+    public static String canonicalize(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        
+        StringBuilder out = new StringBuilder(sql.length());
+        boolean pendingSpace = false;
+        int i = 0;
+        int n = sql.length();
+        
+        while (i < n) {
+            char c = sql.charAt(i);
+            
+            if (Character.isWhitespace(c)) {
+                pendingSpace = out.length() > 0;
+                i++;
+                continue;
+            }
+            
+            if (pendingSpace && !isSpaceInsensitive(c) && !isSpaceInsensitive(out.charAt(out.length() - 1))) {
+                out.append(' ');
+            }
+            pendingSpace = false;
+            
+            if (c == '\'' || c == '"' || c == '`') {
+                // 引号内容原样保留
+                int end = sql.indexOf(c, i + 1);
+                end = end < 0 ? n : end + 1;
+                out.append(sql, i, end);
+                i = end;
+            } else if (Character.isLetterOrDigit(c) || c == '_') {
+                int end = i + 1;
+                while (end < n && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_')) {
+                    end++;
+                }
+                String word = sql.substring(i, end);
+                String lower = word.toLowerCase();
+                out.append(isKeyword(lower) || isAggregateFunction(lower) ? lower : word);
+                i = end;
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        
+        // 移除结尾的分号
+        int length = out.length();
+        while (length > 0 && (out.charAt(length - 1) == ';' || out.charAt(length - 1) == ' ')) {
+            length--;
+        }
+        out.setLength(length);
+        
+        return out.toString();
+    }
+    
+    private static boolean isSpaceInsensitive(char c) {
+        return c == '(' || c == ')' || c == ',';
+    }
+    
     /**
      * 检查token是否为关键字
      * 
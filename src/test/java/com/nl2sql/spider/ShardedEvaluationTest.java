@@ -0,0 +1,39 @@
+package com.nl2sql.spider;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ShardedEvaluation的单元测试
+ */
+public class ShardedEvaluationTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("测试工作进程的JFR录制文件按分片改名")
+    void testWorkerFlightRecordingFilename() {
+        assertEquals("-XX:StartFlightRecording=duration=60s,filename=run-shard-2.jfr,settings=profile",
+                     ShardedEvaluation.workerOption(
+                         "-XX:StartFlightRecording=duration=60s,filename=run.jfr,settings=profile", 2));
+        assertEquals("-XX:StartFlightRecording:filename=out/run-shard-0",
+                     ShardedEvaluation.workerOption("-XX:StartFlightRecording:filename=out/run", 0));
+
+        // JFR按进程生成文件名的情况不变
+        assertEquals("-XX:StartFlightRecording", ShardedEvaluation.workerOption("-XX:StartFlightRecording", 1));
+        assertEquals("-XX:StartFlightRecording=settings=profile",
+                     ShardedEvaluation.workerOption("-XX:StartFlightRecording=settings=profile", 1));
+        assertEquals("-XX:StartFlightRecording=filename=run-%p.jfr",
+                     ShardedEvaluation.workerOption("-XX:StartFlightRecording=filename=run-%p.jfr", 1));
+        String directory = "-XX:StartFlightRecording=filename=" + tempDir;
+        assertEquals(directory, ShardedEvaluation.workerOption(directory, 1));
+
+        assertEquals("-Xmx2g", ShardedEvaluation.workerOption("-Xmx2g", 1));
+    }
+}
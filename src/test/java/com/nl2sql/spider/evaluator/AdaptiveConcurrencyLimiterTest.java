@@ -0,0 +1,168 @@
+package com.nl2sql.spider.evaluator;
+
+import com.nl2sql.spider.config.DatabaseConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AdaptiveConcurrencyLimiter的单元测试
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    @DisplayName("测试延迟稳定时上限增加，延迟升高或连接失败时减小")
+    void testAdditiveIncreaseMultiplicativeDecrease() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 16);
+
+        // 每轮占满上限，耗时稳定在1ms
+        for (int round = 0; round < 100; round++) {
+            runRound(limiter, MILLI);
+        }
+        assertEquals(16, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+
+        // 延迟升高到20倍，数据库开始排队
+        for (int round = 0; round < 5; round++) {
+            runRound(limiter, 20 * MILLI);
+        }
+        int congested = limiter.getLimit();
+        assertTrue(congested < 16, "limit should back off, was " + congested);
+
+        long start = limiter.acquire();
+        limiter.release(start, true);
+        assertTrue(limiter.getLimit() < congested || limiter.getLimit() == 1);
+    }
+
+    @Test
+    @DisplayName("测试超过上限的请求排队等待")
+    void testQueuesBeyondLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1);
+        long first = limiter.acquire();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                long start = limiter.acquire();
+                acquired.countDown();
+                limiter.release(start, false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+
+        while (limiter.getQueued() == 0) {
+            Thread.sleep(1);
+        }
+        assertFalse(acquired.await(50, TimeUnit.MILLISECONDS));
+        limiter.release(first, false);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        waiter.join();
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    @DisplayName("测试忽略的请求只释放名额，不调整上限")
+    void testIgnoreKeepsLimit() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 16);
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+        }
+        for (int i = 0; i < 4; i++) {
+            limiter.ignore();
+        }
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+        assertTrue(limiter.toString().contains("dropped=0, ignored=4"), limiter.toString());
+    }
+
+    @Test
+    @DisplayName("测试使用连接池时上限不超过连接池能同时满足的项数")
+    void testMaxLimitFollowsPoolSize() {
+        DatabaseConfig config = new DatabaseConfig(DatabaseConfig.DatabaseType.MYSQL, "127.0.0.1", 1, "spider",
+                                                   "user", "password");
+        config.setPooled(true);
+        config.setPoolMinSize(0);
+        config.setPoolMaxSize(8);
+        SpiderEvaluator evaluator = new SpiderEvaluator();
+
+        // 无法连接，只用于创建端点的并发上限
+        assertFalse(evaluator.evaluateExecution(config, "SELECT 1", "SELECT 2", null));
+        AdaptiveConcurrencyLimiter limiter = singleLimiter(evaluator);
+        assertEquals(8, limiter.getMaxLimit());
+
+        // 并发执行时每项借出两个连接，原有的限流器就地调整
+        evaluator.setConcurrentExecution(true);
+        assertFalse(evaluator.evaluateExecution(config, "SELECT 1", "SELECT 2", null));
+        assertSame(limiter, singleLimiter(evaluator));
+        assertEquals(4, limiter.getMaxLimit());
+
+        config.setMaxConcurrency(6);
+        evaluator.setConcurrentExecution(false);
+        evaluator.setConcurrentExecution(true);
+        assertFalse(evaluator.evaluateExecution(config, "SELECT 1", "SELECT 2", null));
+        assertEquals(4, singleLimiter(evaluator).getMaxLimit());
+    }
+
+    @Test
+    @DisplayName("测试调小最大值后执行中的请求降到新上限以下才放行新请求")
+    void testShrinkMaxLimitWhileInFlight() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 8);
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+        }
+        limiter.setMaxLimit(2);
+        assertEquals(2, limiter.getLimit());
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire();
+                acquired.countDown();
+                limiter.ignore();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+
+        while (limiter.getQueued() == 0) {
+            Thread.sleep(1);
+        }
+        limiter.ignore();
+        limiter.ignore();
+        assertFalse(acquired.await(50, TimeUnit.MILLISECONDS), "2 in flight with limit 2");
+        limiter.ignore();
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        waiter.join();
+        limiter.ignore();
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(2, limiter.getMaxLimit());
+    }
+
+    private static AdaptiveConcurrencyLimiter singleLimiter(SpiderEvaluator evaluator) {
+        assertEquals(1, evaluator.getConcurrencyLimiters().size());
+        return evaluator.getConcurrencyLimiters().values().iterator().next();
+    }
+
+    /**
+     * 占满当前上限后全部以指定耗时完成
+     */
+    private static void runRound(AdaptiveConcurrencyLimiter limiter, long rttNanos) throws InterruptedException {
+        int limit = limiter.getLimit();
+        for (int i = 0; i < limit; i++) {
+            limiter.acquire();
+        }
+        for (int i = 0; i < limit; i++) {
+            limiter.release(System.nanoTime() - rttNanos, false);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.nl2sql.spider.evaluator;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ColumnarResult的单元测试
+ */
+public class ColumnarResultTest {
+
+    @Test
+    @DisplayName("测试从SQLite读取时按值推断列类型")
+    void testReadFromSqlite(@TempDir Path tempDir) throws SQLException {
+        String url = "jdbc:sqlite:" + tempDir.resolve("columnar.sqlite");
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (id INTEGER, score REAL, name TEXT, mixed)");
+            stmt.execute("INSERT INTO t VALUES (1, 1.5, 'Alice', 1), (2, NULL, 'Bob', 'x'), (3, 2.5, NULL, 2.0)");
+
+            try (ResultSet rs = stmt.executeQuery("SELECT id, score, name, mixed FROM t ORDER BY id")) {
+                ColumnarResult result = ColumnarResult.read(rs, true);
+
+                assertEquals(3, result.getRowCount());
+                assertEquals(ColumnarResult.ColumnType.LONG, result.getColumnType(0));
+                assertEquals(ColumnarResult.ColumnType.DOUBLE, result.getColumnType(1));
+                assertEquals(ColumnarResult.ColumnType.STRING, result.getColumnType(2));
+                assertEquals(ColumnarResult.ColumnType.OBJECT, result.getColumnType(3));
+
+                assertEquals(2L, result.getLong(0, 1));
+                assertTrue(result.isNull(1, 1));
+                assertEquals("Bob", result.getString(2, 1));
+                assertTrue(result.isNull(2, 2));
+                assertEquals(1, result.getObject(3, 0));
+                assertEquals("x", result.getObject(3, 1));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("测试无序比较：数值误差、字符串忽略大小写与null")
+    void testMatchesUnordered() {
+        ColumnarResult gold = rows(Arrays.asList(1, "Alice", null), Arrays.asList(2, "Bob", 3.0));
+        ColumnarResult sameReordered = rows(Arrays.asList(2L, "BOB", 3), Arrays.asList(1L, "alice", null));
+        ColumnarResult different = rows(Arrays.asList(1, "Alice", null), Arrays.asList(2, "Bobby", 3.0));
+
+        assertTrue(gold.matchesUnordered(sameReordered));
+        assertTrue(sameReordered.matchesUnordered(gold));
+        assertFalse(gold.matchesUnordered(different));
+        assertFalse(gold.matchesUnordered(rows(Arrays.asList(1, "Alice", null))));
+    }
+
+    @Test
+    @DisplayName("测试指纹与行顺序无关")
+    void testFingerprint() {
+        ColumnarResult first = rows(Arrays.asList(1, "a"), Arrays.asList(2, "b"), Arrays.asList(2, "b"));
+        ColumnarResult second = rows(Arrays.asList(2, "B"), Arrays.asList(1, "A"), Arrays.asList(2, "b"));
+        ColumnarResult third = rows(Arrays.asList(1, "a"), Arrays.asList(1, "a"), Arrays.asList(2, "b"));
+
+        assertEquals(first.fingerprint(), second.fingerprint());
+        assertNotEquals(first.fingerprint(), third.fingerprint());
+    }
+
+    @SafeVarargs
+    private static ColumnarResult rows(List<Object>... rows) {
+        return ColumnarResult.fromRows(rows[0].size(), Arrays.asList(rows));
+    }
+}
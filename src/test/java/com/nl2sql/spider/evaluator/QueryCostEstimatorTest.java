@@ -0,0 +1,99 @@
+package com.nl2sql.spider.evaluator;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * QueryCostEstimator及执行前代价检查的单元测试
+ */
+public class QueryCostEstimatorTest {
+
+    @TempDir
+    static Path tempDir;
+
+    private static String dbPath;
+
+    @BeforeAll
+    static void createDatabase() throws SQLException {
+        dbPath = tempDir.resolve("concert.sqlite").toString();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE singer (singer_id INTEGER PRIMARY KEY, name TEXT, age INTEGER)");
+            stmt.execute("CREATE TABLE concert (concert_id INTEGER PRIMARY KEY, singer_id INTEGER, year INTEGER)");
+            conn.setAutoCommit(false);
+            try (PreparedStatement singer = conn.prepareStatement("INSERT INTO singer VALUES (?, ?, ?)");
+                 PreparedStatement concert = conn.prepareStatement("INSERT INTO concert VALUES (?, ?, ?)")) {
+                for (int i = 1; i <= 400; i++) {
+                    singer.setInt(1, i);
+                    singer.setString(2, "singer" + i);
+                    singer.setInt(3, 20 + i % 40);
+                    singer.addBatch();
+                    concert.setInt(1, i);
+                    concert.setInt(2, i);
+                    concert.setInt(3, 2000 + i % 20);
+                    concert.addBatch();
+                }
+                singer.executeBatch();
+                concert.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+
+    @Test
+    @DisplayName("测试按SQLite查询计划和表行数估计规模")
+    void testEstimateSqlite() throws SQLException {
+        QueryCostEstimator estimator = new QueryCostEstimator();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath)) {
+            assertEquals(400, estimator.estimate(conn, "concert", "SELECT name FROM singer"));
+            assertEquals(1, estimator.estimate(conn, "concert", "SELECT name FROM singer WHERE singer_id = 3"));
+            assertEquals(160000, estimator.estimate(conn, "concert", "SELECT * FROM singer, concert"));
+            // 有连接条件时按主键查找
+            assertEquals(400, estimator.estimate(conn, "concert",
+                    "SELECT name FROM singer JOIN concert ON singer.singer_id = concert.concert_id"));
+            // 计划中只显示别名
+            assertEquals(160000, estimator.estimate(conn, "concert", "SELECT * FROM singer AS T1 JOIN concert AS T2"));
+            assertEquals(160000, estimator.estimate(conn, "concert", "SELECT * FROM singer T1, \"concert\" AS \"T2\""));
+            assertEquals(400, estimator.estimate(conn, "concert",
+                    "SELECT T1.name FROM singer AS T1 JOIN concert AS T2 ON T1.singer_id = T2.concert_id"));
+            assertEquals(160000, estimator.estimate(conn, "concert",
+                    "SELECT * FROM singer JOIN concert AS T2 WHERE T2.year > 0 OR T2.year <= 0"));
+            // 子查询中的别名
+            assertEquals(800, estimator.estimate(conn, "concert",
+                    "SELECT name FROM singer WHERE age > 30 OR singer_id IN (SELECT T1.singer_id FROM concert AS T1)"));
+            assertThrows(SQLException.class, () -> estimator.estimate(conn, "concert", "SELECT * FROM missing"));
+        }
+    }
+
+    @Test
+    @DisplayName("测试估计规模超过上限的预测SQL判为代价过高")
+    void testTooExpensive() {
+        SpiderEvaluator evaluator = new SpiderEvaluator();
+        String gold = "SELECT count(*) FROM concert";
+        String crossJoin = "SELECT * FROM singer, concert";
+        String aliasedCrossJoin = "SELECT T1.name, T2.year FROM singer AS T1 JOIN concert AS T2";
+
+        assertFalse(evaluator.isTooExpensive("concert", dbPath, crossJoin, gold));
+
+        evaluator.setMaxEstimatedRows(10000);
+        assertTrue(evaluator.isTooExpensive("concert", dbPath, crossJoin, gold));
+        assertTrue(evaluator.isTooExpensive("concert", dbPath, aliasedCrossJoin, gold));
+        assertFalse(evaluator.isTooExpensive("concert", dbPath,
+                "SELECT T1.name FROM singer AS T1 JOIN concert AS T2 ON T1.singer_id = T2.concert_id", gold));
+        assertFalse(evaluator.isTooExpensive("concert", dbPath, "SELECT name FROM singer WHERE age > 30", gold));
+        assertFalse(evaluator.isTooExpensive("concert", dbPath, crossJoin, crossJoin));
+        // 无法生成计划的交给执行评估
+        assertFalse(evaluator.isTooExpensive("concert", dbPath, "SELECT * FROM missing", gold));
+    }
+}
@@ -1,13 +1,29 @@
 package com.nl2sql.spider.evaluator;
 
 import com.nl2sql.spider.config.DatabaseConfig;
+import com.nl2sql.spider.model.DatabaseSchema;
+import com.nl2sql.spider.model.SqlStructure;
+import com.nl2sql.spider.parser.SqlParser;
 import com.nl2sql.spider.utils.DatabaseConnectionManager;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -163,4 +179,325 @@ public class SpiderEvaluatorExtensionTest {
         assertEquals("false", config.getAdditionalProperties().getProperty("useSSL"));
         assertEquals("UTC", config.getAdditionalProperties().getProperty("serverTimezone"));
     }
-} 
\ No newline at end of file
+    
+    @Test
+    @DisplayName("测试等价SQL跳过预测执行")
+    void testEquivalentExecutionSkipped(@TempDir Path tempDir) throws SQLException {
+        String dbPath = tempDir.resolve("equiv.sqlite").toString();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (name TEXT)");
+            stmt.execute("INSERT INTO t VALUES ('a'), ('b')");
+        }
+        
+        String gold = "SELECT name FROM t WHERE name = 'a'";
+        String pred = "select name  from t where name = 'a';";
+        
+        assertTrue(evaluator.isEquivalentSql(pred, gold));
+        assertTrue(evaluator.isExecutionSkipped(pred, gold));
+        assertTrue(evaluator.evaluateExecution(dbPath, pred, gold));
+        
+        // 字面量不同则不视为等价
+        assertFalse(evaluator.isEquivalentSql("SELECT name FROM t WHERE name = 'A'", gold));
+        
+        // 标准SQL无法执行时仍判为不匹配
+        assertFalse(evaluator.evaluateExecution(dbPath, "SELECT x FROM missing", "SELECT x FROM missing"));
+        
+        // 核对模式下仍执行预测SQL
+        evaluator.setVerifyEquivalentExecution(true);
+        assertFalse(evaluator.isExecutionSkipped(pred, gold));
+        assertTrue(evaluator.evaluateExecution(dbPath, pred, gold));
+    }
+    
+    @Test
+    @DisplayName("测试标准SQL含ORDER BY时按顺序比较")
+    void testOrderSensitiveExecution(@TempDir Path tempDir) throws SQLException {
+        String dbPath = tempDir.resolve("ordered.sqlite").toString();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (name TEXT, age INTEGER)");
+            stmt.execute("INSERT INTO t VALUES ('a', 3), ('b', 1), ('c', 2)");
+        }
+        
+        DatabaseSchema schema = new DatabaseSchema();
+        schema.setDbId("ordered");
+        schema.setTableNames(Arrays.asList("t"));
+        schema.setTableNamesOriginal(Arrays.asList("t"));
+        SqlParser parser = new SqlParser();
+        
+        String goldSql = "SELECT name FROM t ORDER BY age";
+        SqlStructure gold = parser.parseSql(schema, goldSql);
+        SqlStructure unorderedGold = parser.parseSql(schema, "SELECT name FROM t");
+        assertTrue(evaluator.isOrderSensitive(gold));
+        assertFalse(evaluator.isOrderSensitive(unorderedGold));
+        
+        assertTrue(evaluator.evaluateExecution(dbPath, "SELECT name FROM t ORDER BY age ASC", goldSql, gold));
+        assertFalse(evaluator.evaluateExecution(dbPath, "SELECT name FROM t ORDER BY age DESC", goldSql, gold));
+        assertFalse(evaluator.evaluateExecution(dbPath, "SELECT name FROM t ORDER BY age LIMIT 2", goldSql, gold));
+        
+        // 不含ORDER BY时不考虑行顺序
+        assertTrue(evaluator.evaluateExecution(dbPath, "SELECT name FROM t ORDER BY age DESC", "SELECT name FROM t", unorderedGold));
+    }
+    
+    @Test
+    @DisplayName("测试并发执行比较")
+    void testConcurrentExecution(@TempDir Path tempDir) throws SQLException {
+        String dbPath = tempDir.resolve("concurrent.sqlite").toString();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (name TEXT, age INTEGER)");
+            stmt.execute("INSERT INTO t VALUES ('a', 3), ('b', 1), ('c', 2)");
+        }
+        
+        DatabaseSchema schema = new DatabaseSchema();
+        schema.setDbId("concurrent");
+        schema.setTableNames(Arrays.asList("t"));
+        schema.setTableNamesOriginal(Arrays.asList("t"));
+        SqlParser parser = new SqlParser();
+        SqlStructure ordered = parser.parseSql(schema, "SELECT name FROM t ORDER BY age");
+        
+        evaluator.setConcurrentExecution(true);
+        
+        // 无序比较
+        assertTrue(evaluator.evaluateExecution(dbPath, "SELECT name FROM t ORDER BY age DESC", "SELECT name FROM t", null));
+        assertFalse(evaluator.evaluateExecution(dbPath, "SELECT name FROM t UNION ALL SELECT name FROM t", "SELECT name FROM t", null));
+        assertFalse(evaluator.evaluateExecution(dbPath, "SELECT name FROM t", "SELECT name FROM missing", null));
+        assertFalse(evaluator.evaluateExecution(dbPath, "SELECT name FROM missing", "SELECT name FROM t", null));
+        
+        // 有序比较
+        assertTrue(evaluator.evaluateExecution(dbPath, "SELECT name FROM t ORDER BY age ASC", "SELECT name FROM t ORDER BY age", ordered));
+        assertFalse(evaluator.evaluateExecution(dbPath, "SELECT name FROM t ORDER BY age DESC", "SELECT name FROM t ORDER BY age", ordered));
+        assertFalse(evaluator.evaluateExecution(dbPath, "SELECT name FROM t ORDER BY age LIMIT 2", "SELECT name FROM t ORDER BY age", ordered));
+        assertFalse(evaluator.evaluateExecution(dbPath, "SELECT name FROM t ORDER BY age", "SELECT name FROM missing ORDER BY age", ordered));
+    }
+    
+    @Test
+    @DisplayName("测试并发有序比较与顺序有序比较按相同的列类型规则判定")
+    void testConcurrentOrderedMatchesSequential() throws SQLException {
+        DatabaseConfig config = new DatabaseConfig();
+        config.setType(DatabaseConfig.DatabaseType.H2);
+        config.setDatabase("ordered_matcher");
+        
+        // 内存数据库在最后一个连接关闭前一直存在
+        try (Connection conn = DatabaseConnectionManager.createConnection(config);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (id INT, name VARCHAR(10), price DECIMAL(10, 2), ratio DOUBLE, code VARCHAR(10))");
+            stmt.execute("INSERT INTO t VALUES (1, 'Apple', 1.50, 0.5, '1'), (2, 'pear', 2.00, NULL, NULL)");
+            
+            DatabaseSchema schema = new DatabaseSchema();
+            schema.setDbId("ordered_matcher");
+            schema.setTableNames(Arrays.asList("t"));
+            schema.setTableNamesOriginal(Arrays.asList("t"));
+            SqlStructure ordered = new SqlParser().parseSql(schema, "SELECT name FROM t ORDER BY id");
+            
+            String[][] pairs = {
+                // 字符串忽略大小写
+                {"SELECT UPPER(name) FROM t ORDER BY id", "SELECT name FROM t ORDER BY id"},
+                // DECIMAL与DOUBLE按数值比较
+                {"SELECT CAST(price AS DOUBLE) FROM t ORDER BY id", "SELECT price FROM t ORDER BY id"},
+                {"SELECT ratio FROM t ORDER BY id", "SELECT CAST(ratio AS DECIMAL(10, 2)) FROM t ORDER BY id"},
+                // 数值列与字符串列只在都为null时相等
+                {"SELECT id FROM t ORDER BY id", "SELECT code FROM t ORDER BY id"},
+                {"SELECT ratio FROM t WHERE id = 2", "SELECT code FROM t WHERE id = 2"},
+                {"SELECT name, price FROM t ORDER BY id", "SELECT name FROM t ORDER BY id"},
+                {"SELECT name FROM t ORDER BY id DESC", "SELECT name FROM t ORDER BY id"}
+            };
+            boolean[] expected = {true, true, true, false, true, false, false};
+            
+            SpiderEvaluator concurrent = new SpiderEvaluator();
+            concurrent.setConcurrentExecution(true);
+            for (int i = 0; i < pairs.length; i++) {
+                boolean sequential = evaluator.evaluateExecution(conn, pairs[i][0], pairs[i][1], ordered);
+                assertEquals(expected[i], sequential, pairs[i][0]);
+                assertEquals(sequential, concurrent.evaluateExecution(config, pairs[i][0], pairs[i][1], ordered),
+                             pairs[i][0]);
+            }
+        }
+    }
+    
+    @Test
+    @DisplayName("测试命中标准结果指纹索引时不执行标准SQL")
+    void testGoldFingerprintIndex(@TempDir Path tempDir) throws SQLException, IOException {
+        String dbPath = tempDir.resolve("indexed.sqlite").toString();
+        String unorderedGold = "SELECT name, age FROM t";
+        String orderedGold = "SELECT name FROM t ORDER BY age";
+        String tolerantGold = "SELECT 0.1 + 0.2";
+        String failedGold = "SELECT x FROM missing";
+        
+        Path indexFile = tempDir.resolve("gold.idx");
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (name TEXT, age INTEGER)");
+            stmt.execute("INSERT INTO t VALUES ('a', 3), ('b', 1), ('c', 2)");
+            
+            GoldFingerprintIndex.Builder builder = new GoldFingerprintIndex.Builder(0);
+            builder.add(conn, "indexed", unorderedGold, false);
+            builder.add(conn, "indexed", orderedGold, true);
+            builder.add(conn, "indexed", tolerantGold, false);
+            builder.add(conn, "indexed", failedGold, false);
+            builder.write(indexFile);
+            assertEquals(1, builder.getFailedCount());
+            
+            // 构建索引后改名，标准SQL已无法执行，只能通过指纹评估
+            stmt.execute("ALTER TABLE t RENAME TO t2");
+        }
+        
+        GoldFingerprintIndex index = GoldFingerprintIndex.open(indexFile);
+        assertEquals(4, index.size());
+        assertTrue(index.lookup("indexed", "select name , age from t;").isExact());
+        assertNull(index.lookup("other", unorderedGold));
+        evaluator.setGoldFingerprintIndex(index);
+        
+        DatabaseSchema schema = new DatabaseSchema();
+        schema.setDbId("indexed");
+        schema.setTableNames(Arrays.asList("t"));
+        schema.setTableNamesOriginal(Arrays.asList("t"));
+        SqlStructure ordered = new SqlParser().parseSql(schema, orderedGold);
+        
+        assertTrue(evaluator.evaluateExecution("indexed", dbPath, "SELECT upper(name), age FROM t2 ORDER BY age", unorderedGold, null));
+        assertFalse(evaluator.evaluateExecution("indexed", dbPath, "SELECT name, age FROM t2 WHERE age > 1", unorderedGold, null));
+        assertTrue(evaluator.evaluateExecution("indexed", dbPath, "SELECT name FROM t2 ORDER BY age ASC", orderedGold, ordered));
+        assertFalse(evaluator.evaluateExecution("indexed", dbPath, "SELECT name FROM t2 ORDER BY age DESC", orderedGold, ordered));
+        assertTrue(evaluator.evaluateExecution("indexed", dbPath, unorderedGold, unorderedGold, null));
+        assertFalse(evaluator.evaluateExecution("indexed", dbPath, "SELECT 1", failedGold, null));
+        
+        // 指纹不同但含浮点值时退回完整比较，按误差判定
+        assertTrue(evaluator.evaluateExecution("indexed", dbPath, "SELECT 0.3", tolerantGold, null));
+        
+        // 未传dbId时不使用索引
+        assertFalse(evaluator.evaluateExecution(dbPath, "SELECT name, age FROM t2", unorderedGold, null));
+    }
+    
+    @Test
+    @DisplayName("测试在多个数据库变体上执行比较并在不一致时提前结束")
+    void testTestSuiteExecution(@TempDir Path tempDir) throws SQLException {
+        String first = tempDir.resolve("first.sqlite").toString();
+        String second = tempDir.resolve("second.sqlite").toString();
+        createVariant(first, 3, 10);
+        createVariant(second, 4, 2000000000);
+        List<String> variants = Arrays.asList(first, second);
+        
+        String gold = "SELECT name FROM t WHERE age > 2";
+        assertTrue(evaluator.evaluateTestSuiteExecution(null, variants, "SELECT name FROM t WHERE age >= 3", gold, null));
+        // 只在第一个数据库上结果相同
+        assertTrue(evaluator.evaluateExecution(first, "SELECT name FROM t WHERE age = 3", gold));
+        assertFalse(evaluator.evaluateTestSuiteExecution(null, variants, "SELECT name FROM t WHERE age = 3", gold, null));
+        
+        // 第一个变体很快不一致，第二个变体上的长查询被取消
+        String slow = "WITH RECURSIVE c(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM c WHERE x < (SELECT n FROM limits)) "
+                    + "SELECT count(*) FROM c";
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () ->
+            assertFalse(evaluator.evaluateTestSuiteExecution(null, variants, slow, "SELECT 5", null)));
+    }
+    
+    @Test
+    @DisplayName("测试只预编译的SQL验证不执行查询")
+    void testPrepareOnlyValidation(@TempDir Path tempDir) throws SQLException {
+        String dbPath = tempDir.resolve("prepare.sqlite").toString();
+        createVariant(dbPath, 3, 2000000000);
+        String slow = "WITH RECURSIVE c(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM c WHERE x < (SELECT n FROM limits)) "
+                    + "SELECT count(*) FROM c";
+        
+        evaluator.setPrepareOnlyValidation(true);
+        assertTrue(evaluator.isValidSql(dbPath, "SELECT name FROM t WHERE age > 1"));
+        assertFalse(evaluator.isValidSql(dbPath, "SELECT missing FROM t"));
+        assertFalse(evaluator.isValidSql(dbPath, "SELECT name FROM missing"));
+        assertFalse(evaluator.isValidSql(dbPath, "SELEC name FROM t"));
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertTrue(evaluator.isValidSql(dbPath, slow)));
+        
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+             Statement stmt = conn.createStatement()) {
+            assertTrue(evaluator.isValidSql(conn, "DELETE FROM t"));
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM t")) {
+                assertEquals(3, rs.getInt(1));
+            }
+        }
+    }
+    
+    @Test
+    @DisplayName("测试驱动推迟解析时只预编译的SQL验证仍能发现无效SQL")
+    void testPrepareOnlyValidationOnDeferringDriver() throws SQLException {
+        try (Connection h2 = DriverManager.getConnection("jdbc:h2:mem:deferred_prepare");
+             Statement stmt = h2.createStatement()) {
+            stmt.execute("CREATE TABLE t (name VARCHAR(20), age INT)");
+            evaluator.setPrepareOnlyValidation(true);
+            
+            // Oracle：改用EXPLAIN PLAN FOR（H2同样支持）
+            Connection oracle = deferringConnection(h2, "Oracle");
+            assertTrue(evaluator.isValidSql(oracle, "SELECT name FROM t WHERE age > 1"));
+            assertFalse(evaluator.isValidSql(oracle, "SELECT missing FROM t"));
+            assertFalse(evaluator.isValidSql(oracle, "SELEC name FROM t"));
+            
+            // 不确定是否在预编译时解析的数据库：执行查询
+            Connection unknown = deferringConnection(h2, "SomeDB");
+            assertTrue(evaluator.isValidSql(unknown, "SELECT name FROM t"));
+            assertFalse(evaluator.isValidSql(unknown, "not even sql"));
+        }
+    }
+    
+    /**
+     * 模拟推迟到执行时才解析语句的驱动：预编译总是成功，其余调用转给实际连接
+     */
+    private static Connection deferringConnection(Connection target, String productName) throws SQLException {
+        DatabaseMetaData metaData = target.getMetaData();
+        DatabaseMetaData reportedMetaData = (DatabaseMetaData) Proxy.newProxyInstance(
+            DatabaseMetaData.class.getClassLoader(), new Class<?>[] {DatabaseMetaData.class},
+            (proxy, method, args) -> method.getName().equals("getDatabaseProductName")
+                ? productName : method.invoke(metaData, args));
+        PreparedStatement deferred = (PreparedStatement) Proxy.newProxyInstance(
+            PreparedStatement.class.getClassLoader(), new Class<?>[] {PreparedStatement.class},
+            (proxy, method, args) -> method.getReturnType() == boolean.class ? false : null);
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getMetaData":
+                        return reportedMetaData;
+                    case "prepareStatement":
+                        return deferred;
+                    default:
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                }
+            });
+    }
+    
+    @Test
+    @DisplayName("测试静态类型数据库按列类型逐行比较")
+    void testOrderedComparisonOnTypedColumns() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:typed_ordered");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (name VARCHAR(20), age INT, score DOUBLE, code VARCHAR(10))");
+            stmt.execute("INSERT INTO t VALUES ('Alice', 3, 1.5, '3'), ('Bob', 1, NULL, '1'), ('Carol', 2, 2.25, NULL)");
+            
+            DatabaseSchema schema = new DatabaseSchema();
+            schema.setDbId("typed");
+            schema.setTableNames(Arrays.asList("t"));
+            schema.setTableNamesOriginal(Arrays.asList("t"));
+            String goldSql = "SELECT name, age, score FROM t ORDER BY age";
+            SqlStructure gold = new SqlParser().parseSql(schema, goldSql);
+            
+            // 字符串忽略大小写，整数与浮点按误差比较，null只与null相等
+            assertTrue(evaluator.evaluateExecution(conn, "SELECT UPPER(name), CAST(age AS DOUBLE), score FROM t ORDER BY age", goldSql, gold));
+            assertFalse(evaluator.evaluateExecution(conn, "SELECT name, age, COALESCE(score, 0) FROM t ORDER BY age", goldSql, gold));
+            // 数值与字符串不相等
+            assertFalse(evaluator.evaluateExecution(conn, "SELECT name, code, score FROM t ORDER BY age", goldSql, gold));
+            assertFalse(evaluator.evaluateExecution(conn, "SELECT name, age FROM t ORDER BY age", goldSql, gold));
+        }
+    }
+    
+    private static void createVariant(String dbPath, int maxAge, int limit) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (name TEXT, age INTEGER)");
+            for (int age = 1; age <= maxAge; age++) {
+                stmt.execute("INSERT INTO t VALUES ('n" + age + "', " + age + ")");
+            }
+            stmt.execute("CREATE TABLE limits (n INTEGER)");
+            stmt.execute("INSERT INTO limits VALUES (" + limit + ")");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,149 @@
+package com.nl2sql.spider.evaluator;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SpillableResult的单元测试
+ */
+public class SpillableResultTest {
+
+    @Test
+    @DisplayName("测试超过内存上限时溢写到磁盘并归并比较")
+    void testSpillAndMerge(@TempDir Path tempDir) throws SQLException, IOException {
+        String url = "jdbc:sqlite:" + tempDir.resolve("spill.sqlite");
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (id INTEGER, name TEXT, score REAL)");
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement("INSERT INTO t VALUES (?, ?, ?)")) {
+                for (int i = 0; i < 5000; i++) {
+                    insert.setInt(1, i % 1500);
+                    insert.setString(2, "name" + (i % 7));
+                    insert.setDouble(3, i / 4.0);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            conn.commit();
+
+            int filesBefore = countSpillFiles();
+            try (SpillableResult spilled = query(stmt, "SELECT id, name, score FROM t ORDER BY score DESC", 1);
+                 SpillableResult inMemory = query(stmt, "SELECT id, name, score FROM t ORDER BY name, id", 0);
+                 SpillableResult different = query(stmt, "SELECT id, upper(name) || 'x', score FROM t", 1)) {
+
+                assertTrue(spilled.isSpilled());
+                assertFalse(inMemory.isSpilled());
+                assertEquals(5000, spilled.getRowCount());
+
+                assertTrue(spilled.matchesUnordered(inMemory));
+                assertTrue(inMemory.matchesUnordered(spilled));
+                assertFalse(spilled.matchesUnordered(different));
+            }
+
+            assertEquals(filesBefore, countSpillFiles(), "spill files should be deleted on close");
+        }
+    }
+
+    @Test
+    @DisplayName("测试各段装箱类型不同（Integer和Long）时归并顺序与内存排序一致")
+    void testSpillMixedIntegerAndLong(@TempDir Path tempDir) throws SQLException, IOException {
+        String url = "jdbc:sqlite:" + tempDir.resolve("mixed.sqlite");
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (v INTEGER, name TEXT)");
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement("INSERT INTO t VALUES (?, ?)")) {
+                for (int i = 0; i < 4000; i++) {
+                    // 超过int范围的值按Long读出，其余按Integer读出
+                    insert.setLong(1, i % 3 == 0 ? 10000000000L + i : i);
+                    insert.setString(2, "name" + (i % 5));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            conn.commit();
+
+            // 升序读取时前面的段全是Integer，后面的段全是Long；乱序读取时每段混合两种类型
+            try (SpillableResult ascending = query(stmt, "SELECT v, name FROM t ORDER BY v", 1);
+                 SpillableResult descending = query(stmt, "SELECT v, name FROM t ORDER BY v DESC", 1);
+                 SpillableResult shuffled = query(stmt, "SELECT v, name FROM t ORDER BY name, v % 7", 1);
+                 SpillableResult inMemory = query(stmt, "SELECT v, name FROM t", 0)) {
+
+                assertTrue(ascending.isSpilled());
+                assertTrue(shuffled.isSpilled());
+                assertFalse(inMemory.isSpilled());
+
+                assertTrue(ascending.matchesUnordered(inMemory));
+                assertTrue(inMemory.matchesUnordered(descending));
+                assertTrue(ascending.matchesUnordered(descending));
+                assertTrue(shuffled.matchesUnordered(ascending));
+                assertTrue(inMemory.matchesUnordered(shuffled));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("测试日期、时间戳和DECIMAL列只有一侧溢写时仍按值比较")
+    void testSpillTemporalAndDecimal() throws SQLException, IOException {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:spill_temporal;DB_CLOSE_DELAY=-1");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (d DATE, ts TIMESTAMP, amount DECIMAL(20, 4), big NUMERIC(30))");
+            try (PreparedStatement insert = conn.prepareStatement("INSERT INTO t VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < 3000; i++) {
+                    insert.setDate(1, Date.valueOf(LocalDate.of(2000, 1, 1).plusDays(i % 400)));
+                    insert.setTimestamp(2, Timestamp.valueOf(
+                        LocalDateTime.of(2020, 1, 1, 0, 0).plusSeconds(i * 7919L).plusNanos(i * 1000L)));
+                    insert.setBigDecimal(3, new BigDecimal(i % 97).movePointLeft(2));
+                    insert.setBigDecimal(4, new BigDecimal("123456789012345678901").add(
+                        BigDecimal.valueOf(i % 13)));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+
+            try (SpillableResult spilled = query(stmt, "SELECT d, ts, amount, big FROM t ORDER BY amount, big DESC", 1);
+                 SpillableResult inMemory = query(stmt, "SELECT d, ts, amount, big FROM t ORDER BY ts DESC", 0);
+                 SpillableResult shifted = query(stmt,
+                     "SELECT d, DATEADD(SECOND, 1, ts), amount, big FROM t ORDER BY ts DESC", 0)) {
+
+                assertTrue(spilled.isSpilled());
+                assertFalse(inMemory.isSpilled());
+
+                assertTrue(spilled.matchesUnordered(inMemory));
+                assertTrue(inMemory.matchesUnordered(spilled));
+                assertFalse(spilled.matchesUnordered(shifted));
+            }
+        }
+    }
+
+    private static SpillableResult query(Statement stmt, String sql, long maxBytes) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            return SpillableResult.read(rs, true, null, maxBytes);
+        }
+    }
+
+    private static int countSpillFiles() {
+        File[] files = new File(System.getProperty("java.io.tmpdir"))
+            .listFiles((dir, name) -> name.startsWith("spider-result-") && name.endsWith(".spill"));
+        return files == null ? 0 : files.length;
+    }
+}
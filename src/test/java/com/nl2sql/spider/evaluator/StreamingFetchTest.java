@@ -0,0 +1,81 @@
+package com.nl2sql.spider.evaluator;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StreamingFetch的单元测试
+ */
+public class StreamingFetchTest {
+
+    @Test
+    @DisplayName("测试按数据库类型设置fetchSize和自动提交")
+    void testDialectFetchSize() throws SQLException {
+        try (Connection h2 = DriverManager.getConnection("jdbc:h2:mem:streaming_fetch")) {
+            int defaultFetchSize;
+            try (Statement stmt = h2.createStatement()) {
+                defaultFetchSize = stmt.getFetchSize();
+            }
+
+            Connection postgres = reportingProduct(h2, "PostgreSQL");
+            try (Statement stmt = StreamingFetch.createStatement(postgres)) {
+                // 自动提交时PostgreSQL驱动忽略fetchSize，不设置
+                assertEquals(defaultFetchSize, stmt.getFetchSize());
+            }
+            StreamingFetch.prepare(postgres);
+            assertFalse(h2.getAutoCommit());
+            try (Statement stmt = StreamingFetch.createStatement(postgres)) {
+                assertEquals(StreamingFetch.FETCH_SIZE, stmt.getFetchSize());
+                assertEquals(ResultSet.TYPE_FORWARD_ONLY, stmt.getResultSetType());
+            }
+
+            h2.setAutoCommit(true);
+            Connection mysql = reportingProduct(h2, "MySQL");
+            StreamingFetch.prepare(mysql);
+            assertTrue(h2.getAutoCommit());
+            try (Statement stmt = StreamingFetch.createStatement(mysql)) {
+                assertEquals(StreamingFetch.FETCH_SIZE, stmt.getFetchSize());
+            }
+
+            // 嵌入式数据库保持驱动默认值
+            try (Statement stmt = StreamingFetch.createStatement(h2)) {
+                assertEquals(defaultFetchSize, stmt.getFetchSize());
+            }
+        }
+    }
+
+    /**
+     * 包装连接，使其元数据报告指定的数据库产品名
+     */
+    private static Connection reportingProduct(Connection conn, String product) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        DatabaseMetaData reporting = (DatabaseMetaData) Proxy.newProxyInstance(
+            DatabaseMetaData.class.getClassLoader(), new Class<?>[] {DatabaseMetaData.class},
+            (proxy, method, args) -> method.getName().equals("getDatabaseProductName")
+                ? product : invoke(method, metaData, args));
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+            (proxy, method, args) -> method.getName().equals("getMetaData")
+                ? reporting : invoke(method, conn, args));
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.nl2sql.spider.jfr;
+
+import com.nl2sql.spider.evaluator.SpiderEvaluator;
+import com.nl2sql.spider.model.DatabaseSchema;
+import com.nl2sql.spider.model.SqlStructure;
+import com.nl2sql.spider.parser.SqlParser;
+import com.nl2sql.spider.utils.DatabaseSchemaExtractor;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 评估流程JFR事件的单元测试
+ */
+public class EvaluationEventsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("测试解析、执行、比较和schema提取事件带有评估项信息")
+    void testEventsCarryItemContext() throws Exception {
+        String dbPath = tempDir.resolve("pets.sqlite").toString();
+        String goldSql = "SELECT name FROM pet WHERE age > 1";
+        String predSql = "SELECT name FROM pet WHERE age >= 2";
+
+        Path file = tempDir.resolve("events.jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : List.of("SqlParse", "QueryExecution", "ResultComparison", "SchemaExtraction")) {
+                recording.enable("com.nl2sql.spider." + name).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+
+            DatabaseSchema schema;
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE pet (pet_id INTEGER PRIMARY KEY, name TEXT, age INTEGER)");
+                stmt.execute("INSERT INTO pet VALUES (1, 'a', 1), (2, 'b', 2), (3, 'c', 3)");
+                schema = DatabaseSchemaExtractor.extractSchema(conn, "pets");
+            }
+
+            ItemContext.enter(7, "pets");
+            try {
+                new SqlParser().parseSql(schema, goldSql);
+                assertTrue(new SpiderEvaluator().evaluateExecution(dbPath, predSql, goldSql));
+            } finally {
+                ItemContext.exit();
+            }
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent schemaEvent = single(events, "SchemaExtraction");
+        assertEquals("pets", schemaEvent.getString("dbId"));
+        assertEquals(-1, schemaEvent.getInt("itemIndex"));
+        assertEquals(1, schemaEvent.getInt("tables"));
+
+        RecordedEvent parse = single(events, "SqlParse");
+        assertEquals(7, parse.getInt("itemIndex"));
+        assertEquals(goldSql.hashCode(), parse.getInt("sqlHash"));
+        assertTrue(parse.getBoolean("success"));
+
+        List<RecordedEvent> executions = named(events, "QueryExecution");
+        assertEquals(2, executions.size());
+        for (RecordedEvent execution : executions) {
+            assertEquals("pets", execution.getString("dbId"));
+            assertEquals(7, execution.getInt("itemIndex"));
+            assertEquals(2, execution.getLong("rows"));
+            assertEquals(execution.getBoolean("gold") ? goldSql.hashCode() : predSql.hashCode(),
+                         execution.getInt("sqlHash"));
+        }
+
+        RecordedEvent comparison = single(events, "ResultComparison");
+        assertEquals(7, comparison.getInt("itemIndex"));
+        assertEquals("sequential", comparison.getString("mode"));
+        assertTrue(comparison.getBoolean("match"));
+    }
+
+    @Test
+    @DisplayName("测试按顺序比较和并发比较也记录两条SQL的执行事件")
+    void testExecutionEventsOnOrderedAndConcurrentPaths() throws Exception {
+        String dbPath = tempDir.resolve("ordered.sqlite").toString();
+        String goldSql = "SELECT name FROM pet WHERE age > 1 ORDER BY age";
+        String predSql = "SELECT name FROM pet WHERE age >= 2 ORDER BY age";
+
+        DatabaseSchema schema;
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE pet (pet_id INTEGER PRIMARY KEY, name TEXT, age INTEGER)");
+            stmt.execute("INSERT INTO pet VALUES (1, 'a', 1), (2, 'b', 2), (3, 'c', 3)");
+            schema = DatabaseSchemaExtractor.extractSchema(conn, "pets");
+        }
+        SqlStructure gold = new SqlParser().parseSql(schema, goldSql);
+
+        // 顺序有序、并发有序、并发无序
+        Object[][] cases = {{false, gold}, {true, gold}, {true, null}};
+        for (Object[] c : cases) {
+            SpiderEvaluator evaluator = new SpiderEvaluator();
+            evaluator.setConcurrentExecution((Boolean) c[0]);
+
+            Path file = tempDir.resolve("events-" + c[0] + "-" + (c[1] != null) + ".jfr");
+            try (Recording recording = new Recording()) {
+                recording.enable("com.nl2sql.spider.QueryExecution").withThreshold(Duration.ZERO);
+                recording.start();
+                ItemContext.enter(3, "pets");
+                try {
+                    assertTrue(evaluator.evaluateExecution(dbPath, predSql, goldSql, (SqlStructure) c[1]));
+                } finally {
+                    ItemContext.exit();
+                }
+                recording.stop();
+                recording.dump(file);
+            }
+
+            List<RecordedEvent> executions = named(RecordingFile.readAllEvents(file), "QueryExecution");
+            assertEquals(2, executions.size(), "concurrent=" + c[0] + ", ordered=" + (c[1] != null));
+            assertEquals(1, executions.stream().filter(e -> e.getBoolean("gold")).count());
+            for (RecordedEvent execution : executions) {
+                assertEquals("pets", execution.getString("dbId"));
+                assertEquals(3, execution.getInt("itemIndex"));
+                assertEquals(2, execution.getLong("rows"));
+                assertTrue(execution.getBoolean("success"));
+                assertEquals(execution.getBoolean("gold") ? goldSql.hashCode() : predSql.hashCode(),
+                             execution.getInt("sqlHash"));
+            }
+        }
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream()
+                     .filter(event -> event.getEventType().getName().equals("com.nl2sql.spider." + name))
+                     .collect(Collectors.toList());
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = named(events, name);
+        assertEquals(1, matching.size(), name);
+        return matching.get(0);
+    }
+}
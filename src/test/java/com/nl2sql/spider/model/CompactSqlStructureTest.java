@@ -0,0 +1,119 @@
+package com.nl2sql.spider.model;
+
+import com.nl2sql.spider.evaluator.SpiderEvaluator;
+import com.nl2sql.spider.parser.SqlParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CompactSqlStructure的单元测试
+ */
+public class CompactSqlStructureTest {
+
+    private static final List<String> QUERIES = Arrays.asList(
+        "SELECT name FROM student",
+        "SELECT DISTINCT name, age FROM student WHERE age > 18 AND name LIKE '%a%'",
+        "SELECT COUNT(*) FROM student WHERE age > 18 GROUP BY grade HAVING count(*) > 2 ORDER BY grade DESC LIMIT 3",
+        "SELECT name FROM student WHERE id IN (SELECT student_id FROM course)",
+        "SELECT s.name, c.title FROM student AS s JOIN course AS c ON s.id = c.student_id",
+        "SELECT name FROM student INTERSECT SELECT title FROM course",
+        "SELECT name FROM student UNION SELECT title FROM course EXCEPT SELECT name FROM enrollment"
+    );
+
+    private SqlParser parser;
+    private SpiderEvaluator evaluator;
+    private DatabaseSchema schema;
+    private SymbolTable symbols;
+
+    @BeforeEach
+    void setUp() {
+        parser = new SqlParser();
+        evaluator = new SpiderEvaluator();
+        schema = createTestSchema();
+        symbols = new SymbolTable();
+    }
+
+    @Test
+    @DisplayName("测试与SqlStructure的双向转换")
+    void testRoundTrip() {
+        for (String query : QUERIES) {
+            SqlStructure sql = parser.parseSql(schema, query);
+            CompactSqlStructure compact = CompactSqlStructure.from(sql, symbols);
+
+            assertEquals(sql.toString(), compact.toSqlStructure().toString(), query);
+        }
+    }
+
+    @Test
+    @DisplayName("测试null字段与空列表的区分")
+    void testNullFieldsPreserved() {
+        SqlStructure sql = new SqlStructure();
+        sql.setSelect(new SelectClause(true, null));
+        sql.setWhere(Arrays.asList());
+
+        SqlStructure restored = CompactSqlStructure.from(sql, symbols).toSqlStructure();
+
+        assertNotNull(restored.getSelect());
+        assertTrue(restored.getSelect().isDistinct());
+        assertNull(restored.getSelect().getSelectItems());
+        assertNull(restored.getFrom());
+        assertNotNull(restored.getWhere());
+        assertTrue(restored.getWhere().isEmpty());
+        assertNull(restored.getGroupBy());
+        assertNull(restored.getOrderBy());
+        assertNull(restored.getLimit());
+    }
+
+    @Test
+    @DisplayName("测试紧凑表示上的打分与对象图一致")
+    void testScoringParity() {
+        for (String goldQuery : QUERIES) {
+            SqlStructure gold = parser.parseSql(schema, goldQuery);
+            CompactSqlStructure compactGold = CompactSqlStructure.from(gold, symbols);
+
+            assertEquals(evaluator.evaluateHardness(gold), evaluator.evaluateHardness(compactGold), goldQuery);
+
+            for (String predQuery : QUERIES) {
+                SqlStructure pred = parser.parseSql(schema, predQuery);
+                CompactSqlStructure compactPred = CompactSqlStructure.from(pred, symbols);
+
+                Map<String, PartialScore> expected = evaluator.evaluatePartialMatch(pred, gold).getPartialScores();
+                Map<String, PartialScore> actual = evaluator.evaluatePartialMatch(compactPred, compactGold).getPartialScores();
+
+                assertEquals(expected.keySet(), actual.keySet());
+                for (String component : expected.keySet()) {
+                    assertEquals(expected.get(component).toString(), actual.get(component).toString(),
+                                 component + ": " + predQuery + " vs " + goldQuery);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("测试标识符在多个结构间共享驻留")
+    void testSharedSymbols() {
+        CompactSqlStructure first = CompactSqlStructure.from(parser.parseSql(schema, QUERIES.get(0)), symbols);
+        int symbolCount = symbols.size();
+        CompactSqlStructure second = CompactSqlStructure.from(parser.parseSql(schema, QUERIES.get(0)), symbols);
+
+        assertEquals(symbolCount, symbols.size());
+        assertEquals(first.size(), second.size());
+        assertEquals("student", symbols.name(first.tableIdSymbol(first.table(first.root(), 0))));
+    }
+
+    private DatabaseSchema createTestSchema() {
+        DatabaseSchema schema = new DatabaseSchema();
+        schema.setDbId("test_db");
+        List<String> tableNames = Arrays.asList("student", "course", "enrollment");
+        schema.setTableNames(tableNames);
+        schema.setTableNamesOriginal(tableNames);
+        return schema;
+    }
+}
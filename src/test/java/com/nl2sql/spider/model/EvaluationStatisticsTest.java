@@ -0,0 +1,77 @@
+package com.nl2sql.spider.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2sql.spider.enums.HardnessLevel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EvaluationStatistics的单元测试
+ */
+public class EvaluationStatisticsTest {
+
+    @Test
+    @DisplayName("测试分片统计序列化后合并与单次统计完全相同")
+    void testMergeMatchesSequential() throws Exception {
+        Random random = new Random(42);
+        HardnessLevel[] levels = {HardnessLevel.EASY, HardnessLevel.MEDIUM, HardnessLevel.HARD, HardnessLevel.EXTRA};
+        List<HardnessLevel> itemLevels = new ArrayList<>();
+        List<EvaluationResult> results = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Map<String, PartialScore> scores = new HashMap<>();
+            for (String component : new String[] {"select", "where", "group", "order"}) {
+                int label = random.nextInt(4);
+                int pred = random.nextInt(4);
+                scores.put(component, PartialScore.calculateScores(Math.min(label, pred), pred, label));
+            }
+            itemLevels.add(levels[random.nextInt(levels.length)]);
+            results.add(new EvaluationResult(scores, random.nextBoolean(), random.nextBoolean(), random.nextInt(5) == 0));
+        }
+
+        EvaluationStatistics sequential = new EvaluationStatistics();
+        for (int i = 0; i < results.size(); i++) {
+            sequential.addResult(itemLevels.get(i), results.get(i));
+        }
+        sequential.incrementErrorCount();
+        sequential.calculateFinalScores();
+
+        // 分三段统计，经JSON往返后倒序合并
+        ObjectMapper mapper = new ObjectMapper();
+        int[] bounds = {0, 123, 377, results.size()};
+        EvaluationStatistics merged = new EvaluationStatistics();
+        for (int shard = bounds.length - 2; shard >= 0; shard--) {
+            EvaluationStatistics partial = new EvaluationStatistics();
+            for (int i = bounds[shard]; i < bounds[shard + 1]; i++) {
+                partial.addResult(itemLevels.get(i), results.get(i));
+            }
+            if (shard == 1) {
+                partial.incrementErrorCount();
+            }
+            partial.calculateFinalScores();
+            String json = mapper.writeValueAsString(partial);
+            merged.merge(mapper.readValue(json, EvaluationStatistics.class));
+        }
+        merged.calculateFinalScores();
+
+        assertEquals(sequential.getErrorCount(), merged.getErrorCount());
+        assertEquals(sequential.getExecutionSkippedCount(), merged.getExecutionSkippedCount());
+        for (HardnessLevel level : HardnessLevel.values()) {
+            EvaluationStatistics.LevelStatistics expected = sequential.getLevelStatistics(level);
+            EvaluationStatistics.LevelStatistics actual = merged.getLevelStatistics(level);
+            assertEquals(expected.getCount(), actual.getCount());
+            assertEquals(expected.getExactMatchScore(), actual.getExactMatchScore());
+            assertEquals(expected.getExecutionScore(), actual.getExecutionScore());
+            assertEquals(expected.getPartialScores(), actual.getPartialScores());
+            assertEquals(expected.getAverageF1(), actual.getAverageF1());
+        }
+        assertEquals(500, merged.getLevelStatistics(HardnessLevel.ALL).getCount());
+    }
+}
@@ -0,0 +1,153 @@
+package com.nl2sql.spider.model;
+
+import com.nl2sql.spider.evaluator.SpiderEvaluator;
+import com.nl2sql.spider.parser.SqlParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SQL模型结构相等与结构哈希的单元测试
+ */
+public class SqlStructureEqualityTest {
+
+    private SqlParser parser;
+    private DatabaseSchema schema;
+
+    @BeforeEach
+    void setUp() {
+        parser = new SqlParser();
+        schema = createTestSchema();
+    }
+
+    @Test
+    @DisplayName("测试独立解析的相同SQL结构相等")
+    void testEqualAcrossParses() {
+        String query = "SELECT name, count(*) FROM student WHERE age > 18 GROUP BY name ORDER BY name LIMIT 5";
+        SqlStructure first = parser.parseSql(schema, query);
+        SqlStructure second = parser.parseSql(schema, query);
+
+        assertNotSame(first, second);
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertEquals(first.structuralHash(), second.structuralHash());
+    }
+
+    @Test
+    @DisplayName("测试SELECT项与WHERE条件顺序不影响相等")
+    void testOrderInsensitiveComponents() {
+        SqlStructure first = parser.parseSql(schema, "SELECT name, age FROM student WHERE age > 18 AND grade = 3");
+        SqlStructure second = parser.parseSql(schema, "SELECT age, name FROM student WHERE grade = 3 AND age > 18");
+
+        assertEquals(first.structuralHash(), second.structuralHash());
+        assertEquals(first, second);
+    }
+
+    @Test
+    @DisplayName("测试不同SQL结构不相等且可放入HashSet去重")
+    void testDistinctStructures() {
+        SqlStructure a = parser.parseSql(schema, "SELECT name FROM student");
+        SqlStructure b = parser.parseSql(schema, "SELECT name FROM course");
+        SqlStructure c = parser.parseSql(schema, "SELECT name FROM student ORDER BY name DESC");
+        SqlStructure d = parser.parseSql(schema, "SELECT name FROM student");
+
+        assertNotEquals(a, b);
+        assertNotEquals(a, c);
+
+        Set<SqlStructure> unique = new HashSet<>(Arrays.asList(a, b, c, d));
+        assertEquals(3, unique.size());
+    }
+
+    @Test
+    @DisplayName("测试setter使缓存的结构哈希失效")
+    void testHashInvalidatedBySetter() {
+        SqlStructure sql = parser.parseSql(schema, "SELECT name FROM student");
+        long before = sql.structuralHash();
+
+        sql.setLimit(10);
+
+        assertNotEquals(before, sql.structuralHash());
+        assertEquals(parser.parseSql(schema, "SELECT name FROM student LIMIT 10"), sql);
+    }
+
+    @Test
+    @DisplayName("测试通过getter修改嵌套节点后equals仍按当前结构比较")
+    void testEqualsIgnoresStaleHash() {
+        SqlStructure one = parser.parseSql(schema, "SELECT name FROM student WHERE age > 18");
+        SqlStructure two = parser.parseSql(schema, "SELECT name, age FROM student WHERE age > 18 AND grade = 3");
+        assertNotEquals(one, two);
+
+        two.getSelect().getSelectItems().removeIf(item -> item.toString().contains("age"));
+        two.getWhere().removeIf(cond -> cond.toString().contains("grade"));
+
+        assertEquals(one.getSelect(), two.getSelect());
+        assertEquals(one, two);
+    }
+
+    @Test
+    @DisplayName("测试规范化后输出稳定")
+    void testCanonicalize() {
+        SqlStructure first = parser.parseSql(schema, "SELECT name, age FROM student WHERE age > 18 AND grade = 3").canonicalize();
+        SqlStructure second = parser.parseSql(schema, "SELECT age, name FROM student WHERE grade = 3 AND age > 18").canonicalize();
+
+        assertEquals(first.toString(), second.toString());
+        assertEquals(first, second);
+    }
+
+    @Test
+    @DisplayName("测试精确匹配按结构比较FROM表单元")
+    void testExactMatchComparesTablesStructurally() {
+        SpiderEvaluator evaluator = new SpiderEvaluator();
+        SqlStructure gold = parser.parseSql(schema, "SELECT name FROM student");
+        SqlStructure pred = parser.parseSql(schema, "SELECT name FROM student");
+        SqlStructure other = parser.parseSql(schema, "SELECT name FROM course");
+
+        assertTrue(evaluator.evaluateExactMatch(pred, gold));
+        assertFalse(evaluator.evaluateExactMatch(other, gold));
+    }
+
+    @Test
+    @DisplayName("测试快速精确匹配与完整部分打分结论一致")
+    void testFastExactMatchParity() {
+        SpiderEvaluator evaluator = new SpiderEvaluator();
+        List<String> queries = Arrays.asList(
+            "SELECT name FROM student",
+            "select  name from STUDENT;",
+            "SELECT name, age FROM student WHERE age > 18",
+            "SELECT age, name FROM student WHERE age > 18",
+            "SELECT count(*) FROM student GROUP BY grade HAVING count(*) > 2",
+            "SELECT name FROM student ORDER BY age DESC LIMIT 1",
+            "SELECT name FROM student INTERSECT SELECT name FROM course"
+        );
+
+        for (String goldSql : queries) {
+            SqlStructure gold = parser.parseSql(schema, goldSql);
+            for (String predSql : queries) {
+                SqlStructure pred = parser.parseSql(schema, predSql);
+                boolean expected = evaluator.evaluatePartialMatch(pred, gold).isExactMatch();
+
+                assertEquals(expected, evaluator.allComponentsMatch(predSql, goldSql, pred, gold),
+                             predSql + " vs " + goldSql);
+                assertEquals(evaluator.evaluateExactMatch(pred, gold),
+                             evaluator.evaluateExactMatch(predSql, goldSql, pred, gold),
+                             predSql + " vs " + goldSql);
+            }
+        }
+    }
+
+    private DatabaseSchema createTestSchema() {
+        DatabaseSchema schema = new DatabaseSchema();
+        schema.setDbId("test_db");
+        List<String> tableNames = Arrays.asList("student", "course");
+        schema.setTableNames(tableNames);
+        schema.setTableNamesOriginal(tableNames);
+        return schema;
+    }
+}
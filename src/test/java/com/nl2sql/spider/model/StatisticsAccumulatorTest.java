@@ -0,0 +1,127 @@
+package com.nl2sql.spider.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2sql.spider.enums.HardnessLevel;
+import com.nl2sql.spider.enums.ScoreComponent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StatisticsAccumulator的单元测试
+ */
+public class StatisticsAccumulatorTest {
+
+    @Test
+    @DisplayName("测试多线程累加的快照与顺序统计完全相同")
+    void testConcurrentSnapshotMatchesSequential() throws Exception {
+        Random random = new Random(7);
+        HardnessLevel[] levels = {HardnessLevel.EASY, HardnessLevel.MEDIUM, HardnessLevel.HARD, HardnessLevel.EXTRA};
+        List<HardnessLevel> itemLevels = new ArrayList<>();
+        List<EvaluationResult> results = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Map<String, PartialScore> scores = new HashMap<>();
+            for (ScoreComponent component : ScoreComponent.values()) {
+                // 部分结果缺少某些组件
+                if (random.nextInt(6) == 0) {
+                    continue;
+                }
+                int label = random.nextInt(4);
+                int pred = random.nextInt(4);
+                scores.put(component.getValue(), PartialScore.calculateScores(Math.min(label, pred), pred, label));
+            }
+            itemLevels.add(levels[random.nextInt(levels.length)]);
+            results.add(new EvaluationResult(scores, random.nextBoolean(), random.nextBoolean(), random.nextInt(5) == 0));
+        }
+
+        EvaluationStatistics sequential = new EvaluationStatistics();
+        for (int i = 0; i < results.size(); i++) {
+            sequential.addResult(itemLevels.get(i), results.get(i));
+        }
+        for (int i = 0; i < 4; i++) {
+            sequential.incrementErrorCount();
+        }
+        sequential.calculateFinalScores();
+
+        StatisticsAccumulator accumulator = new StatisticsAccumulator();
+        int threadCount = 4;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            int offset = t;
+            Thread thread = new Thread(() -> {
+                for (int i = offset; i < results.size(); i += threadCount) {
+                    accumulator.addResult(itemLevels.get(i), results.get(i));
+                }
+                accumulator.incrementErrorCount();
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        EvaluationStatistics snapshot = accumulator.snapshot();
+
+        assertEquals(sequential.getErrorCount(), snapshot.getErrorCount());
+        assertEquals(sequential.getExecutionSkippedCount(), snapshot.getExecutionSkippedCount());
+        for (HardnessLevel level : HardnessLevel.values()) {
+            EvaluationStatistics.LevelStatistics expected = sequential.getLevelStatistics(level);
+            EvaluationStatistics.LevelStatistics actual = snapshot.getLevelStatistics(level);
+            assertEquals(expected.getCount(), actual.getCount());
+            assertEquals(expected.getExactMatchScore(), actual.getExactMatchScore());
+            assertEquals(expected.getExecutionScore(), actual.getExecutionScore());
+            assertEquals(expected.getPartialScores(), actual.getPartialScores());
+            assertEquals(expected.getAverageF1(), actual.getAverageF1());
+        }
+    }
+
+    @Test
+    @DisplayName("测试保留最慢和返回行数最多的评估项，分片合并后与一次统计相同")
+    void testTopItems() throws Exception {
+        StatisticsAccumulator whole = new StatisticsAccumulator(3);
+        StatisticsAccumulator first = new StatisticsAccumulator(3);
+        StatisticsAccumulator second = new StatisticsAccumulator(3);
+        for (int i = 0; i < 20; i++) {
+            ExecutionMetrics metrics = new ExecutionMetrics();
+            metrics.setParseNanos(1000);
+            // 耗时在第7项最大，行数在第13项最大
+            metrics.recordGold((i * 7L % 20) * 1_000_000, (i * 13L % 20) * 10, 0);
+            metrics.recordPred(0, 1, 64);
+            whole.addItemCost(i, "db" + i, metrics);
+            (i < 10 ? first : second).addItemCost(i, "db" + i, metrics);
+        }
+
+        EvaluationStatistics statistics = whole.snapshot();
+        assertEquals(List.of(17, 14, 11), indexes(statistics.getSlowestItems()));
+        assertEquals(List.of(3, 6, 9), indexes(statistics.getLargestItems()));
+
+        // 经JSON传递后合并，与分片评估相同
+        ObjectMapper mapper = new ObjectMapper();
+        EvaluationStatistics merged = new EvaluationStatistics();
+        for (StatisticsAccumulator part : List.of(first, second)) {
+            String json = mapper.writeValueAsString(part.snapshot());
+            merged.merge(mapper.readValue(json, EvaluationStatistics.class));
+        }
+        assertEquals(indexes(statistics.getSlowestItems()), indexes(merged.getSlowestItems()));
+        assertEquals(indexes(statistics.getLargestItems()), indexes(merged.getLargestItems()));
+        assertEquals(19 * 10 + 1, merged.getLargestItems().get(0).getMetrics().getTotalRows());
+        assertEquals(64, merged.getSlowestItems().get(0).getMetrics().getBytesMaterialized());
+
+        assertTrue(new StatisticsAccumulator().snapshot().getSlowestItems().isEmpty());
+    }
+
+    private static List<Integer> indexes(List<ItemCost> items) {
+        List<Integer> indexes = new ArrayList<>();
+        for (ItemCost item : items) {
+            indexes.add(item.getIndex());
+        }
+        return indexes;
+    }
+}
@@ -94,6 +94,53 @@ public class SqlParserTest {
         assertNotNull(result.getFrom());
     }
     
+    @Test
+    @DisplayName("测试解析上下文复用：别名和失败的解析不影响后续结果")
+    void testParseContextReuse() {
+        String aliased = "SELECT T1.name FROM course AS T1 JOIN student AS T2 WHERE T2.age > 18";
+        String plain = "SELECT name FROM student WHERE age > 18 LIMIT 3";
+
+        SqlStructure first = parser.parseSql(testSchema, plain);
+        SqlStructure withAlias = parser.parseSql(testSchema, aliased);
+        assertEquals("course", withAlias.getFrom().getTableUnits().get(0).getTableId());
+        assertEquals("student", withAlias.getFrom().getTableUnits().get(1).getTableId());
+
+        assertThrows(RuntimeException.class, () -> parser.parseSql(testSchema, "SELECT name"));
+
+        // 上一条的别名T1不应保留
+        SqlStructure unknownAlias = parser.parseSql(testSchema, "SELECT name FROM T1");
+        assertNull(unknownAlias.getFrom().getTableUnits().get(0).getTableId());
+
+        SqlStructure second = parser.parseSql(testSchema, plain);
+        assertEquals(first, second);
+        assertEquals(Integer.valueOf(3), second.getLimit());
+    }
+
+    @Test
+    @DisplayName("测试子句关键字只在所属查询块内查找")
+    void testClauseScopedToQueryBlock() {
+        String sql = "SELECT name FROM student EXCEPT SELECT T1.name FROM student AS T1 WHERE T1.age > 18 GROUP BY T1.grade";
+
+        SqlStructure result = parser.parseSql(testSchema, sql);
+
+        // WHERE和GROUP BY属于EXCEPT右侧的查询
+        assertTrue(result.getWhere().isEmpty());
+        assertTrue(result.getGroupBy().isEmpty());
+        assertNotNull(result.getExcept());
+        assertFalse(result.getExcept().getWhere().isEmpty());
+        assertFalse(result.getExcept().getGroupBy().isEmpty());
+
+        // 外层的FROM不应取到子查询中的FROM
+        SqlStructure nested = parser.parseSql(testSchema,
+            "SELECT name, (SELECT max(title) FROM course WHERE id = 1) FROM student ORDER BY name");
+        assertEquals("student", nested.getFrom().getTableUnits().get(0).getTableId());
+        assertNotNull(nested.getOrderBy());
+        SqlStructure subQuery = (SqlStructure) nested.getSelect().getSelectItems().get(1).getValUnit().getValue();
+        assertEquals("course", subQuery.getFrom().getTableUnits().get(0).getTableId());
+        assertFalse(subQuery.getWhere().isEmpty());
+        assertNull(subQuery.getOrderBy());
+    }
+
     @Test
     @DisplayName("测试数字识别")
     void testNumericValueRecognition() {
@@ -0,0 +1,128 @@
+package com.nl2sql.spider.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2sql.spider.model.ItemResult;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JsonlResultWriter的单元测试
+ */
+public class JsonlResultWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("测试多线程写入小队列时每项结果恰好写出一行")
+    void testConcurrentWrites() throws Exception {
+        Path file = tempDir.resolve("results.jsonl");
+        int itemCount = 5000;
+        int threadCount = 4;
+
+        try (JsonlResultWriter writer = new JsonlResultWriter(file, 16)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                int offset = t;
+                Thread thread = new Thread(() -> {
+                    for (int i = offset; i < itemCount; i += threadCount) {
+                        writer.accept(itemResult(i));
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(itemCount, lines.size());
+        BitSet seen = new BitSet(itemCount);
+        for (String line : lines) {
+            JsonNode node = mapper.readTree(line);
+            int index = node.get("index").asInt();
+            assertFalse(seen.get(index));
+            seen.set(index);
+            assertEquals("db" + (index % 3), node.get("dbId").asText());
+            if (index % 10 == 0) {
+                assertEquals("boom", node.get("error").asText());
+                assertFalse(node.has("hardness"));
+            } else {
+                assertEquals("medium", node.get("hardness").asText());
+                assertEquals(0.5, node.get("partialF1").get("select").asDouble());
+                assertFalse(node.has("error"));
+            }
+        }
+        assertEquals(itemCount, seen.cardinality());
+    }
+
+    @Test
+    @DisplayName("测试关闭后不再接收结果")
+    void testAcceptAfterClose() throws Exception {
+        JsonlResultWriter writer = new JsonlResultWriter(tempDir.resolve("closed.jsonl"));
+        writer.close();
+        writer.close();
+        assertThrows(IllegalStateException.class, () -> writer.accept(itemResult(0)));
+        assertEquals(0, Files.size(tempDir.resolve("closed.jsonl")));
+    }
+
+    @Test
+    @DisplayName("测试队列排空时不刷新，超过刷新间隔后刷新")
+    void testFlushOnInterval() throws Exception {
+        Path file = tempDir.resolve("interval.jsonl");
+        try (JsonlResultWriter writer = new JsonlResultWriter(file, 16, 3_600_000)) {
+            // 顺序评估：每项写入后队列都会排空
+            for (int i = 0; i < 3; i++) {
+                writer.accept(itemResult(i));
+                Thread.sleep(20);
+            }
+            assertEquals(0, Files.size(file));
+        }
+        assertEquals(3, Files.readAllLines(file).size());
+
+        Path flushed = tempDir.resolve("flushed.jsonl");
+        try (JsonlResultWriter writer = new JsonlResultWriter(flushed, 16, 50)) {
+            writer.accept(itemResult(0));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (Files.size(flushed) == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            // 没有新结果也在刷新间隔后写出
+            assertEquals(1, Files.readAllLines(flushed).size());
+        }
+    }
+
+    private static ItemResult itemResult(int index) {
+        ItemResult result = new ItemResult();
+        result.setIndex(index);
+        result.setDbId("db" + (index % 3));
+        result.setElapsedMillis(1.5);
+        if (index % 10 == 0) {
+            result.setError("boom");
+        } else {
+            result.setHardness("medium");
+            result.setExactMatch(index % 2 == 0);
+            Map<String, Double> partialF1 = new LinkedHashMap<>();
+            partialF1.put("select", 0.5);
+            partialF1.put("where", 1.0);
+            result.setPartialF1(partialF1);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,72 @@
+package com.nl2sql.spider.service;
+
+import com.nl2sql.spider.model.EvaluationResult;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ProgressReporter的单元测试
+ */
+public class ProgressReporterTest {
+
+    @Test
+    @DisplayName("测试多线程计数后定期输出进度并在结束时汇总")
+    void testReportsProgress() throws Exception {
+        List<ProgressReporter.Progress> reports = new CopyOnWriteArrayList<>();
+        EvaluationResult exact = new EvaluationResult(Collections.emptyMap(), true, true);
+        EvaluationResult wrong = new EvaluationResult(Collections.emptyMap(), false, false, false, true);
+
+        try (ProgressReporter reporter = new ProgressReporter(10, reports::add)) {
+            reporter.onStart(1000);
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int offset = t;
+                Thread thread = new Thread(() -> {
+                    for (int i = offset; i < 800; i += 4) {
+                        if (i % 100 == 0) {
+                            reporter.onItemCompleted(i, null, new RuntimeException("failed"));
+                        } else {
+                            reporter.onItemCompleted(i, i % 2 == 0 ? exact : wrong, null);
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // 至少采样一次
+            long deadline = System.currentTimeMillis() + 5000;
+            while (reports.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertFalse(reports.isEmpty());
+            reporter.onFinish();
+        }
+
+        ProgressReporter.Progress last = reports.get(reports.size() - 1);
+        assertEquals(1000, last.getTotalItems());
+        assertEquals(800, last.getCompleted());
+        assertEquals(8, last.getErrors());
+        assertEquals(400, last.getTooExpensive());
+        assertEquals(392.0 / 792, last.getExactMatchAccuracy(), 1e-9);
+        assertEquals(392.0 / 792, last.getExecutionAccuracy(), 1e-9);
+        assertTrue(last.getItemsPerSecond() > 0);
+        assertEquals((long) Math.ceil(200 / last.getItemsPerSecond()), last.getEtaSeconds());
+        assertTrue(last.toString().startsWith("800/1000 (80.0%)"), last.toString());
+
+        // 结束后不再采样
+        int count = reports.size();
+        Thread.sleep(50);
+        assertEquals(count, reports.size());
+    }
+}
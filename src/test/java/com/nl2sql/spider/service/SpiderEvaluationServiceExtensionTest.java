@@ -3,12 +3,18 @@ package com.nl2sql.spider.service;
 import com.nl2sql.spider.config.DatabaseConfig;
 import com.nl2sql.spider.enums.EvaluationType;
 import com.nl2sql.spider.model.EvaluationResult;
+import com.nl2sql.spider.model.SqlEvaluationItem;
 import com.nl2sql.spider.utils.DatabaseConnectionManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Arrays;
 import java.util.List;
 
@@ -104,6 +110,29 @@ public class SpiderEvaluationServiceExtensionTest {
         });
     }
     
+    @Test
+    @DisplayName("测试按dbId分组并行验证评估项，结果保持输入顺序")
+    void testValidateItemsPrepareOnly(@TempDir Path tempDir) throws SQLException {
+        String dbPath = tempDir.resolve("validate.sqlite").toString();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE users (id INTEGER, name TEXT, age INTEGER)");
+            stmt.execute("INSERT INTO users VALUES (1, 'a', 20)");
+        }
+        DatabaseConfig config = new DatabaseConfig(dbPath);
+        service.setPrepareOnlyValidation(true);
+        
+        List<SqlEvaluationItem> items = Arrays.asList(
+            new SqlEvaluationItem("SELECT name FROM users", "SELECT name FROM users WHERE age > 18", "db_a"),
+            new SqlEvaluationItem("SELECT name FROM users", "SELECT nickname FROM users", "db_b"),
+            new SqlEvaluationItem("SELECT count(*) FROM users", "SELECT count(*) FROM users", "db_b"),
+            new SqlEvaluationItem("SELECT name FROM users", "SELECT name FROM orders", "db_a"),
+            new SqlEvaluationItem("SELECT id FROM users", "SELECT id FROM users", "db_c")
+        );
+        
+        assertEquals(Arrays.asList(true, false, true, false, true), service.validateItems(items, config));
+    }
+    
     @Test
     @DisplayName("测试批量评估功能")
     void testBatchEvaluation() {
@@ -0,0 +1,124 @@
+package com.nl2sql.spider.utils;
+
+import com.nl2sql.spider.config.DatabaseConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ConnectionPool的单元测试（用H2内存数据库代替远程数据库）
+ */
+public class ConnectionPoolTest {
+
+    @Test
+    @DisplayName("测试归还的连接被复用并恢复自动提交")
+    void testReuseAndReset() throws SQLException {
+        ConnectionPool pool = newPool("pool_reuse", poolConfig(2));
+
+        Connection first = pool.borrow();
+        Connection raw = first.unwrap(Connection.class);
+        first.setAutoCommit(false);
+        Statement open = first.createStatement();
+        first.close();
+        assertTrue(first.isClosed());
+        assertTrue(open.isClosed());
+        assertThrows(SQLException.class, first::createStatement);
+
+        try (Connection second = pool.borrow()) {
+            assertSame(raw, second.unwrap(Connection.class));
+            assertTrue(second.getAutoCommit());
+            try (Statement stmt = second.createStatement(); ResultSet rs = stmt.executeQuery("SELECT 1")) {
+                assertTrue(rs.next());
+            }
+        }
+
+        ConnectionPool.Statistics stats = pool.getStatistics();
+        assertEquals(1, stats.getCreatedCount());
+        assertEquals(2, stats.getBorrowCount());
+        assertEquals(0, stats.getActive());
+        assertEquals(1, stats.getIdle());
+        pool.close();
+        assertEquals(0, pool.getStatistics().getOpen());
+    }
+
+    @Test
+    @DisplayName("测试连接用尽时等待超时并计入统计")
+    void testBorrowTimeout() throws SQLException {
+        DatabaseConfig config = poolConfig(1);
+        config.setBorrowTimeoutMillis(50);
+        ConnectionPool pool = newPool("pool_timeout", config);
+
+        try (Connection held = pool.borrow()) {
+            assertThrows(ConnectionPool.BorrowTimeoutException.class, pool::borrow);
+            ConnectionPool.Statistics stats = pool.getStatistics();
+            assertEquals(1, stats.getTimeoutCount());
+            assertEquals(1.0, stats.getUtilization());
+        }
+        try (Connection again = pool.borrow()) {
+            assertFalse(again.isClosed());
+        }
+        pool.close();
+    }
+
+    @Test
+    @DisplayName("测试失效和过期的空闲连接不再借出")
+    void testInvalidAndExpiredConnections() throws Exception {
+        DatabaseConfig config = poolConfig(2);
+        config.setMaxLifetimeMillis(30);
+        ConnectionPool pool = newPool("pool_expiry", config);
+
+        Connection first = pool.borrow();
+        Connection raw = first.unwrap(Connection.class);
+        first.close();
+        raw.close();
+        try (Connection second = pool.borrow()) {
+            assertNotSame(raw, second.unwrap(Connection.class));
+        }
+
+        Thread.sleep(50);
+        pool.housekeep();
+        ConnectionPool.Statistics stats = pool.getStatistics();
+        assertEquals(0, stats.getIdle());
+        assertEquals(2, stats.getClosedCount());
+        pool.close();
+    }
+
+    @Test
+    @DisplayName("测试补足最少连接数和泄漏检测")
+    void testMinSizeAndLeakDetection() throws Exception {
+        DatabaseConfig config = poolConfig(4);
+        config.setPoolMinSize(2);
+        config.setLeakDetectionThresholdMillis(10);
+        ConnectionPool pool = newPool("pool_leak", config);
+
+        pool.housekeep();
+        assertEquals(2, pool.getStatistics().getIdle());
+
+        Connection leaked = pool.borrow();
+        Thread.sleep(30);
+        pool.housekeep();
+        pool.housekeep();
+        assertEquals(1, pool.getStatistics().getLeakCount());
+        leaked.close();
+        pool.close();
+    }
+
+    private static DatabaseConfig poolConfig(int maxSize) {
+        DatabaseConfig config = new DatabaseConfig();
+        config.setType(DatabaseConfig.DatabaseType.H2);
+        config.setPoolMaxSize(maxSize);
+        return config;
+    }
+
+    private static ConnectionPool newPool(String database, DatabaseConfig config) {
+        return new ConnectionPool(database, config,
+                                  () -> DriverManager.getConnection("jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1"));
+    }
+}
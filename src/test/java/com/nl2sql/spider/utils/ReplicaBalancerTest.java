@@ -0,0 +1,122 @@
+package com.nl2sql.spider.utils;
+
+import com.nl2sql.spider.config.DatabaseConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ReplicaBalancer的单元测试（用H2内存数据库代替副本）
+ */
+public class ReplicaBalancerTest {
+
+    private final Set<String> down = ConcurrentHashMap.newKeySet();
+    private final Set<String> saturated = ConcurrentHashMap.newKeySet();
+
+    @Test
+    @DisplayName("测试选择未关闭连接最少的副本")
+    void testLeastOutstanding() throws SQLException {
+        ReplicaBalancer balancer = new ReplicaBalancer(replicaConfig(3), this::connect);
+
+        List<Connection> held = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            held.add(balancer.connect());
+        }
+        for (ReplicaBalancer.Status status : balancer.getStatus()) {
+            assertEquals(2, status.getOutstanding());
+        }
+
+        // 关闭replica1上的连接后，下一个连接应分给它
+        int released = 0;
+        for (Connection conn : held) {
+            if (conn.getMetaData().getURL().contains("replica1") && released < 2) {
+                conn.close();
+                conn.close();
+                released++;
+            }
+        }
+        try (Connection next = balancer.connect()) {
+            assertTrue(next.getMetaData().getURL().contains("replica1"));
+        }
+        for (Connection conn : held) {
+            conn.close();
+        }
+        balancer.getStatus().forEach(status -> assertEquals(0, status.getOutstanding()));
+    }
+
+    @Test
+    @DisplayName("测试连续失败的副本被摘除并在健康检查通过后恢复")
+    void testEjectionAndRecovery() throws SQLException {
+        DatabaseConfig config = replicaConfig(2);
+        config.setReplicaFailureThreshold(2);
+        config.setReplicaEjectionMillis(0);
+        ReplicaBalancer balancer = new ReplicaBalancer(config, this::connect);
+        down.add("replica0");
+
+        // 失败时改选其他副本，调用方不受影响
+        for (int i = 0; i < 10; i++) {
+            try (Connection conn = balancer.connect()) {
+                assertTrue(conn.getMetaData().getURL().contains("replica1"));
+            }
+        }
+        ReplicaBalancer.Status replica0 = balancer.getStatus().get(0);
+        assertFalse(replica0.isHealthy());
+        assertEquals(2, replica0.getFailures());
+        assertEquals(1, replica0.getEjections());
+
+        balancer.healthCheck();
+        assertFalse(balancer.getStatus().get(0).isHealthy());
+        down.remove("replica0");
+        balancer.healthCheck();
+        assertTrue(balancer.getStatus().get(0).isHealthy());
+    }
+
+    @Test
+    @DisplayName("测试连接池已满时改选其他副本且不计为失败")
+    void testSaturatedReplicaNotEjected() throws SQLException {
+        DatabaseConfig config = replicaConfig(2);
+        config.setReplicaFailureThreshold(1);
+        ReplicaBalancer balancer = new ReplicaBalancer(config, this::connect);
+        saturated.add("replica0");
+
+        for (int i = 0; i < 4; i++) {
+            try (Connection conn = balancer.connect()) {
+                assertTrue(conn.getMetaData().getURL().contains("replica1"));
+            }
+        }
+        assertTrue(balancer.getStatus().get(0).isHealthy());
+        assertEquals(0, balancer.getStatus().get(0).getFailures());
+
+        down.add("replica1");
+        assertThrows(SQLException.class, balancer::connect);
+    }
+
+    private Connection connect(DatabaseConfig config) throws SQLException {
+        String host = config.getHost();
+        if (down.contains(host)) {
+            throw new SQLException("Connection refused: " + host);
+        }
+        if (saturated.contains(host)) {
+            throw new SQLTimeoutException("Pool exhausted: " + host);
+        }
+        return DriverManager.getConnection("jdbc:h2:mem:" + host + ";DB_CLOSE_DELAY=-1");
+    }
+
+    private static DatabaseConfig replicaConfig(int replicas) {
+        DatabaseConfig config = new DatabaseConfig(DatabaseConfig.DatabaseType.MYSQL, null, 0, "spider", "user", "pw");
+        for (int i = 0; i < replicas; i++) {
+            config.addEndpoint("replica" + i, 3306);
+        }
+        return config;
+    }
+}
@@ -64,4 +64,17 @@ public class SqlTokenizerTest {
         assertTrue(tokens.contains("group"));
         assertTrue(tokens.contains("having"));
     }
-} 
\ No newline at end of file
+    
+    @Test
+    public void testCanonicalize() {
+        assertEquals("select count(*)from Users where name = 'John Doe'",
+                     SqlTokenizer.canonicalize("SELECT  COUNT( * )\n FROM Users WHERE name = 'John Doe' ;"));
+        
+        // 字面量和标识符保持原样
+        assertNotEquals(SqlTokenizer.canonicalize("SELECT * FROM users WHERE name = 'A'"),
+                        SqlTokenizer.canonicalize("SELECT * FROM users WHERE name = 'a'"));
+        assertNotEquals(SqlTokenizer.canonicalize("SELECT * FROM Users"),
+                        SqlTokenizer.canonicalize("SELECT * FROM users"));
+        assertEquals("select 'a  b' from t", SqlTokenizer.canonicalize("select 'a  b'   from t"));
+    }
+}